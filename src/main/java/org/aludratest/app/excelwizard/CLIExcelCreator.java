@@ -17,7 +17,15 @@ package org.aludratest.app.excelwizard;
 
 import java.io.File;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.aludratest.AludraTest;
 import org.aludratest.config.AludraTestConfig;
@@ -33,17 +41,23 @@ import org.slf4j.LoggerFactory;
  * running in the project for which you want to generate Excel documents
  * and in the field 'Program Arguments' enter ${java_type_name}.
  * In order to execute the generator, select the test class in the
- * package explorer and start the Run Configuration.
+ * package explorer and start the Run Configuration.<br>
+ * Several test classes may be passed at once; their documents are generated in parallel.
+ * The documents of a test class are skipped if its test method signatures have not changed
+ * since the last generation, unless the option <code>-force</code> is passed.
  * @author Volker Bergmann
  */
 public class CLIExcelCreator {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CLIExcelCreator.class);
 
+    private static final String FORCE_OPTION = "-force";
+
     private CLIExcelCreator() { }
 
     /** Main method of the class.
-     * @param args an array of length one, containing the fully qualified name of the class for which to generate Excel documents
+     * @param args the fully qualified names of the classes for which to generate Excel documents, optionally preceded by
+     *            <code>-force</code> to regenerate documents of unchanged test classes
      * @throws Exception if an error occurs */
     public static void main(String[] args) throws Exception {
         checkArguments(args);
@@ -52,26 +66,105 @@ public class CLIExcelCreator {
         AludraTest aludraTest = AludraTest.startFramework();
         try {
             AludraTestConfig config = aludraTest.getServiceManager().newImplementorInstance(AludraTestConfig.class);
-            Class<?> testClass = getTestClass(args);
-            List<Method> testMethodsWithExcelSource = WizardUtil.getTestMethodsWithExcelSource(testClass);
-            if (!testMethodsWithExcelSource.isEmpty()) {
-                LOGGER.info("Generating Excel documents for test class {}", testClass.getName());
-                for (Method testMethod : testMethodsWithExcelSource) {
-                    File testDataRootFolder = new File(SystemInfo.getCurrentDir(), config.getXlsRootPath()).getCanonicalFile();
-                    JavaBeanExcelDocumentMapper.createOrMergeDocuments(testMethod, testDataRootFolder);
+            File testDataRootFolder = new File(SystemInfo.getCurrentDir(), config.getXlsRootPath()).getCanonicalFile();
+            boolean force = false;
+            Map<Class<?>, List<Method>> testMethodsByClass = new LinkedHashMap<Class<?>, List<Method>>();
+            for (String arg : args) {
+                if (FORCE_OPTION.equals(arg)) {
+                    force = true;
+                }
+                else {
+                    addTestMethods(getTestClass(arg), testMethodsByClass);
                 }
             }
+            createDocuments(testMethodsByClass, testDataRootFolder, force);
+        }
+        finally {
+            aludraTest.stopFramework();
+        }
+    }
+
+    // private helpers ---------------------------------------------------------
+
+    /** Groups the test methods by the class which declares them, since that class determines the folder of the Excel documents.
+     * So no two groups write to the same documents and the groups can be processed in parallel. */
+    private static void addTestMethods(Class<?> testClass, Map<Class<?>, List<Method>> testMethodsByClass) {
+        List<Method> testMethodsWithExcelSource = WizardUtil.getTestMethodsWithExcelSource(testClass);
+        if (testMethodsWithExcelSource.isEmpty()) {
+            LOGGER.info("Test class {} does not have test methods with Excel sources", testClass.getName());
+        }
+        for (Method testMethod : testMethodsWithExcelSource) {
+            List<Method> methods = testMethodsByClass.get(testMethod.getDeclaringClass());
+            if (methods == null) {
+                methods = new ArrayList<Method>();
+                testMethodsByClass.put(testMethod.getDeclaringClass(), methods);
+            }
+            if (!methods.contains(testMethod)) {
+                methods.add(testMethod);
+            }
+        }
+    }
+
+    private static void createDocuments(Map<Class<?>, List<Method>> testMethodsByClass, final File testDataRootFolder,
+            boolean force) throws Exception {
+        // the signatures are calculated up front, so the data classes are only examined by this thread
+        final Map<List<Method>, WorkbookSignature> outdated = new LinkedHashMap<List<Method>, WorkbookSignature>();
+        for (Map.Entry<Class<?>, List<Method>> entry : testMethodsByClass.entrySet()) {
+            WorkbookSignature signature = new WorkbookSignature(entry.getValue(), testDataRootFolder);
+            if (force || !signature.isUpToDate()) {
+                outdated.put(entry.getValue(), signature);
+            }
             else {
-                LOGGER.info("Test class {} does not have test methods with Excel sources", testClass.getName());
+                LOGGER.info("Excel documents for test class {} are up to date", entry.getKey().getName());
             }
         }
+
+        int threadCount = Math.min(Runtime.getRuntime().availableProcessors(), outdated.size());
+        if (threadCount <= 1) {
+            for (Map.Entry<List<Method>, WorkbookSignature> entry : outdated.entrySet()) {
+                createDocuments(entry.getKey(), entry.getValue(), testDataRootFolder);
+            }
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>(outdated.size());
+            for (final Map.Entry<List<Method>, WorkbookSignature> entry : outdated.entrySet()) {
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        createDocuments(entry.getKey(), entry.getValue(), testDataRootFolder);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
         finally {
-            aludraTest.stopFramework();
+            executor.shutdownNow();
         }
     }
 
-    private static Class<?> getTestClass(String[] args) {
-        String className = args[0].trim();
+    private static void createDocuments(List<Method> testMethods, WorkbookSignature signature, File testDataRootFolder)
+            throws Exception {
+        LOGGER.info("Generating Excel documents for test class {}", testMethods.get(0).getDeclaringClass().getName());
+        for (Method testMethod : testMethods) {
+            JavaBeanExcelDocumentMapper.createOrMergeDocuments(testMethod, testDataRootFolder);
+        }
+        signature.persist();
+    }
+
+    private static Class<?> getTestClass(String arg) {
+        String className = arg.trim();
         if (className.endsWith(".java")) {
             className = className.substring(0, className.length() - ".java".length());
         }
@@ -79,8 +172,14 @@ public class CLIExcelCreator {
     }
 
     private static void checkArguments(String[] args) {
-        if (args.length != 1) {
-            System.out.println("Please provide the name of the test class or test suite"); //NOSONAR
+        int classCount = 0;
+        for (String arg : args) {
+            if (!FORCE_OPTION.equals(arg)) {
+                classCount++;
+            }
+        }
+        if (classCount == 0) {
+            System.out.println("Please provide the names of the test classes or test suites"); //NOSONAR
             System.exit(AludraTestConstants.EXIT_ILLEGAL_ARGUMENT);
         }
     }
@@ -61,8 +61,11 @@ public class JavaBeanExcelDocumentMapper {
     // private helper methods --------------------------------------------------
 
     static File resolveExcelFile(File testDataRootFolder, Class<?> testClass, String uri) {
-        File targetFolder = new File(testDataRootFolder, testClass.getName().replace('.', '/')); // NOSONAR
-        return new File(targetFolder, uri);
+        return new File(resolveExcelFolder(testDataRootFolder, testClass), uri);
+    }
+
+    static File resolveExcelFolder(File testDataRootFolder, Class<?> testClass) {
+        return new File(testDataRootFolder, testClass.getName().replace('.', '/')); // NOSONAR
     }
 
     private static void createOrMergeWorkbooks(Method testMethod, File testDataFolder, Map<File, WorkbookTracker> workbooks)
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.app.excelwizard;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.aludratest.exception.TechnicalException;
+import org.aludratest.testcase.data.Source;
+import org.databene.commons.IOUtil;
+
+/** Digest of the test method signatures which the Excel documents of a test class are generated from. The digest covers the
+ * test methods, their Excel sources and the column headers of their data classes. It is persisted in the folder of the test
+ * class' Excel documents, so a later generation can skip the test class if the digest has not changed and all documents still
+ * exist.
+ *
+ * @author agent */
+final class WorkbookSignature {
+
+    /** The name of the file which stores the digest in the folder of the Excel documents. */
+    static final String SIGNATURE_FILE_NAME = ".signature";
+
+    private final File folder;
+
+    private final String digest;
+
+    private final List<File> excelFiles;
+
+    /** Calculates the signature of test methods which are declared by the same test class.
+     * @param testMethods the test methods with Excel sources
+     * @param testDataRootFolder the root folder of the Excel documents */
+    WorkbookSignature(List<Method> testMethods, File testDataRootFolder) {
+        List<Method> methods = new ArrayList<Method>(testMethods);
+        Collections.sort(methods, new Comparator<Method>() {
+            @Override
+            public int compare(Method m1, Method m2) {
+                return m1.toGenericString().compareTo(m2.toGenericString());
+            }
+        });
+        Class<?> testClass = methods.get(0).getDeclaringClass();
+        this.folder = JavaBeanExcelDocumentMapper.resolveExcelFolder(testDataRootFolder, testClass);
+        this.excelFiles = new ArrayList<File>();
+        MessageDigest md = createDigest();
+        for (Method method : methods) {
+            update(md, method.toGenericString());
+            Annotation[][] annosOfAllParams = method.getParameterAnnotations();
+            Class<?>[] paramTypes = method.getParameterTypes();
+            for (int i = 0; i < paramTypes.length; i++) {
+                Source source = WizardUtil.findExcelSourceAnnotation(annosOfAllParams[i]);
+                if (source != null) {
+                    update(md, source.uri());
+                    update(md, source.segment());
+                    for (String header : WorkbookTracker.getColumnHeaders(paramTypes[i])) {
+                        update(md, header);
+                    }
+                    excelFiles.add(new File(folder, source.uri()));
+                }
+            }
+        }
+        this.digest = toHex(md.digest());
+    }
+
+    /** Tells if the Excel documents have been generated from the same signature and still exist.
+     * @return <code>true</code> if the persisted digest equals this one and all Excel documents exist, otherwise
+     *         <code>false</code> */
+    boolean isUpToDate() {
+        File file = getSignatureFile();
+        if (!file.isFile()) {
+            return false;
+        }
+        for (File excelFile : excelFiles) {
+            if (!excelFile.isFile()) {
+                return false;
+            }
+        }
+        try {
+            return digest.equals(IOUtil.getContentOfURI(file.getAbsolutePath(), "UTF-8").trim());
+        }
+        catch (IOException e) {
+            // regenerate the documents if the signature cannot be read
+            return false;
+        }
+    }
+
+    /** Persists the digest in the folder of the Excel documents.
+     * @throws IOException if writing the signature file fails */
+    void persist() throws IOException {
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Unable to create directory " + folder.getAbsolutePath());
+        }
+        IOUtil.writeTextFile(getSignatureFile().getAbsolutePath(), digest, "UTF-8");
+    }
+
+    @Override
+    public String toString() {
+        return digest;
+    }
+
+    // helper methods ----------------------------------------------------------
+
+    private File getSignatureFile() {
+        return new File(folder, SIGNATURE_FILE_NAME);
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new TechnicalException("SHA-1 not supported by Java runtime", e);
+        }
+    }
+
+    private static void update(MessageDigest md, String value) {
+        try {
+            md.update(String.valueOf(value).getBytes("UTF-8"));
+            md.update((byte) 0);
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new TechnicalException("UTF-8 not supported by Java runtime", e);
+        }
+    }
+
+    private static String toHex(byte[] data) {
+        StringBuilder sb = new StringBuilder(data.length * 2);
+        for (byte b : data) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+}
@@ -22,10 +22,13 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.aludratest.util.ExcelUtil;
 import org.apache.poi.hssf.usermodel.HSSFCellStyle;
@@ -51,6 +54,9 @@ public class WorkbookTracker {
     static final int STATUS_CREATED = 1;
     static final int STATUS_MODIFIED = 2;
 
+    /** Caches the column headers of the data classes. */
+    private static final ConcurrentMap<Class<?>, List<String>> columnHeaders = new ConcurrentHashMap<Class<?>, List<String>>();
+
     // primary attributes
     private final File file;
     private final Workbook workbook;
@@ -133,23 +139,30 @@ public class WorkbookTracker {
 
     int synchronizeColumnsWithClassFeatures(Class<?> dataType, Sheet sheet, int initialInsertionIndex, String parentPath) {
         int insertionIndex = initialInsertionIndex;
-        // Get bean properties and public attributes
-        Map<String, Class<?>> features = WizardUtil.getFeatures(dataType);
-        // create String type columns first...
-        for (Map.Entry<String, Class<?>> feature : features.entrySet()) {
-            if (feature.getValue() == String.class) {
-                String header = extendPath(parentPath, feature.getKey());
-                insertionIndex = haveColumnWithHeader(header, sheet, insertionIndex) + 1;
-            }
+        for (String columnHeader : getColumnHeaders(dataType)) {
+            String header = extendPath(parentPath, columnHeader);
+            insertionIndex = haveColumnWithHeader(header, sheet, insertionIndex) + 1;
         }
-        // ...then recur into bean graphs
-        for (Map.Entry<String, Class<?>> feature : features.entrySet()) { // NOSONAR
-            if (feature.getValue() != String.class) {
-                String localPath = extendPath(parentPath, feature.getKey());
-                insertionIndex = synchronizeColumnsWithClassFeatures(feature.getValue(), sheet, insertionIndex, localPath);
+        return insertionIndex;
+    }
+
+    /** Determines the column headers of a data class in the order in which they are synchronized with a sheet: String type
+     * columns first, then the columns of the nested bean graphs. The headers are cached per class, so the features of a data
+     * class are only examined once, even if it is used by many test methods.
+     * @param dataType the data class to examine
+     * @return an unmodifiable list of the column headers */
+    static List<String> getColumnHeaders(Class<?> dataType) {
+        List<String> headers = columnHeaders.get(dataType);
+        if (headers == null) {
+            List<String> newHeaders = new ArrayList<String>();
+            collectColumnHeaders(dataType, null, newHeaders);
+            headers = Collections.unmodifiableList(newHeaders);
+            List<String> existing = columnHeaders.putIfAbsent(dataType, headers);
+            if (existing != null) {
+                headers = existing;
             }
         }
-        return insertionIndex;
+        return headers;
     }
 
     void validate() {
@@ -211,6 +224,23 @@ public class WorkbookTracker {
         dataRow.createCell(0, Cell.CELL_TYPE_STRING).setCellValue(configName);
     }
 
+    private static void collectColumnHeaders(Class<?> dataType, String parentPath, List<String> headers) {
+        // Get bean properties and public attributes
+        Map<String, Class<?>> features = WizardUtil.getFeatures(dataType);
+        // create String type columns first...
+        for (Map.Entry<String, Class<?>> feature : features.entrySet()) {
+            if (feature.getValue() == String.class) {
+                headers.add(extendPath(parentPath, feature.getKey()));
+            }
+        }
+        // ...then recur into bean graphs
+        for (Map.Entry<String, Class<?>> feature : features.entrySet()) { // NOSONAR
+            if (feature.getValue() != String.class) {
+                collectColumnHeaders(feature.getValue(), extendPath(parentPath, feature.getKey()), headers);
+            }
+        }
+    }
+
     private static String extendPath(String parentPath, String key) {
         return (StringUtil.isEmpty(parentPath) ? key : (parentPath + '.' + key));
     }
@@ -21,6 +21,7 @@ import java.lang.reflect.Modifier;
 import java.util.Collections;
 import java.util.List;
 
+import net.sourceforge.pmd.RuleContext;
 import net.sourceforge.pmd.RulePriority;
 import net.sourceforge.pmd.lang.java.ast.ASTClassOrInterfaceDeclaration;
 import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
@@ -47,10 +48,26 @@ import org.aludratest.testcase.AludraTestCase;
  */
 public abstract class AbstractAludraTestRule extends AbstractJavaRule {
 
+    /** The type index of the current PMD run, only replaced by the shared index when the first compilation unit is visited. */
+    private TypeIndex typeIndex = new TypeIndex();
+
     protected AbstractAludraTestRule() {
         super.setPriority(RulePriority.HIGH);
     }
 
+    @Override
+    public Object visit(ASTCompilationUnit node, Object data) {
+        if (data instanceof RuleContext) {
+            typeIndex = TypeIndex.forContext((RuleContext) data);
+        }
+        return super.visit(node, data);
+    }
+
+    /** @return the type index of the current PMD run, which is shared by all rules and analysis threads of the run */
+    protected final TypeIndex getTypeIndex() {
+        return typeIndex;
+    }
+
     protected static final ASTClassOrInterfaceDeclaration getClassOrInterfaceDeclaration(AbstractJavaNode node) {
         ASTClassOrInterfaceDeclaration decl;
         if (!(node instanceof ASTClassOrInterfaceDeclaration)) {
@@ -127,6 +144,34 @@ public abstract class AbstractAludraTestRule extends AbstractJavaRule {
         return true;
     }
 
+    /** Same as {@link #isInterfaceImplemented(AbstractJavaNode, Class)}, but answered from the {@link #getTypeIndex() type
+     * index} of the current PMD run.
+     * 
+     * @param node AST node to check.
+     * @param iface Interface or base class to check for being implemented by the node, if a ClassOrInterfaceDeclaration, or by
+     *            the first AST parent of that node type.
+     * 
+     * @return <code>true</code> if the node or its parent type declaration declares a type implementing the given interface,
+     *         <code>false</code> otherwise. */
+    protected final boolean implementsInterface(AbstractJavaNode node, Class<?> iface) {
+        ASTClassOrInterfaceDeclaration clsDecl = getClassOrInterfaceDeclaration(node);
+        if (clsDecl == null || clsDecl.getType() == null || clsDecl.getType().isInterface()) {
+            return false;
+        }
+
+        return typeIndex.isAssignable(clsDecl.getType(), iface);
+    }
+
+    /** Same as {@link #isUtilClass(Class)}, but answered from the {@link #getTypeIndex() type index} of the current PMD run, so
+     * the declared constructors and methods of each class are only reflected once per run.
+     * 
+     * @param clazz Class to check for util class structure
+     * 
+     * @return <code>true</code> if the class matches the util class criteria, <code>false</code> otherwise. */
+    protected final boolean hasUtilClassStructure(Class<?> clazz) {
+        return typeIndex.isUtilClass(clazz);
+    }
+
     protected static final List<ASTImportDeclaration> getImports(AbstractJavaNode node) {
         ASTCompilationUnit cu = node.getFirstParentOfType(ASTCompilationUnit.class);
         if (cu == null) {
@@ -15,41 +15,46 @@
  */
 package org.aludratest.codecheck.rule.pmd;
 
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.sourceforge.pmd.RuleContext;
 
 /** Abstract base class for rules checking uniqueness of names, spanning over multiple files, thus using the rule context to store
- * found names. <br>
+ * found names. PMD shares the attributes of the rule context with the rule contexts of all analysis threads, so the found names
+ * of all files are merged into one thread-safe set per rule, which lives as long as the rule context of the PMD run. <br>
  * Subclasses must implement all needed <code>visit()</code> methods and use the set returned by
- * {@link #getUnqiueSimpleNames(Object)} to check for duplicates and add found names to. See existing subclasses for examples.
+ * {@link #getUnqiueSimpleNames(Object)} to check for duplicates and add found names to. As files are analysed in parallel, the
+ * check and the addition must be done in one step, i.e. by evaluating the result of {@link Set#add(Object)}. See existing
+ * subclasses for examples.
  * 
  * @author falbrech */
 public class AbstractMustBeUniqueRule extends AbstractAludraTestRule {
 
-    private static final String UNIQUE_SIMPLE_NAMES_ATTRIBUTE = "uniqueSimpleDataNames";
+    private static final String UNIQUE_SIMPLE_NAMES_ATTRIBUTE_PREFIX = "uniqueSimpleNames.";
 
     @Override
     public void start(RuleContext ctx) {
-        ctx.setAttribute(UNIQUE_SIMPLE_NAMES_ATTRIBUTE, new HashSet<String>());
+        // only sets the attribute if it does not exist yet, i.e. for the first file or analysis thread
+        ctx.setAttribute(getAttributeName(), Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>()));
         super.start(ctx);
     }
 
-    @Override
-    public void end(RuleContext ctx) {
-        // has already been consumed
-        ctx.removeAttribute(UNIQUE_SIMPLE_NAMES_ATTRIBUTE);
-        super.end(ctx);
-    }
-
     @SuppressWarnings("unchecked")
     protected final Set<String> getUnqiueSimpleNames(Object data) {
         if (!(data instanceof RuleContext)) {
             return null; // NOSONAR
         }
 
-        return (Set<String>) ((RuleContext) data).getAttribute(UNIQUE_SIMPLE_NAMES_ATTRIBUTE);
+        return (Set<String>) ((RuleContext) data).getAttribute(getAttributeName());
+    }
+
+    // helper methods ----------------------------------------------------------
+
+    /** Each rule uses its own set, so e.g. a Data class and a Page class may have the same simple name. */
+    private String getAttributeName() {
+        return UNIQUE_SIMPLE_NAMES_ATTRIBUTE_PREFIX + getClass().getName();
     }
 
 }
@@ -24,7 +24,7 @@ public abstract class AbstractUtilityClassRule extends AbstractAludraTestRule {
     @Override
     public Object visit(ASTClassOrInterfaceDeclaration node, Object data) {
         Class<?> utilClass = getUtilityBaseClass();
-        if (node.getType() != null && isInterfaceImplemented(node, utilClass) && !isUtilClass(node.getType())) {
+        if (node.getType() != null && implementsInterface(node, utilClass) && !hasUtilClassStructure(node.getType())) {
             // To discuss: Perhaps add marker for constructor and every single
             // method, not only one marker for whole class
             addViolationWithMessage(data, node, utilClass.getSimpleName()
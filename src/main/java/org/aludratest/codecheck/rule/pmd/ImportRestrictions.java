@@ -154,7 +154,7 @@ public class ImportRestrictions extends AbstractAludraTestRule {
         }
 
         // now most complex checks
-        return (getProperty(UTIL_CLASSES_ALLOWED_DESCRIPTOR) && isUtilClass(importClass));
+        return (getProperty(UTIL_CLASSES_ALLOWED_DESCRIPTOR) && hasUtilClassStructure(importClass));
     }
 
     protected String getImportViolationMessage(String importName) {
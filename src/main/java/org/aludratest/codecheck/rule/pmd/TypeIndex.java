@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.codecheck.rule.pmd;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.sourceforge.pmd.RuleContext;
+
+import org.aludratest.dict.Data;
+import org.databene.commons.BeanUtil;
+
+/** Index of the type information which the AludraTest code check rules query for the classes under analysis. The information of
+ * each class is determined only once, when it is first queried, instead of once per AST node and rule. <br>
+ * One index is shared by all rules and analysis threads of a PMD run, see {@link #forContext(RuleContext)}. <br>
+ * <br>
+ * This class is thread-safe.
+ *
+ * @author agent */
+public final class TypeIndex {
+
+    private static final String RULE_CONTEXT_ATTRIBUTE = TypeIndex.class.getName();
+
+    private final ConcurrentMap<Class<?>, TypeInfo> types = new ConcurrentHashMap<Class<?>, TypeInfo>();
+
+    /** Returns the index of a PMD run. PMD shares the attributes of a rule context with the rule contexts of all analysis threads,
+     * so the index is created once per run.
+     * @param ctx the rule context of the PMD run
+     * @return the index of the PMD run */
+    public static TypeIndex forContext(RuleContext ctx) {
+        TypeIndex index = (TypeIndex) ctx.getAttribute(RULE_CONTEXT_ATTRIBUTE);
+        if (index == null) {
+            // only sets the attribute if no other thread has set it in the meantime
+            ctx.setAttribute(RULE_CONTEXT_ATTRIBUTE, new TypeIndex());
+            index = (TypeIndex) ctx.getAttribute(RULE_CONTEXT_ATTRIBUTE);
+        }
+        return index;
+    }
+
+    /** Tells if a type extends or implements another type, or is the same type.
+     * @param type the type to check
+     * @param superType the potential superclass or interface
+     * @return <code>true</code> if the type is assignable to the super type, otherwise <code>false</code> */
+    public boolean isAssignable(Class<?> type, Class<?> superType) {
+        return getTypeInfo(type).supertypes.contains(superType);
+    }
+
+    /** Tells if a class is a utility class. A utility class has no public or protected constructor, and all of its public methods
+     * are static.
+     * @param clazz the class to check
+     * @return <code>true</code> if the class is a utility class, otherwise <code>false</code> */
+    public boolean isUtilClass(Class<?> clazz) {
+        TypeInfo info = getTypeInfo(clazz);
+        if (info.utilClass == null) {
+            info.utilClass = Boolean.valueOf(AbstractAludraTestRule.isUtilClass(clazz));
+        }
+        return info.utilClass.booleanValue();
+    }
+
+    /** Returns the attributes of a class which are of a {@link Data} type, i.e. its public fields and its bean properties.
+     * @param clazz the class to examine
+     * @return the attributes of a Data type, in the order of declaration; the list is not modifiable */
+    public List<DataAttribute> getDataAttributes(Class<?> clazz) {
+        TypeInfo info = getTypeInfo(clazz);
+        if (info.dataAttributes == null) {
+            info.dataAttributes = Collections.unmodifiableList(findDataAttributes(clazz));
+        }
+        return info.dataAttributes;
+    }
+
+    // helper methods ----------------------------------------------------------
+
+    private TypeInfo getTypeInfo(Class<?> type) {
+        TypeInfo info = types.get(type);
+        if (info == null) {
+            info = new TypeInfo(type);
+            TypeInfo existing = types.putIfAbsent(type, info);
+            if (existing != null) {
+                info = existing;
+            }
+        }
+        return info;
+    }
+
+    private List<DataAttribute> findDataAttributes(Class<?> clazz) {
+        List<DataAttribute> result = new ArrayList<DataAttribute>();
+        for (Field field : clazz.getFields()) {
+            if (isAssignable(field.getType(), Data.class)) {
+                result.add(new DataAttribute(field.toString(), field.getType()));
+            }
+        }
+        for (PropertyDescriptor property : BeanUtil.getPropertyDescriptors(clazz)) {
+            Class<?> propertyType = property.getPropertyType();
+            if (propertyType != null && isAssignable(propertyType, Data.class)) {
+                result.add(new DataAttribute(property.getShortDescription(), propertyType));
+            }
+        }
+        return result;
+    }
+
+    private static void collectSupertypes(Class<?> type, Set<Class<?>> supertypes) {
+        if (type == null || !supertypes.add(type)) {
+            return;
+        }
+        collectSupertypes(type.getSuperclass(), supertypes);
+        for (Class<?> iface : type.getInterfaces()) {
+            collectSupertypes(iface, supertypes);
+        }
+    }
+
+    // helper classes ----------------------------------------------------------
+
+    /** The indexed information of one type. The lazily determined values are deterministic, so concurrent determination only
+     * costs duplicate work. */
+    private static final class TypeInfo {
+
+        private final Set<Class<?>> supertypes;
+
+        private volatile Boolean utilClass;
+
+        private volatile List<DataAttribute> dataAttributes;
+
+        private TypeInfo(Class<?> type) {
+            Set<Class<?>> set = new HashSet<Class<?>>();
+            collectSupertypes(type, set);
+            this.supertypes = set;
+        }
+    }
+
+    /** An attribute of a {@link Data} type, see {@link TypeIndex#getDataAttributes(Class)}. */
+    public static final class DataAttribute {
+
+        private final String description;
+
+        private final Class<?> type;
+
+        private DataAttribute(String description, Class<?> type) {
+            this.description = description;
+            this.type = type;
+        }
+
+        /** @return the description of the attribute, for use in messages */
+        public String getDescription() {
+            return description;
+        }
+
+        /** @return the type of the attribute */
+        public Class<?> getType() {
+            return type;
+        }
+    }
+
+}
@@ -15,9 +15,6 @@
  */
 package org.aludratest.codecheck.rule.pmd.data;
 
-import java.beans.PropertyDescriptor;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Stack;
@@ -25,7 +22,7 @@ import java.util.Stack;
 import net.sourceforge.pmd.lang.java.ast.ASTClassOrInterfaceDeclaration;
 
 import org.aludratest.codecheck.rule.pmd.AbstractAludraTestRule;
-import org.databene.commons.BeanUtil;
+import org.aludratest.codecheck.rule.pmd.TypeIndex.DataAttribute;
 
 /**
  * See <code>src/main/resources/pmd-rules-aludra.xml</code> or the project Site
@@ -62,26 +59,12 @@ public class DataNoCircularGraphs extends AbstractAludraTestRule {
             return false;
         }
         else {
-            for (Field field : clazz.getFields()) {
-                Class<?> fieldType = field.getType();
-                if (isDataClass(fieldType) && Modifier.isPublic(field.getModifiers())) {
-                    path.push(field.toString());
-                    boolean doContinue = checkDependencies(fieldType, classStack, path, messages);
-                    path.pop();
-                    if (!doContinue) {
-                        return false;
-                    }
-                }
-            }
-            for (PropertyDescriptor property : BeanUtil.getPropertyDescriptors(clazz)) {
-                Class<?> propertyType = property.getPropertyType();
-                if (isDataClass(propertyType)) {
-                    path.push(property.getShortDescription());
-                    boolean doContinue = checkDependencies(propertyType, classStack, path, messages);
-                    path.pop();
-                    if (!doContinue) {
-                        return false;
-                    }
+            for (DataAttribute attribute : getTypeIndex().getDataAttributes(clazz)) {
+                path.push(attribute.getDescription());
+                boolean doContinue = checkDependencies(attribute.getType(), classStack, path, messages);
+                path.pop();
+                if (!doContinue) {
+                    return false;
                 }
             }
         }
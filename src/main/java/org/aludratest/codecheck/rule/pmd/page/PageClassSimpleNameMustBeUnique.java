@@ -42,11 +42,10 @@ public class PageClassSimpleNameMustBeUnique extends AbstractMustBeUniqueRule {
         }
 
         String simpleName = node.getImage();
-        if (uniqueSimpleNames.contains(simpleName)) {
+        if (!uniqueSimpleNames.add(simpleName)) {
             addViolationWithMessage(data, node, "There is more than one page class with the name " + simpleName);
         }
 
-        uniqueSimpleNames.add(simpleName);
         return super.visit(node, data);
     }
 
@@ -15,6 +15,8 @@
  */
 package org.aludratest.config;
 
+import java.util.Map;
+
 /** Provides the central configuration of AludraTest. <br>
  * If you need access to an instance of this interface, the preferred way is to ask your context object for a
  * <code>newComponentInstance()</code> using this Interface class as the key.
@@ -36,7 +38,17 @@ package org.aludratest.config;
     @ConfigProperty(name = AludraTestConfig.RUNNER_TREE_SORTER_PROP, type = String.class, description = "A simple or fully qualified name of a Runner Tree Sorter class to use. Default sorter is the Alphabetic sorter. This sorting only applies for filter / grouping execution mode (not for suite-based execution mode).", defaultValue = "Alphabetic"),
     @ConfigProperty(name = AludraTestConfig.ATTACHMENTS_AS_FILE_PROP, type = boolean.class, description = "If set to true, test step attachments are buffered on the file system as temporary files (using File.createTempFile()). This helps reducing memory usage when running many test cases. Default is false.", defaultValue = "false"),
     @ConfigProperty(name = AludraTestConfig.SECONDS_OFFSET_PROP, type = int.class, description = "Amount of seconds to add to script calculations when evaluating test data. Use negative amount to subtract. Can be used for 'time travel' features of application under test."),
-    @ConfigProperty(name = AludraTestConfig.DEFERRED_EVALUATION_PROP, type = boolean.class, description = "If set to true, script formulas are evaluated when test case starts, otherwise, they are evaluated when test execution tree is built (default). Currently only applies to XML test data sources.", defaultValue = "false", required = false) })
+    @ConfigProperty(name = AludraTestConfig.DEFERRED_EVALUATION_PROP, type = boolean.class, description = "If set to true, script formulas are evaluated when test case starts, otherwise, they are evaluated when test execution tree is built (default). Currently only applies to XML test data sources.", defaultValue = "false", required = false),
+    @ConfigProperty(name = AludraTestConfig.DURATION_HISTORY_FILE_PROP, type = String.class, description = "The file to use for recording the execution duration of each test case. If set, the durations recorded in previous runs are used to start long-running test cases and long sequential chains first. If not set, no durations are recorded.", required = false),
+    @ConfigProperty(name = AludraTestConfig.WORKER_JVM_COUNT_PROP, type = int.class, description = "The number of worker JVMs to fork locally for test execution. Each worker executes up to number.of.threads test cases in parallel. If zero (default), and no external workers are configured, all test cases are executed in the current JVM.", defaultValue = "0", required = false),
+    @ConfigProperty(name = AludraTestConfig.WORKER_EXTERNAL_COUNT_PROP, type = int.class, description = "The number of externally started worker JVMs to wait for before test execution starts. External workers are started using the main class org.aludratest.scheduler.remote.AludraTestWorker with the coordinator host and port as arguments, and the worker.token in the environment variable ALUDRATEST_WORKER_TOKEN. If zero (default), the coordinator only accepts connections from the local host.", defaultValue = "0", required = false),
+    @ConfigProperty(name = AludraTestConfig.WORKER_TOKEN_PROP, type = String.class, description = "The secret which external worker JVMs must present when connecting to the coordinator. Required if external workers are configured. Locally forked workers use a random token generated for each run.", required = false),
+    @ConfigProperty(name = AludraTestConfig.WORKER_COORDINATOR_PORT_PROP, type = int.class, description = "The TCP port on which the coordinator accepts worker JVM connections. If zero (default), a free port is chosen, which is only suitable for locally forked workers.", defaultValue = "0", required = false),
+    @ConfigProperty(name = AludraTestConfig.WORKER_JVM_ARGS_PROP, type = String.class, description = "Additional, space-separated JVM arguments for locally forked worker JVMs, e.g. -Xmx2g.", required = false),
+    @ConfigProperty(name = AludraTestConfig.RESOURCE_CAPACITIES_PROP, type = String.class, description = "Comma-separated capacities of named resources used by test cases via the @UsesResource annotation, e.g. sftpServer=2,licenceBackend=1. A test case is only started if all resources it uses have a free permit.", required = false),
+    @ConfigProperty(name = AludraTestConfig.RESULT_CACHE_FILE_PROP, type = String.class, description = "If set, enables incremental mode: Test cases which passed in a previous run with unchanged test class, test data and configuration are not executed again, but reported as passed from this result cache file.", required = false),
+    @ConfigProperty(name = AludraTestConfig.LEAK_DETECTION_PROP, type = boolean.class, description = "If set to true, the threads and (on Linux) open file descriptors of the JVM are recorded before and after each locally executed test case. Growth is attributed to the test case, and the test cases which leaked the most resources are logged at the end of the run. Resources are only attributed to test cases which did not run in parallel with other test cases.", defaultValue = "false", required = false),
+    @ConfigProperty(name = AludraTestConfig.LEAK_INTERRUPT_THREADS_PROP, type = boolean.class, description = "If set to true, and leak detection is enabled, threads leaked by a test case are interrupted after the test case has finished. Threads are not interrupted if the test case ran in parallel with other test cases.", defaultValue = "false", required = false) })
 public interface AludraTestConfig extends Configurable {
 
     /** Configuration property name. */
@@ -81,6 +93,36 @@ public interface AludraTestConfig extends Configurable {
     /** Configuration property name. */
     public static final String DEFERRED_EVALUATION_PROP = "deferred.script.evaluation";
 
+    /** Configuration property name. */
+    public static final String DURATION_HISTORY_FILE_PROP = "runner.duration.history.file";
+
+    /** Configuration property name. */
+    public static final String WORKER_JVM_COUNT_PROP = "worker.jvm.count";
+
+    /** Configuration property name. */
+    public static final String WORKER_EXTERNAL_COUNT_PROP = "worker.external.count";
+
+    /** Configuration property name. */
+    public static final String WORKER_COORDINATOR_PORT_PROP = "worker.coordinator.port";
+
+    /** Configuration property name. */
+    public static final String WORKER_JVM_ARGS_PROP = "worker.jvm.args";
+
+    /** Configuration property name. */
+    public static final String WORKER_TOKEN_PROP = "worker.token";
+
+    /** Configuration property name. */
+    public static final String RESOURCE_CAPACITIES_PROP = "resource.capacities";
+
+    /** Configuration property name. */
+    public static final String RESULT_CACHE_FILE_PROP = "runner.result.cache.file";
+
+    /** Configuration property name. */
+    public static final String LEAK_DETECTION_PROP = "runner.leak.detection";
+
+    /** Configuration property name. */
+    public static final String LEAK_INTERRUPT_THREADS_PROP = "runner.leak.interrupt.threads";
+
     // interface ---------------------------------------------------------------
 
     /** @return The version of AludraTest, e.g. <code>2.7.0-17</code>. */
@@ -147,4 +189,61 @@ public interface AludraTestConfig extends Configurable {
      *         starts, <code>false</code> otherwise. */
     public boolean isDeferredScriptEvaluation();
 
+    /** Returns the path of the file which stores the execution durations of the test cases of previous runs. The test runner uses
+     * these durations to prioritize long-running test cases and long sequential chains, and updates the file after each run.
+     *
+     * @return The path of the file which stores the execution durations of previous runs, or <code>null</code> if durations shall
+     *         not be recorded. */
+    public String getDurationHistoryFile();
+
+    /** Returns the number of worker JVMs to fork locally for test execution. If this and {@link #getExternalWorkerCount()} are
+     * zero, all test cases are executed in the current JVM.
+     *
+     * @return The number of worker JVMs to fork locally for test execution. */
+    public int getWorkerJvmCount();
+
+    /** Returns the number of externally started worker JVMs the coordinator waits for before test execution starts.
+     *
+     * @return The number of externally started worker JVMs. */
+    public int getExternalWorkerCount();
+
+    /** Returns the TCP port on which the coordinator accepts worker JVM connections.
+     *
+     * @return The TCP port on which the coordinator accepts worker JVM connections, or zero to choose a free port. */
+    public int getWorkerCoordinatorPort();
+
+    /** Returns additional JVM arguments for locally forked worker JVMs.
+     *
+     * @return Additional, space-separated JVM arguments for locally forked worker JVMs, or <code>null</code>. */
+    public String getWorkerJvmArgs();
+
+    /** Returns the secret which external worker JVMs must present when connecting to the coordinator.
+     *
+     * @return The secret for external worker JVMs, or <code>null</code> if none is configured. */
+    public String getWorkerToken();
+
+    /** Returns the configured capacities of named resources, i.e. the maximum number of test cases using the resource which may
+     * run at the same time.
+     *
+     * @return The configured capacities of named resources, as an unmodifiable map from resource name to capacity. Never
+     *         <code>null</code>. */
+    public Map<String, Integer> getResourceCapacities();
+
+    /** Returns the file to store the fingerprints of passed test cases in. If set, incremental mode is enabled, and test cases
+     * which passed in a previous run with the same fingerprint are not executed again.
+     *
+     * @return The result cache file, or <code>null</code> if incremental mode is disabled. */
+    public String getResultCacheFile();
+
+    /** Tells if the threads and file descriptors leaked by test cases are detected and reported.
+     *
+     * @return <code>true</code> if leak detection is enabled, <code>false</code> otherwise. */
+    public boolean isLeakDetectionEnabled();
+
+    /** Tells if threads leaked by a test case are interrupted after the test case has finished. Only applies if leak detection is
+     * enabled, and only to test cases which did not run in parallel with other test cases.
+     *
+     * @return <code>true</code> if leaked threads are interrupted, <code>false</code> otherwise. */
+    public boolean isInterruptLeakedThreads();
+
 }
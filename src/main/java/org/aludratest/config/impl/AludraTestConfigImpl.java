@@ -15,7 +15,10 @@
  */
 package org.aludratest.config.impl;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 import org.aludratest.config.AludraTestConfig;
 import org.aludratest.config.Configurable;
@@ -77,6 +80,25 @@ public class AludraTestConfigImpl implements AludraTestConfig, Configurable {
 
     private boolean deferredScriptEvaluation;
 
+    private String durationHistoryFile;
+
+    private int workerJvmCount;
+
+    private int externalWorkerCount;
+
+    private int workerCoordinatorPort;
+
+    private String workerJvmArgs;
+
+    private String workerToken;
+
+    private Map<String, Integer> resourceCapacities;
+
+    private String resultCacheFile;
+
+    private boolean leakDetectionEnabled;
+
+    private boolean interruptLeakedThreads;
 
     // constructor -------------------------------------------------------------
 
@@ -182,6 +204,56 @@ public class AludraTestConfigImpl implements AludraTestConfig, Configurable {
         return deferredScriptEvaluation;
     }
 
+    @Override
+    public String getDurationHistoryFile() {
+        return durationHistoryFile;
+    }
+
+    @Override
+    public int getWorkerJvmCount() {
+        return workerJvmCount;
+    }
+
+    @Override
+    public int getExternalWorkerCount() {
+        return externalWorkerCount;
+    }
+
+    @Override
+    public int getWorkerCoordinatorPort() {
+        return workerCoordinatorPort;
+    }
+
+    @Override
+    public String getWorkerJvmArgs() {
+        return workerJvmArgs;
+    }
+
+    @Override
+    public String getWorkerToken() {
+        return workerToken;
+    }
+
+    @Override
+    public Map<String, Integer> getResourceCapacities() {
+        return resourceCapacities;
+    }
+
+    @Override
+    public String getResultCacheFile() {
+        return resultCacheFile;
+    }
+
+    @Override
+    public boolean isLeakDetectionEnabled() {
+        return leakDetectionEnabled;
+    }
+
+    @Override
+    public boolean isInterruptLeakedThreads() {
+        return interruptLeakedThreads;
+    }
+
     // private helper methods --------------------------------------------------
 
     private void readAludraTestVersion() {
@@ -233,6 +305,52 @@ public class AludraTestConfigImpl implements AludraTestConfig, Configurable {
         this.scriptSecondsOffset = config.getIntValue(SECONDS_OFFSET_PROP, 0);
 
         this.deferredScriptEvaluation = config.getBooleanValue(DEFERRED_EVALUATION_PROP, false);
+
+        String historyFile = config.getStringValue(DURATION_HISTORY_FILE_PROP);
+        this.durationHistoryFile = (StringUtil.isEmpty(historyFile) ? null : historyFile);
+
+        this.workerJvmCount = config.getIntValue(WORKER_JVM_COUNT_PROP, 0);
+        this.externalWorkerCount = config.getIntValue(WORKER_EXTERNAL_COUNT_PROP, 0);
+        this.workerCoordinatorPort = config.getIntValue(WORKER_COORDINATOR_PORT_PROP, 0);
+        String jvmArgs = config.getStringValue(WORKER_JVM_ARGS_PROP);
+        this.workerJvmArgs = (StringUtil.isEmpty(jvmArgs) ? null : jvmArgs);
+        String token = config.getStringValue(WORKER_TOKEN_PROP);
+        this.workerToken = (StringUtil.isEmpty(token) ? null : token);
+
+        this.resourceCapacities = parseResourceCapacities(config.getStringValue(RESOURCE_CAPACITIES_PROP));
+
+        String cacheFile = config.getStringValue(RESULT_CACHE_FILE_PROP);
+        this.resultCacheFile = (StringUtil.isEmpty(cacheFile) ? null : cacheFile);
+
+        this.leakDetectionEnabled = config.getBooleanValue(LEAK_DETECTION_PROP, false);
+        this.interruptLeakedThreads = config.getBooleanValue(LEAK_INTERRUPT_THREADS_PROP, false);
+    }
+
+    private static Map<String, Integer> parseResourceCapacities(String spec) {
+        if (StringUtil.isEmpty(spec)) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Integer> result = new HashMap<String, Integer>();
+        for (String token : spec.split(",")) {
+            if (token.trim().length() == 0) {
+                continue;
+            }
+            String[] assignment = token.split("=");
+            int capacity;
+            try {
+                capacity = (assignment.length == 2 ? Integer.parseInt(assignment[1].trim()) : 0);
+            }
+            catch (NumberFormatException e) {
+                capacity = 0;
+            }
+            if (capacity < 1 || assignment[0].trim().length() == 0) {
+                throw new ConfigurationException("Invalid resource capacity in property '" + RESOURCE_CAPACITIES_PROP + "': "
+                        + token.trim());
+            }
+            result.put(assignment[0].trim(), Integer.valueOf(capacity));
+        }
+        return Collections.unmodifiableMap(result);
     }
 
 }
@@ -17,6 +17,7 @@ package org.aludratest.content.edifact;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.List;
 import java.util.Map;
 
 import javax.xml.namespace.QName;
@@ -25,14 +26,16 @@ import org.aludratest.content.ContentHandler;
 import org.aludratest.content.xml.XmlComparisonSettings;
 import org.databene.edifatto.EdiFormatSymbols;
 import org.databene.edifatto.model.Interchange;
+import org.w3c.dom.Element;
 
 /** Parses and saves EDIFACT and X12 documents from and to streams.
  * @author Volker Bergmann */
 public interface EdifactContent extends ContentHandler {
 
-    /** Parses an EDIFACT or X12 interchange available in an {@link InputStream}.
+    /** Parses an EDIFACT or X12 interchange available in an {@link InputStream}, using the charset declared by the syntax
+     * identifier of its UNB segment.
      * @param in the {@link InputStream} from which to read the EDI document
-     * @return an object representation of the EDI {@link Interchange} */
+     * @return an object representation of the EDI {@link Interchange}, not flagged as modified */
     Interchange readInterchange(InputStream in);
 
     /** Writes an EDIFACT or X12 interchange to an {@link OutputStream}.
@@ -41,14 +44,24 @@ public interface EdifactContent extends ContentHandler {
      * @param linefeed flag to indicate whether to insert a linefeed at the end of each segment */
     void writeInterchange(Interchange interchange, OutputStream out, boolean linefeed);
 
+    /** Provides the EDI representation of an interchange as a stream. The interchange is formatted segment by segment while the
+     * stream is read, and encoded with the charset declared by the syntax identifier of its UNB segment.
+     * @param interchange the EDI {@link Interchange} to provide
+     * @param linefeed flag to indicate whether to insert a linefeed at the end of each segment
+     * @return an {@link InputStream} which provides the formatted interchange */
+    InputStream getInputStreamForInterchange(Interchange interchange, boolean linefeed);
+
     /** Uses a FreeMarker template to create an EDI message based on the content of a variables map.
      * @param templateUri the URI (according to Databene Commons standards) of the file to create
      * @param symbols the {@link EdiFormatSymbols} to use
      * @param variables the variables provides to feed the template
-     * @return an {@link Interchange} with the data configured in the variables map */
+     * @return an {@link Interchange} with the data configured in the variables map, not flagged as modified */
     Interchange createInterchange(String templateUri, EdiFormatSymbols symbols, Map<String, Object> variables);
 
-    /** Creates an XML representation of the interchange and performs an XPath query on it.
+    /** Creates an XML representation of the interchange and performs an XPath query on it. The XML representation is reused by
+     * subsequent queries as long as the interchange is not flagged as modified and its number of segments is unchanged. Changing
+     * data values sets this flag, and rebuilding the XML representation clears it. After other changes which do not set the
+     * flag, e.g. data values changed after clearing the flag, {@link #invalidateQueryCache(Interchange)} must be called.
      * @param interchange the interchange to query
      * @param expression the XPath query to perform
      * @param returnType determines the type of the returned object: {@link javax.xml.xpath.XPathConstants#STRING} for a single
@@ -57,6 +70,21 @@ public interface EdifactContent extends ContentHandler {
      * @return the found nodes of the interchange in the form of XML elements */
     Object query(Interchange interchange, String expression, QName returnType);
 
+    /** Returns the XML representations of all segments of the interchange with the given tag and, optionally, the given
+     * qualifier, i.e. the first component of the first data element of the segment. The segments are looked up in an index, so
+     * this is faster than an equivalent XPath query. The returned elements must not be modified.
+     * @param interchange the interchange to query
+     * @param tag the tag of the requested segments, e.g. <code>RFF</code>
+     * @param qualifier the qualifier of the requested segments, e.g. <code>VM</code>, or <code>null</code> for all segments with
+     *            the given tag
+     * @return the XML elements of the matching segments, in document order */
+    List<Element> querySegments(Interchange interchange, String tag, String qualifier);
+
+    /** Discards the XML representation used by {@link #query(Interchange, String, QName)} and
+     * {@link #querySegments(Interchange, String, String)}, so the next query reflects all changes of the interchange.
+     * @param interchange the interchange which has been changed */
+    void invalidateQueryCache(Interchange interchange);
+
     /** @return an instance of the {@link XmlComparisonSettings} appropriate for comparing EDIFACT or X12 interchanges */
     EdiComparisonSettings createDefaultComparisonSettings();
 
@@ -67,6 +95,17 @@ public interface EdifactContent extends ContentHandler {
      * @return an aggregated diff of the documents */
     AggregateEdiDiff compare(Interchange expected, Interchange actual, EdiComparisonSettings settings);
 
+    /** Reports the differences between two EDIFACT interchanges which are read from streams. The interchanges are compared
+     * message by message while they are read, without an XML conversion, so only few messages are held in memory, which allows
+     * comparing very large interchanges. Tolerances and key expressions must use simple location paths for this; other XPath
+     * expressions, as well as X12 interchanges, cause a comparison of the fully parsed interchanges. In both cases, the streams
+     * are not closed, and the expected and actual objects of the result are <code>null</code>, as the interchanges are not kept.
+     * @param expected the stream providing the expected interchange
+     * @param actual the stream providing the actual interchange
+     * @param settings the comparison settings
+     * @return an aggregated diff of the interchanges */
+    AggregateEdiDiff compare(InputStream expected, InputStream actual, EdiComparisonSettings settings);
+
     /** Formats a full interchange structure recursively as String.
      * @param interchange the Edifact interchange to format
      * @return a string representation of the interchange */
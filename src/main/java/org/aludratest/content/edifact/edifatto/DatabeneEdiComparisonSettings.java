@@ -15,21 +15,41 @@
  */
 package org.aludratest.content.edifact.edifatto;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.aludratest.content.edifact.EdiComparisonSettings;
 import org.aludratest.content.edifact.EdiDiffDetailType;
 import org.aludratest.content.xml.util.DatabeneXmlComparisonSettings;
+import org.databene.formats.compare.KeyExpression;
 import org.databene.formats.xml.compare.XMLComparisonModel;
 
 /** Comparison settings for EDI documents.
  * @author Volker Bergmann */
 public class DatabeneEdiComparisonSettings extends DatabeneXmlComparisonSettings implements EdiComparisonSettings {
 
+    private final List<KeyExpression> keyExpressions = new ArrayList<KeyExpression>();
+
     /** Constructor.
      * @param model the {@link XMLComparisonModel} to apply */
     public DatabeneEdiComparisonSettings(XMLComparisonModel model) {
         super(model);
     }
 
+    /** Adds a key expression. Besides passing it to the model, the expression is recorded for the
+     * {@link StreamingEdiComparator}, as the model may not keep it. */
+    @Override
+    public void addKeyExpression(String elementName, String keyExpression) {
+        super.addKeyExpression(elementName, keyExpression);
+        keyExpressions.add(new KeyExpression(elementName, keyExpression));
+    }
+
+    /** @return the key expressions added to these settings */
+    public List<KeyExpression> getKeyExpressions() {
+        return Collections.unmodifiableList(keyExpressions);
+    }
+
     @Override
     public void tolerateGenericDiff(EdiDiffDetailType type, String xPath) {
         super.tolerateGenericDiff(EdifattoUtil.edi2genericDetailType(type), xPath);
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.content.edifact.edifatto;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+import org.aludratest.exception.TechnicalException;
+import org.databene.edifatto.EdiFormatSymbols;
+
+/** Splits an EDIFACT interchange into its segments while reading it, so only one segment is held in memory at a time. The
+ * separators are taken from the service string advice (<code>UNA</code> segment) if present, otherwise the EDIFACT defaults are
+ * used. Released separators (e.g. <code>?'</code>) do not terminate a segment. Line breaks between segments are ignored. <br>
+ * <br>
+ * This class is not thread-safe.
+ *
+ * @author agent */
+final class EdiSegmentReader {
+
+    private final BufferedReader in;
+
+    private char elementSeparator = EdiFormatSymbols.EDIFACT.elementSeparator;
+
+    private char segmentSeparator = EdiFormatSymbols.EDIFACT.segmentSeparator;
+
+    private char releaseChar = EdiFormatSymbols.EDIFACT.escapeChar;
+
+    private boolean started;
+
+    EdiSegmentReader(Reader in) {
+        this.in = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+    }
+
+    /** Reads the next segment.
+     * @return the text of the next segment including its segment terminator, or <code>null</code> if the end of the interchange
+     *         has been reached
+     * @throws IOException if the interchange cannot be read */
+    String readSegment() throws IOException {
+        if (!started) {
+            started = true;
+            String serviceStringAdvice = readServiceStringAdvice();
+            if (serviceStringAdvice != null) {
+                return serviceStringAdvice;
+            }
+        }
+        int c;
+        do {
+            c = in.read();
+        }
+        while (c == '\r' || c == '\n');
+        if (c < 0) {
+            return null;
+        }
+        StringBuilder segment = new StringBuilder();
+        while (c >= 0) {
+            segment.append((char) c);
+            if (c == releaseChar) {
+                c = in.read();
+                if (c >= 0) {
+                    segment.append((char) c);
+                }
+            }
+            else if (c == segmentSeparator) {
+                return segment.toString();
+            }
+            c = in.read();
+        }
+        throw new TechnicalException("Unterminated EDI segment: " + segment);
+    }
+
+    /** Returns the tag of a segment read by this reader.
+     * @param segment the segment text
+     * @return the tag of the segment, e.g. <code>UNH</code> */
+    String getTag(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c == elementSeparator || c == segmentSeparator) {
+                return segment.substring(0, i);
+            }
+        }
+        return segment;
+    }
+
+    /** @return the element separator of the interchange */
+    char getElementSeparator() {
+        return elementSeparator;
+    }
+
+    /** @return the segment terminator of the interchange */
+    char getSegmentSeparator() {
+        return segmentSeparator;
+    }
+
+    private String readServiceStringAdvice() throws IOException {
+        in.mark(9);
+        char[] buffer = new char[9];
+        int count = 0;
+        int read;
+        while (count < buffer.length && (read = in.read(buffer, count, buffer.length - count)) > 0) {
+            count += read;
+        }
+        String start = new String(buffer, 0, count);
+        if (start.startsWith("ISA")) {
+            throw new TechnicalException("X12 interchanges cannot be read segment by segment");
+        }
+        if (count < buffer.length || !start.startsWith("UNA")) {
+            in.reset();
+            return null;
+        }
+        elementSeparator = buffer[4];
+        releaseChar = buffer[6];
+        segmentSeparator = buffer[8];
+        return start;
+    }
+
+}
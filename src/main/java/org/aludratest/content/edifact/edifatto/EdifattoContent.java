@@ -15,9 +15,14 @@
  */
 package org.aludratest.content.edifact.edifatto;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.List;
 import java.util.Map;
 
 import javax.xml.namespace.QName;
@@ -29,54 +34,73 @@ import org.aludratest.content.edifact.EdifactContent;
 import org.aludratest.content.xml.XmlComparisonSettings;
 import org.aludratest.content.xml.util.DatabeneXmlComparisonSettings;
 import org.aludratest.exception.TechnicalException;
+import org.databene.commons.IOUtil;
 import org.databene.commons.SystemInfo;
 import org.databene.edifatto.EdiChecker;
 import org.databene.edifatto.EdiFormatSymbols;
 import org.databene.edifatto.EdiGenerator;
+import org.databene.edifatto.EdiParser;
 import org.databene.edifatto.EdiParserSettings;
-import org.databene.edifatto.EdiWriter;
 import org.databene.edifatto.Edifatto;
 import org.databene.edifatto.model.Interchange;
 import org.databene.edifatto.util.TypeBasedXMLComparisonModel;
 import org.databene.edifatto.xml.NameBasedEdiToXMLConverter;
 import org.databene.formats.compare.AggregateDiff;
 import org.databene.formats.compare.ComparisonSettings;
+import org.w3c.dom.Element;
 
 /** Parses and saves EDIFACT and X12 documents from and to streams.
  * @author Volker Bergmann */
 public class EdifattoContent implements EdifactContent {
 
-    /** Parses an EDIFACT or X12 interchange available in an {@link InputStream}. */
+    /** Parses an EDIFACT or X12 interchange available in an {@link InputStream}. The stream is decoded with the charset
+     * declared by the syntax identifier of the UNB segment, see {@link EdifattoUtil#detectCharset(BufferedInputStream)}. */
     @Override
     public Interchange readInterchange(InputStream in) {
         try {
-            return Edifatto.parseEdiFile(in, new EdiParserSettings());
+            return parseInterchange(in);
         } catch (IOException e) {
             throw new TechnicalException("Error parsing EDI document", e);
+        } finally {
+            IOUtil.close(in);
         }
     }
 
-    /** Writes an EDIFACT or X12 interchange to an {@link OutputStream}. */
+    /** Writes an EDIFACT or X12 interchange to an {@link OutputStream}, using the charset declared by the syntax identifier of
+     * the UNB segment. The stream is closed after writing. */
     @Override
     public void writeInterchange(Interchange interchange, OutputStream out, boolean useLinefeed) {
+        InputStream in = getInputStreamForInterchange(interchange, useLinefeed);
         try {
-            String lineFeed = (useLinefeed ? SystemInfo.getLineSeparator() : null);
-            new EdiWriter(lineFeed).writeInterchange(interchange, out);
+            IOUtil.transfer(in, out);
         } catch (IOException e) {
             throw new TechnicalException("Error writing EDI document", e);
+        } finally {
+            IOUtil.close(in);
+            IOUtil.close(out);
         }
     }
 
+    @Override
+    public InputStream getInputStreamForInterchange(Interchange interchange, boolean useLinefeed) {
+        String lineFeed = (useLinefeed ? SystemInfo.getLineSeparator() : null);
+        return new InterchangeInputStream(interchange, EdifattoUtil.getCharset(interchange), lineFeed);
+    }
+
     @Override
     public Interchange createInterchange(String templateUri, EdiFormatSymbols symbols, Map<String, Object> variables) {
         try {
-            return EdiGenerator.createInterchange(templateUri, symbols, variables);
+            Interchange interchange = EdiGenerator.createInterchange(templateUri, symbols, variables);
+            interchange.clearModifiedFlag();
+            return interchange;
         } catch (IOException e) {
             throw new TechnicalException("Error creating EDI document", e);
         }
     }
 
-    /** Creates an XML representation of the interchange and performs an XPath query on it.
+    /** Performs an XPath query on the XML representation of the interchange. The XML representation is created on first access
+     * and reused by subsequent queries while the interchange is not flagged as modified and its number of segments is
+     * unchanged.
      * @param interchange the interchange to query
      * @param expression the XPath query to perform
      * @param returnType determines the type of the returned object: {@link javax.xml.xpath.XPathConstants#STRING} for a single
@@ -86,12 +110,22 @@ public class EdifattoContent implements EdifactContent {
     @Override
     public Object query(Interchange interchange, String expression, QName returnType) {
         try {
-            return Edifatto.queryXML(interchange, expression, returnType);
+            return InterchangeXmlView.of(interchange).query(expression, returnType);
         } catch (XPathExpressionException e) {
             throw new TechnicalException("Error in XPath query '" + expression + "'", e);
         }
     }
 
+    @Override
+    public List<Element> querySegments(Interchange interchange, String tag, String qualifier) {
+        return InterchangeXmlView.of(interchange).getSegments(tag, qualifier);
+    }
+
+    @Override
+    public void invalidateQueryCache(Interchange interchange) {
+        InterchangeXmlView.invalidate(interchange);
+    }
+
     /** @return an instance of the {@link XmlComparisonSettings} appropriate for comparing EDIFACT or X12 interchanges */
     @Override
     public EdiComparisonSettings createDefaultComparisonSettings() {
@@ -105,16 +139,26 @@ public class EdifattoContent implements EdifactContent {
      * @return an {@link AggregateDiff} between the documents */
     @Override
     public AggregateEdiDiff compare(Interchange expected, Interchange actual, EdiComparisonSettings settings) {
+        AggregateDiff genericDiff = diff(expected, actual, settings);
+        // ENHANCE In the result we use XML Document objects as expected an actual,
+        // because they will be used for rendering the compared content.
+        // From the semantically point of view, they should be Edifact Interchanges
+        return new EdifattoAggregateEdiDiff(genericDiff.getExpected(), genericDiff.getActual(), (ComparisonSettings) settings,
+                genericDiff);
+    }
+
+    @Override
+    public AggregateEdiDiff compare(InputStream expected, InputStream actual, EdiComparisonSettings settings) {
+        StreamingEdiComparator comparator = new StreamingEdiComparator((DatabeneEdiComparisonSettings) settings);
+        BufferedInputStream expectedIn = new BufferedInputStream(expected);
+        BufferedInputStream actualIn = new BufferedInputStream(actual);
         try {
-            NameBasedEdiToXMLConverter converter = new NameBasedEdiToXMLConverter();
-            EdiChecker checker = new EdiChecker((DatabeneXmlComparisonSettings) settings, converter);
-            AggregateDiff genericDiff = checker.diff(expected, actual);
-            // ENHANCE In the result we use XML Document objects as expected an actual,
-            // because they will be used for rendering the compared content.
-            // From the semantically point of view, they should be Edifact Interchanges
-            return new EdifattoAggregateEdiDiff(genericDiff.getExpected(), genericDiff.getActual(),
-                    (ComparisonSettings) settings, genericDiff);
-        } catch (Exception e) {
+            if (!comparator.isStreamable() || isX12(expectedIn) || isX12(actualIn)) {
+                AggregateDiff genericDiff = diff(parseInterchange(expectedIn), parseInterchange(actualIn), settings);
+                return new EdifattoAggregateEdiDiff(null, null, (ComparisonSettings) settings, genericDiff);
+            }
+            return comparator.compare(expectedIn, actualIn);
+        } catch (IOException e) {
             throw new TechnicalException("Error comparing Edifact interchanges", e);
         }
     }
@@ -127,4 +171,42 @@ public class EdifattoContent implements EdifactContent {
         return Edifatto.formatRecursively(interchange);
     }
 
+    /** Parses an interchange without closing the stream. */
+    private static Interchange parseInterchange(InputStream in) throws IOException {
+        BufferedInputStream bufferedIn = new BufferedInputStream(in);
+        Charset charset = EdifattoUtil.detectCharset(bufferedIn);
+        StringWriter text = new StringWriter();
+        IOUtil.transfer(new InputStreamReader(bufferedIn, charset), text);
+        List<Interchange> interchanges = new EdiParser(new EdiParserSettings()).parse(text.toString()).getInterchanges();
+        if (interchanges.size() != 1) {
+            throw new TechnicalException("Expected one EDI interchange, but found " + interchanges.size());
+        }
+        // the parser flags the new interchange as modified; clear it, so later changes can be detected
+        Interchange interchange = interchanges.get(0);
+        interchange.clearModifiedFlag();
+        return interchange;
+    }
+
+    private static AggregateDiff diff(Interchange expected, Interchange actual, EdiComparisonSettings settings) {
+        try {
+            NameBasedEdiToXMLConverter converter = new NameBasedEdiToXMLConverter();
+            EdiChecker checker = new EdiChecker((DatabeneXmlComparisonSettings) settings, converter);
+            return checker.diff(expected, actual);
+        } catch (Exception e) {
+            throw new TechnicalException("Error comparing Edifact interchanges", e);
+        }
+    }
+
+    private static boolean isX12(BufferedInputStream in) throws IOException {
+        in.mark(3);
+        byte[] start = new byte[3];
+        int count = 0;
+        int read;
+        while (count < start.length && (read = in.read(start, count, start.length - count)) > 0) {
+            count += read;
+        }
+        in.reset();
+        return count == start.length && start[0] == 'I' && start[1] == 'S' && start[2] == 'A';
+    }
+
 }
@@ -15,8 +15,21 @@
  */
 package org.aludratest.content.edifact.edifatto;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.aludratest.content.edifact.AggregateEdiDiff;
 import org.aludratest.content.edifact.EdiDiffDetailType;
+import org.databene.edifatto.EdiFormatSymbols;
+import org.databene.edifatto.model.Component;
+import org.databene.edifatto.model.Composite;
+import org.databene.edifatto.model.Interchange;
+import org.databene.edifatto.model.Segment;
+import org.databene.edifatto.model.SegmentItem;
 import org.databene.formats.compare.AggregateDiff;
 import org.databene.formats.compare.ComparisonSettings;
 import org.databene.formats.compare.DiffDetailType;
@@ -25,6 +38,28 @@ import org.databene.formats.compare.DiffDetailType;
  * @author Volker Bergmann */
 public final class EdifattoUtil {
 
+    /** The charset used for interchanges without or with an unknown syntax identifier. It maps each byte to a character, so
+     * reading and writing an interchange with this charset never changes its content. */
+    public static final Charset DEFAULT_CHARSET = Charset.forName("ISO-8859-1");
+
+    /** Number of bytes which are inspected to find the syntax identifier in the UNB segment. */
+    private static final int HEADER_LOOKAHEAD = 512;
+
+    private static final Map<String, String> CHARSET_NAMES = new HashMap<String, String>();
+
+    static {
+        CHARSET_NAMES.put("UNOC", "ISO-8859-1");
+        CHARSET_NAMES.put("UNOD", "ISO-8859-2");
+        CHARSET_NAMES.put("UNOE", "ISO-8859-5");
+        CHARSET_NAMES.put("UNOF", "ISO-8859-7");
+        CHARSET_NAMES.put("UNOG", "ISO-8859-3");
+        CHARSET_NAMES.put("UNOH", "ISO-8859-4");
+        CHARSET_NAMES.put("UNOI", "ISO-8859-6");
+        CHARSET_NAMES.put("UNOJ", "ISO-8859-8");
+        CHARSET_NAMES.put("UNOK", "ISO-8859-9");
+        CHARSET_NAMES.put("UNOW", "UTF-8");
+    }
+
     /** Private constructor for preventing instantiation of this utility class. */
     private EdifattoUtil() {
     }
@@ -54,4 +89,64 @@ public final class EdifattoUtil {
         return new EdifattoAggregateEdiDiff(expected, actual, settings, genericDiff);
     }
 
+    /** Determines the charset of an interchange from the syntax identifier of its UNB segment.
+     * @param syntaxIdentifier the syntax identifier, e.g. <code>UNOC</code>
+     * @return the corresponding charset, or {@link #DEFAULT_CHARSET} if the syntax identifier is <code>null</code> or does not
+     *         determine a supported charset */
+    public static Charset getCharset(String syntaxIdentifier) {
+        String charsetName = (syntaxIdentifier == null ? null : CHARSET_NAMES.get(syntaxIdentifier.trim().toUpperCase()));
+        if (charsetName == null || !Charset.isSupported(charsetName)) {
+            return DEFAULT_CHARSET;
+        }
+        return Charset.forName(charsetName);
+    }
+
+    /** Determines the charset of an interchange from the syntax identifier of its UNB segment.
+     * @param interchange the interchange
+     * @return the charset declared by the interchange, or {@link #DEFAULT_CHARSET} */
+    public static Charset getCharset(Interchange interchange) {
+        List<Segment> headers = interchange.getSegmentsByTag("UNB");
+        if (headers.isEmpty() || headers.get(0).getChildCount() == 0) {
+            return DEFAULT_CHARSET;
+        }
+        SegmentItem syntax = headers.get(0).getChild(0);
+        if (syntax instanceof Composite) {
+            Composite composite = (Composite) syntax;
+            syntax = (composite.getChildCount() > 0 ? composite.getChild(0) : null);
+        }
+        return getCharset(syntax instanceof Component ? ((Component) syntax).getData() : null);
+    }
+
+    /** Determines the charset of an interchange provided by a stream, without consuming any data of the stream.
+     * @param in the stream which provides the interchange
+     * @return the charset declared in the UNB segment of the interchange, or {@link #DEFAULT_CHARSET}
+     * @throws IOException if the stream cannot be read */
+    public static Charset detectCharset(BufferedInputStream in) throws IOException {
+        in.mark(HEADER_LOOKAHEAD);
+        byte[] buffer = new byte[HEADER_LOOKAHEAD];
+        int count = 0;
+        int read;
+        while (count < buffer.length && (read = in.read(buffer, count, buffer.length - count)) > 0) {
+            count += read;
+        }
+        in.reset();
+        String header = new String(buffer, 0, count, DEFAULT_CHARSET);
+        char componentSeparator = EdiFormatSymbols.EDIFACT.componentSeparator;
+        char elementSeparator = EdiFormatSymbols.EDIFACT.elementSeparator;
+        if (header.startsWith("UNA") && header.length() > 4) {
+            componentSeparator = header.charAt(3);
+            elementSeparator = header.charAt(4);
+        }
+        int start = header.indexOf("UNB" + elementSeparator);
+        if (start < 0) {
+            return DEFAULT_CHARSET;
+        }
+        start += 4;
+        int end = start;
+        while (end < header.length() && header.charAt(end) != componentSeparator && header.charAt(end) != elementSeparator) {
+            end++;
+        }
+        return getCharset(header.substring(start, end));
+    }
+
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.content.edifact.edifatto;
+
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.LinkedList;
+
+import org.databene.edifatto.SegmentFormatter;
+import org.databene.edifatto.model.EdiGroup;
+import org.databene.edifatto.model.Interchange;
+import org.databene.edifatto.model.Segment;
+
+/** Provides the EDI representation of an {@link Interchange} as a stream of bytes. Segments are formatted and encoded one at a
+ * time while the stream is read, so the whole interchange is never held in memory in its formatted form. <br>
+ * <br>
+ * This class is not thread-safe.
+ *
+ * @author agent */
+final class InterchangeInputStream extends InputStream {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final LinkedList<Cursor> cursors = new LinkedList<Cursor>();
+
+    private final SegmentFormatter formatter;
+
+    private final Charset charset;
+
+    private final String lineFeed;
+
+    private byte[] buffer = EMPTY;
+
+    private int position;
+
+    /** Creates a stream for the given interchange.
+     * @param interchange the interchange to provide
+     * @param charset the charset to encode the interchange with
+     * @param lineFeed the line feed to append to each segment, or <code>null</code> */
+    InterchangeInputStream(Interchange interchange, Charset charset, String lineFeed) {
+        this.formatter = new SegmentFormatter(interchange.getSymbols());
+        this.charset = charset;
+        this.lineFeed = lineFeed;
+        this.cursors.add(new Cursor(interchange));
+    }
+
+    @Override
+    public int read() {
+        if (!fillBuffer()) {
+            return -1;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fillBuffer()) {
+            return -1;
+        }
+        int count = Math.min(len, buffer.length - position);
+        System.arraycopy(buffer, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return buffer.length - position;
+    }
+
+    private boolean fillBuffer() {
+        while (position >= buffer.length) {
+            Segment segment = nextSegment();
+            if (segment == null) {
+                return false;
+            }
+            String text = formatter.format(segment);
+            if (lineFeed != null) {
+                text += lineFeed;
+            }
+            buffer = text.getBytes(charset);
+            position = 0;
+        }
+        return true;
+    }
+
+    private Segment nextSegment() {
+        while (!cursors.isEmpty()) {
+            Cursor cursor = cursors.getLast();
+            if (cursor.index >= cursor.group.getChildCount()) {
+                cursors.removeLast();
+                continue;
+            }
+            Object item = cursor.group.getChild(cursor.index++);
+            if (item instanceof Segment) {
+                return (Segment) item;
+            }
+            if (item instanceof EdiGroup) {
+                cursors.add(new Cursor((EdiGroup<?>) item));
+            }
+        }
+        return null;
+    }
+
+    // helper classes ----------------------------------------------------------
+
+    /** Position within the children of an interchange, functional group, message or segment group. */
+    private static final class Cursor {
+
+        private final EdiGroup<?> group;
+
+        private int index;
+
+        Cursor(EdiGroup<?> group) {
+            this.group = group;
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.content.edifact.edifatto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPathExpressionException;
+
+import org.aludratest.content.xml.util.XPathCache;
+import org.databene.edifatto.Edifatto;
+import org.databene.edifatto.model.EdiItem;
+import org.databene.edifatto.model.Interchange;
+import org.databene.edifatto.model.Segment;
+import org.databene.edifatto.util.Parent;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/** Cached XML representation of an {@link Interchange}, with an index of its segments by tag and qualifier. The view is attached
+ * to the interchange as a tag, so it is reused by all queries on the same interchange and released together with the
+ * interchange. <br>
+ * The view is only reused while the interchange is not flagged as modified and its number of segments is unchanged.
+ * Interchanges read or created by the {@link EdifattoContent} have the flag cleared, and changing a data value or removing a
+ * segment sets it. If the flag is set, the view is rebuilt and the flag is cleared, so the new view is reused by the following
+ * accesses. The segment count catches structural changes which do not set the flag. Other changes which do not set the flag
+ * require an explicit {@link #invalidate(Interchange)}. <br>
+ * <br>
+ * This class is thread-safe. Nodes returned by the view belong to the cached document and must not be modified.
+ *
+ * @author agent */
+final class InterchangeXmlView {
+
+    private static final String TAG_NAME = InterchangeXmlView.class.getName();
+
+    private final Document document;
+
+    /** The number of segments of the interchange when the view was built. */
+    private final int segmentCount;
+
+    private Map<String, List<Element>> segmentIndex;
+
+    private InterchangeXmlView(Document document, int segmentCount) {
+        this.document = document;
+        this.segmentCount = segmentCount;
+    }
+
+    /** Returns the XML view of the given interchange. A new view is built if no view exists, if the interchange is flagged as
+     * modified, or if its number of segments has changed. After building a view, the modified flag is cleared.
+     *
+     * @param interchange Interchange to return the XML view of.
+     *
+     * @return The XML view of the interchange, never <code>null</code>. */
+    static InterchangeXmlView of(Interchange interchange) {
+        synchronized (interchange) {
+            int segmentCount = countSegments(interchange);
+            Object view = interchange.getTag(TAG_NAME);
+            if (!interchange.isModified() && view instanceof InterchangeXmlView
+                    && ((InterchangeXmlView) view).segmentCount == segmentCount) {
+                return (InterchangeXmlView) view;
+            }
+            InterchangeXmlView newView = new InterchangeXmlView(Edifatto.convertToXml(interchange), segmentCount);
+            interchange.setTag(TAG_NAME, newView);
+            interchange.clearModifiedFlag();
+            return newView;
+        }
+    }
+
+    /** Discards the XML view of the given interchange, so the next access builds a new one.
+     *
+     * @param interchange Interchange to discard the XML view of. */
+    static void invalidate(Interchange interchange) {
+        synchronized (interchange) {
+            interchange.setTag(TAG_NAME, null);
+        }
+    }
+
+    /** Evaluates an XPath expression on the XML representation of the interchange.
+     *
+     * @param expression XPath expression to evaluate.
+     * @param returnType Expected return type, one of the constants of <code>XPathConstants</code>.
+     *
+     * @return The result of the evaluation.
+     *
+     * @throws XPathExpressionException If the expression is invalid. */
+    synchronized Object query(String expression, QName returnType) throws XPathExpressionException {
+        return XPathCache.evaluate(document, expression, returnType);
+    }
+
+    /** Returns the XML elements of all segments with the given tag and, optionally, the given qualifier. The qualifier of a
+     * segment is the first component of its first data element, e.g. <code>VM</code> for <code>RFF+VM:A8RH6</code>.
+     *
+     * @param tag Tag of the segments to return, e.g. <code>RFF</code>.
+     * @param qualifier Qualifier of the segments to return, or <code>null</code> to return all segments with the given tag.
+     *
+     * @return The XML elements of all matching segments, in document order. Possibly empty, but never <code>null</code>. */
+    synchronized List<Element> getSegments(String tag, String qualifier) {
+        if (segmentIndex == null) {
+            segmentIndex = buildSegmentIndex();
+        }
+        List<Element> result = segmentIndex.get(qualifier == null ? tag : tag + "+" + qualifier);
+        return result == null ? Collections.<Element> emptyList() : Collections.unmodifiableList(result);
+    }
+
+    private static int countSegments(EdiItem item) {
+        if (item instanceof Segment) {
+            return 1;
+        }
+        if (!(item instanceof Parent)) {
+            return 0;
+        }
+        Parent<?> parent = (Parent<?>) item;
+        int count = 0;
+        for (int i = 0; i < parent.getChildCount(); i++) {
+            count += countSegments((EdiItem) parent.getChild(i));
+        }
+        return count;
+    }
+
+    private Map<String, List<Element>> buildSegmentIndex() {
+        Map<String, List<Element>> index = new HashMap<String, List<Element>>();
+        NodeList segments = document.getElementsByTagName("segment");
+        for (int i = 0; i < segments.getLength(); i++) {
+            Element segment = (Element) segments.item(i);
+            String tag = segment.getAttribute("tag");
+            addToIndex(index, tag, segment);
+            String qualifier = getQualifier(segment);
+            if (qualifier != null) {
+                addToIndex(index, tag + "+" + qualifier, segment);
+            }
+        }
+        return index;
+    }
+
+    private static String getQualifier(Element segment) {
+        // first element holds the segment tag, so the qualifier is the first component of the second element
+        Element element = getChildElement(segment, "elem", 1);
+        Element component = element == null ? null : getChildElement(element, "comp", 0);
+        return component == null ? null : component.getTextContent();
+    }
+
+    private static Element getChildElement(Element parent, String name, int index) {
+        int count = 0;
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element && name.equals(child.getNodeName()) && count++ == index) {
+                return (Element) child;
+            }
+        }
+        return null;
+    }
+
+    private static void addToIndex(Map<String, List<Element>> index, String key, Element segment) {
+        List<Element> list = index.get(key);
+        if (list == null) {
+            list = new ArrayList<Element>();
+            index.put(key, list);
+        }
+        list.add(segment);
+    }
+
+}
@@ -0,0 +1,772 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.content.edifact.edifatto;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.aludratest.content.edifact.AggregateEdiDiff;
+import org.aludratest.exception.TechnicalException;
+import org.databene.commons.StringUtil;
+import org.databene.edifatto.EdiFormatSymbols;
+import org.databene.edifatto.EdiParser;
+import org.databene.edifatto.EdiParserSettings;
+import org.databene.edifatto.ParsingResult;
+import org.databene.edifatto.definition.CompositeDefinition;
+import org.databene.edifatto.definition.SegmentDefinition;
+import org.databene.edifatto.model.Component;
+import org.databene.edifatto.model.Composite;
+import org.databene.edifatto.model.Interchange;
+import org.databene.edifatto.model.Message;
+import org.databene.edifatto.model.Segment;
+import org.databene.edifatto.model.SegmentGroup;
+import org.databene.edifatto.model.SegmentGroupItem;
+import org.databene.edifatto.model.SegmentGroupItemContainer;
+import org.databene.edifatto.model.SegmentItem;
+import org.databene.edifatto.util.EdiUtil;
+import org.databene.formats.compare.AggregateDiff;
+import org.databene.formats.compare.ComparisonSettings;
+import org.databene.formats.compare.DiffDetailType;
+import org.databene.formats.compare.DiffFactory;
+import org.databene.formats.compare.KeyExpression;
+import org.databene.formats.compare.LocalDiffType;
+
+/** Compares two EDIFACT interchanges message by message while reading them, without converting them to XML. Only the messages
+ * currently compared and messages waiting for their counterpart are held in memory, so the memory required does not depend on
+ * the number of messages in the interchanges. <br>
+ * <br>
+ * Each message is parsed on its own using the edifatto message definitions. Messages, segment groups, segments, composites and
+ * components are identified by the same names which are used in the XML representation of the {@link EdifattoContent}, e.g.
+ * <code>T-IFTDGN/L-TDT_10/S-TDT_10/C-C222_10_08/E-8212_10_08.04</code>, so the same locators are reported as in a DOM based
+ * comparison, and the tolerated differences and key expressions of the settings are applied as segment path patterns. Only
+ * simple location paths consisting of element names, <code>*</code> and position predicates are supported; use
+ * {@link #isStreamable()} to check if the settings can be applied. <br>
+ * <br>
+ * Messages are compared in order, unless a key expression is defined for the message element (e.g. <code>T-IFTDGN</code>): In
+ * this case, messages with equal keys are compared, independent of their position. Repeated segment groups and segments are
+ * aligned by key expressions in the same way. <br>
+ * <br>
+ * This class is thread-safe, as each comparison uses its own state.
+ *
+ * @author agent */
+public class StreamingEdiComparator {
+
+    private static final String ELEMENT_CLASSIFIER = "list element";
+
+    private static final String TEXT_CLASSIFIER = "element text";
+
+    private final DatabeneEdiComparisonSettings settings;
+
+    private final List<Toleration> tolerations = new ArrayList<Toleration>();
+
+    private final List<KeyDefinition> keyDefinitions = new ArrayList<KeyDefinition>();
+
+    private boolean streamable = true;
+
+    /** Creates a new comparator for the given settings.
+     * @param settings the settings to apply in comparisons */
+    public StreamingEdiComparator(DatabeneEdiComparisonSettings settings) {
+        this.settings = settings;
+        for (LocalDiffType diffType : settings.getToleratedDiffs()) {
+            PathPattern pattern = PathPattern.parse(diffType.getLocator());
+            if (pattern == null) {
+                streamable = false;
+            }
+            else {
+                tolerations.add(new Toleration(diffType.getType(), pattern));
+            }
+        }
+        for (KeyExpression keyExpression : settings.getKeyExpressions()) {
+            PathPattern pattern = PathPattern.parse(keyExpression.getLocator());
+            List<PatternStep> keyPath = PathPattern.parseRelative(keyExpression.getExpression());
+            if (pattern == null || keyPath == null) {
+                streamable = false;
+            }
+            else {
+                keyDefinitions.add(new KeyDefinition(pattern, keyPath));
+            }
+        }
+    }
+
+    /** Tells if the settings of this comparator can be applied while streaming, i.e. if all tolerances and key expressions use
+     * simple location paths. If not, the interchanges must be compared using the XML based comparison.
+     * @return true if {@link #compare(InputStream, InputStream)} may be used with the settings of this comparator, otherwise
+     *         false */
+    public boolean isStreamable() {
+        return streamable;
+    }
+
+    /** Compares two EDIFACT interchanges read from the given streams. Each stream is decoded with the charset declared by the
+     * syntax identifier of its UNB segment, see {@link EdifattoUtil#detectCharset(BufferedInputStream)}. The streams are not
+     * closed by this method. The expected and actual objects of the result are <code>null</code>, as the interchanges are not
+     * kept.
+     * @param expected the stream to read the expected interchange from
+     * @param actual the stream to read the actual interchange from
+     * @return the differences found which are not tolerated by the settings
+     * @throws IOException if an interchange cannot be read
+     * @throws IllegalStateException if the settings of this comparator cannot be applied while streaming */
+    public AggregateEdiDiff compare(InputStream expected, InputStream actual) throws IOException {
+        if (!streamable) {
+            throw new IllegalStateException("Comparison settings contain XPath expressions which require XML based comparison");
+        }
+        Comparison comparison = new Comparison();
+        comparison.compareInterchanges(new MessageSource(expected), new MessageSource(actual));
+        return new EdifattoAggregateEdiDiff(null, null, (ComparisonSettings) settings, comparison.diff);
+    }
+
+    // comparison --------------------------------------------------------------
+
+    /** State of a single comparison. */
+    private final class Comparison {
+
+        private final AggregateDiff diff;
+
+        private final DiffFactory diffFactory = new DiffFactory();
+
+        Comparison() {
+            this.diff = new AggregateDiff(null, null, (ComparisonSettings) settings);
+        }
+
+        void compareInterchanges(MessageSource expected, MessageSource actual) throws IOException {
+            Map<String, LinkedList<Node>> pendingExpected = new LinkedHashMap<String, LinkedList<Node>>();
+            Map<String, LinkedList<Node>> pendingActual = new LinkedHashMap<String, LinkedList<Node>>();
+            Node expectedMessage = expected.nextMessage();
+            Node actualMessage = actual.nextMessage();
+            while (expectedMessage != null || actualMessage != null) {
+                if (expectedMessage != null) {
+                    matchMessage(expectedMessage, pendingExpected, pendingActual, true);
+                    expectedMessage = expected.nextMessage();
+                }
+                if (actualMessage != null) {
+                    matchMessage(actualMessage, pendingActual, pendingExpected, false);
+                    actualMessage = actual.nextMessage();
+                }
+            }
+            for (LinkedList<Node> messages : pendingExpected.values()) {
+                for (Node message : messages) {
+                    addDiff(DiffDetailType.MISSING, message, null, ELEMENT_CLASSIFIER, message, null);
+                }
+            }
+            for (LinkedList<Node> messages : pendingActual.values()) {
+                for (Node message : messages) {
+                    addDiff(DiffDetailType.UNEXPECTED, null, message, ELEMENT_CLASSIFIER, null, message);
+                }
+            }
+        }
+
+        /** Compares the given message with a pending message of the other interchange having the same key, or adds it to the
+         * pending messages of its own interchange if there is no such message yet. */
+        private void matchMessage(Node message, Map<String, LinkedList<Node>> own, Map<String, LinkedList<Node>> other,
+                boolean expectedSide) {
+            String key = keyOf(message);
+            if (key == null) {
+                key = String.valueOf(message.position);
+            }
+            LinkedList<Node> candidates = other.get(key);
+            if (candidates != null) {
+                Node counterpart = candidates.removeFirst();
+                if (candidates.isEmpty()) {
+                    other.remove(key);
+                }
+                if (expectedSide) {
+                    compareNodes(message, counterpart);
+                }
+                else {
+                    compareNodes(counterpart, message);
+                }
+                return;
+            }
+            LinkedList<Node> waiting = own.get(key);
+            if (waiting == null) {
+                waiting = new LinkedList<Node>();
+                own.put(key, waiting);
+            }
+            waiting.add(message);
+        }
+
+        private void compareNodes(Node expected, Node actual) {
+            if (isExcluded(expected) || isExcluded(actual)) {
+                return;
+            }
+            if (expected.children == null || actual.children == null) {
+                if (expected.text == null ? actual.text != null : !expected.text.equals(actual.text)) {
+                    addDiff(DiffDetailType.DIFFERENT, expected.display(), actual.display(), TEXT_CLASSIFIER, expected, actual);
+                }
+                return;
+            }
+            Map<String, List<Node>> expectedByName = groupByName(expected.children);
+            Map<String, List<Node>> actualByName = groupByName(actual.children);
+            for (Map.Entry<String, List<Node>> entry : expectedByName.entrySet()) {
+                List<Node> actualChildren = actualByName.remove(entry.getKey());
+                compareLists(entry.getValue(), actualChildren == null ? new ArrayList<Node>() : actualChildren);
+            }
+            for (List<Node> unexpected : actualByName.values()) {
+                compareLists(new ArrayList<Node>(), unexpected);
+            }
+        }
+
+        /** Compares the children of the same name of two nodes. The children are aligned by key if a key expression applies
+         * to them, otherwise by position. */
+        private void compareLists(List<Node> expected, List<Node> actual) {
+            int[] matches = new int[expected.size()];
+            Arrays.fill(matches, -1);
+            boolean[] used = new boolean[actual.size()];
+            Node sample = expected.isEmpty() ? (actual.isEmpty() ? null : actual.get(0)) : expected.get(0);
+            boolean keyed = sample != null && hasKeyDefinition(sample);
+            if (keyed) {
+                Map<String, LinkedList<Integer>> actualByKey = new HashMap<String, LinkedList<Integer>>();
+                for (int j = 0; j < actual.size(); j++) {
+                    String key = keyOf(actual.get(j));
+                    LinkedList<Integer> indices = actualByKey.get(key);
+                    if (indices == null) {
+                        indices = new LinkedList<Integer>();
+                        actualByKey.put(key, indices);
+                    }
+                    indices.add(Integer.valueOf(j));
+                }
+                for (int i = 0; i < expected.size(); i++) {
+                    LinkedList<Integer> indices = actualByKey.get(keyOf(expected.get(i)));
+                    if (indices != null && !indices.isEmpty()) {
+                        matches[i] = indices.removeFirst().intValue();
+                        used[matches[i]] = true;
+                    }
+                }
+            }
+            else {
+                for (int i = 0; i < expected.size() && i < actual.size(); i++) {
+                    matches[i] = i;
+                    used[i] = true;
+                }
+            }
+
+            if (keyed) {
+                reportMoved(expected, actual, matches);
+            }
+            for (int i = 0; i < expected.size(); i++) {
+                if (matches[i] < 0) {
+                    addDiff(DiffDetailType.MISSING, expected.get(i).display(), null, ELEMENT_CLASSIFIER, expected.get(i), null);
+                }
+                else {
+                    compareNodes(expected.get(i), actual.get(matches[i]));
+                }
+            }
+            for (int j = 0; j < actual.size(); j++) {
+                if (!used[j]) {
+                    addDiff(DiffDetailType.UNEXPECTED, null, actual.get(j).display(), ELEMENT_CLASSIFIER, null, actual.get(j));
+                }
+            }
+        }
+
+        private void reportMoved(List<Node> expected, List<Node> actual, int[] matches) {
+            int count = 0;
+            for (int match : matches) {
+                if (match >= 0) {
+                    count++;
+                }
+            }
+            int[] matchedIndices = new int[count];
+            int[] expectedIndices = new int[count];
+            count = 0;
+            for (int i = 0; i < matches.length; i++) {
+                if (matches[i] >= 0) {
+                    expectedIndices[count] = i;
+                    matchedIndices[count++] = matches[i];
+                }
+            }
+            boolean[] inOrder = longestIncreasingSubsequence(matchedIndices);
+            for (int k = 0; k < count; k++) {
+                if (!inOrder[k]) {
+                    Node expectedNode = expected.get(expectedIndices[k]);
+                    Node actualNode = actual.get(matchedIndices[k]);
+                    addDiff(DiffDetailType.MOVED, expectedNode.display(), actualNode.display(), ELEMENT_CLASSIFIER,
+                            expectedNode, actualNode);
+                }
+            }
+        }
+
+        private void addDiff(DiffDetailType type, Object expected, Object actual, String classifier, Node expectedNode,
+                Node actualNode) {
+            if (!isTolerated(type, expectedNode, actualNode)) {
+                diff.addDetail(diffFactory.genericDiff(expected, actual, classifier, type,
+                        expectedNode == null ? null : expectedNode.toLocator(),
+                        actualNode == null ? null : actualNode.toLocator()));
+            }
+        }
+
+    }
+
+    // helper methods ----------------------------------------------------------
+
+    private boolean isTolerated(DiffDetailType type, Node expected, Node actual) {
+        for (Toleration toleration : tolerations) {
+            if ((toleration.type == null || toleration.type == type)
+                    && (toleration.pattern.matches(expected) || toleration.pattern.matches(actual))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isExcluded(Node node) {
+        for (Toleration toleration : tolerations) {
+            if (toleration.type == null && toleration.pattern.matches(node)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasKeyDefinition(Node node) {
+        for (KeyDefinition definition : keyDefinitions) {
+            if (definition.pattern.matches(node)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String keyOf(Node node) {
+        for (KeyDefinition definition : keyDefinitions) {
+            if (definition.pattern.matches(node)) {
+                Node keyNode = node;
+                for (PatternStep step : definition.keyPath) {
+                    keyNode = keyNode.child(step);
+                    if (keyNode == null) {
+                        return "";
+                    }
+                }
+                return keyNode.textContent();
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, List<Node>> groupByName(List<Node> nodes) {
+        Map<String, List<Node>> result = new LinkedHashMap<String, List<Node>>();
+        for (Node node : nodes) {
+            List<Node> list = result.get(node.name);
+            if (list == null) {
+                list = new ArrayList<Node>();
+                result.put(node.name, list);
+            }
+            list.add(node);
+        }
+        return result;
+    }
+
+    /** Determines which of the given values form a longest increasing subsequence. Elements not in this subsequence are
+     * considered moved. */
+    private static boolean[] longestIncreasingSubsequence(int[] values) {
+        int[] tails = new int[values.length];
+        int[] predecessors = new int[values.length];
+        int length = 0;
+        for (int i = 0; i < values.length; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[tails[mid]] < values[i]) {
+                    low = mid + 1;
+                }
+                else {
+                    high = mid;
+                }
+            }
+            predecessors[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+        boolean[] result = new boolean[values.length];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = predecessors[i]) {
+            result[i] = true;
+        }
+        return result;
+    }
+
+    // helper classes ----------------------------------------------------------
+
+    /** Reads the messages of an interchange one by one. Each message is parsed together with the interchange header, so the
+     * edifatto parser can resolve its message definition. */
+    private static final class MessageSource {
+
+        private final EdiSegmentReader reader;
+
+        private final StringBuilder header = new StringBuilder();
+
+        private int messageCount;
+
+        MessageSource(InputStream in) throws IOException {
+            BufferedInputStream bufferedIn = (in instanceof BufferedInputStream ? (BufferedInputStream) in
+                    : new BufferedInputStream(in));
+            this.reader = new EdiSegmentReader(new InputStreamReader(bufferedIn, EdifattoUtil.detectCharset(bufferedIn)));
+        }
+
+        Node nextMessage() throws IOException {
+            StringBuilder message = null;
+            String segment;
+            while ((segment = reader.readSegment()) != null) {
+                String tag = reader.getTag(segment);
+                if ("UNA".equals(tag) || "UNB".equals(tag)) {
+                    header.append(segment);
+                }
+                else if ("UNH".equals(tag)) {
+                    message = new StringBuilder(segment);
+                }
+                else if (message != null) {
+                    message.append(segment);
+                    if ("UNT".equals(tag)) {
+                        return parse(message);
+                    }
+                }
+            }
+            if (message != null) {
+                throw new TechnicalException("Incomplete EDI message: Missing UNT segment");
+            }
+            return null;
+        }
+
+        private Node parse(StringBuilder message) {
+            if (header.length() == 0) {
+                throw new TechnicalException("EDI message without interchange header");
+            }
+            char sep = reader.getElementSeparator();
+            String text = header.toString() + message + "UNZ" + sep + "1" + sep + "1" + reader.getSegmentSeparator();
+            ParsingResult result = new EdiParser(new EdiParserSettings()).parse(text);
+            if (!result.getSyntaxErrors().isEmpty()) {
+                throw new TechnicalException("Error parsing EDI message: " + result.getSyntaxErrors().get(0));
+            }
+            Interchange interchange = result.getInterchanges().get(0);
+            return Node.of(interchange.getUniqueMessage(), ++messageCount, interchange.getSymbols());
+        }
+    }
+
+    /** A message or one of its segment groups, segments, composites or components, named like in the XML representation of
+     * the message. Leaf nodes carry the unescaped component data. The position is counted among siblings of the same name, the
+     * index among all siblings. */
+    private static final class Node {
+
+        private final Node parent;
+
+        private final String name;
+
+        private final Object source;
+
+        private final int position;
+
+        private final int index;
+
+        private final int[] siblingCount;
+
+        private String text;
+
+        private List<Node> children;
+
+        private Node(Node parent, String name, Object source, int position, int index, int[] siblingCount) {
+            this.parent = parent;
+            this.name = name;
+            this.source = source;
+            this.position = position;
+            this.index = index;
+            this.siblingCount = siblingCount;
+        }
+
+        static Node of(Message message, int number, EdiFormatSymbols symbols) {
+            Node node = new Node(null, message.getName(), message, number, number, new int[] { number });
+            node.addItems(message, symbols);
+            return node;
+        }
+
+        private void addItems(SegmentGroupItemContainer container, EdiFormatSymbols symbols) {
+            children = new ArrayList<Node>();
+            Map<String, int[]> counters = new HashMap<String, int[]>();
+            for (SegmentGroupItem item : container.getChildren()) {
+                if (item instanceof Segment) {
+                    Segment segment = (Segment) item;
+                    addChild(segment.getName(), segment, counters).addSegmentItems(segment, symbols);
+                }
+                else if (item instanceof SegmentGroup) {
+                    SegmentGroup group = (SegmentGroup) item;
+                    addChild(group.getDefinition().getName(), group, counters).addItems(group, symbols);
+                }
+            }
+        }
+
+        private void addSegmentItems(Segment segment, EdiFormatSymbols symbols) {
+            SegmentDefinition definition = segment.getDefinition();
+            if (definition == null) {
+                text = segment.toString();
+                return;
+            }
+            children = new ArrayList<Node>();
+            Map<String, int[]> counters = new HashMap<String, int[]>();
+            int count = Math.min(definition.getChildren().size(), segment.getChildCount());
+            for (int i = 0; i < count; i++) {
+                SegmentItem item = segment.getChild(i);
+                if (definition.getChild(i) instanceof CompositeDefinition && item instanceof Composite) {
+                    CompositeDefinition compositeDefinition = (CompositeDefinition) definition.getChild(i);
+                    Composite composite = (Composite) item;
+                    if (containsData(composite)) {
+                        Node node = addChild(compositeDefinition.getName(), composite, counters);
+                        node.children = new ArrayList<Node>();
+                        Map<String, int[]> componentCounters = new HashMap<String, int[]>();
+                        int componentCount = Math.min(compositeDefinition.getChildCount(), composite.getChildCount());
+                        for (int j = 0; j < componentCount; j++) {
+                            node.addComponent(compositeDefinition.getChild(j).getName(), composite.getChild(j), componentCounters,
+                                    symbols);
+                        }
+                    }
+                }
+                else {
+                    Component component = item instanceof Composite ? ((Composite) item).getChild(0) : (Component) item;
+                    addComponent(definition.getChild(i).getName(), component, counters, symbols);
+                }
+            }
+        }
+
+        private void addComponent(String componentName, Component component, Map<String, int[]> counters,
+                EdiFormatSymbols symbols) {
+            if (component != null && !StringUtil.isEmpty(component.getData())) {
+                addChild(componentName, component, counters).text = EdiUtil.unescape(component.getData(), symbols);
+            }
+        }
+
+        private Node addChild(String childName, Object childSource, Map<String, int[]> counters) {
+            int[] counter = counters.get(childName);
+            if (counter == null) {
+                counter = new int[1];
+                counters.put(childName, counter);
+            }
+            Node child = new Node(this, childName, childSource, ++counter[0], children.size() + 1, counter);
+            children.add(child);
+            return child;
+        }
+
+        private static boolean containsData(Composite composite) {
+            for (Component component : composite.getChildren()) {
+                if (!StringUtil.isEmpty(component.getData())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Node child(PatternStep step) {
+            if (children != null) {
+                for (Node child : children) {
+                    if (step.matches(child)) {
+                        return child;
+                    }
+                }
+            }
+            return null;
+        }
+
+        String textContent() {
+            if (children == null) {
+                return text;
+            }
+            StringBuilder sb = new StringBuilder();
+            for (Node child : children) {
+                sb.append(child.textContent());
+            }
+            return sb.toString();
+        }
+
+        Object display() {
+            return children == null ? text : String.valueOf(source);
+        }
+
+        /** @return the steps of this path, from the message to this node */
+        List<Node> steps() {
+            List<Node> result = new ArrayList<Node>();
+            for (Node node = this; node != null; node = node.parent) {
+                result.add(0, node);
+            }
+            return result;
+        }
+
+        String toLocator() {
+            StringBuilder sb = new StringBuilder();
+            for (Node node : steps()) {
+                if (sb.length() > 0) {
+                    sb.append('/');
+                }
+                sb.append(node.name);
+                // like the XML based comparison, the index among all siblings is used if there are siblings of the same name
+                if (node.siblingCount[0] > 1) {
+                    sb.append('[').append(node.index).append(']');
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    /** A simple XPath location path which can be matched against a {@link Node}. The root step matches the message element. */
+    private static final class PathPattern {
+
+        private static final Pattern STEP_PATTERN = Pattern.compile("([\\w.\\-]+|\\*)(?:\\[(\\d+)\\])?");
+
+        private final List<PatternStep> steps;
+
+        private PathPattern(List<PatternStep> steps) {
+            this.steps = steps;
+        }
+
+        /** Parses the given XPath expression.
+         * @param locator the XPath expression to parse
+         * @return the pattern, or <code>null</code> if the expression is not a simple location path */
+        static PathPattern parse(String locator) {
+            String s = locator.trim();
+            List<PatternStep> steps = new ArrayList<PatternStep>();
+            int index = 0;
+            while (index < s.length()) {
+                boolean descendant = false;
+                if (s.charAt(index) == '/') {
+                    index++;
+                    descendant = index < s.length() && s.charAt(index) == '/';
+                    if (descendant) {
+                        index++;
+                    }
+                }
+                else if (!steps.isEmpty()) {
+                    return null;
+                }
+                int end = s.indexOf('/', index);
+                if (end < 0) {
+                    end = s.length();
+                }
+                PatternStep step = parseStep(s.substring(index, end), descendant);
+                if (step == null) {
+                    return null;
+                }
+                steps.add(step);
+                index = end;
+            }
+            return steps.isEmpty() ? null : new PathPattern(steps);
+        }
+
+        /** Parses a relative location path like <code>S-EQD_22/C-C237_22_02/E-8260_22_02.01</code>.
+         * @param expression the XPath expression to parse
+         * @return the steps of the path, or <code>null</code> if the expression is not a simple relative location path */
+        static List<PatternStep> parseRelative(String expression) {
+            String s = expression.trim();
+            if (s.startsWith("./")) {
+                s = s.substring(2);
+            }
+            if (s.endsWith("/text()")) {
+                s = s.substring(0, s.length() - 7);
+            }
+            List<PatternStep> steps = new ArrayList<PatternStep>();
+            if (".".equals(s)) {
+                return steps;
+            }
+            for (String token : s.split("/", -1)) {
+                PatternStep step = parseStep(token, false);
+                if (step == null) {
+                    return null;
+                }
+                steps.add(step);
+            }
+            return steps;
+        }
+
+        private static PatternStep parseStep(String step, boolean descendant) {
+            Matcher matcher = STEP_PATTERN.matcher(step);
+            if (!matcher.matches()) {
+                return null;
+            }
+            return new PatternStep(descendant, matcher.group(1), matcher.group(2) == null ? 0 : Integer.parseInt(matcher
+                    .group(2)));
+        }
+
+        boolean matches(Node node) {
+            return node != null && matches(node.steps(), 0, 0);
+        }
+
+        private boolean matches(List<Node> path, int patternIndex, int pathIndex) {
+            if (patternIndex == steps.size()) {
+                return pathIndex == path.size();
+            }
+            PatternStep step = steps.get(patternIndex);
+            if (step.descendant) {
+                for (int i = pathIndex; i < path.size(); i++) {
+                    if (step.matches(path.get(i)) && matches(path, patternIndex + 1, i + 1)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            return pathIndex < path.size() && step.matches(path.get(pathIndex)) && matches(path, patternIndex + 1, pathIndex + 1);
+        }
+    }
+
+    private static final class PatternStep {
+
+        private final boolean descendant;
+
+        private final String name;
+
+        private final int position;
+
+        PatternStep(boolean descendant, String name, int position) {
+            this.descendant = descendant;
+            this.name = name;
+            this.position = position;
+        }
+
+        boolean matches(Node node) {
+            return ("*".equals(name) || name.equals(node.name)) && (position == 0 || position == node.position);
+        }
+    }
+
+    private static final class Toleration {
+
+        private final DiffDetailType type;
+
+        private final PathPattern pattern;
+
+        Toleration(DiffDetailType type, PathPattern pattern) {
+            this.type = type;
+            this.pattern = pattern;
+        }
+    }
+
+    private static final class KeyDefinition {
+
+        private final PathPattern pattern;
+
+        private final List<PatternStep> keyPath;
+
+        KeyDefinition(PathPattern pattern, List<PatternStep> keyPath) {
+            this.pattern = pattern;
+            this.keyPath = keyPath;
+        }
+    }
+
+}
@@ -18,6 +18,7 @@ package org.aludratest.content.flat;
 import java.io.Reader;
 import java.io.Serializable;
 import java.io.Writer;
+import java.util.List;
 import java.util.Locale;
 
 import org.aludratest.content.ContentHandler;
@@ -64,6 +65,31 @@ public interface FlatContent extends ContentHandler {
      *  @return the id of the new reader */
     FlatFileBeanData readRow(Object readerId);
 
+    /** Reads all remaining rows of a flat file and provides them as Java objects.
+     *  Large files may be split into chunks which are parsed in parallel.
+     *  @param readerId the id of the reader
+     *  @param threadCount the maximum number of threads to use for parsing
+     *  @return the remaining rows as Java objects, in file order */
+    List<FlatFileBeanData> readAllRows(Object readerId, int threadCount);
+
+    /** Reads all remaining rows of a flat file into an index, which allows for
+     *  fetching them repeatedly by row index or key without re-reading the file.
+     *  @param readerId the id of the reader
+     *  @param keyColumns the names of the columns which make up the key of a row */
+    void indexRows(Object readerId, String... keyColumns);
+
+    /** Fetches a row from the index created by {@link #indexRows(Object, String...)}.
+     *  @param readerId the id of the reader
+     *  @param rowIndex the 0-based index of the row, relative to the first indexed row
+     *  @return the row as Java object */
+    FlatFileBeanData getRow(Object readerId, int rowIndex);
+
+    /** Finds a row by its key in the index created by {@link #indexRows(Object, String...)}.
+     *  @param readerId the id of the reader
+     *  @param keyValues the values of the key columns, in the order of the key columns
+     *  @return the first row with the given key as Java object, or null if there is no such row */
+    FlatFileBeanData findRow(Object readerId, Object... keyValues);
+
     /** Closes a reader.
      *  @param readerId the id of the reader to close */
     void closeReader(Object readerId);
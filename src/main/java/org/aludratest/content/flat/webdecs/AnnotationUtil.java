@@ -18,12 +18,16 @@ package org.aludratest.content.flat.webdecs;
 import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.WeakHashMap;
 
 import org.aludratest.content.flat.FlatFileColumn;
 import org.aludratest.exception.AutomationException;
@@ -42,12 +46,41 @@ public class AnnotationUtil {
     private AnnotationUtil() {
     }
 
+    /** Caches the validated column layout of each FlatFileBean class, sorted by startIndex. The classes are weakly referenced, so
+     * they and their class loaders can be unloaded. */
+    private static final Map<Class<?>, List<ColumnDescriptor>> LAYOUTS = Collections
+            .synchronizedMap(new WeakHashMap<Class<?>, List<ColumnDescriptor>>());
+
     /** Parses the structure of a FlatFileBean class and maps it
      * to an array of {@link FixedWidthColumnDescriptor}s.
+     * The reflective analysis of the class is performed only once,
+     * each call returns new descriptors, since their formats are not thread-safe.
      * @param beanClass the FlatFileBean class to analyze
      * @param defaultLocale the locale to apply by default
      * @return a {@link FixedWidthRowTypeDescriptor} holding the format data of the bean attributes */
     public static FixedWidthRowTypeDescriptor parseFlatFileColumns(Class<?> beanClass, Locale defaultLocale) {
+        List<ColumnDescriptor> layout = columnLayout(beanClass, defaultLocale);
+        FixedWidthColumnDescriptor[] columns = new FixedWidthColumnDescriptor[layout.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = layout.get(i).createDescriptor(defaultLocale);
+        }
+        return new FixedWidthRowTypeDescriptor(beanClass.getSimpleName(), columns);
+    }
+
+    // private helpers ---------------------------------------------------------
+
+    /** Provides the cached column layout of a FlatFileBean class, analyzing the class on first access. */
+    private static List<ColumnDescriptor> columnLayout(Class<?> beanClass, Locale defaultLocale) {
+        List<ColumnDescriptor> layout = LAYOUTS.get(beanClass);
+        if (layout == null) {
+            layout = analyzeColumns(beanClass, defaultLocale);
+            LAYOUTS.put(beanClass, layout);
+        }
+        return layout;
+    }
+
+    /** Scans the FlatFileBean class and its parents and validates the resulting column layout. */
+    private static List<ColumnDescriptor> analyzeColumns(Class<?> beanClass, Locale defaultLocale) {
         // parse all fields with their descriptors and put them into a set,
         // sorted by startIndex
         Set<ColumnDescriptor> columnDescriptors = new TreeSet<ColumnDescriptor>(new DescriptorComparator());
@@ -72,21 +105,12 @@ public class AnnotationUtil {
                             + descriptor.startIndex);
                 }
             }
-            index += descriptor.descriptor.getWidth();
+            index += descriptor.width;
             previous = descriptor;
         }
-
-        // create and apply the format array
-        FixedWidthColumnDescriptor[] columns = new FixedWidthColumnDescriptor[columnDescriptors.size()];
-        Iterator<ColumnDescriptor> iterator = columnDescriptors.iterator();
-        for (int i = 0; i < columnDescriptors.size(); i++) {
-            columns[i] = iterator.next().descriptor;
-        }
-        return new FixedWidthRowTypeDescriptor(beanClass.getSimpleName(), columns);
+        return Collections.unmodifiableList(new ArrayList<ColumnDescriptor>(columnDescriptors));
     }
 
-    // private helpers ---------------------------------------------------------
-
     /** Scans the attributes of a class and its parents, mapping their
      *  {@link FlatFileColumn} annotation information to a sorted set of
      *  {@link ColumnDescriptor}s. */
@@ -102,19 +126,24 @@ public class AnnotationUtil {
 
             // parse the annotation of the attribute
             FlatFileColumn annotation = field.getAnnotation(FlatFileColumn.class);
-            try {
-                FixedWidthColumnDescriptor fwColDescriptor = FixedWidthUtil.parseColumnFormat(annotation.format(), "", defaultLocale);
-                ColumnDescriptor descriptor = new ColumnDescriptor(fieldName, annotation.startIndex(), fwColDescriptor);
-                for (ColumnDescriptor tmp : columnDescriptors) {
-                    if (tmp.startIndex == descriptor.startIndex) {
-                        throw new AutomationException("Multiple column definitions at index " + descriptor.startIndex + ": '" + tmp.name + "', and '" + descriptor.name + "'");
-                    }
+            int width = parseColumnFormat(annotation.format(), defaultLocale).getWidth();
+            ColumnDescriptor descriptor = new ColumnDescriptor(fieldName, annotation.startIndex(), annotation.format(), width);
+            for (ColumnDescriptor tmp : columnDescriptors) {
+                if (tmp.startIndex == descriptor.startIndex) {
+                    throw new AutomationException("Multiple column definitions at index " + descriptor.startIndex + ": '" + tmp.name + "', and '" + descriptor.name + "'");
                 }
-                // put the resulting descriptor into the columnDescriptors set
-                columnDescriptors.add(descriptor);
-            } catch (ParseException e) {
-                throw new AutomationException("Error in flat file column format: " + annotation.format(), e);
             }
+            // put the resulting descriptor into the columnDescriptors set
+            columnDescriptors.add(descriptor);
+        }
+    }
+
+    /** Parses a {@link FlatFileColumn} format specification. */
+    private static FixedWidthColumnDescriptor parseColumnFormat(String format, Locale locale) {
+        try {
+            return FixedWidthUtil.parseColumnFormat(format, "", locale);
+        } catch (ParseException e) {
+            throw new AutomationException("Error in flat file column format: " + format, e);
         }
     }
 
@@ -139,8 +168,9 @@ public class AnnotationUtil {
     }
 
     /** Collects the format information of a flat file column.
-     *  Internally it uses the {@link FixedWidthColumnDescriptor} class
-     *  of the Databene Webdecs library and adds a startIndex. */
+     *  Instances are immutable and shared by all users of the column layout;
+     *  the {@link FixedWidthColumnDescriptor} of the Databene Webdecs library
+     *  is created on demand, since its format is not thread-safe. */
     private static class ColumnDescriptor {
 
         /** The name of the described attribute. */
@@ -149,24 +179,35 @@ public class AnnotationUtil {
         /** The start index of the related column. */
         private final int startIndex;
 
-        /** fixed-width descriptor as provided by Databene Webdecs. */
-        private final FixedWidthColumnDescriptor descriptor;
+        /** The format specification of the column. */
+        private final String format;
+
+        /** The width of the column. */
+        private final int width;
 
         /** Constructor
          *  @param name the column name
          *  @param startIndex the index of the character at which the associated column begins
-         *  @param descriptor the associated {@link FixedWidthColumnDescriptor} */
-        public ColumnDescriptor(String name, int startIndex, FixedWidthColumnDescriptor descriptor) {
+         *  @param format the format specification of the column
+         *  @param width the width of the column */
+        public ColumnDescriptor(String name, int startIndex, String format, int width) {
             this.name = name;
             this.startIndex = startIndex;
-            this.descriptor = descriptor;
-            this.descriptor.setName(name);
+            this.format = format;
+            this.width = width;
+        }
+
+        /** Creates a new fixed-width descriptor of the column for the given locale. */
+        public FixedWidthColumnDescriptor createDescriptor(Locale locale) {
+            FixedWidthColumnDescriptor descriptor = parseColumnFormat(format, locale);
+            descriptor.setName(name);
+            return descriptor;
         }
 
         /** Creates a string representation of the descriptor. */
         @Override
         public String toString() {
-            return name + "[startIndex=" + startIndex + ", format='" + descriptor + "']";
+            return name + "[startIndex=" + startIndex + ", format='" + format + "']";
         }
     }
 
@@ -0,0 +1,349 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.content.flat.webdecs;
+
+import java.beans.PropertyDescriptor;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.aludratest.exception.AutomationException;
+import org.aludratest.exception.TechnicalException;
+import org.databene.commons.BeanUtil;
+import org.databene.commons.accessor.GraphAccessor;
+import org.databene.commons.converter.AnyConverter;
+import org.databene.commons.mutator.AnyMutator;
+import org.databene.formats.fixedwidth.FixedWidthColumnDescriptor;
+import org.databene.formats.fixedwidth.FixedWidthRowTypeDescriptor;
+
+/** Maps flat file rows to beans of one class and vice versa. The constructor and the feature accessors of each bean class are
+ * resolved only once and shared by all codecs, so parsing and formatting a row does not perform any reflective lookups. <br>
+ * <br>
+ * This class is not thread-safe, since the formats of its column descriptors are not.
+ *
+ * @author agent */
+final class FlatFileBeanCodec {
+
+    /** Caches the resolved constructor and accessors of each bean class. The accessors are only softly referenced, as they
+     * reference their class, which otherwise could never be removed from the map. */
+    private static final Map<Class<?>, SoftReference<BeanAccessors>> BEAN_ACCESSORS = Collections
+            .synchronizedMap(new WeakHashMap<Class<?>, SoftReference<BeanAccessors>>());
+
+    private final FixedWidthRowTypeDescriptor format;
+
+    private final BeanAccessors beanAccessors;
+
+    private final FeatureAccessor[] accessors;
+
+    private final int[] offsets;
+
+    /** Creates a codec for the given bean class and row format.
+     * @param beanClass the class of the beans to parse and format
+     * @param format the row format to apply; the names of its columns denote the bean features to map */
+    FlatFileBeanCodec(Class<?> beanClass, FixedWidthRowTypeDescriptor format) {
+        this.format = format;
+        this.beanAccessors = beanAccessors(beanClass);
+        FixedWidthColumnDescriptor[] columns = format.getColumnDescriptors();
+        this.accessors = new FeatureAccessor[columns.length];
+        this.offsets = new int[columns.length + 1];
+        for (int i = 0; i < columns.length; i++) {
+            accessors[i] = beanAccessors.getAccessor(columns[i].getName());
+            offsets[i + 1] = offsets[i] + columns[i].getWidth();
+        }
+    }
+
+    /** Parses a flat file row to a new bean.
+     * @param rowData the character data of the row
+     * @return a new bean holding the row data */
+    Object parse(String rowData) {
+        Object[] values = format.parseAsArray(rowData);
+        Object bean = beanAccessors.newInstance();
+        for (int i = 0; i < accessors.length; i++) {
+            accessors[i].set(bean, values[i]);
+        }
+        return bean;
+    }
+
+    /** Formats a bean to a flat file row.
+     * @param bean the bean to format
+     * @return the character data of the row, without line separator */
+    String format(Object bean) {
+        Object[] values = new Object[accessors.length];
+        for (int i = 0; i < accessors.length; i++) {
+            values[i] = accessors[i].get(bean);
+        }
+        return format.formatArray(values);
+    }
+
+    /** @param name the name of a column
+     * @return the index of the column with the given name, or -1 if the row format has no such column */
+    int columnIndex(String name) {
+        FixedWidthColumnDescriptor[] columns = format.getColumnDescriptors();
+        for (int i = 0; i < columns.length; i++) {
+            if (name.equals(columns[i].getName())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Extracts the unparsed text of a column from a flat file row. If the row is shorter than the row format, e.g. because its
+     * trailing blanks have been stripped, the missing characters are treated as blanks.
+     * @param rowData the character data of the row
+     * @param columnIndex the index of the column
+     * @return the text of the column, including padding */
+    String columnText(String rowData, int columnIndex) {
+        int start = offsets[columnIndex];
+        int end = offsets[columnIndex + 1];
+        if (rowData.length() >= end) {
+            return rowData.substring(start, end);
+        }
+        StringBuilder text = new StringBuilder(end - start);
+        if (start < rowData.length()) {
+            text.append(rowData, start, rowData.length());
+        }
+        while (text.length() < end - start) {
+            text.append(' ');
+        }
+        return text.toString();
+    }
+
+    /** Formats a value as it would appear in a column, including padding.
+     * @param columnIndex the index of the column
+     * @param value the value to format
+     * @return the formatted text */
+    String formatColumn(int columnIndex, Object value) {
+        return format.getColumnDescriptors()[columnIndex].format(value);
+    }
+
+    // helper methods ----------------------------------------------------------
+
+    private static BeanAccessors beanAccessors(Class<?> beanClass) {
+        SoftReference<BeanAccessors> ref = BEAN_ACCESSORS.get(beanClass);
+        BeanAccessors result = (ref == null ? null : ref.get());
+        if (result == null) {
+            result = new BeanAccessors(beanClass);
+            BEAN_ACCESSORS.put(beanClass, new SoftReference<BeanAccessors>(result));
+        }
+        return result;
+    }
+
+    private static Field findField(Class<?> beanClass, String name) {
+        for (Class<?> clazz = beanClass; clazz != null; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (field.getName().equals(name) && !Modifier.isStatic(field.getModifiers())) {
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Object convert(Object value, Class<?> type) {
+        if (value == null) {
+            return null;
+        }
+        Class<?> wrapperType = type.isPrimitive() ? BeanUtil.getWrapper(type.getName()) : type;
+        return wrapperType.isInstance(value) ? value : AnyConverter.convert(value, type);
+    }
+
+    private static TechnicalException accessFailed(String featureName, Object bean, Throwable cause) {
+        return new TechnicalException("Error accessing feature '" + featureName + "' of " + bean.getClass().getName(), cause);
+    }
+
+    // helper classes ----------------------------------------------------------
+
+    /** The resolved constructor and feature accessors of a bean class. Accessors are resolved on first request. */
+    private static final class BeanAccessors {
+
+        private final Class<?> beanClass;
+
+        private final Constructor<?> constructor;
+
+        private final ConcurrentMap<String, FeatureAccessor> accessors = new ConcurrentHashMap<String, FeatureAccessor>();
+
+        BeanAccessors(Class<?> beanClass) {
+            this.beanClass = beanClass;
+            try {
+                this.constructor = beanClass.getDeclaredConstructor();
+                this.constructor.setAccessible(true);
+            }
+            catch (NoSuchMethodException e) {
+                throw new AutomationException("Flat file bean class " + beanClass.getName() + " has no default constructor");
+            }
+        }
+
+        Object newInstance() {
+            try {
+                return constructor.newInstance();
+            }
+            catch (InvocationTargetException e) {
+                throw new TechnicalException("Error instantiating " + beanClass.getName(), e.getCause());
+            }
+            catch (Exception e) {
+                throw new TechnicalException("Error instantiating " + beanClass.getName(), e);
+            }
+        }
+
+        FeatureAccessor getAccessor(String featureName) {
+            FeatureAccessor accessor = accessors.get(featureName);
+            if (accessor == null) {
+                accessor = resolveAccessor(featureName);
+                accessors.putIfAbsent(featureName, accessor);
+            }
+            return accessor;
+        }
+
+        private FeatureAccessor resolveAccessor(String featureName) {
+            if (featureName.indexOf('.') < 0) {
+                PropertyDescriptor property = BeanUtil.getPropertyDescriptor(beanClass, featureName);
+                if (property != null && property.getReadMethod() != null && property.getWriteMethod() != null) {
+                    return new PropertyAccessor(property);
+                }
+                Field field = findField(beanClass, featureName);
+                if (field != null) {
+                    field.setAccessible(true);
+                    return new FieldAccessor(field);
+                }
+            }
+            // feature paths and unknown features are handled by the generic Databene accessors
+            return new GraphFeatureAccessor(featureName);
+        }
+    }
+
+    /** Reads and writes one feature of a bean. */
+    private abstract static class FeatureAccessor {
+
+        abstract Object get(Object bean);
+
+        abstract void set(Object bean, Object value);
+
+    }
+
+    /** Accesses a feature by its JavaBean property getter and setter. */
+    private static final class PropertyAccessor extends FeatureAccessor {
+
+        private final String name;
+
+        private final Method readMethod;
+
+        private final Method writeMethod;
+
+        private final Class<?> type;
+
+        PropertyAccessor(PropertyDescriptor property) {
+            this.name = property.getName();
+            this.readMethod = property.getReadMethod();
+            this.writeMethod = property.getWriteMethod();
+            this.type = property.getPropertyType();
+            this.readMethod.setAccessible(true);
+            this.writeMethod.setAccessible(true);
+        }
+
+        @Override
+        Object get(Object bean) {
+            try {
+                return readMethod.invoke(bean);
+            }
+            catch (InvocationTargetException e) {
+                throw accessFailed(name, bean, e.getCause());
+            }
+            catch (IllegalAccessException e) {
+                throw accessFailed(name, bean, e);
+            }
+        }
+
+        @Override
+        void set(Object bean, Object value) {
+            Object converted = convert(value, type);
+            if (converted == null && type.isPrimitive()) {
+                return;
+            }
+            try {
+                writeMethod.invoke(bean, converted);
+            }
+            catch (InvocationTargetException e) {
+                throw accessFailed(name, bean, e.getCause());
+            }
+            catch (IllegalAccessException e) {
+                throw accessFailed(name, bean, e);
+            }
+        }
+    }
+
+    /** Accesses a feature directly by its attribute. */
+    private static final class FieldAccessor extends FeatureAccessor {
+
+        private final Field field;
+
+        FieldAccessor(Field field) {
+            this.field = field;
+        }
+
+        @Override
+        Object get(Object bean) {
+            try {
+                return field.get(bean);
+            }
+            catch (IllegalAccessException e) {
+                throw accessFailed(field.getName(), bean, e);
+            }
+        }
+
+        @Override
+        void set(Object bean, Object value) {
+            Object converted = convert(value, field.getType());
+            if (converted == null && field.getType().isPrimitive()) {
+                return;
+            }
+            try {
+                field.set(bean, converted);
+            }
+            catch (IllegalAccessException e) {
+                throw accessFailed(field.getName(), bean, e);
+            }
+        }
+    }
+
+    /** Accesses a feature path like <code>pet.name</code> using the generic Databene accessors. */
+    private static final class GraphFeatureAccessor extends FeatureAccessor {
+
+        private final String path;
+
+        GraphFeatureAccessor(String path) {
+            this.path = path;
+        }
+
+        @Override
+        Object get(Object bean) {
+            return GraphAccessor.getValue(path, bean);
+        }
+
+        @Override
+        void set(Object bean, Object value) {
+            AnyMutator.setValue(bean, path, value, true, true);
+        }
+    }
+
+}
@@ -19,6 +19,8 @@ import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 
 import org.aludratest.content.flat.FlatFileColumn;
@@ -49,6 +51,9 @@ public class FlatFileBeanReader implements Closeable {
      *  and FlatFileBean creation is delegated. */
     private RowParser rowParser;
 
+    /** The index of the rows, if it has been created by {@link #indexRows(String...)}. */
+    private FlatFileRowIndex index;
+
     /** Constructor of the WebdecsBeanFlatFileReader.
      *  @param reader the reader that provides the flat file's character data.
      *  @param defaultLocale the default locale to use for number and date formats.
@@ -77,11 +82,56 @@ public class FlatFileBeanReader implements Closeable {
             return null; // reached end of data
         }
         LOGGER.debug("Imported data row: {}", rowData);
-        Object bean = rowParser.parseRow(rowData);
-        if (!(bean instanceof FlatFileBeanData)) {
-            throw new AutomationException("Flat file bean type does not inherit " + FlatFileBeanData.class);
+        return toFlatFileBean(rowParser.parseRow(rowData));
+    }
+
+    /** Reads all remaining rows of the flat file and maps them to FlatFileBeans. Large files are split into chunks
+     * which are parsed in parallel, see {@link RowParser#parseRows(List, int)}.
+     * @param threadCount the maximum number of threads to use for parsing
+     * @return the remaining rows mapped to JavaBeans, in file order
+     * @throws IOException if row reading fails */
+    public List<FlatFileBeanData> readAllRows(int threadCount) throws IOException {
+        if (this.reader == null) {
+            throw new TechnicalException("Reader has already been closed: " + this);
         }
-        return (FlatFileBeanData) bean;
+        List<String> rows = new ArrayList<String>();
+        String rowData;
+        while ((rowData = reader.readLine()) != null) {
+            rows.add(rowData);
+        }
+        LOGGER.debug("Imported {} data rows", rows.size());
+        List<FlatFileBeanData> result = new ArrayList<FlatFileBeanData>(rows.size());
+        for (Object bean : rowParser.parseRows(rows, threadCount)) {
+            result.add(toFlatFileBean(bean));
+        }
+        return result;
+    }
+
+    /** Reads all remaining rows of the flat file into an in-memory index, which allows for fetching them by row index or key
+     * without parsing other rows. The rows are parsed only when they are fetched.
+     * @param keyColumns the names of the columns which make up the key of a row
+     * @throws IOException if row reading fails */
+    public void indexRows(String... keyColumns) throws IOException {
+        if (this.reader == null) {
+            throw new TechnicalException("Reader has already been closed: " + this);
+        }
+        this.index = new FlatFileRowIndex(reader, rowParser, keyColumns);
+        LOGGER.debug("Indexed {} data rows", index.size());
+    }
+
+    /** Fetches a row from the index created by {@link #indexRows(String...)}.
+     * @param rowIndex the 0-based index of the row, relative to the first indexed row
+     * @return the row mapped to a JavaBean */
+    public FlatFileBeanData getRow(int rowIndex) {
+        return toFlatFileBean(getIndex().getRow(rowIndex));
+    }
+
+    /** Finds a row by its key in the index created by {@link #indexRows(String...)}.
+     * @param keyValues the values of the key columns
+     * @return the first row with the given key mapped to a JavaBean, or <code>null</code> if there is no such row */
+    public FlatFileBeanData findRow(Object... keyValues) {
+        Object bean = getIndex().findRow(keyValues);
+        return bean == null ? null : toFlatFileBean(bean);
     }
 
     /** Closes the {@link #reader} and sets it to null. */
@@ -93,6 +143,20 @@ public class FlatFileBeanReader implements Closeable {
         }
     }
 
+    private FlatFileRowIndex getIndex() {
+        if (this.index == null) {
+            throw new AutomationException("Rows have not been indexed: " + this);
+        }
+        return this.index;
+    }
+
+    private static FlatFileBeanData toFlatFileBean(Object bean) {
+        if (!(bean instanceof FlatFileBeanData)) {
+            throw new AutomationException("Flat file bean type does not inherit " + FlatFileBeanData.class);
+        }
+        return (FlatFileBeanData) bean;
+    }
+
     /** Wraps a {@link Reader} with a {@link BufferedReader} if it is no instance of BufferedReader.
      *  @return a BufferedReader that provides the content of the Reader provided. */
     private static BufferedReader bufferedReader(Reader reader) {
@@ -18,13 +18,15 @@ package org.aludratest.content.flat.webdecs;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import org.databene.commons.IOUtil;
+import org.databene.commons.SystemInfo;
 import org.databene.formats.fixedwidth.FixedWidthColumnDescriptor;
 import org.databene.formats.fixedwidth.FixedWidthRowTypeDescriptor;
-import org.databene.formats.fixedwidth.MultiTypeBeanFixedWidthWriter;
 
 
 /**
@@ -36,46 +38,66 @@ public class FlatFileBeanWriter implements Closeable {
     /** The default locale to use for number and date formats */
     private Locale defaultLocale;
 
-    /** Internally used writer */
-    private MultiTypeBeanFixedWidthWriter writer;
+    /** The writer to send the formatted character data to */
+    private Writer out;
+
+    /** Maps simple class names to explicitly configured row formats */
+    private Map<String, FixedWidthRowTypeDescriptor> rowFormats;
+
+    /** Maps bean classes to the codecs for their rows */
+    private Map<Class<?>, FlatFileBeanCodec> codecs;
 
     /**
-     * Constructor which instantiates the internal writer and forwards the argument to it.
+     * Constructor which configures the writer with the target writer and optional row formats.
      * @param out the writer to send the formatted character data to
      * @param defaultLocale the default locale to use for formatting numbers and dates
      * @param rowFormats the row formats to apply
      */
     public FlatFileBeanWriter(Writer out, Locale defaultLocale, List<FixedWidthRowTypeDescriptor> rowFormats) {
-        this.writer = new MultiTypeBeanFixedWidthWriter(out, rowFormats);
+        this.out = out;
         this.defaultLocale = defaultLocale;
+        this.rowFormats = new HashMap<String, FixedWidthRowTypeDescriptor>();
+        if (rowFormats != null) {
+            for (FixedWidthRowTypeDescriptor rowFormat : rowFormats) {
+                this.rowFormats.put(rowFormat.getName(), rowFormat);
+            }
+        }
+        this.codecs = new HashMap<Class<?>, FlatFileBeanCodec>();
     }
 
     /** Chooses the row format by the bean class, formats the bean graph elements accordingly and writes them to the output stream.
      * @param bean the Java object to export
      * @throws IOException if file output fails */
     public void writeRow(Object bean) throws IOException {
-        String simpleBeanClassName = bean.getClass().getSimpleName();
-        if (writer.getRowFormat(simpleBeanClassName) == null) {
-            defineRowFormatByAnnotations(bean);
+        if (bean == null) {
+            throw new IllegalArgumentException("bean is null");
         }
-        this.writer.write(bean);
+        out.write(codecFor(bean.getClass()).format(bean));
+        out.write(SystemInfo.getLineSeparator());
     }
 
     /** Closes the internal writer. */
     @Override
     public void close() {
-        IOUtil.close(this.writer);
+        IOUtil.close(this.out);
     }
 
     // private helpers -------------------------------------------------------------------------------------------------
 
-    /** Parses a FlatFileBean's attribute annotations into
-     *  an array of {@link FixedWidthColumnDescriptor}s
-     *  and configures the {@link #writer} accordingly. */
-    private void defineRowFormatByAnnotations(Object bean) {
-        Class<? extends Object> beanClass = bean.getClass();
-        FixedWidthRowTypeDescriptor formats = AnnotationUtil.parseFlatFileColumns(beanClass, defaultLocale);
-        writer.addRowFormat(beanClass.getSimpleName(), formats);
+    /** Provides the codec for a bean class. If no row format has been configured
+     *  for the class, its attribute annotations are parsed into
+     *  an array of {@link FixedWidthColumnDescriptor}s. */
+    private FlatFileBeanCodec codecFor(Class<?> beanClass) {
+        FlatFileBeanCodec codec = codecs.get(beanClass);
+        if (codec == null) {
+            FixedWidthRowTypeDescriptor format = rowFormats.get(beanClass.getSimpleName());
+            if (format == null) {
+                format = AnnotationUtil.parseFlatFileColumns(beanClass, defaultLocale);
+            }
+            codec = new FlatFileBeanCodec(beanClass, format);
+            codecs.put(beanClass, codec);
+        }
+        return codec;
     }
 
 }
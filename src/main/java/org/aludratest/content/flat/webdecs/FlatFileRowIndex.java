@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.content.flat.webdecs;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.aludratest.exception.AutomationException;
+
+/** In-memory index over the rows of a flat file. The rows are kept as unparsed text and are only parsed when they are fetched,
+ * so fetching a row by its index or by its key does not require parsing any other row. Rows are keyed by the unparsed text of
+ * one or more key columns; rows whose type does not declare all key columns can only be fetched by their index. If several
+ * rows have the same key, the first one is found. <br>
+ * <br>
+ * This class is not thread-safe.
+ *
+ * @author agent */
+final class FlatFileRowIndex {
+
+    private final RowParser rowParser;
+
+    private final String[] keyColumns;
+
+    private final List<String> rows = new ArrayList<String>();
+
+    /** Maps the row classes to the key column indexes of their row format, or <code>null</code> if the class is not keyed. */
+    private final Map<Class<?>, int[]> keyColumnIndexes = new HashMap<Class<?>, int[]>();
+
+    /** Maps the row classes to the row indexes by key. */
+    private final Map<Class<?>, Map<List<String>, Integer>> keys = new HashMap<Class<?>, Map<List<String>, Integer>>();
+
+    /** Creates an index by reading all remaining rows of a flat file.
+     * @param reader the reader providing the rows
+     * @param rowParser the parser to determine the row types and parse the rows
+     * @param keyColumns the names of the key columns
+     * @throws IOException if reading the rows fails */
+    FlatFileRowIndex(BufferedReader reader, RowParser rowParser, String... keyColumns) throws IOException {
+        this.rowParser = rowParser;
+        this.keyColumns = keyColumns.clone();
+        String rowData;
+        while ((rowData = reader.readLine()) != null) {
+            addRow(rowData);
+        }
+    }
+
+    /** @return the number of indexed rows */
+    int size() {
+        return rows.size();
+    }
+
+    /** Parses the row with the given index.
+     * @param rowIndex the 0-based index of the row, relative to the first indexed row
+     * @return the parsed row */
+    Object getRow(int rowIndex) {
+        if (rowIndex < 0 || rowIndex >= rows.size()) {
+            throw new AutomationException("Row index " + rowIndex + " out of range, the index holds " + rows.size() + " rows");
+        }
+        return rowParser.parseRow(rows.get(rowIndex));
+    }
+
+    /** Finds and parses the first row with the given key.
+     * @param keyValues the values of the key columns, in the order of the key columns
+     * @return the parsed row, or <code>null</code> if no row has the given key */
+    Object findRow(Object... keyValues) {
+        if (keyValues.length != keyColumns.length) {
+            throw new AutomationException("Expected " + keyColumns.length + " key values for " + Arrays.toString(keyColumns)
+                    + ", but found " + keyValues.length);
+        }
+        int result = -1;
+        for (Map.Entry<Class<?>, Map<List<String>, Integer>> entry : keys.entrySet()) {
+            FlatFileBeanCodec codec = rowParser.codecFor(entry.getKey());
+            int[] columnIndexes = keyColumnIndexes.get(entry.getKey());
+            String[] key = new String[columnIndexes.length];
+            for (int i = 0; i < columnIndexes.length; i++) {
+                key[i] = codec.formatColumn(columnIndexes[i], keyValues[i]);
+            }
+            Integer rowIndex = entry.getValue().get(Arrays.asList(key));
+            if (rowIndex != null && (result < 0 || rowIndex.intValue() < result)) {
+                result = rowIndex.intValue();
+            }
+        }
+        return result < 0 ? null : getRow(result);
+    }
+
+    // helper methods ----------------------------------------------------------
+
+    private void addRow(String rowData) {
+        int rowIndex = rows.size();
+        rows.add(rowData);
+        Class<?> beanClass = rowParser.beanClassFor(rowData);
+        if (!keyColumnIndexes.containsKey(beanClass)) {
+            registerRowClass(beanClass);
+        }
+        int[] columnIndexes = keyColumnIndexes.get(beanClass);
+        if (columnIndexes == null) {
+            return;
+        }
+        FlatFileBeanCodec codec = rowParser.codecFor(beanClass);
+        String[] key = new String[columnIndexes.length];
+        for (int i = 0; i < columnIndexes.length; i++) {
+            key[i] = codec.columnText(rowData, columnIndexes[i]);
+        }
+        Map<List<String>, Integer> classKeys = keys.get(beanClass);
+        List<String> keyList = Arrays.asList(key);
+        if (!classKeys.containsKey(keyList)) {
+            classKeys.put(keyList, Integer.valueOf(rowIndex));
+        }
+    }
+
+    private void registerRowClass(Class<?> beanClass) {
+        FlatFileBeanCodec codec = rowParser.codecFor(beanClass);
+        int[] columnIndexes = new int[keyColumns.length];
+        for (int i = 0; i < keyColumns.length; i++) {
+            columnIndexes[i] = codec.columnIndex(keyColumns[i]);
+            if (columnIndexes[i] < 0) {
+                keyColumnIndexes.put(beanClass, null);
+                return;
+            }
+        }
+        keyColumnIndexes.put(beanClass, columnIndexes);
+        keys.put(beanClass, new HashMap<List<String>, Integer>());
+    }
+
+}
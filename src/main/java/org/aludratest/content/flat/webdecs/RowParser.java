@@ -20,10 +20,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.aludratest.content.flat.data.RowTypeData;
-import org.databene.formats.fixedwidth.FixedWidthColumnDescriptor;
-import org.databene.formats.fixedwidth.FixedWidthRowTypeDescriptor;
+import org.aludratest.exception.TechnicalException;
 
 /**
  * Manages a collection of {@link RowTypeData}s and 
@@ -34,21 +38,24 @@ import org.databene.formats.fixedwidth.FixedWidthRowTypeDescriptor;
  */
 public class RowParser {
 
+    /** The minimum number of rows parsed by one thread in {@link #parseRows(List, int)}. */
+    private static final int MIN_CHUNK_SIZE = 1000;
+
     /** The default locale to use for numbers and dates. */
     private Locale defaultLocale;
 
     /** The complete list  */
     private List<RowTypeData> rowTypes;
 
-    /** Maps simple class names to descriptor arrays of their column formats. */
-    private Map<String, FixedWidthRowTypeDescriptor> columnFormats;
+    /** Maps bean classes to the codecs for their rows. */
+    private Map<Class<?>, FlatFileBeanCodec> codecs;
 
     /** Constructor requiring the {@link #defaultLocale}. 
      *  @param defaultLocale the locale to use for parsing numbers and dates */
     public RowParser(Locale defaultLocale) {
         this.defaultLocale = defaultLocale;
         this.rowTypes = new ArrayList<RowTypeData>();
-        this.columnFormats = new HashMap<String, FixedWidthRowTypeDescriptor>();
+        this.codecs = new HashMap<Class<?>, FlatFileBeanCodec>();
     }
 
     /** Adds a {@link RowTypeData} to the parser instance. 
@@ -61,25 +68,95 @@ public class RowParser {
      * @param rowData the character data of the flat file row to parse 
      * @return a FlatFileBean instance representing the parsed flat file row data */
     public Object parseRow(String rowData) {
+        return codecFor(beanClassFor(rowData)).parse(rowData);
+    }
+
+    /** Parses a list of flat file rows. If more than one thread is requested and the list is large enough,
+     *  it is split into chunks which are parsed in parallel, each by a separate copy of this parser.
+     *  @param rows the character data of the flat file rows to parse
+     *  @param threadCount the maximum number of threads to use
+     *  @return the FlatFileBean instances representing the rows, in the order of the rows */
+    public List<Object> parseRows(List<String> rows, int threadCount) {
+        int chunkCount = Math.min(threadCount, rows.size() / MIN_CHUNK_SIZE);
+        if (chunkCount <= 1) {
+            return parseChunk(rows);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(chunkCount);
+        try {
+            List<Future<List<Object>>> chunks = new ArrayList<Future<List<Object>>>(chunkCount);
+            int chunkSize = (rows.size() + chunkCount - 1) / chunkCount;
+            for (int start = 0; start < rows.size(); start += chunkSize) {
+                final List<String> chunk = rows.subList(start, Math.min(start + chunkSize, rows.size()));
+                final RowParser parser = copy();
+                chunks.add(executor.submit(new Callable<List<Object>>() {
+                    @Override
+                    public List<Object> call() {
+                        return parser.parseChunk(chunk);
+                    }
+                }));
+            }
+            List<Object> result = new ArrayList<Object>(rows.size());
+            for (Future<List<Object>> chunk : chunks) {
+                result.addAll(chunk.get());
+            }
+            return result;
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new TechnicalException("Error parsing flat file rows", cause);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TechnicalException("Interrupted while parsing flat file rows", e);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Determines the bean class of a flat file row with the aid of its {@link #rowTypes}.
+     *  @param rowData the character data of the flat file row
+     *  @return the bean class of the row */
+    Class<?> beanClassFor(String rowData) {
         for (RowTypeData rowType : rowTypes) {
             Class<?> beanClass = rowType.beanClassFor(rowData);
             if (beanClass != null) {
-                FixedWidthRowTypeDescriptor format = columnFormatFor(beanClass);
-                return format.parseAsBean(rowData, beanClass);
+                return beanClass;
             }
         }
         throw new IllegalArgumentException("Unknown row type: " + rowData);
     }
 
-    /** parses the provided beanClass' annotations and provides the related flat file format 
-     *  as array of {@link FixedWidthColumnDescriptor}s. */
-    private FixedWidthRowTypeDescriptor columnFormatFor(Class<?> beanClass) {
-        FixedWidthRowTypeDescriptor format = columnFormats.get(beanClass.getSimpleName());
-        if (format == null) {
-            format = AnnotationUtil.parseFlatFileColumns(beanClass, defaultLocale);
-            columnFormats.put(beanClass.getSimpleName(), format);
+    /** Provides the codec for the provided beanClass, creating it from the
+     *  beanClass' annotations on first use. */
+    FlatFileBeanCodec codecFor(Class<?> beanClass) {
+        FlatFileBeanCodec codec = codecs.get(beanClass);
+        if (codec == null) {
+            codec = new FlatFileBeanCodec(beanClass, AnnotationUtil.parseFlatFileColumns(beanClass, defaultLocale));
+            codecs.put(beanClass, codec);
         }
-        return format;
+        return codec;
+    }
+
+    // private helpers ---------------------------------------------------------
+
+    /** Parses the rows sequentially with this parser. */
+    private List<Object> parseChunk(List<String> rows) {
+        List<Object> result = new ArrayList<Object>(rows.size());
+        for (String row : rows) {
+            result.add(parseRow(row));
+        }
+        return result;
+    }
+
+    /** Creates a parser with the same configuration, but its own codecs, for use by another thread. */
+    private RowParser copy() {
+        RowParser copy = new RowParser(defaultLocale);
+        copy.rowTypes.addAll(rowTypes);
+        return copy;
     }
 
 }
@@ -20,6 +20,7 @@ import java.io.Reader;
 import java.io.Serializable;
 import java.io.Writer;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -130,6 +131,49 @@ public class WebdecsFlatContent implements FlatContent {
         }
     }
 
+    /** Reads all remaining rows of a flat file, parsing large files in parallel chunks.
+     *  @param readerId the id of the reader
+     *  @param threadCount the maximum number of threads to use for parsing
+     *  @return the remaining rows as Java objects */
+    @Override
+    public List<FlatFileBeanData> readAllRows(Object readerId, int threadCount) {
+        try {
+            return getReader(readerId, true).readAllRows(threadCount);
+        } catch (IOException e) {
+            throw new TechnicalException("Error reading beans from reader #" + readerId, e);
+        }
+    }
+
+    /** Reads all remaining rows of a flat file into an index for fetching them by row index or key.
+     *  @param readerId the id of the reader
+     *  @param keyColumns the names of the columns which make up the key of a row */
+    @Override
+    public void indexRows(Object readerId, String... keyColumns) {
+        try {
+            getReader(readerId, true).indexRows(keyColumns);
+        } catch (IOException e) {
+            throw new TechnicalException("Error indexing rows of reader #" + readerId, e);
+        }
+    }
+
+    /** Fetches an indexed row by its index.
+     *  @param readerId the id of the reader
+     *  @param rowIndex the 0-based index of the row, relative to the first indexed row
+     *  @return the row as Java object */
+    @Override
+    public FlatFileBeanData getRow(Object readerId, int rowIndex) {
+        return getReader(readerId, true).getRow(rowIndex);
+    }
+
+    /** Finds an indexed row by its key.
+     *  @param readerId the id of the reader
+     *  @param keyValues the values of the key columns
+     *  @return the first row with the given key as Java object, or null if there is no such row */
+    @Override
+    public FlatFileBeanData findRow(Object readerId, Object... keyValues) {
+        return getReader(readerId, true).findRow(keyValues);
+    }
+
     /** Closes a reader.
      *  @param readerId the id of the reader to close */
     @Override
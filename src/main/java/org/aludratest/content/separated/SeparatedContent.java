@@ -64,6 +64,24 @@ public interface SeparatedContent extends ContentHandler {
      *  @return the id of the new reader */
     SeparatedFileBeanData readRow(Object readerId);
 
+    /** Reads all remaining rows of a separated file into an index, which allows for
+     *  fetching them repeatedly by row index or key without re-reading the file.
+     *  @param readerId the id of the reader
+     *  @param keyColumns the names of the columns which make up the key of a row */
+    void indexRows(Object readerId, String... keyColumns);
+
+    /** Fetches a row from the index created by {@link #indexRows(Object, String...)}.
+     *  @param readerId the id of the reader
+     *  @param rowIndex the 0-based index of the row, relative to the first indexed row
+     *  @return the row as Java object */
+    SeparatedFileBeanData getRow(Object readerId, int rowIndex);
+
+    /** Finds a row by its key in the index created by {@link #indexRows(Object, String...)}.
+     *  @param readerId the id of the reader
+     *  @param keyValues the texts of the key columns, in the order of the key columns
+     *  @return the first row with the given key as Java object, or null if there is no such row */
+    SeparatedFileBeanData findRow(Object readerId, String... keyValues);
+
     /** Closes a reader.
      *  @param readerId the id of the reader to close */
     void closeReader(Object readerId);
@@ -16,8 +16,10 @@
 package org.aludratest.content.separated.util;
 
 import java.lang.reflect.Field;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.aludratest.content.separated.SeparatedColumn;
 import org.aludratest.exception.AutomationException;
@@ -28,15 +30,32 @@ import org.aludratest.exception.AutomationException;
  */
 public class SeparatedUtil {
 
+    /** Caches the feature names of each analyzed bean class. The classes are weakly referenced, so they and their class loaders
+     * can be unloaded. */
+    private static final Map<Class<?>, String[]> FEATURE_NAMES = Collections
+            .synchronizedMap(new WeakHashMap<Class<?>, String[]>());
+
     private SeparatedUtil() { }
 
     /**
      * Analyzes a bean class with its {@link SeparatedColumn} annotations 
      * and determines the column order of a separated file for persisting and reading data.
+     * The result of the analysis is cached per class.
      * @param beanType the bean class to analyze
      * @return the names of the features at the 0-based index of the associated column.
      */
     public static String[] featureNames(Class<?> beanType) {
+        String[] names = FEATURE_NAMES.get(beanType);
+        if (names == null) {
+            names = analyzeFeatureNames(beanType);
+            FEATURE_NAMES.put(beanType, names);
+        }
+        return names.clone();
+    }
+
+    // private helpers ---------------------------------------------------------
+
+    private static String[] analyzeFeatureNames(Class<?> beanType) {
         Map<Integer, ColumnConfig> columns = new HashMap<Integer, ColumnConfig>();
         for (Field attribute : beanType.getDeclaredFields()) {
             SeparatedColumn annotation = attribute.getAnnotation(SeparatedColumn.class);
@@ -22,6 +22,7 @@ import java.io.Reader;
 
 import org.aludratest.content.separated.data.SeparatedFileBeanData;
 import org.aludratest.content.separated.util.SeparatedUtil;
+import org.aludratest.exception.AutomationException;
 import org.aludratest.exception.TechnicalException;
 import org.databene.commons.IOUtil;
 import org.databene.formats.DataContainer;
@@ -29,7 +30,10 @@ import org.databene.formats.csv.CSVToJavaBeanMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Reads data from a separated file.
+/** Reads data from a separated file. <br>
+ * Unlike {@link org.aludratest.content.flat.webdecs.FlatFileBeanReader#readAllRows(int)}, rows are always mapped sequentially:
+ * the Databene mutators which map the cells to bean features share an unsynchronized cache of property descriptors, so they
+ * must not be used by several threads at once.
  * @author Volker Bergmann
  * @param <E> Generic parameter to be set by final child classes to the child class itself */
 public class SeparatedFileReader<E extends SeparatedFileBeanData> implements Closeable {
@@ -39,13 +43,23 @@ public class SeparatedFileReader<E extends SeparatedFileBeanData> implements Clo
     /** the reader that provides the separated file's character data. */
     private CSVToJavaBeanMapper<E> rowIterator;
 
+    /** the type of Java objects to read */
+    private Class<E> beanType;
+
+    /** the names of the features at the 0-based index of the associated column */
+    private String[] featureNames;
+
+    /** the index of the rows, if it has been created by {@link #indexRows(String...)} */
+    private SeparatedFileRowIndex<E> index;
+
     /** Constructor of the SeparatedFileReader.
      * @param source the reader that provides the separated file's character data.
      * @param beanType the type of Java objects to read
      * @param separator the separator character to use
      * @throws IOException if opening the file fails */
     public SeparatedFileReader(Reader source, Class<E> beanType, char separator) throws IOException {
-        String[] featureNames = SeparatedUtil.featureNames(beanType);
+        this.beanType = beanType;
+        this.featureNames = SeparatedUtil.featureNames(beanType);
         this.rowIterator = new CSVToJavaBeanMapper<E>(bufferedReader(source), beanType, separator, null, featureNames);
     }
 
@@ -76,6 +90,32 @@ public class SeparatedFileReader<E extends SeparatedFileBeanData> implements Clo
         return rowData.getData();
     }
 
+    /** Reads all remaining rows of the separated file into an in-memory index, which allows for fetching them by row index or
+     * key without mapping other rows. The rows are mapped to beans only when they are fetched.
+     * @param keyColumns the names of the columns which make up the key of a row */
+    public void indexRows(String... keyColumns) {
+        SeparatedFileRowIndex<E> newIndex = new SeparatedFileRowIndex<E>(beanType, featureNames, keyColumns);
+        String[] cells;
+        while ((cells = readRaw()) != null) {
+            newIndex.addRow(cells);
+        }
+        this.index = newIndex;
+    }
+
+    /** Fetches a row from the index created by {@link #indexRows(String...)}.
+     * @param rowIndex the 0-based index of the row, relative to the first indexed row
+     * @return the row as {@link SeparatedFileBeanData} object */
+    public E getRow(int rowIndex) {
+        return getIndex().getRow(rowIndex);
+    }
+
+    /** Finds a row by its key in the index created by {@link #indexRows(String...)}.
+     * @param keyValues the texts of the key columns
+     * @return the first row with the given key, or <code>null</code> if there is no such row */
+    public E findRow(String... keyValues) {
+        return getIndex().findRow(keyValues);
+    }
+
     /** Closes the reader. */
     @Override
     public void close() throws IOException {
@@ -88,6 +128,13 @@ public class SeparatedFileReader<E extends SeparatedFileBeanData> implements Clo
 
     // private helper ----------------------------------------------------------
 
+    private SeparatedFileRowIndex<E> getIndex() {
+        if (this.index == null) {
+            throw new AutomationException("Rows have not been indexed: " + this);
+        }
+        return this.index;
+    }
+
     /** Wraps a {@link Reader} with a {@link BufferedReader} if it is no instance of BufferedReader.
      *  @return a BufferedReader that provides the content of the Reader provided. */
     private static BufferedReader bufferedReader(Reader reader) {
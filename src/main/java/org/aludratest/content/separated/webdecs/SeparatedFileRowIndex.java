@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.content.separated.webdecs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.aludratest.content.separated.data.SeparatedFileBeanData;
+import org.aludratest.exception.AutomationException;
+import org.databene.commons.BeanUtil;
+import org.databene.commons.mutator.AnyMutator;
+
+/** In-memory index over the rows of a separated file. The rows are kept as unparsed cells and are only mapped to beans when they
+ * are fetched, so fetching a row by its index or by its key does not require mapping any other row. Rows are keyed by the
+ * text of one or more key columns. If several rows have the same key, the first one is found. <br>
+ * <br>
+ * This class is not thread-safe.
+ *
+ * @param <E> the type of the beans to provide
+ * @author agent */
+final class SeparatedFileRowIndex<E extends SeparatedFileBeanData> {
+
+    private final Class<E> beanType;
+
+    private final String[] featureNames;
+
+    private final int[] keyColumnIndexes;
+
+    private final List<String[]> rows = new ArrayList<String[]>();
+
+    private final Map<List<String>, Integer> keys = new HashMap<List<String>, Integer>();
+
+    /** Creates an empty index.
+     * @param beanType the type of the beans to provide
+     * @param featureNames the names of the bean features at the index of the associated column
+     * @param keyColumns the names of the key columns */
+    SeparatedFileRowIndex(Class<E> beanType, String[] featureNames, String... keyColumns) {
+        this.beanType = beanType;
+        this.featureNames = featureNames;
+        this.keyColumnIndexes = new int[keyColumns.length];
+        List<String> names = Arrays.asList(featureNames);
+        for (int i = 0; i < keyColumns.length; i++) {
+            keyColumnIndexes[i] = names.indexOf(keyColumns[i]);
+            if (keyColumnIndexes[i] < 0) {
+                throw new AutomationException(beanType.getName() + " does not declare a separated column '" + keyColumns[i] + "'");
+            }
+        }
+    }
+
+    /** Adds a row to the index.
+     * @param cells the unparsed cells of the row */
+    void addRow(String[] cells) {
+        String[] key = new String[keyColumnIndexes.length];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = keyColumnIndexes[i] < cells.length ? cells[keyColumnIndexes[i]] : null;
+        }
+        List<String> keyList = Arrays.asList(key);
+        if (!keys.containsKey(keyList)) {
+            keys.put(keyList, Integer.valueOf(rows.size()));
+        }
+        rows.add(cells);
+    }
+
+    /** @return the number of indexed rows */
+    int size() {
+        return rows.size();
+    }
+
+    /** Maps the row with the given index to a bean.
+     * @param rowIndex the 0-based index of the row, relative to the first indexed row
+     * @return the row as bean */
+    E getRow(int rowIndex) {
+        if (rowIndex < 0 || rowIndex >= rows.size()) {
+            throw new AutomationException("Row index " + rowIndex + " out of range, the index holds " + rows.size() + " rows");
+        }
+        return toBean(rows.get(rowIndex));
+    }
+
+    /** Finds the first row with the given key and maps it to a bean.
+     * @param keyValues the texts of the key columns, in the order of the key columns
+     * @return the row as bean, or <code>null</code> if no row has the given key */
+    E findRow(String... keyValues) {
+        if (keyValues.length != keyColumnIndexes.length) {
+            throw new AutomationException("Expected " + keyColumnIndexes.length + " key values, but found " + keyValues.length);
+        }
+        Integer rowIndex = keys.get(Arrays.asList(keyValues));
+        return rowIndex == null ? null : getRow(rowIndex.intValue());
+    }
+
+    // helper methods ----------------------------------------------------------
+
+    /** Maps the cells of a row to a new bean the same way as the Databene CSV mapper does. */
+    private E toBean(String[] cells) {
+        E bean = BeanUtil.newInstance(beanType);
+        for (int i = 0; i < Math.min(cells.length, featureNames.length); i++) {
+            String value = cells[i];
+            AnyMutator.setValue(bean, featureNames[i], value != null && value.length() == 0 ? null : value, true, true);
+        }
+        return bean;
+    }
+
+}
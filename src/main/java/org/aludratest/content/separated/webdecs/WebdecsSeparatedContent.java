@@ -114,6 +114,32 @@ public class WebdecsSeparatedContent implements SeparatedContent {
         return getReader(readerId, true).readRow();
     }
 
+    /** Reads all remaining rows of a separated file into an index for fetching them by row index or key.
+     *  @param readerId the id of the reader
+     *  @param keyColumns the names of the columns which make up the key of a row */
+    @Override
+    public void indexRows(Object readerId, String... keyColumns) {
+        getReader(readerId, true).indexRows(keyColumns);
+    }
+
+    /** Fetches an indexed row by its index.
+     *  @param readerId the id of the reader
+     *  @param rowIndex the 0-based index of the row, relative to the first indexed row
+     *  @return the row as Java object */
+    @Override
+    public SeparatedFileBeanData getRow(Object readerId, int rowIndex) {
+        return getReader(readerId, true).getRow(rowIndex);
+    }
+
+    /** Finds an indexed row by its key.
+     *  @param readerId the id of the reader
+     *  @param keyValues the texts of the key columns
+     *  @return the first row with the given key as Java object, or null if there is no such row */
+    @Override
+    public SeparatedFileBeanData findRow(Object readerId, String... keyValues) {
+        return getReader(readerId, true).findRow(keyValues);
+    }
+
     /** Closes a reader.
      *  @param readerId the id of the reader to close */
     @Override
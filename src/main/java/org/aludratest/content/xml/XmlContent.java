@@ -17,6 +17,7 @@ package org.aludratest.content.xml;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -81,6 +82,15 @@ public interface XmlContent extends ContentHandler {
      *         parameter */
     Object queryXPath(Document document, String expression, QName returnType);
 
+    /** Performs multiple XPath queries on the same XML document in one call. Like all XPath queries, the expressions are compiled
+     * only once per thread and reused afterwards.
+     * @param document the XML document to query
+     * @param expressions the XPath queries to perform
+     * @param returnType the expected return type of all queries, one of the constants of
+     *            {@link javax.xml.xpath.XPathConstants}
+     * @return a map with the query results, keyed by expression, in the order of the given expressions */
+    Map<String, Object> queryXPaths(Document document, Collection<String> expressions, QName returnType);
+
     /** Sets the text of an element that is found in a document using an XPath expression.
      * @param document the document that holds the element
      * @param elementXPath the xpath expression pointing to the element
@@ -117,4 +127,14 @@ public interface XmlContent extends ContentHandler {
      * @return a list of the differences */
     AggregateXmlDiff compare(Document expected, Document actual, XmlComparisonSettings settings);
 
+    /** Reports the differences between two XML documents which are read from streams. The documents are compared while they are
+     * parsed, so only parts of the documents are held in memory, which allows comparing very large documents. Tolerances and key
+     * expressions must use simple location paths for this; other XPath expressions cause a comparison of the fully parsed
+     * documents.
+     * @param expected the stream providing the expected document
+     * @param actual the stream providing the actual document
+     * @param settings the settings for XML comparison
+     * @return a list of the differences */
+    AggregateXmlDiff compare(InputStream expected, InputStream actual, XmlComparisonSettings settings);
+
 }
@@ -15,14 +15,26 @@
  */
 package org.aludratest.content.xml.impl;
 
+import java.io.CharArrayReader;
+import java.io.CharArrayWriter;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Reader;
+import java.net.URL;
+import java.net.URISyntaxException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
 import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
 
@@ -32,13 +44,15 @@ import org.aludratest.content.xml.XmlComparisonSettings;
 import org.aludratest.content.xml.XmlContent;
 import org.aludratest.content.xml.util.DatabeneXmlComparisonSettings;
 import org.aludratest.content.xml.util.DatabeneXmlUtil;
+import org.aludratest.content.xml.util.StreamingXmlComparator;
+import org.aludratest.content.xml.util.XPathCache;
 import org.aludratest.exception.AutomationException;
 import org.aludratest.exception.TechnicalException;
+import org.aludratest.util.MostRecentUseCache;
 import org.databene.commons.Context;
 import org.databene.commons.IOUtil;
 import org.databene.commons.context.DefaultContext;
 import org.databene.commons.xml.XMLUtil;
-import org.databene.commons.xml.XPathUtil;
 import org.databene.formats.compare.AggregateDiff;
 import org.databene.formats.script.Script;
 import org.databene.formats.script.freemarker.FreeMarkerScriptFactory;
@@ -46,13 +60,49 @@ import org.databene.formats.xml.compare.XMLComparator;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
 
 /**
- * XML {@link ContentHandler}.
+ * XML {@link ContentHandler}. Compiled FreeMarker templates are cached (keyed by template URI, encoding and modification time),
+ * and templates are rendered into a reusable character buffer which is parsed directly, without an intermediate String. XPath
+ * expressions are compiled once per thread and taken from the {@link XPathCache} afterwards. Documents provided as streams are
+ * compared using the {@link StreamingXmlComparator}.
  * @author Volker Bergmann
  */
 public class XmlContentImpl implements XmlContent {
 
+    private static final int TEMPLATE_CACHE_SIZE = 100;
+
+    private static final MostRecentUseCache<TemplateSource, Script> TEMPLATE_CACHE = new MostRecentUseCache<TemplateSource, Script>(
+            new MostRecentUseCache.Factory<TemplateSource, Script>() {
+                @Override
+                public Script create(TemplateSource key) {
+                    return key.compile();
+                }
+            }, TEMPLATE_CACHE_SIZE, new MostRecentUseCache.HashCalculator<TemplateSource>() {
+                @Override
+                public String hash(TemplateSource object) {
+                    return object.getHash();
+                }
+            });
+
+    /* DocumentBuilders are not thread-safe, but expensive to create */
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = new ThreadLocal<DocumentBuilder>() {
+        @Override
+        protected DocumentBuilder initialValue() {
+            DocumentBuilderFactory factory = XMLUtil.createDocumentBuilderFactory(Thread.currentThread().getContextClassLoader());
+            factory.setNamespaceAware(true);
+            try {
+                return factory.newDocumentBuilder();
+            }
+            catch (ParserConfigurationException e) {
+                throw new TechnicalException("Could not create XML document builder", e);
+            }
+        }
+    };
+
     // XMLInteraction interface implementation --------------------------------
 
     @Override
@@ -90,7 +140,8 @@ public class XmlContentImpl implements XmlContent {
     @Override
     public String queryElementText(Document document, String elementExpression) {
         try {
-            return XPathUtil.queryElementText(document, elementExpression);
+            Element element = (Element) XPathCache.evaluate(document, elementExpression, XPathConstants.NODE);
+            return (element != null ? element.getTextContent() : null);
         }
         catch (Exception e) {
             throw new TechnicalException("Error querying XML document", e);
@@ -105,7 +156,12 @@ public class XmlContentImpl implements XmlContent {
     @Override
     public String queryAttribute(Document document, String elementExpression, String attributeName) {
         try {
-            return XPathUtil.queryAttribute(document, elementExpression, attributeName);
+            Element element = (Element) XPathCache.evaluate(document, elementExpression, XPathConstants.NODE);
+            if (element == null) {
+                return null;
+            }
+            NodeList attributes = (NodeList) XPathCache.evaluate(element, "@" + attributeName, XPathConstants.NODESET);
+            return (attributes.getLength() == 0 ? null : attributes.item(0).getTextContent());
         }
         catch (Exception e) {
             throw new TechnicalException("Error querying XML document", e);
@@ -119,7 +175,7 @@ public class XmlContentImpl implements XmlContent {
     @Override
     public Element queryElement(Document document, String expression) {
         try {
-            return XPathUtil.queryElement(document, expression);
+            return (Element) XPathCache.evaluate(document, expression, XPathConstants.NODE);
         }
         catch (Exception e) {
             throw new TechnicalException("Error querying XML document", e);
@@ -133,7 +189,7 @@ public class XmlContentImpl implements XmlContent {
     @Override
     public List<Element> queryElements(Document document, String expression) {
         try {
-            return XPathUtil.queryElements(document, expression);
+            return XMLUtil.toElementList((NodeList) XPathCache.evaluate(document, expression, XPathConstants.NODESET));
         }
         catch (Exception e) {
             throw new TechnicalException("Error querying XML document", e);
@@ -143,12 +199,26 @@ public class XmlContentImpl implements XmlContent {
     @Override
     public Object queryXPath(Document document, String expression, QName returnType) {
         try {
-            return XPathUtil.query(document, expression, returnType);
+            return XPathCache.evaluate(document, expression, returnType);
         } catch (XPathExpressionException e) {
             throw new TechnicalException("Error querying XML document", e);
         }
     }
 
+    @Override
+    public Map<String, Object> queryXPaths(Document document, Collection<String> expressions, QName returnType) {
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        for (String expression : expressions) {
+            try {
+                result.put(expression, XPathCache.evaluate(document, expression, returnType));
+            }
+            catch (XPathExpressionException e) {
+                throw new TechnicalException("Error querying XML document with XPath " + expression, e);
+            }
+        }
+        return result;
+    }
+
     // document manipulation ---------------------------------------------------
 
     @Override
@@ -180,20 +250,31 @@ public class XmlContentImpl implements XmlContent {
     public Document createDocument(String templateUri, String templateEncoding, Map<String, Object> variables) {
         try {
             // prepare generator
-            FreeMarkerScriptFactory factory = new FreeMarkerScriptFactory(Locale.ENGLISH);
-            String templateText = IOUtil.getContentOfURI(templateUri, templateEncoding);
-            Script script = factory.parseText(templateText);
+            Script script = TEMPLATE_CACHE.get(new TemplateSource(templateUri, templateEncoding));
             Context context = new DefaultContext(variables);
             // apply template
-            String xmlText = String.valueOf(script.evaluate(context));
+            RenderBuffer buffer = new RenderBuffer();
+            script.execute(context, buffer);
             // return result
-            return XMLUtil.parseString(xmlText);
+            return parse(buffer.toReader());
         }
         catch (IOException e) {
             throw new TechnicalException("Error creating XML document", e);
         }
+        catch (SAXException e) {
+            throw new TechnicalException("Error creating XML document", e);
+        }
     }
 
+    private static Document parse(Reader reader) throws IOException, SAXException {
+        DocumentBuilder builder = DOCUMENT_BUILDER.get();
+        try {
+            return builder.parse(new InputSource(reader));
+        }
+        finally {
+            builder.reset();
+        }
+    }
 
     // comparing documents -----------------------------------------------------
 
@@ -219,4 +300,90 @@ public class XmlContentImpl implements XmlContent {
         }
     }
 
+    @Override
+    public AggregateXmlDiff compare(InputStream expected, InputStream actual, XmlComparisonSettings settings) {
+        StreamingXmlComparator comparator = new StreamingXmlComparator((DatabeneXmlComparisonSettings) settings);
+        if (!comparator.isStreamable()) {
+            return compare(readDocument(expected), readDocument(actual), settings);
+        }
+        try {
+            return comparator.compare(expected, actual);
+        }
+        catch (XMLStreamException e) {
+            throw new AutomationException("XML comparison failed", e);
+        }
+    }
+
+    // helper classes ----------------------------------------------------------
+
+    /** Character buffer for rendered templates, which can be read without copying its content. */
+    private static final class RenderBuffer extends CharArrayWriter {
+
+        RenderBuffer() {
+            super(4096);
+        }
+
+        Reader toReader() {
+            return new CharArrayReader(buf, 0, count);
+        }
+    }
+
+    /** Identifies the source of a template. If the modification time of the source can be determined, the source is identified by
+     * URI, encoding and modification time, so the template is only read and compiled again when it has been modified. Otherwise,
+     * the template text itself becomes part of the identification. */
+    private static final class TemplateSource {
+
+        private final String uri;
+
+        private final String encoding;
+
+        private final long lastModified;
+
+        private String text;
+
+        TemplateSource(String uri, String encoding) throws IOException {
+            this.uri = uri;
+            this.encoding = encoding;
+            this.lastModified = getLastModified(uri);
+            if (lastModified <= 0) {
+                this.text = IOUtil.getContentOfURI(uri, encoding);
+            }
+        }
+
+        String getHash() {
+            return uri + "|" + encoding + "|" + (text == null ? String.valueOf(lastModified) : text);
+        }
+
+        Script compile() {
+            try {
+                String templateText = (text == null ? IOUtil.getContentOfURI(uri, encoding) : text);
+                return new FreeMarkerScriptFactory(Locale.ENGLISH).parseText(templateText);
+            }
+            catch (IOException e) {
+                throw new TechnicalException("Error reading XML template " + uri, e);
+            }
+        }
+
+        private static long getLastModified(String uri) throws IOException {
+            File file = new File(uri);
+            if (file.isFile()) {
+                return file.lastModified();
+            }
+            URL url = (uri.contains("://") ? new URL(uri) : Thread.currentThread().getContextClassLoader().getResource(uri));
+            if (url == null) {
+                return 0;
+            }
+            if ("file".equals(url.getProtocol())) {
+                try {
+                    return new File(url.toURI()).lastModified();
+                }
+                catch (URISyntaxException e) {
+                    return 0;
+                }
+            }
+            // modification time of jar entries is cheap to get, in contrast to remote resources
+            return "jar".equals(url.getProtocol()) ? url.openConnection().getLastModified() : 0;
+        }
+    }
+
 }
@@ -0,0 +1,1324 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.content.xml.util;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.Comment;
+import javax.xml.stream.events.ProcessingInstruction;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+
+import org.aludratest.content.xml.AggregateXmlDiff;
+import org.databene.commons.NullSafeComparator;
+import org.databene.commons.StringUtil;
+import org.databene.commons.xml.XMLUtil;
+import org.databene.formats.compare.DiffDetailType;
+import org.databene.formats.compare.KeyExpression;
+import org.databene.formats.compare.LocalDiffType;
+import org.w3c.dom.Document;
+
+/** Compares two XML documents while reading them with StAX, without building DOM trees of the documents. Both documents are
+ * walked in lockstep, and child nodes are compared by position as long as they are equal. Only the following parts are buffered:
+ * <ul>
+ * <li>the children of elements whose child elements need order-insensitive matching, i.e. elements to which a key expression or a
+ * tolerated move applies,</li>
+ * <li>a window of up to {@value #MAX_LOOKAHEAD_EVENTS} events of the following children of an element, to check if the children
+ * at the same position are equal, and to find the nearest pair of equal children after the child sequences of both documents
+ * diverged.</li>
+ * </ul>
+ * Buffered children of order-insensitive elements are matched by key (if a key expression applies) or by equal content, so moved,
+ * missing and unexpected elements are reported like by the DOM based comparison. Within the window, children preceding the
+ * nearest pair of equal children are compared by position, and surplus children are reported as missing or unexpected. If the
+ * window contains no such pair, the children in it are compared by position. <br>
+ * The ignore and tolerance settings of the {@link DatabeneXmlComparisonSettings} are honoured. As the documents are not available
+ * as a whole, the locators of tolerances and key expressions must be simple location paths, consisting of element names or
+ * <code>*</code> with an optional position predicate, and <code>@attribute</code> or <code>text()</code> as optional last step.
+ * Use {@link #isStreamable()} to check if the settings only use such locators. <br>
+ * Unlike with the DOM based comparison, the expected and actual objects of the reported differences are text representations,
+ * e.g. attribute values or element start tags.
+ * @author agent */
+public class StreamingXmlComparator {
+
+    private static final String ELEMENT_CLASSIFIER = "list element";
+
+    private static final String TEXT_CLASSIFIER = "element text";
+
+    /** The maximum number of events buffered ahead to compare the children of an element which is not order-insensitive. */
+    private static final int MAX_LOOKAHEAD_EVENTS = 10000;
+
+    private final DatabeneXmlComparisonSettings settings;
+
+    private final List<Toleration> tolerations = new ArrayList<Toleration>();
+
+    private final List<KeyDefinition> keyDefinitions = new ArrayList<KeyDefinition>();
+
+    private final List<PathPattern> orderInsensitivePatterns = new ArrayList<PathPattern>();
+
+    private final XMLInputFactory inputFactory;
+
+    private boolean streamable = true;
+
+    /** Creates a new comparator for the given settings.
+     * @param settings the settings to apply in comparisons */
+    public StreamingXmlComparator(DatabeneXmlComparisonSettings settings) {
+        this.settings = settings;
+        for (LocalDiffType diffType : settings.getToleratedDiffs()) {
+            PathPattern pattern = PathPattern.parse(diffType.getLocator());
+            if (pattern == null) {
+                streamable = false;
+                continue;
+            }
+            tolerations.add(new Toleration(diffType.getType(), pattern));
+            if (diffType.getType() == DiffDetailType.MOVED) {
+                orderInsensitivePatterns.add(pattern);
+            }
+        }
+        for (KeyExpression keyExpression : settings.getModel().getKeyExpressions()) {
+            PathPattern pattern = PathPattern.parse(keyExpression.getLocator());
+            if (pattern == null) {
+                streamable = false;
+                continue;
+            }
+            keyDefinitions.add(new KeyDefinition(pattern, keyExpression.getExpression()));
+            orderInsensitivePatterns.add(pattern);
+        }
+
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.valueOf(!settings.isCdataRelevant()));
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    }
+
+    /** Tells if the settings of this comparator can be applied while streaming, i.e. if all tolerances and key expressions use
+     * simple location paths. If not, the documents must be compared using the DOM based comparison.
+     * @return true if {@link #compare(InputStream, InputStream)} may be used with the settings of this comparator, otherwise
+     *         false */
+    public boolean isStreamable() {
+        return streamable;
+    }
+
+    /** Compares two XML documents read from the given streams. The streams are not closed by this method.
+     * @param expected the stream to read the expected document from
+     * @param actual the stream to read the actual document from
+     * @return the differences found which are not tolerated by the settings
+     * @throws XMLStreamException if a document cannot be parsed, or a key expression cannot be evaluated
+     * @throws IllegalStateException if the settings of this comparator cannot be applied while streaming */
+    public AggregateXmlDiff compare(InputStream expected, InputStream actual) throws XMLStreamException {
+        if (!streamable) {
+            throw new IllegalStateException("Comparison settings contain XPath expressions which require DOM based comparison");
+        }
+        XMLEventReader expectedReader = inputFactory.createXMLEventReader(expected);
+        XMLEventReader actualReader = inputFactory.createXMLEventReader(actual);
+        try {
+            Comparison comparison = new Comparison();
+            comparison.compareDocuments(new ReaderSource(expectedReader), new ReaderSource(actualReader));
+            DatabeneAggregateXmlDiff diff = new DatabeneAggregateXmlDiff(expected, actual, settings);
+            for (PendingDiff pending : comparison.diffs) {
+                diff.addDetail(pending.toDetail());
+            }
+            return diff;
+        }
+        finally {
+            expectedReader.close();
+            actualReader.close();
+        }
+    }
+
+    // comparison --------------------------------------------------------------
+
+    /** State of a single comparison. */
+    private final class Comparison {
+
+        private final List<PendingDiff> diffs = new ArrayList<PendingDiff>();
+
+        void compareDocuments(EventSource expected, EventSource actual) throws XMLStreamException {
+            StartDocument expectedDocument = null;
+            StartDocument actualDocument = null;
+            XMLEvent expectedEvent;
+            while (!(expectedEvent = expected.next()).isStartElement()) {
+                if (expectedEvent.isStartDocument()) {
+                    expectedDocument = (StartDocument) expectedEvent;
+                }
+            }
+            XMLEvent actualEvent;
+            while (!(actualEvent = actual.next()).isStartElement()) {
+                if (actualEvent.isStartDocument()) {
+                    actualDocument = (StartDocument) actualEvent;
+                }
+            }
+
+            if (settings.isEncodingRelevant()) {
+                String expectedEncoding = encodingOf(expectedDocument);
+                String actualEncoding = encodingOf(actualDocument);
+                if (!NullSafeComparator.equals(expectedEncoding, actualEncoding)) {
+                    addDiff(DiffDetailType.DIFFERENT, expectedEncoding, actualEncoding, "document encoding", Path.DOCUMENT,
+                            Path.DOCUMENT);
+                }
+            }
+
+            Item expectedRoot = new Item(expectedEvent.asStartElement());
+            Item actualRoot = new Item(actualEvent.asStartElement());
+            compareElements(expected, actual, expectedRoot.start, actualRoot.start, new Siblings().childPath(Path.DOCUMENT,
+                    expectedRoot), new Siblings().childPath(Path.DOCUMENT, actualRoot));
+        }
+
+        /** Compares two elements whose start tags have just been read from the sources. Consumes the elements up to and including
+         * their end tags. */
+        private void compareElements(EventSource expected, EventSource actual, StartElement expectedStart,
+                StartElement actualStart, Path expectedPath, Path actualPath) throws XMLStreamException {
+            if (isExcluded(expectedPath) || isExcluded(actualPath)) {
+                skipContent(expected);
+                skipContent(actual);
+                return;
+            }
+
+            String expectedName = expectedStart.getName().getLocalPart();
+            String actualName = actualStart.getName().getLocalPart();
+            if (!expectedName.equals(actualName)) {
+                addDiff(DiffDetailType.DIFFERENT, expectedName, actualName, "element name", expectedPath, actualPath);
+            }
+            if (settings.isNamespaceRelevant()) {
+                String expectedNs = StringUtil.emptyToNull(expectedStart.getName().getNamespaceURI());
+                String actualNs = StringUtil.emptyToNull(actualStart.getName().getNamespaceURI());
+                if (!NullSafeComparator.equals(expectedNs, actualNs)) {
+                    addDiff(DiffDetailType.DIFFERENT, nsDescription(expectedNs), nsDescription(actualNs), "element namespace",
+                            expectedPath, actualPath);
+                }
+            }
+
+            compareAttributes(expectedStart, actualStart, expectedPath, actualPath);
+
+            if (isOrderInsensitive(expectedPath) || isOrderInsensitive(actualPath)) {
+                compareLists(bufferChildren(expected, new Siblings(), expectedPath),
+                        bufferChildren(actual, new Siblings(), actualPath));
+            }
+            else {
+                compareChildrenInLockstep(expected, actual, expectedPath, actualPath);
+            }
+        }
+
+        private void compareAttributes(StartElement expected, StartElement actual, Path expectedPath, Path actualPath) {
+            for (Iterator<?> iter = expected.getAttributes(); iter.hasNext();) {
+                Attribute expectedAttribute = (Attribute) iter.next();
+                Attribute actualAttribute = findAttribute(actual, expectedAttribute);
+                Path expectedAttributePath = Path.attribute(expectedPath, expectedAttribute);
+                if (actualAttribute == null) {
+                    addDiff(DiffDetailType.MISSING, expectedAttribute.getValue(), null, "attribute", expectedAttributePath, null);
+                }
+                else if (!expectedAttribute.getValue().equals(actualAttribute.getValue())) {
+                    addDiff(DiffDetailType.DIFFERENT, expectedAttribute.getValue(), actualAttribute.getValue(), "attribute value",
+                            expectedAttributePath, Path.attribute(actualPath, actualAttribute));
+                }
+            }
+            for (Iterator<?> iter = actual.getAttributes(); iter.hasNext();) {
+                Attribute actualAttribute = (Attribute) iter.next();
+                if (findAttribute(expected, actualAttribute) == null) {
+                    addDiff(DiffDetailType.UNEXPECTED, null, actualAttribute.getValue(), "attribute", null,
+                            Path.attribute(actualPath, actualAttribute));
+                }
+            }
+        }
+
+        private void compareChildrenInLockstep(EventSource expected, EventSource actual, Path expectedPath, Path actualPath)
+                throws XMLStreamException {
+            ChildWindow expectedWindow = new ChildWindow(expected, expectedPath);
+            ChildWindow actualWindow = new ChildWindow(actual, actualPath);
+            while (true) {
+                Item expectedItem = expectedWindow.get(0);
+                Item actualItem = actualWindow.get(0);
+                if (expectedItem == null) {
+                    actualWindow.reportRemaining(false);
+                    return;
+                }
+                if (actualItem == null) {
+                    expectedWindow.reportRemaining(true);
+                    return;
+                }
+                // when the child sequences diverge, e.g. because of a missing element of a list, try to find the position
+                // where they match again, like the DOM based comparison does
+                if (correspondAtPosition(expectedItem, actualItem)) {
+                    compareAtPosition(expectedWindow, actualWindow);
+                }
+                else {
+                    resynchronize(expectedWindow, actualWindow);
+                }
+            }
+        }
+
+        private boolean correspondAtPosition(Item expected, Item actual) {
+            if (expected.kind != actual.kind) {
+                return false;
+            }
+            if (!expected.isElement()) {
+                return true;
+            }
+            if (!expected.localName().equals(actual.localName())) {
+                return false;
+            }
+            // elements too large to check for equality are compared by position
+            return expected.partial || actual.partial || isExcluded(expected.path) || isExcluded(actual.path)
+                    || canonical(expected).equals(canonical(actual));
+        }
+
+        /** Compares the first children of both windows with each other, and removes them from the windows. */
+        private void compareAtPosition(ChildWindow expected, ChildWindow actual) throws XMLStreamException {
+            Item expectedItem = expected.get(0);
+            Item actualItem = actual.get(0);
+            if (expectedItem.kind != actualItem.kind
+                    || (expectedItem.isElement() && !expectedItem.localName().equals(actualItem.localName()))) {
+                expected.reportFirst(true);
+                actual.reportFirst(false);
+            }
+            else if (expectedItem.isElement()) {
+                expected.removeFirst();
+                actual.removeFirst();
+                compareElements(expected.contentOf(expectedItem), actual.contentOf(actualItem), expectedItem.start,
+                        actualItem.start, expectedItem.path, actualItem.path);
+            }
+            else {
+                expected.removeFirst();
+                actual.removeFirst();
+                compareNodes(expectedItem, actualItem);
+            }
+        }
+
+        /** Searches the windows for the nearest pair of equal children. The children before it are compared by position as far
+         * as both windows have some, and the others are reported as missing or unexpected. If the windows contain no such pair,
+         * all children which both windows have are compared by position, so each child is searched for only once. */
+        private void resynchronize(ChildWindow expected, ChildWindow actual) throws XMLStreamException {
+            Map<String, Integer> expectedIndices = new HashMap<String, Integer>();
+            Map<String, Integer> actualIndices = new HashMap<String, Integer>();
+            int expectedMatch = -1;
+            int actualMatch = -1;
+            for (int k = 0; expectedMatch < 0; k++) {
+                Item expectedItem = expected.get(k);
+                Item actualItem = actual.get(k);
+                if (expectedItem == null && actualItem == null) {
+                    for (int count = Math.min(expected.size(), actual.size()); count > 0; count--) {
+                        compareAtPosition(expected, actual);
+                    }
+                    return;
+                }
+                String expectedKey = expectedItem == null ? null : matchKey(expectedItem);
+                if (expectedKey != null) {
+                    if (!expectedIndices.containsKey(expectedKey)) {
+                        expectedIndices.put(expectedKey, Integer.valueOf(k));
+                    }
+                    Integer index = actualIndices.get(expectedKey);
+                    if (index != null) {
+                        expectedMatch = k;
+                        actualMatch = index.intValue();
+                    }
+                }
+                String actualKey = actualItem == null ? null : matchKey(actualItem);
+                if (actualKey != null) {
+                    if (!actualIndices.containsKey(actualKey)) {
+                        actualIndices.put(actualKey, Integer.valueOf(k));
+                    }
+                    Integer index = expectedIndices.get(actualKey);
+                    if (index != null && (expectedMatch < 0 || index.intValue() + k < expectedMatch + actualMatch)) {
+                        expectedMatch = index.intValue();
+                        actualMatch = k;
+                    }
+                }
+            }
+
+            int common = Math.min(expectedMatch, actualMatch);
+            for (int k = 0; k < common; k++) {
+                compareAtPosition(expected, actual);
+            }
+            for (int k = common; k < expectedMatch; k++) {
+                expected.reportFirst(true);
+            }
+            for (int k = common; k < actualMatch; k++) {
+                actual.reportFirst(false);
+            }
+        }
+
+        /** @return a string which is equal for equal children, or <code>null</code> if the child has not been buffered
+         *         completely */
+        private String matchKey(Item item) {
+            if (item.isElement()) {
+                return item.partial ? null : canonical(item);
+            }
+            return "#" + item.kind + ":" + item.text;
+        }
+
+        private void reportUnmatched(Item item, boolean missing) {
+            if (missing) {
+                addDiff(DiffDetailType.MISSING, item.describe(), null, item.classifier(), item.path, null);
+            }
+            else {
+                addDiff(DiffDetailType.UNEXPECTED, null, item.describe(), item.classifier(), null, item.path);
+            }
+        }
+
+        private void compareNodes(Item expected, Item actual) {
+            if (!expected.text.equals(actual.text)) {
+                if (!isTolerated(DiffDetailType.DIFFERENT, expected.path.parent, actual.path.parent)) {
+                    addDiff(DiffDetailType.DIFFERENT, expected.text, actual.text, expected.classifier(), expected.path,
+                            actual.path);
+                }
+            }
+            else if (settings.isCdataRelevant() && expected.cdata != actual.cdata) {
+                addDiff(DiffDetailType.DIFFERENT, expected.text, actual.text, "CDATA", expected.path, actual.path);
+            }
+        }
+
+        /** Matches buffered child nodes by key or content, and compares the matching nodes. */
+        private void compareLists(List<Item> expected, List<Item> actual) throws XMLStreamException {
+            List<Item> expectedElements = new ArrayList<Item>();
+            List<Item> actualElements = new ArrayList<Item>();
+            Map<Integer, List<Item>> expectedOthers = new TreeMap<Integer, List<Item>>();
+            Map<Integer, List<Item>> actualOthers = new TreeMap<Integer, List<Item>>();
+            split(expected, expectedElements, expectedOthers);
+            split(actual, actualElements, actualOthers);
+
+            int[] matches = new int[expectedElements.size()];
+            Arrays.fill(matches, -1);
+            boolean[] used = new boolean[actualElements.size()];
+            matchElements(expectedElements, actualElements, matches, used, true);
+            matchElements(expectedElements, actualElements, matches, used, false);
+
+            int matchCount = 0;
+            for (int match : matches) {
+                if (match >= 0) {
+                    matchCount++;
+                }
+            }
+            int[] matchedIndices = new int[matchCount];
+            int k = 0;
+            for (int match : matches) {
+                if (match >= 0) {
+                    matchedIndices[k++] = match;
+                }
+            }
+            boolean[] inOrder = longestIncreasingSubsequence(matchedIndices);
+
+            k = 0;
+            for (int i = 0; i < expectedElements.size(); i++) {
+                Item expectedItem = expectedElements.get(i);
+                if (matches[i] < 0) {
+                    reportUnmatched(expectedItem, true);
+                    continue;
+                }
+                Item actualItem = actualElements.get(matches[i]);
+                if (!inOrder[k++]) {
+                    addDiff(DiffDetailType.MOVED, actualItem.describe(), actualItem.describe(), ELEMENT_CLASSIFIER,
+                            expectedItem.path, actualItem.path);
+                }
+                compareElements(new ListSource(expectedItem.content), new ListSource(actualItem.content), expectedItem.start,
+                        actualItem.start, expectedItem.path, actualItem.path);
+            }
+            for (int j = 0; j < actualElements.size(); j++) {
+                if (!used[j]) {
+                    reportUnmatched(actualElements.get(j), false);
+                }
+            }
+
+            // other nodes are compared by their order
+            for (Map.Entry<Integer, List<Item>> entry : expectedOthers.entrySet()) {
+                List<Item> expectedNodes = entry.getValue();
+                List<Item> actualNodes = actualOthers.remove(entry.getKey());
+                int actualCount = actualNodes == null ? 0 : actualNodes.size();
+                for (int i = 0; i < expectedNodes.size(); i++) {
+                    if (i < actualCount) {
+                        compareNodes(expectedNodes.get(i), actualNodes.get(i));
+                    }
+                    else {
+                        reportUnmatched(expectedNodes.get(i), true);
+                    }
+                }
+                for (int i = expectedNodes.size(); i < actualCount; i++) {
+                    reportUnmatched(actualNodes.get(i), false);
+                }
+            }
+            for (List<Item> actualNodes : actualOthers.values()) {
+                for (Item item : actualNodes) {
+                    reportUnmatched(item, false);
+                }
+            }
+        }
+
+        private void matchElements(List<Item> expected, List<Item> actual, int[] matches, boolean[] used, boolean exact)
+                throws XMLStreamException {
+            for (int i = 0; i < expected.size(); i++) {
+                if (matches[i] >= 0) {
+                    continue;
+                }
+                Item expectedItem = expected.get(i);
+                for (int j = 0; j < actual.size(); j++) {
+                    if (!used[j] && correspond(expectedItem, actual.get(j), exact)) {
+                        matches[i] = j;
+                        used[j] = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        private boolean correspond(Item expected, Item actual, boolean exact) throws XMLStreamException {
+            if (!expected.localName().equals(actual.localName())) {
+                return false;
+            }
+            String expectedKey = key(expected);
+            String actualKey = key(actual);
+            if (expectedKey != null || actualKey != null) {
+                return NullSafeComparator.equals(expectedKey, actualKey);
+            }
+            return !exact || canonical(expected).equals(canonical(actual));
+        }
+
+        private String key(Item item) throws XMLStreamException {
+            if (!item.keyEvaluated) {
+                item.keyEvaluated = true;
+                for (KeyDefinition definition : keyDefinitions) {
+                    if (definition.pattern.matches(item.path)) {
+                        item.key = evaluateKey(item, definition.expression);
+                        break;
+                    }
+                }
+            }
+            return item.key;
+        }
+
+        private String canonical(Item item) {
+            if (item.canonical == null) {
+                StringBuilder sb = new StringBuilder();
+                appendCanonical(sb, item.start);
+                for (XMLEvent event : item.content) {
+                    appendCanonical(sb, event);
+                }
+                item.canonical = sb.toString();
+            }
+            return item.canonical;
+        }
+
+        private void appendCanonical(StringBuilder sb, XMLEvent event) {
+            switch (event.getEventType()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    StartElement start = event.asStartElement();
+                    sb.append('<').append(settings.isNamespaceRelevant() ? start.getName().toString() : start.getName()
+                            .getLocalPart());
+                    Map<String, String> attributes = new TreeMap<String, String>();
+                    for (Iterator<?> iter = start.getAttributes(); iter.hasNext();) {
+                        Attribute attribute = (Attribute) iter.next();
+                        attributes.put(settings.isNamespaceRelevant() ? attribute.getName().toString() : attribute.getName()
+                                .getLocalPart(), attribute.getValue());
+                    }
+                    sb.append(attributes).append('>');
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    sb.append("</>");
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    String text = event.asCharacters().getData();
+                    sb.append(settings.isWhitespaceRelevant() ? text : text.trim());
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    if (settings.isProcessingInstructionRelevant()) {
+                        sb.append(event);
+                    }
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    if (settings.isCommentRelevant()) {
+                        sb.append(event);
+                    }
+                    break;
+                default:
+                    // not relevant for comparison
+            }
+        }
+
+        private void addDiff(DiffDetailType type, Object expected, Object actual, String classifier, Path expectedPath,
+                Path actualPath) {
+            if (!isTolerated(type, expectedPath, actualPath)) {
+                diffs.add(new PendingDiff(type, expected, actual, classifier, expectedPath, actualPath));
+            }
+        }
+
+        /** The children of an element which have been read ahead from one of the documents, to find the position where the child
+         * sequences of both documents match again after they diverged. Up to {@value #MAX_LOOKAHEAD_EVENTS} events are held; the
+         * last child may have been buffered partially, then the rest of its content is still to be read from the source. */
+        private final class ChildWindow {
+
+            private final EventSource source;
+
+            private final Path parentPath;
+
+            private final Siblings siblings = new Siblings();
+
+            private final List<Item> items = new ArrayList<Item>();
+
+            private int events;
+
+            private boolean ended;
+
+            ChildWindow(EventSource source, Path parentPath) {
+                this.source = source;
+                this.parentPath = parentPath;
+            }
+
+            /** @return the child at the given index of the window, or <code>null</code> if the element has no more children, or
+             *         the window is full */
+            Item get(int index) throws XMLStreamException {
+                while (items.size() <= index) {
+                    if (ended || (!items.isEmpty() && (events >= MAX_LOOKAHEAD_EVENTS || items.get(items.size() - 1).partial))) {
+                        return null;
+                    }
+                    Item item = nextChild(source);
+                    if (item == null) {
+                        ended = true;
+                        return null;
+                    }
+                    siblings.childPath(parentPath, item);
+                    if (item.isElement()) {
+                        item.partial = !bufferContent(source, item, Math.max(MAX_LOOKAHEAD_EVENTS - events, 1));
+                    }
+                    events += cost(item);
+                    items.add(item);
+                }
+                return items.get(index);
+            }
+
+            int size() {
+                return items.size();
+            }
+
+            Item removeFirst() {
+                Item item = items.remove(0);
+                events -= cost(item);
+                return item;
+            }
+
+            /** @return the content of the given child element, continuing with the source if it has been buffered partially */
+            EventSource contentOf(Item item) {
+                return new ReplaySource(item.content, source);
+            }
+
+            void reportFirst(boolean missing) throws XMLStreamException {
+                Item item = removeFirst();
+                reportUnmatched(item, missing);
+                if (item.partial) {
+                    skipContent(contentOf(item));
+                }
+            }
+
+            /** Reports the children in the window and all remaining children of the element as missing or unexpected. Remaining
+             * children are not buffered. */
+            void reportRemaining(boolean missing) throws XMLStreamException {
+                while (!items.isEmpty()) {
+                    reportFirst(missing);
+                }
+                if (!ended) {
+                    for (Item item = nextChild(source); item != null; item = nextChild(source)) {
+                        siblings.childPath(parentPath, item);
+                        if (item.isElement()) {
+                            skipContent(source);
+                        }
+                        reportUnmatched(item, missing);
+                    }
+                    ended = true;
+                }
+            }
+
+            private int cost(Item item) {
+                return item.content == null ? 1 : 1 + item.content.size();
+            }
+        }
+
+    }
+
+    // helper methods ----------------------------------------------------------
+
+    private boolean isTolerated(DiffDetailType type, Path expectedPath, Path actualPath) {
+        for (Toleration toleration : tolerations) {
+            if ((toleration.type == null || toleration.type == type)
+                    && (toleration.pattern.matches(expectedPath) || toleration.pattern.matches(actualPath))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isExcluded(Path path) {
+        for (Toleration toleration : tolerations) {
+            if (toleration.type == null && toleration.pattern.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isOrderInsensitive(Path elementPath) {
+        for (PathPattern pattern : orderInsensitivePatterns) {
+            if (pattern.matchesChildOf(elementPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Attribute findAttribute(StartElement element, Attribute attribute) {
+        if (settings.isNamespaceRelevant()) {
+            return element.getAttributeByName(attribute.getName());
+        }
+        String localName = attribute.getName().getLocalPart();
+        for (Iterator<?> iter = element.getAttributes(); iter.hasNext();) {
+            Attribute candidate = (Attribute) iter.next();
+            if (localName.equals(candidate.getName().getLocalPart())) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /** Reads the next relevant child node of the current element, or consumes the end tag of the current element and returns
+     * <code>null</code>. For elements, only the start tag is consumed. */
+    private Item nextChild(EventSource source) throws XMLStreamException {
+        StringBuilder text = null;
+        boolean cdata = false;
+        while (true) {
+            XMLEvent event = source.peek();
+            if (event.isCharacters()) {
+                Characters characters = event.asCharacters();
+                if (text != null && settings.isCdataRelevant() && characters.isCData() != cdata) {
+                    Item item = textItem(text, cdata);
+                    if (item != null) {
+                        return item;
+                    }
+                    text = null;
+                    continue;
+                }
+                source.next();
+                if (text == null) {
+                    text = new StringBuilder();
+                    cdata = characters.isCData();
+                }
+                text.append(characters.getData());
+                continue;
+            }
+            if (text != null) {
+                Item item = textItem(text, cdata);
+                text = null;
+                if (item != null) {
+                    return item;
+                }
+            }
+            source.next();
+            switch (event.getEventType()) {
+                case XMLStreamConstants.END_ELEMENT:
+                case XMLStreamConstants.END_DOCUMENT:
+                    return null;
+                case XMLStreamConstants.START_ELEMENT:
+                    return new Item(event.asStartElement());
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    if (settings.isProcessingInstructionRelevant()) {
+                        ProcessingInstruction pi = (ProcessingInstruction) event;
+                        return new Item(XMLStreamConstants.PROCESSING_INSTRUCTION, pi.getTarget() + " " + pi.getData(), false);
+                    }
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    if (settings.isCommentRelevant()) {
+                        return new Item(XMLStreamConstants.COMMENT, ((Comment) event).getText(), false);
+                    }
+                    break;
+                default:
+                    // not relevant for comparison
+            }
+        }
+    }
+
+    private Item textItem(StringBuilder text, boolean cdata) {
+        String value = settings.isWhitespaceRelevant() ? text.toString() : text.toString().trim();
+        return value.length() == 0 ? null : new Item(XMLStreamConstants.CHARACTERS, value, cdata);
+    }
+
+    /** Buffers all remaining children of the current element, including the content of child elements. */
+    private List<Item> bufferChildren(EventSource source, Siblings siblings, Path parentPath) throws XMLStreamException {
+        List<Item> result = new ArrayList<Item>();
+        for (Item item = nextChild(source); item != null; item = nextChild(source)) {
+            siblings.childPath(parentPath, item);
+            if (item.isElement()) {
+                bufferContent(source, item, Integer.MAX_VALUE);
+            }
+            result.add(item);
+        }
+        return result;
+    }
+
+    /** Buffers the content of an element whose start tag has just been read, up to the given number of events.
+     * @return true if the content has been buffered up to and including the end tag, false if the maximum number of events has
+     *         been reached before */
+    private static boolean bufferContent(EventSource source, Item item, int maxEvents) throws XMLStreamException {
+        item.content = new ArrayList<XMLEvent>();
+        int depth = 0;
+        while (item.content.size() < maxEvents) {
+            XMLEvent event = source.next();
+            item.content.add(event);
+            if (event.isStartElement()) {
+                depth++;
+            }
+            else if (event.isEndElement() && depth-- == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String evaluateKey(Item item, String expression) throws XMLStreamException {
+        Document document = XMLUtil.createDocument();
+        XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+        outputFactory.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES, Boolean.TRUE);
+        XMLEventWriter writer = outputFactory.createXMLEventWriter(new DOMResult(document));
+        writer.add(item.start);
+        for (XMLEvent event : item.content) {
+            writer.add(event);
+        }
+        writer.close();
+        try {
+            return (String) XPathCache.evaluate(document.getDocumentElement(), expression, XPathConstants.STRING);
+        }
+        catch (XPathExpressionException e) {
+            throw new XMLStreamException("Could not evaluate key expression " + expression, e);
+        }
+    }
+
+    private static void skipContent(EventSource source) throws XMLStreamException {
+        int depth = 0;
+        while (depth >= 0) {
+            XMLEvent event = source.next();
+            if (event.isStartElement()) {
+                depth++;
+            }
+            else if (event.isEndElement()) {
+                depth--;
+            }
+        }
+    }
+
+    private static void split(List<Item> items, List<Item> elements, Map<Integer, List<Item>> others) {
+        for (Item item : items) {
+            if (item.isElement()) {
+                elements.add(item);
+            }
+            else {
+                List<Item> list = others.get(item.kind);
+                if (list == null) {
+                    list = new ArrayList<Item>();
+                    others.put(item.kind, list);
+                }
+                list.add(item);
+            }
+        }
+    }
+
+    /** Determines which of the given values form a longest increasing subsequence. Elements not in this subsequence are
+     * considered moved. */
+    private static boolean[] longestIncreasingSubsequence(int[] values) {
+        int[] tails = new int[values.length];
+        int[] predecessors = new int[values.length];
+        int length = 0;
+        for (int i = 0; i < values.length; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[tails[mid]] < values[i]) {
+                    low = mid + 1;
+                }
+                else {
+                    high = mid;
+                }
+            }
+            predecessors[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+        boolean[] result = new boolean[values.length];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = predecessors[i]) {
+            result[i] = true;
+        }
+        return result;
+    }
+
+    private static String encodingOf(StartDocument document) {
+        return document == null ? null : document.getCharacterEncodingScheme();
+    }
+
+    private static String nsDescription(String namespaceUri) {
+        return namespaceUri == null ? "none" : namespaceUri;
+    }
+
+    // helper classes ----------------------------------------------------------
+
+    private interface EventSource {
+
+        XMLEvent peek() throws XMLStreamException;
+
+        XMLEvent next() throws XMLStreamException;
+
+    }
+
+    private static final class ReaderSource implements EventSource {
+
+        private final XMLEventReader reader;
+
+        ReaderSource(XMLEventReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public XMLEvent peek() throws XMLStreamException {
+            return reader.peek();
+        }
+
+        @Override
+        public XMLEvent next() throws XMLStreamException {
+            return reader.nextEvent();
+        }
+    }
+
+    private static final class ListSource implements EventSource {
+
+        private final List<XMLEvent> events;
+
+        private int index;
+
+        ListSource(List<XMLEvent> events) {
+            this.events = events;
+        }
+
+        @Override
+        public XMLEvent peek() {
+            return events.get(index);
+        }
+
+        @Override
+        public XMLEvent next() {
+            return events.get(index++);
+        }
+    }
+
+    /** Reads the given buffered events first, and continues with the source they have been read from. */
+    private static final class ReplaySource implements EventSource {
+
+        private final List<XMLEvent> buffered;
+
+        private final EventSource source;
+
+        private int index;
+
+        ReplaySource(List<XMLEvent> buffered, EventSource source) {
+            this.buffered = buffered;
+            this.source = source;
+        }
+
+        @Override
+        public XMLEvent peek() throws XMLStreamException {
+            return index < buffered.size() ? buffered.get(index) : source.peek();
+        }
+
+        @Override
+        public XMLEvent next() throws XMLStreamException {
+            return index < buffered.size() ? buffered.get(index++) : source.next();
+        }
+    }
+
+    /** A child node of an element. For buffered elements, the content holds all events following the start tag, up to and
+     * including the end tag, unless the element has been buffered partially. */
+    private static final class Item {
+
+        private final int kind;
+
+        private final StartElement start;
+
+        private final String text;
+
+        private final boolean cdata;
+
+        private Path path;
+
+        private List<XMLEvent> content;
+
+        private boolean partial;
+
+        private boolean keyEvaluated;
+
+        private String key;
+
+        private String canonical;
+
+        Item(StartElement start) {
+            this.kind = XMLStreamConstants.START_ELEMENT;
+            this.start = start;
+            this.text = null;
+            this.cdata = false;
+        }
+
+        Item(int kind, String text, boolean cdata) {
+            this.kind = kind;
+            this.start = null;
+            this.text = text;
+            this.cdata = cdata;
+        }
+
+        boolean isElement() {
+            return kind == XMLStreamConstants.START_ELEMENT;
+        }
+
+        String localName() {
+            return start.getName().getLocalPart();
+        }
+
+        String classifier() {
+            switch (kind) {
+                case XMLStreamConstants.START_ELEMENT:
+                    return ELEMENT_CLASSIFIER;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    return "processing instruction";
+                case XMLStreamConstants.COMMENT:
+                    return "comment";
+                default:
+                    return TEXT_CLASSIFIER;
+            }
+        }
+
+        String describe() {
+            if (!isElement()) {
+                return text;
+            }
+            StringBuilder sb = new StringBuilder("<").append(Path.qualifiedName(start.getName()));
+            for (Iterator<?> iter = start.getAttributes(); iter.hasNext();) {
+                Attribute attribute = (Attribute) iter.next();
+                sb.append(' ').append(Path.qualifiedName(attribute.getName())).append("=\"").append(attribute.getValue())
+                .append('"');
+            }
+            return sb.append('>').toString();
+        }
+    }
+
+    /** Counts the child nodes of an element by name, to determine the positions used in the locators. */
+    private static final class Siblings {
+
+        private final Map<String, int[]> counters = new HashMap<String, int[]>();
+
+        Path childPath(Path parent, Item item) {
+            String name = item.isElement() ? Path.qualifiedName(item.start.getName()) : null;
+            String counterKey = item.isElement() ? name : "#" + item.kind;
+            int[] counter = counters.get(counterKey);
+            if (counter == null) {
+                counter = new int[1];
+                counters.put(counterKey, counter);
+            }
+            counter[0]++;
+            Path path = new Path(parent, item.kind, item.isElement() ? item.localName() : null, name, counter[0], counter);
+            item.path = path;
+            return path;
+        }
+    }
+
+    /** Location of a node in a document. The sibling counter is shared with all siblings of the same name, so the locator
+     * contains a position predicate if the parent element has more than one such child. The counter is complete when the parent
+     * element has been read completely, so locators are rendered at the end of the comparison. */
+    private static final class Path {
+
+        private static final int DOCUMENT_KIND = XMLStreamConstants.START_DOCUMENT;
+
+        static final Path DOCUMENT = new Path(null, DOCUMENT_KIND, null, null, 1, null);
+
+        private final Path parent;
+
+        private final int kind;
+
+        private final String localName;
+
+        private final String qualifiedName;
+
+        private final int position;
+
+        private final int[] siblingCount;
+
+        private List<Path> steps;
+
+        Path(Path parent, int kind, String localName, String qualifiedName, int position, int[] siblingCount) {
+            this.parent = parent;
+            this.kind = kind;
+            this.localName = localName;
+            this.qualifiedName = qualifiedName;
+            this.position = position;
+            this.siblingCount = siblingCount;
+        }
+
+        static Path attribute(Path element, Attribute attribute) {
+            return new Path(element, XMLStreamConstants.ATTRIBUTE, attribute.getName().getLocalPart(),
+                    qualifiedName(attribute.getName()), 1, null);
+        }
+
+        static String qualifiedName(QName name) {
+            return StringUtil.isEmpty(name.getPrefix()) ? name.getLocalPart() : name.getPrefix() + ":" + name.getLocalPart();
+        }
+
+        /** @return the steps of this path, from the root element to this node. */
+        List<Path> steps() {
+            if (steps == null) {
+                List<Path> result = new ArrayList<Path>();
+                for (Path path = this; path.parent != null; path = path.parent) {
+                    result.add(0, path);
+                }
+                steps = result;
+            }
+            return steps;
+        }
+
+        String toLocator() {
+            StringBuilder sb = new StringBuilder();
+            appendTo(sb);
+            return sb.length() == 0 ? "/" : sb.toString();
+        }
+
+        private void appendTo(StringBuilder sb) {
+            if (parent == null) {
+                return;
+            }
+            parent.appendTo(sb);
+            sb.append('/');
+            switch (kind) {
+                case XMLStreamConstants.ATTRIBUTE:
+                    sb.append('@').append(qualifiedName);
+                    break;
+                case XMLStreamConstants.START_ELEMENT:
+                    sb.append(qualifiedName);
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    sb.append("processing-instruction()");
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    sb.append("comment()");
+                    break;
+                default:
+                    sb.append("text()");
+            }
+            if (siblingCount != null && siblingCount[0] > 1) {
+                sb.append('[').append(position).append(']');
+            }
+        }
+    }
+
+    /** A simple XPath location path which can be matched against a {@link Path} without access to the whole document. */
+    private static final class PathPattern {
+
+        private static final Pattern STEP_PATTERN = Pattern
+                .compile("(@)?((?:[\\w.\\-]+:)?(?:[\\w.\\-]+|\\*))(?:\\[(\\d+)\\])?");
+
+        private static final Pattern TEXT_STEP_PATTERN = Pattern.compile("text\\(\\)(?:\\[(\\d+)\\])?");
+
+        private final List<PatternStep> steps;
+
+        private PathPattern(List<PatternStep> steps) {
+            this.steps = steps;
+        }
+
+        /** Parses the given XPath expression.
+         * @param locator the XPath expression to parse
+         * @return the pattern, or <code>null</code> if the expression is not a simple location path */
+        static PathPattern parse(String locator) {
+            String s = locator.trim();
+            List<PatternStep> steps = new ArrayList<PatternStep>();
+            int index = 0;
+            while (index < s.length()) {
+                if (s.charAt(index) != '/') {
+                    return null;
+                }
+                index++;
+                boolean descendant = index < s.length() && s.charAt(index) == '/';
+                if (descendant) {
+                    index++;
+                }
+                int end = s.indexOf('/', index);
+                if (end < 0) {
+                    end = s.length();
+                }
+                if (!steps.isEmpty() && steps.get(steps.size() - 1).kind != XMLStreamConstants.START_ELEMENT) {
+                    return null;
+                }
+                PatternStep step = parseStep(s.substring(index, end), descendant);
+                if (step == null) {
+                    return null;
+                }
+                steps.add(step);
+                index = end;
+            }
+            return steps.isEmpty() ? null : new PathPattern(steps);
+        }
+
+        private static PatternStep parseStep(String step, boolean descendant) {
+            Matcher matcher = TEXT_STEP_PATTERN.matcher(step);
+            if (matcher.matches()) {
+                return new PatternStep(descendant, XMLStreamConstants.CHARACTERS, "*", position(matcher.group(1)));
+            }
+            matcher = STEP_PATTERN.matcher(step);
+            if (!matcher.matches()) {
+                return null;
+            }
+            if (matcher.group(1) != null) {
+                return matcher.group(3) != null ? null : new PatternStep(descendant, XMLStreamConstants.ATTRIBUTE,
+                        matcher.group(2), 0);
+            }
+            return new PatternStep(descendant, XMLStreamConstants.START_ELEMENT, matcher.group(2), position(matcher.group(3)));
+        }
+
+        private static int position(String predicate) {
+            return predicate == null ? 0 : Integer.parseInt(predicate);
+        }
+
+        boolean matches(Path path) {
+            return path != null && matches(steps.size(), path.steps(), 0, 0);
+        }
+
+        /** Tells if this pattern may match child elements of the given element. */
+        boolean matchesChildOf(Path elementPath) {
+            return steps.get(steps.size() - 1).kind == XMLStreamConstants.START_ELEMENT
+                    && matches(steps.size() - 1, elementPath.steps(), 0, 0);
+        }
+
+        private boolean matches(int patternLength, List<Path> path, int patternIndex, int pathIndex) {
+            if (patternIndex == patternLength) {
+                return pathIndex == path.size();
+            }
+            PatternStep step = steps.get(patternIndex);
+            if (step.descendant) {
+                for (int i = pathIndex; i < path.size(); i++) {
+                    if (step.matches(path.get(i)) && matches(patternLength, path, patternIndex + 1, i + 1)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            return pathIndex < path.size() && step.matches(path.get(pathIndex))
+                    && matches(patternLength, path, patternIndex + 1, pathIndex + 1);
+        }
+    }
+
+    private static final class PatternStep {
+
+        private final boolean descendant;
+
+        private final int kind;
+
+        private final String name;
+
+        private final int position;
+
+        PatternStep(boolean descendant, int kind, String name, int position) {
+            this.descendant = descendant;
+            this.kind = kind;
+            this.name = name;
+            this.position = position;
+        }
+
+        boolean matches(Path path) {
+            if (path.kind != kind) {
+                return false;
+            }
+            if (!"*".equals(name) && !name.equals(name.indexOf(':') >= 0 ? path.qualifiedName : path.localName)) {
+                return false;
+            }
+            return position == 0 || position == path.position;
+        }
+    }
+
+    private static final class Toleration {
+
+        private final DiffDetailType type;
+
+        private final PathPattern pattern;
+
+        Toleration(DiffDetailType type, PathPattern pattern) {
+            this.type = type;
+            this.pattern = pattern;
+        }
+    }
+
+    private static final class KeyDefinition {
+
+        private final PathPattern pattern;
+
+        private final String expression;
+
+        KeyDefinition(PathPattern pattern, String expression) {
+            this.pattern = pattern;
+            this.expression = expression;
+        }
+    }
+
+    private static final class PendingDiff {
+
+        private final DiffDetailType type;
+
+        private final Object expected;
+
+        private final Object actual;
+
+        private final String classifier;
+
+        private final Path expectedPath;
+
+        private final Path actualPath;
+
+        PendingDiff(DiffDetailType type, Object expected, Object actual, String classifier, Path expectedPath, Path actualPath) {
+            this.type = type;
+            this.expected = expected;
+            this.actual = actual;
+            this.classifier = classifier;
+            this.expectedPath = expectedPath;
+            this.actualPath = actualPath;
+        }
+
+        DatabeneXmlDiffDetail toDetail() {
+            return new DatabeneXmlDiffDetail(expected, actual, classifier, type, expectedPath == null ? null
+                    : expectedPath.toLocator(), actualPath == null ? null : actualPath.toLocator());
+        }
+    }
+
+}
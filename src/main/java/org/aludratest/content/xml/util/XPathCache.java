@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.content.xml.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.w3c.dom.Node;
+
+/** Evaluates XPath expressions using compiled, cached expressions. As neither <code>XPath</code> nor <code>XPathExpression</code>
+ * objects are thread-safe, each thread uses its own <code>XPath</code> instance and its own bounded cache of compiled
+ * expressions, keyed by expression and namespace context. Least recently used expressions are removed when the cache is full. <br>
+ * <br>
+ * This class is thread-safe.
+ *
+ * @author agent */
+public final class XPathCache {
+
+    private static final int MAX_EXPRESSIONS_PER_THREAD = 256;
+
+    private static final ThreadLocal<ThreadCache> THREAD_CACHE = new ThreadLocal<ThreadCache>() {
+        @Override
+        protected ThreadCache initialValue() {
+            return new ThreadCache();
+        }
+    };
+
+    private XPathCache() {
+    }
+
+    /** Evaluates the given XPath expression on the given node.
+     *
+     * @param node Node to evaluate the expression on, usually a document.
+     * @param expression XPath expression to evaluate.
+     * @param returnType Expected return type, one of the constants of <code>XPathConstants</code>.
+     *
+     * @return The result of the evaluation, of the requested return type.
+     *
+     * @throws XPathExpressionException If the expression is invalid or cannot be evaluated. */
+    public static Object evaluate(Node node, String expression, QName returnType) throws XPathExpressionException {
+        return evaluate(node, expression, null, returnType);
+    }
+
+    /** Evaluates the given XPath expression on the given node, resolving namespace prefixes using the given namespace context.
+     *
+     * @param node Node to evaluate the expression on, usually a document.
+     * @param expression XPath expression to evaluate.
+     * @param namespaceContext Namespace context to resolve prefixes in the expression, or <code>null</code>.
+     * @param returnType Expected return type, one of the constants of <code>XPathConstants</code>.
+     *
+     * @return The result of the evaluation, of the requested return type.
+     *
+     * @throws XPathExpressionException If the expression is invalid or cannot be evaluated. */
+    public static Object evaluate(Node node, String expression, NamespaceContext namespaceContext, QName returnType)
+            throws XPathExpressionException {
+        return compile(expression, namespaceContext).evaluate(node, returnType);
+    }
+
+    /** Returns the compiled form of the given expression from the cache of the current thread, compiling it if required. The
+     * returned object must only be used by the current thread.
+     *
+     * @param expression XPath expression to compile.
+     * @param namespaceContext Namespace context to resolve prefixes in the expression, or <code>null</code>.
+     *
+     * @return The compiled expression.
+     *
+     * @throws XPathExpressionException If the expression is invalid. */
+    public static XPathExpression compile(String expression, NamespaceContext namespaceContext) throws XPathExpressionException {
+        return THREAD_CACHE.get().compile(expression, namespaceContext);
+    }
+
+    private static final class ThreadCache {
+
+        private final XPath xpath = XPathFactory.newInstance().newXPath();
+
+        private final Map<CacheKey, XPathExpression> expressions = new LinkedHashMap<CacheKey, XPathExpression>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, XPathExpression> eldest) {
+                return size() > MAX_EXPRESSIONS_PER_THREAD;
+            }
+        };
+
+        XPathExpression compile(String expression, NamespaceContext namespaceContext) throws XPathExpressionException {
+            CacheKey key = new CacheKey(expression, namespaceContext);
+            XPathExpression result = expressions.get(key);
+            if (result == null) {
+                if (namespaceContext != null) {
+                    xpath.setNamespaceContext(namespaceContext);
+                }
+                else {
+                    xpath.reset();
+                }
+                result = xpath.compile(expression);
+                expressions.put(key, result);
+            }
+            return result;
+        }
+    }
+
+    private static final class CacheKey {
+
+        private final String expression;
+
+        private final NamespaceContext namespaceContext;
+
+        CacheKey(String expression, NamespaceContext namespaceContext) {
+            this.expression = expression;
+            this.namespaceContext = namespaceContext;
+        }
+
+        @Override
+        public int hashCode() {
+            return expression.hashCode() * 31 + (namespaceContext == null ? 0 : namespaceContext.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != getClass()) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return expression.equals(other.expression)
+                    && (namespaceContext == null ? other.namespaceContext == null : namespaceContext
+                            .equals(other.namespaceContext));
+        }
+    }
+
+}
@@ -15,10 +15,6 @@
  */
 package org.aludratest.dict;
 
-import java.lang.reflect.Field;
-import java.util.Collection;
-import java.util.Stack;
-
 /**
  * Parent class for all data classes.
  * @author Volker Bergmann
@@ -38,6 +34,10 @@ public abstract class Data {
      * }
      * </pre>
      * 
+     * Data objects which are referenced again while they are being described are
+     * rendered as <code>&lt;endless recursion&gt;</code>, and descriptions are
+     * cut off after 10,000 characters.
+     * 
      * @param sb
      *            A StringBuilder to which the description string for this
      *            object is appended to.
@@ -46,85 +46,7 @@ public abstract class Data {
      *         fluent programming.
      */
     protected final StringBuilder buildDescriptionString(StringBuilder sb) {
-        return buildDescriptionString(sb, new Stack<Class<? extends Data>>());
-    }
-
-    private final StringBuilder buildDescriptionString(StringBuilder sb, Stack<Class<? extends Data>> recursionCheck) {
-        Class<?> cls = getClass();
-        sb.append(cls.getSimpleName());
-        sb.append(" [");
-
-        // start with most special fields, work through parent classes afterwards
-        do {
-            for (Field f : cls.getDeclaredFields()) {
-                if (sb.charAt(sb.length() - 1) != '[') {
-                    sb.append(", ");
-                }
-                boolean isAcc = f.isAccessible();
-                Object value;
-                try {
-                    f.setAccessible(true);
-                    value = f.get(this);
-                }
-                catch (Exception e) { // NOSONAR
-                    value = e;
-                }
-                finally {
-                    try {
-                        f.setAccessible(isAcc);
-                    }
-                    catch (Throwable t) { // NOSONAR
-                        // ignore
-                    }
-                }
-
-                sb.append(f.getName()).append("=");
-                appendObject(sb, value, recursionCheck);
-            }
-            cls = cls.getSuperclass();
-        }
-        while (cls != null && cls != Data.class);
-
-        sb.append("]");
-        return sb;
-    }
-
-
-    private static void appendObject(StringBuilder sb, Object value, Stack<Class<? extends Data>> recursionCheck) {
-        if (value == null) {
-            sb.append("null");
-        }
-        else if (value instanceof String) {
-            sb.append("\"").append(value).append("\"");
-        }
-        else if (value instanceof Data) {
-            Data data = (Data) value;
-            if (recursionCheck.contains(data.getClass())) {
-                sb.append("<endless recursion>");
-            }
-            else {
-                recursionCheck.push(data.getClass());
-                data.buildDescriptionString(sb, recursionCheck);
-                recursionCheck.pop();
-            }
-        }
-        else if (value instanceof Collection) {
-            sb.append("[");
-            for (Object o : ((Collection<?>) value)) {
-                if (sb.charAt(sb.length() - 1) != '[') {
-                    sb.append(", ");
-                }
-                appendObject(sb, o, recursionCheck);
-            }
-            sb.append("]");
-        }
-        else if (value instanceof Exception) {
-            sb.append("<access error>");
-        }
-        else {
-            sb.append("<unknown field type>");
-        }
-
+        return new DataDescriptionBuilder(sb).appendData(this);
     }
 
 }
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.dict;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/** Builds the description string of a {@link Data} object, see {@link Data#buildDescriptionString(StringBuilder)}. The fields
+ * to describe are determined once per class. Data objects which are referenced again while they are being described are
+ * rendered as <code>&lt;endless recursion&gt;</code>, and descriptions are cut off after {@value #MAX_DESCRIPTION_LENGTH}
+ * characters. An instance is used for one description only.
+ *
+ * @author agent */
+final class DataDescriptionBuilder {
+
+    /** The maximum length of a description string; longer descriptions are cut off and end with <code>...</code>. */
+    static final int MAX_DESCRIPTION_LENGTH = 10000;
+
+    private static final String TRUNCATION_MARKER = "...";
+
+    /** The fields to describe per Data class, already accessible. The fields are only softly referenced, as they reference their
+     * class, which otherwise could never be removed from the map. */
+    private static final Map<Class<?>, SoftReference<Field[]>> descriptionFields = Collections
+            .synchronizedMap(new WeakHashMap<Class<?>, SoftReference<Field[]>>());
+
+    private final StringBuilder sb;
+
+    private final int maxLength;
+
+    /** The Data objects which are currently being described, below the described object itself. */
+    private final Map<Data, Boolean> path = new IdentityHashMap<Data, Boolean>();
+
+    private boolean truncated;
+
+    /** Creates a builder.
+     * @param sb the StringBuilder to append the description to */
+    DataDescriptionBuilder(StringBuilder sb) {
+        this.sb = sb;
+        this.maxLength = sb.length() + MAX_DESCRIPTION_LENGTH;
+    }
+
+    /** Appends the description of a Data object.
+     * @param data the object to describe
+     * @return the StringBuilder of this builder */
+    StringBuilder appendData(Data data) {
+        sb.append(data.getClass().getSimpleName());
+        sb.append(" [");
+
+        // most special fields first, fields of parent classes afterwards
+        boolean first = true;
+        for (Field f : getFields(data.getClass())) {
+            if (truncated) {
+                break;
+            }
+            if (!first) {
+                sb.append(", ");
+            }
+            first = false;
+            if (checkLength()) {
+                break;
+            }
+            Object value;
+            try {
+                value = f.get(data);
+            }
+            catch (Exception e) { // NOSONAR
+                value = e;
+            }
+
+            sb.append(f.getName()).append("=");
+            appendObject(value);
+        }
+
+        sb.append("]");
+        return sb;
+    }
+
+    // helper methods ----------------------------------------------------------
+
+    private void appendObject(Object value) {
+        if (value == null) {
+            sb.append("null");
+        }
+        else if (value instanceof String) {
+            appendString((String) value);
+        }
+        else if (value instanceof Data) {
+            Data data = (Data) value;
+            if (path.containsKey(data)) {
+                sb.append("<endless recursion>");
+            }
+            else {
+                path.put(data, Boolean.TRUE);
+                appendData(data);
+                path.remove(data);
+            }
+        }
+        else if (value instanceof Collection) {
+            sb.append("[");
+            boolean first = true;
+            for (Object o : ((Collection<?>) value)) {
+                if (truncated) {
+                    break;
+                }
+                if (!first) {
+                    sb.append(", ");
+                }
+                first = false;
+                if (checkLength()) {
+                    break;
+                }
+                appendObject(o);
+            }
+            sb.append("]");
+        }
+        else if (value instanceof Exception) {
+            sb.append("<access error>");
+        }
+        else {
+            sb.append("<unknown field type>");
+        }
+    }
+
+    private void appendString(String value) {
+        int remaining = Math.max(0, maxLength - sb.length());
+        sb.append('"');
+        if (value.length() > remaining) {
+            sb.append(value, 0, remaining).append(TRUNCATION_MARKER);
+            truncated = true;
+        }
+        else {
+            sb.append(value);
+        }
+        sb.append('"');
+    }
+
+    /** Appends the truncation marker if the maximum length has been reached.
+     * @return <code>true</code> if no more content shall be appended */
+    private boolean checkLength() {
+        if (!truncated && sb.length() >= maxLength) {
+            sb.append(TRUNCATION_MARKER);
+            truncated = true;
+        }
+        return truncated;
+    }
+
+    /** Returns the fields which are described for a Data class, i.e. the declared fields of the class and its parent classes up
+     * to Data, most special fields first. The fields are determined once per class and are already accessible, so they must not
+     * leave this package.
+     * @param dataClass the Data class
+     * @return the fields of the class */
+    static Field[] getFields(Class<?> dataClass) {
+        SoftReference<Field[]> ref = descriptionFields.get(dataClass);
+        Field[] fields = (ref == null ? null : ref.get());
+        if (fields == null) {
+            List<Field> list = new ArrayList<Field>();
+            Class<?> cls = dataClass;
+            do {
+                for (Field f : cls.getDeclaredFields()) {
+                    try {
+                        // the Field objects are private to this cache, so they stay accessible
+                        f.setAccessible(true);
+                    }
+                    catch (SecurityException e) { // NOSONAR
+                        // reading the field value will fail and be reported as access error
+                    }
+                    list.add(f);
+                }
+                cls = cls.getSuperclass();
+            }
+            while (cls != null && cls != Data.class);
+            fields = list.toArray(new Field[list.size()]);
+            descriptionFields.put(dataClass, new SoftReference<Field[]>(fields));
+        }
+        return fields;
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.dict;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/** Provides read-only access to the field values of {@link Data} objects, for tools which inspect test data, e.g. to calculate
+ * fingerprints of test cases. The fields are those described by {@link Data#buildDescriptionString(StringBuilder)}, without
+ * static and synthetic fields.
+ *
+ * @author agent */
+public final class DataFieldValues {
+
+    private DataFieldValues() {
+    }
+
+    /** Returns the names and values of the fields of a Data object, i.e. of the declared fields of its class and the parent
+     * classes up to Data, most special fields first. Fields whose value cannot be read are left out.
+     * @param data the Data object to inspect
+     * @return the field names and values, as unmodifiable list of unmodifiable entries */
+    public static List<Map.Entry<String, Object>> of(Data data) {
+        List<Map.Entry<String, Object>> result = new ArrayList<Map.Entry<String, Object>>();
+        for (Field field : DataDescriptionBuilder.getFields(data.getClass())) {
+            if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                continue;
+            }
+            try {
+                result.add(new AbstractMap.SimpleImmutableEntry<String, Object>(field.getName(), field.get(data)));
+            }
+            catch (Exception e) { // NOSONAR
+                // the field is not accessible
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+}
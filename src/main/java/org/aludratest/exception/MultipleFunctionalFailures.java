@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.exception;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.aludratest.testcase.TestStatus;
+
+/**
+ * Indicates several functional faults which were detected by one service invocation, e.g. by a batch of verifications. The
+ * framework logs one failed test step for each of the {@link #getFailures() failures}.
+ * @author agent
+ */
+public final class MultipleFunctionalFailures extends AludraTestException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<FunctionalFailure> failures;
+
+    /** Constructor.
+     * @param message the exception message, which summarizes the failures
+     * @param failures the individual failures */
+    public MultipleFunctionalFailures(String message, List<FunctionalFailure> failures) {
+        super(message);
+        this.failures = Collections.unmodifiableList(new ArrayList<FunctionalFailure>(failures));
+    }
+
+    /** @return the individual failures, in the order in which they have been detected */
+    public List<FunctionalFailure> getFailures() {
+        return failures;
+    }
+
+    @Override
+    public TestStatus getTestStatus() {
+        return TestStatus.FAILED;
+    }
+
+}
@@ -15,8 +15,14 @@
  */
 package org.aludratest.junit;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.aludratest.AludraTest;
 import org.aludratest.exception.FunctionalFailure;
@@ -27,6 +33,7 @@ import org.aludratest.scheduler.RunnerTree;
 import org.aludratest.scheduler.RunnerTreeBuilder;
 import org.aludratest.scheduler.node.RunnerGroup;
 import org.aludratest.scheduler.node.RunnerLeaf;
+import org.aludratest.scheduler.node.RunnerNode;
 import org.aludratest.scheduler.util.CommonRunnerLeafAttributes;
 import org.aludratest.testcase.TestStatus;
 import org.aludratest.testcase.event.TestStepInfo;
@@ -35,14 +42,25 @@ import org.databene.commons.StringUtil;
 import org.junit.runner.Description;
 import org.junit.runner.RunWith;
 import org.junit.runner.Runner;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.manipulation.Filterable;
+import org.junit.runner.manipulation.NoTestsRemainException;
+import org.junit.runner.manipulation.Sortable;
+import org.junit.runner.manipulation.Sorter;
 import org.junit.runner.notification.Failure;
 import org.junit.runner.notification.RunNotifier;
 import org.junit.runners.model.InitializationError;
 
 /** JUnit {@link Runner} which creates a JUnit test suite structure based on AludraTest files. The related AludraTest base suite is
- * specified using a virtual machine parameter 'suite' with a fully qualified class name, e.g. -Dsuite=com.foo.MyTest
+ * specified using a virtual machine parameter 'suite' with a fully qualified class name, e.g. -Dsuite=com.foo.MyTest <br>
+ * The runner supports JUnit filtering and sorting, so IDEs and build tools can run a subset of the test leaves. A filter may
+ * select single data sets by the leaf descriptions, or all data sets of a test method by a description of the test class and
+ * method name, e.g. created by {@link org.junit.runner.Request#method(Class, String)}; the test class may be the AludraTest class
+ * or the JUnit class which triggered execution. Filtering prunes the runner tree before execution, but keeps all nodes which a
+ * selected leaf depends on: the preceding siblings in sequential groups and the preceding members of its sequential groups. Sorting only reorders the children of parallel groups, as the
+ * order of sequential groups is part of the test semantics.
  * @author Volker Bergmann */
-public class AludraTestJUnitSuite extends Runner implements RunnerListener {
+public class AludraTestJUnitSuite extends Runner implements RunnerListener, Filterable, Sortable {
 
     public static final String SUITE_SYSPROP = "suite";
 
@@ -108,8 +126,54 @@ public class AludraTestJUnitSuite extends Runner implements RunnerListener {
         }
     }
 
-    private boolean isIgnored(RunnerLeaf runnerLeaf) {
-        return Boolean.TRUE.equals(runnerLeaf.getAttribute(CommonRunnerLeafAttributes.IGNORE));
+    // Filterable and Sortable interface implementation ----------------------------------------------------------------
+
+    /** Removes all test leaves from the runner tree which are not accepted by the filter, except for those which an accepted leaf
+     * depends on. A leaf is accepted if the filter accepts its own description or the description of its test method. Groups
+     * which do not contain any remaining leaf are removed as well.
+     * @see Filterable#filter(Filter) */
+    @Override
+    public void filter(Filter filter) throws NoTestsRemainException {
+        Map<String, List<RunnerNode>> sequentialGroups = new HashMap<String, List<RunnerNode>>();
+        List<RunnerLeaf> leaves = new ArrayList<RunnerLeaf>();
+        collectNodes(tree.getRoot(), leaves, sequentialGroups);
+
+        Set<RunnerNode> retained = new HashSet<RunnerNode>();
+        Set<RunnerNode> retainedSubTrees = new HashSet<RunnerNode>();
+        for (RunnerLeaf leaf : leaves) {
+            if (shouldRun(filter, leaf)) {
+                retainWithPrerequisites(leaf, retained, retainedSubTrees, sequentialGroups);
+            }
+        }
+        prune(tree.getRoot(), retained);
+        if (tree.getRoot().isEmpty()) {
+            throw new NoTestsRemainException();
+        }
+        description = null;
+    }
+
+    /** Sorts the children of all parallel groups with the sorter. Sequential groups keep their order.
+     * @see Sortable#sort(Sorter) */
+    @Override
+    public void sort(final Sorter sorter) {
+        final Map<RunnerNode, Description> descriptions = new HashMap<RunnerNode, Description>();
+        Comparator<RunnerNode> comparator = new Comparator<RunnerNode>() {
+            @Override
+            public int compare(RunnerNode n1, RunnerNode n2) {
+                return sorter.compare(getDescription(n1), getDescription(n2));
+            }
+
+            private Description getDescription(RunnerNode node) {
+                Description result = descriptions.get(node);
+                if (result == null) {
+                    result = JUnitUtil.createDescription(node, testClass);
+                    descriptions.put(node, result);
+                }
+                return result;
+            }
+        };
+        sortParallelGroups(tree.getRoot(), comparator);
+        description = null;
     }
 
     @Override
@@ -186,7 +250,133 @@ public class AludraTestJUnitSuite extends Runner implements RunnerListener {
         }
     }
 
+    // private helpers -------------------------------------------------------------------------------------------------
+
+    private boolean isIgnored(RunnerLeaf runnerLeaf) {
+        return Boolean.TRUE.equals(runnerLeaf.getAttribute(CommonRunnerLeafAttributes.IGNORE));
+    }
+
     private Description createDescription(RunnerLeaf runnerLeaf) {
         return JUnitUtil.createDescription(runnerLeaf, testClass);
     }
+
+    private boolean shouldRun(Filter filter, RunnerLeaf leaf) {
+        if (filter.shouldRun(createDescription(leaf))) {
+            return true;
+        }
+        String methodName = (String) findAttribute(leaf, CommonRunnerLeafAttributes.TEST_METHOD_NAME);
+        if (methodName == null) {
+            return false;
+        }
+        String className = (String) findAttribute(leaf, CommonRunnerLeafAttributes.TEST_CLASS_NAME);
+        if (className != null && filter.shouldRun(Description.createTestDescription(className, methodName))) {
+            return true;
+        }
+        return filter.shouldRun(Description.createTestDescription(testClass, methodName));
+    }
+
+    /** Returns the value of an attribute of the node or its nearest ancestor which has the attribute. */
+    private static Object findAttribute(RunnerNode node, String attributeName) {
+        for (RunnerNode current = node; current != null; current = current.getParent()) {
+            Object value = current.getAttribute(attributeName);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /** Collects all leaves of the sub tree in execution order and the nodes of all named sequential groups. */
+    private static void collectNodes(RunnerNode node, List<RunnerLeaf> leaves, Map<String, List<RunnerNode>> sequentialGroups) {
+        String groupName = (String) node.getAttribute(CommonRunnerLeafAttributes.SEQUENTIAL_GROUP_NAME);
+        if (groupName != null) {
+            List<RunnerNode> members = sequentialGroups.get(groupName);
+            if (members == null) {
+                members = new ArrayList<RunnerNode>();
+                sequentialGroups.put(groupName, members);
+            }
+            members.add(node);
+        }
+        if (node instanceof RunnerLeaf) {
+            leaves.add((RunnerLeaf) node);
+        }
+        else {
+            for (RunnerNode child : ((RunnerGroup) node).getChildren()) {
+                collectNodes(child, leaves, sequentialGroups);
+            }
+        }
+    }
+
+    /** Retains a node with its ancestors and all nodes which have to be executed before it, analogous to the preconditions
+     * evaluated by the execution plan. */
+    private static void retainWithPrerequisites(RunnerNode node, Set<RunnerNode> retained, Set<RunnerNode> retainedSubTrees,
+            Map<String, List<RunnerNode>> sequentialGroups) {
+        if (!retained.add(node)) {
+            return;
+        }
+        String groupName = (String) node.getAttribute(CommonRunnerLeafAttributes.SEQUENTIAL_GROUP_NAME);
+        if (groupName != null) {
+            int index = getSequentialGroupIndex(node);
+            for (RunnerNode member : sequentialGroups.get(groupName)) {
+                if (getSequentialGroupIndex(member) < index) {
+                    retainSubTree(member, retained, retainedSubTrees, sequentialGroups);
+                }
+            }
+        }
+        RunnerGroup parent = node.getParent();
+        if (parent != null) {
+            if (!parent.isParallel()) {
+                for (RunnerNode sibling : parent.getChildren()) {
+                    if (sibling == node) {
+                        break;
+                    }
+                    retainSubTree(sibling, retained, retainedSubTrees, sequentialGroups);
+                }
+            }
+            retainWithPrerequisites(parent, retained, retainedSubTrees, sequentialGroups);
+        }
+    }
+
+    private static void retainSubTree(RunnerNode node, Set<RunnerNode> retained, Set<RunnerNode> retainedSubTrees,
+            Map<String, List<RunnerNode>> sequentialGroups) {
+        if (!retainedSubTrees.add(node)) {
+            return;
+        }
+        retainWithPrerequisites(node, retained, retainedSubTrees, sequentialGroups);
+        if (node instanceof RunnerGroup) {
+            for (RunnerNode child : ((RunnerGroup) node).getChildren()) {
+                retainSubTree(child, retained, retainedSubTrees, sequentialGroups);
+            }
+        }
+    }
+
+    private static int getSequentialGroupIndex(RunnerNode node) {
+        Integer index = (Integer) node.getAttribute(CommonRunnerLeafAttributes.SEQUENTIAL_GROUP_INDEX);
+        return index == null ? -1 : index.intValue();
+    }
+
+    private static void prune(RunnerGroup group, Set<RunnerNode> retained) {
+        for (RunnerNode child : new ArrayList<RunnerNode>(group.getChildren())) {
+            if (!retained.contains(child)) {
+                group.removeChild(child);
+            }
+            else if (child instanceof RunnerGroup) {
+                prune((RunnerGroup) child, retained);
+            }
+        }
+    }
+
+    private static void sortParallelGroups(RunnerGroup group, Comparator<RunnerNode> comparator) {
+        for (RunnerNode child : group.getChildren()) {
+            if (child instanceof RunnerGroup) {
+                sortParallelGroups((RunnerGroup) child, comparator);
+            }
+        }
+        if (group.isParallel() && group.getChildren().size() > 1) {
+            List<RunnerNode> children = new ArrayList<RunnerNode>(group.getChildren());
+            Collections.sort(children, comparator);
+            group.reorderChildren(children);
+        }
+    }
+
 }
@@ -17,6 +17,11 @@ package org.aludratest.scheduler.impl;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.aludratest.exception.AutomationException;
 import org.aludratest.exception.TechnicalException;
@@ -34,6 +39,9 @@ import org.databene.commons.Assert;
  * @author Volker Bergmann */
 public class AludraTestMethodInvoker implements TestInvoker {
 
+    /** The {@literal @}Before and {@literal @}After methods of the test classes, shared with the other invokers of the run. */
+    private final LifecyclePlanCache lifecyclePlans;
+
     /** An instance of the test class to invoke. */
     private AludraTestCase testObject;
 
@@ -51,8 +59,21 @@ public class AludraTestMethodInvoker implements TestInvoker {
      * @param method the test method to invoke
      * @param data The Test Case Data object carrying the arguments for execution.
      * @param deferredEvaluation If <code>true</code>, the test case data object will be asked for the arguments right before
-     *            method invocation, otherwise, it will be asked <b>now</b> (in the constructor) for the arguments. */
+     *            method invocation, and the arguments are released after the invocation. Otherwise, it will be asked <b>now</b>
+     *            (in the constructor) for the arguments. */
     public AludraTestMethodInvoker(AludraTestCase testObject, Method method, TestCaseData data, boolean deferredEvaluation) {
+        this(testObject, method, data, deferredEvaluation, new LifecyclePlanCache());
+    }
+
+    /** Constructor for the invokers of a runner tree, which share the {@literal @}Before and {@literal @}After methods of their
+     * test classes.
+     * @param testObject the object on which to invoke the test method
+     * @param method the test method to invoke
+     * @param data The Test Case Data object carrying the arguments for execution.
+     * @param deferredEvaluation If <code>true</code>, the arguments are requested right before method invocation
+     * @param lifecyclePlans the lifecycle methods of the test classes of the run */
+    AludraTestMethodInvoker(AludraTestCase testObject, Method method, TestCaseData data, boolean deferredEvaluation,
+            LifecyclePlanCache lifecyclePlans) {
         // check preconditions
         Assert.notNull(testObject, "testObject");
         Assert.notNull(method, "method");
@@ -60,6 +81,7 @@ public class AludraTestMethodInvoker implements TestInvoker {
         // assign fields
         this.testObject = testObject;
         this.method = method;
+        this.lifecyclePlans = lifecyclePlans;
 
         if (!deferredEvaluation) {
             Object[] params = data.getData();
@@ -79,14 +101,23 @@ public class AludraTestMethodInvoker implements TestInvoker {
 
     /** First executes all {@literal @}Before methods,
      *  then the test method and finally all {@literal @}After
-     *  methods on the {@link #testObject}  */
+     *  methods on the {@link #testObject}. In case of deferred
+     *  evaluation, the arguments are released afterwards. */
     @Override
     public void invoke() throws Exception { //NOSONAR
-        executeBefores(testObject.getClass());
+        LifecyclePlan plan = lifecyclePlans.get(testObject.getClass());
         try {
-            this.method.invoke(testObject, getArgs());
+            executeLifecycleMethods(plan.befores);
+            try {
+                this.method.invoke(testObject, getArgs());
+            } finally {
+                executeLifecycleMethods(plan.afters);
+            }
         } finally {
-            executeAfters(testObject.getClass());
+            if (testCaseData != null) {
+                // the test case data provides the arguments again on request
+                this.args = null;
+            }
         }
     }
 
@@ -104,35 +135,13 @@ public class AludraTestMethodInvoker implements TestInvoker {
 
     // private helper methods ------------------------------------------------------------------------------------------
 
-    /** Executes all {@literal @}Before methods of the {@link #testObject}
-     *  and its parent classes (parent classes first). */
-    private void executeBefores(Class<?> type) {
-        Class<?> superclass = type.getSuperclass();
-        if (!Object.class.equals(superclass)) {
-            executeBefores(superclass);
-        }
-        for (Method candidate : type.getDeclaredMethods()) {
-            Before before = candidate.getAnnotation(Before.class);
-            if (before != null) {
-                verifyBeforeAfterMethod(candidate);
-                invokeObjectMethod(candidate, testObject);
-            }
-        }
-    }
-
-    /** Executes all {@literal @}After methods of the {@link #testObject}
-     *  and its parent classes (child classes first). */
-    private void executeAfters(Class<?> type) {
-        for (Method candidate : type.getDeclaredMethods()) {
-            After after = candidate.getAnnotation(After.class);
-            if (after != null) {
-                verifyBeforeAfterMethod(candidate);
-                invokeObjectMethod(candidate, testObject);
+    /** Executes the given {@literal @}Before or {@literal @}After methods on the {@link #testObject}. */
+    private void executeLifecycleMethods(List<LifecycleMethod> lifecycleMethods) {
+        for (LifecycleMethod lifecycleMethod : lifecycleMethods) {
+            if (lifecycleMethod.errorMessage != null) {
+                throw new AutomationException(lifecycleMethod.errorMessage);
             }
-        }
-        Class<?> superclass = type.getSuperclass();
-        if (!Object.class.equals(superclass)) {
-            executeAfters(superclass);
+            invokeObjectMethod(lifecycleMethod.method, testObject);
         }
     }
 
@@ -145,7 +154,8 @@ public class AludraTestMethodInvoker implements TestInvoker {
         }
     }
 
-    private Object[] getArgs() {
+    /** Returns the arguments for the test method. In case of deferred evaluation, the test case data is evaluated now. */
+    Object[] getArgs() {
         if (args == null && testCaseData != null) {
             Object[] params = testCaseData.getData();
             this.args = (params != null ? params.clone() : null);
@@ -154,6 +164,18 @@ public class AludraTestMethodInvoker implements TestInvoker {
         return (this.args == null ? new Object[0] : this.args);
     }
 
+    /** Returns the arguments for the test method without retaining them. In case of deferred evaluation, the test case data is
+     * evaluated on each call, so arguments which are only inspected, e.g. for fingerprinting a test case which is then skipped,
+     * do not stay referenced by the invoker. */
+    Object[] peekArgs() {
+        if (args == null && testCaseData != null) {
+            Object[] params = testCaseData.getData();
+            validateArgsSize(params);
+            return (params == null ? new Object[0] : params);
+        }
+        return getArgs();
+    }
+
     /** Invokes the given {@literal @}Before or {@literal @}After method
      * on the given object */
     private static void invokeObjectMethod(Method method, Object targetObject) {
@@ -179,4 +201,93 @@ public class AludraTestMethodInvoker implements TestInvoker {
         }
     }
 
+    // helper classes ----------------------------------------------------------
+
+    /** The {@literal @}Before and {@literal @}After methods of the test classes of one run, determined once per class. A cache
+     * is held by the runner tree builder and its invokers only, so the test classes are not referenced beyond the run. */
+    static final class LifecyclePlanCache {
+
+        private final Map<Class<?>, LifecyclePlan> plans = new HashMap<Class<?>, LifecyclePlan>();
+
+        private synchronized LifecyclePlan get(Class<?> testClass) {
+            LifecyclePlan plan = plans.get(testClass);
+            if (plan == null) {
+                plan = new LifecyclePlan(testClass);
+                plans.put(testClass, plan);
+            }
+            return plan;
+        }
+    }
+
+    /** The {@literal @}Before and {@literal @}After methods of a test class and its parent classes, in the order of execution.
+     *  Method lookup, annotation evaluation and verification are done once per class; the plan is immutable and thus shared by all
+     *  invokers of the class in a run, in all threads. */
+    private static final class LifecyclePlan {
+
+        private final List<LifecycleMethod> befores;
+
+        private final List<LifecycleMethod> afters;
+
+        private LifecyclePlan(Class<?> testClass) {
+            List<LifecycleMethod> beforeList = new ArrayList<LifecycleMethod>();
+            List<LifecycleMethod> afterList = new ArrayList<LifecycleMethod>();
+            collectBefores(testClass, beforeList);
+            collectAfters(testClass, afterList);
+            this.befores = Collections.unmodifiableList(beforeList);
+            this.afters = Collections.unmodifiableList(afterList);
+        }
+
+        /** Collects all {@literal @}Before methods of the class and its parent classes (parent classes first). */
+        private static void collectBefores(Class<?> type, List<LifecycleMethod> result) {
+            Class<?> superclass = type.getSuperclass();
+            if (!Object.class.equals(superclass)) {
+                collectBefores(superclass, result);
+            }
+            for (Method candidate : type.getDeclaredMethods()) {
+                if (candidate.getAnnotation(Before.class) != null) {
+                    result.add(new LifecycleMethod(candidate));
+                }
+            }
+        }
+
+        /** Collects all {@literal @}After methods of the class and its parent classes (child classes first). */
+        private static void collectAfters(Class<?> type, List<LifecycleMethod> result) {
+            for (Method candidate : type.getDeclaredMethods()) {
+                if (candidate.getAnnotation(After.class) != null) {
+                    result.add(new LifecycleMethod(candidate));
+                }
+            }
+            Class<?> superclass = type.getSuperclass();
+            if (!Object.class.equals(superclass)) {
+                collectAfters(superclass, result);
+            }
+        }
+    }
+
+    /** A {@literal @}Before or {@literal @}After method, or the reason why it cannot be invoked, which is reported when it is
+     *  due for execution. */
+    private static final class LifecycleMethod {
+
+        private final Method method;
+
+        private final String errorMessage;
+
+        private LifecycleMethod(Method method) {
+            this.method = method;
+            String verificationError = null;
+            try {
+                verifyBeforeAfterMethod(method);
+                // skip the access check on each invocation; the method has been verified to be public
+                method.setAccessible(true);
+            }
+            catch (AutomationException e) {
+                verificationError = e.getMessage();
+            }
+            catch (SecurityException e) {
+                // access checks remain active
+            }
+            this.errorMessage = verificationError;
+        }
+    }
+
 }
@@ -15,6 +15,7 @@
  */
 package org.aludratest.scheduler.impl;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -25,13 +26,16 @@ import java.util.concurrent.TimeUnit;
 
 import org.aludratest.config.AludraTestConfig;
 import org.aludratest.invoker.TestInvoker;
+import org.aludratest.scheduler.AbstractRunnerListener;
 import org.aludratest.scheduler.AludraTestRunner;
 import org.aludratest.scheduler.RunStatus;
+import org.aludratest.scheduler.RunnerListener;
 import org.aludratest.scheduler.RunnerListenerRegistry;
 import org.aludratest.scheduler.RunnerTree;
 import org.aludratest.scheduler.node.RunnerGroup;
 import org.aludratest.scheduler.node.RunnerLeaf;
 import org.aludratest.scheduler.node.RunnerNode;
+import org.aludratest.scheduler.remote.WorkerPool;
 import org.aludratest.scheduler.util.CommonRunnerLeafAttributes;
 import org.aludratest.service.AludraServiceManager;
 import org.aludratest.testcase.AludraTestContext;
@@ -48,7 +52,19 @@ import org.slf4j.LoggerFactory;
  * class to build an ordered list of test cases to execute, including their preconditions. As long as the execution plan is not
  * empty, it is asked for the next test case of the ordered list which has all of its preconditions fulfilled, and executes it
  * using a <code>ThreadPoolExecutor</code>. When the Thread Pool is full, the runner waits for a running test case to become
- * finished before submitting the next one.
+ * finished before submitting the next one. <br>
+ * If a duration history file is configured, the execution duration of each test case is recorded and written to this file after
+ * the run, and the durations of the previous run are passed to the execution plan to prioritize long-running test cases. <br>
+ * If worker JVMs are configured, the test cases are executed by a {@link WorkerPool} instead of the current JVM. The execution
+ * plan and all listener events remain in the current (coordinating) JVM; the Thread Pool then has one Thread per execution slot
+ * of all workers. <br>
+ * If a result cache file is configured (incremental mode), test cases which passed in a previous run with the same fingerprint
+ * are not executed again. All listener events are still fired for them, with the leaf marked by the
+ * {@link CommonRunnerLeafAttributes#CACHED_RESULT} attribute, and a single passed test step reporting the cached result. <br>
+ * If leak detection is enabled, the threads and file descriptors left behind by locally executed test cases are attributed to
+ * them by a {@link ResourceLeakTracker}, and the test cases which leaked the most resources are logged after the run. <br>
+ * Failed test cases are reported to the execution plan. Test cases cancelled by the plan because of a failed predecessor are not
+ * executed, but reported with a single ignored test step, so all listener events are still fired for them.
  * 
  * @author falbrech
  * 
@@ -66,6 +82,18 @@ public class AludraTestRunnerImpl implements AludraTestRunner {
     /** The execution plan for all tests. */
     private ExecutionPlan executionPlan;
 
+    /** The durations of previous runs, or <code>null</code> if no duration history is configured. */
+    private TestDurationHistory durationHistory;
+
+    /** The fingerprints of passed test cases, or <code>null</code> if incremental mode is disabled. */
+    private TestResultCache resultCache;
+
+    /** The worker JVMs to execute the tests in, or <code>null</code> if tests are executed in this JVM. */
+    private WorkerPool workerPool;
+
+    /** The detector of leaked threads and file descriptors, or <code>null</code> if leak detection is disabled. */
+    private ResourceLeakTracker leakTracker;
+
     @Requirement
     private RunnerListenerRegistry listenerRegistry;
 
@@ -84,34 +112,21 @@ public class AludraTestRunnerImpl implements AludraTestRunner {
                 debugSubTree(runnerTree.getRoot(), "");
             }
 
-            executorService = (ThreadPoolExecutor) Executors.newFixedThreadPool(poolSize);
-
-            executionPlan = new ExecutionPlan();
-            executionPlan.buildExecutionPlan(runnerTree);
-
-            // fire start process event
-            listenerRegistry.fireStartingTestProcess(runnerTree);
-
             try {
-                while (!executionPlan.isEmpty()) {
-                    if (!waitForExecutionSlot(poolSize)) {
-                        return;
-                    }
-                    RunnerLeaf nextLeaf = waitForAvailableLeaf();
-                    if (nextLeaf == null) {
-                        return;
-                    }
-                    executorService.submit(new RunnerLeafRunnable(nextLeaf)); // NOSONAR
+                if (WorkerPool.isEnabled(aludraConfig)) {
+                    workerPool = WorkerPool.start(aludraConfig, listenerRegistry);
+                    poolSize = workerPool.getTotalSlots();
                 }
+                runExecutionPlan(runnerTree, poolSize);
             }
             finally {
-                listenerRegistry.fireFinishedTestProcess(runnerTree);
-                executorService.shutdown();
-                try {
-                    executorService.awaitTermination(1, TimeUnit.MINUTES);
+                // also release the worker JVMs if the execution plan could not be built
+                if (executorService != null) {
+                    executorService.shutdown();
                 }
-                catch (InterruptedException e) {
-                    // ignore
+                if (workerPool != null) {
+                    workerPool.shutdown();
+                    workerPool = null;
                 }
             }
         }
@@ -120,6 +135,68 @@ public class AludraTestRunnerImpl implements AludraTestRunner {
         }
     }
 
+    private void runExecutionPlan(RunnerTree runnerTree, int poolSize) {
+        if (aludraConfig.isLeakDetectionEnabled()) {
+            leakTracker = new ResourceLeakTracker(aludraConfig.isInterruptLeakedThreads());
+            executorService = (ThreadPoolExecutor) Executors.newFixedThreadPool(poolSize,
+                    leakTracker.createFrameworkThreadFactory());
+        }
+        else {
+            executorService = (ThreadPoolExecutor) Executors.newFixedThreadPool(poolSize);
+        }
+
+        String historyFile = aludraConfig.getDurationHistoryFile();
+        durationHistory = (historyFile == null ? null : TestDurationHistory.load(new File(historyFile)));
+
+        String resultCacheFile = aludraConfig.getResultCacheFile();
+        if (resultCacheFile != null) {
+            resultCache = TestResultCache.load(new File(resultCacheFile), aludraConfig.getVersion());
+            listenerRegistry.addRunnerListener(resultCache);
+        }
+
+        executionPlan = new ExecutionPlan(aludraConfig.getResourceCapacities());
+        executionPlan.buildExecutionPlan(runnerTree, durationHistory);
+        RunnerListener failureListener = new FailureListener();
+        listenerRegistry.addRunnerListener(failureListener);
+
+        // fire start process event
+        listenerRegistry.fireStartingTestProcess(runnerTree);
+
+        try {
+            while (!executionPlan.isEmpty()) {
+                if (!waitForExecutionSlot(poolSize)) {
+                    return;
+                }
+                RunnerLeaf nextLeaf = waitForAvailableLeaf();
+                if (nextLeaf == null) {
+                    return;
+                }
+                executorService.submit(new RunnerLeafRunnable(nextLeaf)); // NOSONAR
+            }
+        }
+        finally {
+            listenerRegistry.fireFinishedTestProcess(runnerTree);
+            executorService.shutdown();
+            try {
+                executorService.awaitTermination(1, TimeUnit.MINUTES);
+            }
+            catch (InterruptedException e) {
+                // ignore
+            }
+            listenerRegistry.removeRunnerListener(failureListener);
+            if (durationHistory != null) {
+                durationHistory.save();
+            }
+            if (resultCache != null) {
+                listenerRegistry.removeRunnerListener(resultCache);
+                resultCache.save();
+            }
+            if (leakTracker != null) {
+                leakTracker.logReport();
+            }
+        }
+    }
+
     private RunnerLeaf waitForAvailableLeaf() {
         RunnerLeaf nextLeaf;
         while ((nextLeaf = executionPlan.getNextExecutableLeaf()) == null && !executionPlan.isEmpty()) {
@@ -176,6 +253,18 @@ public class AludraTestRunnerImpl implements AludraTestRunner {
         }
     }
 
+    /** Reports failed test cases to the execution plan, so it can cancel dependent test cases. */
+    private class FailureListener extends AbstractRunnerListener {
+
+        @Override
+        public void newTestStep(RunnerLeaf runnerLeaf, TestStepInfo testStepInfo) {
+            if (testStepInfo.getTestStatus() != null && testStepInfo.getTestStatus().isFailure()) {
+                executionPlan.markFailed(runnerLeaf);
+            }
+        }
+
+    }
+
     /* Needed for RunnerLeafRunnable */
     private static Object runStatusSemaphore = new Object();
 
@@ -192,22 +281,6 @@ public class AludraTestRunnerImpl implements AludraTestRunner {
             TestInvoker testInvoker = leaf.getTestInvoker();
             LOGGER.debug("Starting {}", testInvoker);
 
-            InternalTestListener listener = new InternalTestListener() {
-                @Override
-                public void newTestStepGroup(String name) {
-                    listenerRegistry.fireNewTestStepGroup(leaf, name);
-                }
-
-                @Override
-                public void newTestStep(TestStepInfo testStep) {
-                    listenerRegistry.fireNewTestStep(leaf, testStep);
-                }
-            };
-
-            // set context
-            AludraTestContext context = new AludraTestContextImpl(listener, serviceManager);
-            testInvoker.setContext(context);
-
             // mark as ignored, if leaf is ignored
             boolean ignore = Boolean.TRUE.equals(leaf.getAttribute(CommonRunnerLeafAttributes.IGNORE))
                     && aludraConfig.isIgnoreEnabled();
@@ -234,8 +307,30 @@ public class AludraTestRunnerImpl implements AludraTestRunner {
                     executeEmptyGroups(g);
                 }
 
+                String failedPredecessor = (String) leaf.getAttribute(CommonRunnerLeafAttributes.CANCELLED_BY_FAILURE_OF);
+                boolean cached = !ignore && failedPredecessor == null && resultCache != null
+                        && resultCache.isUnchangedSincePassed(leaf);
+                if (cached) {
+                    leaf.setAttribute(CommonRunnerLeafAttributes.CACHED_RESULT, Boolean.TRUE);
+                }
+
                 listenerRegistry.fireStartingTestLeaf(leaf);
-                testInvoker.invoke();
+                long startTime = System.currentTimeMillis();
+                if (failedPredecessor != null) {
+                    LogUtil.logCancelledAsNewGroup(listenerRegistry, leaf, failedPredecessor);
+                }
+                else if (cached) {
+                    LogUtil.logCachedResultAsNewGroup(listenerRegistry, leaf);
+                }
+                else if (workerPool != null && workerPool.canExecute(leaf)) {
+                    workerPool.execute(leaf);
+                }
+                else {
+                    invokeLocally(testInvoker);
+                }
+                if (!cached && failedPredecessor == null) {
+                    recordDuration(startTime, ignore);
+                }
                 LOGGER.debug("Finished {}", testInvoker);
                 Thread.currentThread().setName(oldName);
             }
@@ -274,6 +369,43 @@ public class AludraTestRunnerImpl implements AludraTestRunner {
             return null;
         }
 
+        private void invokeLocally(TestInvoker testInvoker) throws Throwable { // NOSONAR
+            InternalTestListener listener = new InternalTestListener() {
+                @Override
+                public void newTestStepGroup(String name) {
+                    listenerRegistry.fireNewTestStepGroup(leaf, name);
+                }
+
+                @Override
+                public void newTestStep(TestStepInfo testStep) {
+                    listenerRegistry.fireNewTestStep(leaf, testStep);
+                }
+            };
+
+            // set context
+            AludraTestContext context = new AludraTestContextImpl(listener, serviceManager);
+            testInvoker.setContext(context);
+            if (leakTracker == null) {
+                testInvoker.invoke();
+                return;
+            }
+            ResourceLeakTracker.Snapshot snapshot = leakTracker.startingLeaf(leaf);
+            try {
+                testInvoker.invoke();
+            }
+            finally {
+                leakTracker.finishedLeaf(snapshot);
+            }
+        }
+
+        private void recordDuration(long startTime, boolean ignore) {
+            // durations of ignored or erroneous test cases are not representative
+            if (durationHistory != null && !ignore
+                    && !Boolean.TRUE.equals(leaf.getAttribute(CommonRunnerLeafAttributes.BUILDER_ERROR))) {
+                durationHistory.recordDuration(leaf, System.currentTimeMillis() - startTime);
+            }
+        }
+
     }
 
 }
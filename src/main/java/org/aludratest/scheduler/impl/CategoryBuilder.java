@@ -17,7 +17,9 @@ package org.aludratest.scheduler.impl;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.aludratest.scheduler.RunnerTree;
 import org.aludratest.scheduler.node.ExecutionMode;
@@ -32,6 +34,9 @@ public class CategoryBuilder {
 
     private List<String> categoryOrder;
 
+    /** The category groups which have already been looked up or created, per parent group and name. */
+    private Map<RunnerGroup, Map<String, RunnerGroup>> childGroups = new HashMap<RunnerGroup, Map<String, RunnerGroup>>();
+
     public CategoryBuilder(List<String> categoryOrder) {
         this.categoryOrder = categoryOrder;
     }
@@ -45,8 +50,9 @@ public class CategoryBuilder {
         if (!categoryOrder.isEmpty()) {
             List<String> categories = new ArrayList<String>();
             StringBuilder prefix = new StringBuilder();
+            Map<String, List<String>> attributes = TestAttributeUtil.getTestAttributes(clazz);
             for (String cat : categoryOrder) {
-                List<String> catVals = TestAttributeUtil.getTestAttributes(clazz).get(cat);
+                List<String> catVals = attributes.get(cat);
                 String catVal = catVals == null || catVals.isEmpty() ? null : catVals.get(0);
                 if (catVal == null) {
                     catVal = cat + " unknown";
@@ -94,20 +100,32 @@ public class CategoryBuilder {
         RunnerGroup group = tree.getRoot();
 
         for (String seg : pathSegments) {
-            boolean found = false;
-            for (RunnerNode node : group.getChildren()) {
-                if (node instanceof RunnerGroup && seg.equals(node.getName())) {
-                    group = (RunnerGroup) node;
-                    found = true;
-                    break;
-                }
+            Map<String, RunnerGroup> children = childGroups.get(group);
+            if (children == null) {
+                children = new HashMap<String, RunnerGroup>();
+                childGroups.put(group, children);
+            }
+            RunnerGroup child = children.get(seg);
+            if (child == null) {
+                child = findChildGroup(group, seg);
             }
-            if (!found) {
+            if (child == null) {
                 // TODO FAL here would be the place to select execution mode based on whatever information
-                group = tree.createGroup(seg, ExecutionMode.PARALLEL, group);
+                child = tree.createGroup(seg, ExecutionMode.PARALLEL, group);
             }
+            children.put(seg, child);
+            group = child;
         }
 
         return group;
     }
+
+    private static RunnerGroup findChildGroup(RunnerGroup group, String name) {
+        for (RunnerNode node : group.getChildren()) {
+            if (node instanceof RunnerGroup && name.equals(node.getName())) {
+                return (RunnerGroup) node;
+            }
+        }
+        return null;
+    }
 }
\ No newline at end of file
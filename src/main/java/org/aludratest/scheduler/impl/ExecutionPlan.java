@@ -19,8 +19,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.aludratest.scheduler.RunStatus;
 import org.aludratest.scheduler.RunnerTree;
@@ -34,7 +37,21 @@ import org.aludratest.scheduler.util.CommonRunnerLeafAttributes;
  * dependencies for each. Afterwards, the test cases are ordered by the number of dependent test cases, putting the test cases
  * with most dependent test cases first. This gives the best chance that test cases are executed as early as possible, thus
  * reducing the "Sequential Overhead", the effect that in the end, only one Thread is busy working through a long list of
- * sequential test cases.
+ * sequential test cases. <br>
+ * If a {@link TestDurationHistory} with durations of a previous run is available, the test cases are instead ordered by the
+ * length of their <i>critical path</i>, i.e. their own recorded duration plus the longest chain of recorded durations of test
+ * cases depending on them. This starts long sequential chains and long-running test cases first, reducing the time in which
+ * only a few Threads are busy at the end of a run. Test cases without recorded duration are assumed to take the average of the
+ * recorded durations. <br>
+ * Test cases using limited resources (see <code>@UsesResource</code>) are only returned by {@link #getNextExecutableLeaf()} if
+ * all of their resources have a free permit. The permits are released when the test case is removed from the plan. So a test
+ * case waiting for a resource never occupies an execution thread, and other test cases can be executed meanwhile. <br>
+ * Failed test cases can be reported using {@link #markFailed(RunnerLeaf)}. If the failed test case or a test case depending on it
+ * is below a node with the {@link CommonRunnerLeafAttributes#CANCEL_DEPENDENTS_ON_FAILURE} attribute, the dependent test case is
+ * cancelled as soon as the failure is reported, i.e. before the failed test case is finished: It gets the
+ * {@link CommonRunnerLeafAttributes#CANCELLED_BY_FAILURE_OF} attribute, and the cancellation propagates to all test cases
+ * depending on it. Cancelled test cases are still returned by {@link #getNextExecutableLeaf()}, without acquiring resource permits, so
+ * the runner can report them.
  * 
  * @author falbrech */
 public class ExecutionPlan {
@@ -43,16 +60,50 @@ public class ExecutionPlan {
 
     private List<ExecutionPlanEntry> entries = new ArrayList<ExecutionPlanEntry>();
 
+    private Map<String, Integer> configuredCapacities;
+
+    private Map<String, Integer> resourceCapacities = new HashMap<String, Integer>();
+
+    private Map<String, Integer> usedPermits = new HashMap<String, Integer>();
+
+    /** Creates a new execution plan without configured resource capacities. */
+    public ExecutionPlan() {
+        this(null);
+    }
+
+    /** Creates a new execution plan using the given resource capacities.
+     * 
+     * @param resourceCapacities Configured capacities of named resources, as returned by
+     *            <code>AludraTestConfig.getResourceCapacities()</code>. These take precedence over capacities declared in
+     *            <code>@UsesResource</code> annotations. May be <code>null</code>. */
+    public ExecutionPlan(Map<String, Integer> resourceCapacities) {
+        this.configuredCapacities = resourceCapacities == null ? Collections.<String, Integer> emptyMap() : resourceCapacities;
+    }
+
     /** Populates this execution plan with the test cases contained in the given RunnerTree structure.
      * 
      * @param tree RunnerTree, as created by a <code>RunnerTreeBuilder</code> component. */
     public void buildExecutionPlan(RunnerTree tree) {
+        buildExecutionPlan(tree, null);
+    }
+
+    /** Populates this execution plan with the test cases contained in the given RunnerTree structure, using the given duration
+     * history to order the test cases by the length of their critical path.
+     * 
+     * @param tree RunnerTree, as created by a <code>RunnerTreeBuilder</code> component.
+     * @param history Durations recorded in previous runs, or <code>null</code> to use the default ordering. */
+    public void buildExecutionPlan(RunnerTree tree, TestDurationHistory history) {
         // find sequential groups first
         findSequentialGroups(tree.getRoot(), sequentialGroups);
 
         // collect all nodes; for each node, determine dependencies
         collectEntries(tree.getRoot());
         calculateDependencies();
+        calculateResources();
+
+        if (history != null && !history.isEmpty()) {
+            prioritizeByCriticalPath(history);
+        }
     }
 
     /** Determines whether there are any more items available in this execution plan, i.e. if a call to
@@ -67,8 +118,9 @@ public class ExecutionPlan {
     }
 
     /** Returns the next RunnerLeaf in this execution plan which is ready for execution, i.e. all of its prerequisites are
-     * fulfilled. This may return <code>null</code> if there is <i>currently</i> no such RunnerLeaf, but this could change as soon
-     * as a RunnerLeaf is finished which is a prerequisite for another leaf. <br>
+     * fulfilled and all resources it uses have a free permit. This may return <code>null</code> if there is <i>currently</i> no
+     * such RunnerLeaf, but this could change as soon as a RunnerLeaf is finished which is a prerequisite for another leaf, or
+     * which releases a resource permit. <br>
      * If {@link #isEmpty()} returns <code>true</code>, this will always return <code>null</code>.
      * 
      * @return The next RunnerLeaf in this execution plan which is ready for execution, or <code>null</code> if there currently is
@@ -77,7 +129,7 @@ public class ExecutionPlan {
         // get next runner leaf with all dependencies finished
         synchronized (entries) {
             for (ExecutionPlanEntry entry : entries) {
-                if (!entry.started && entry.areDependenciesFinished()) {
+                if (!entry.started && entry.areDependenciesFinished() && (isCancelled(entry.leaf) || acquirePermits(entry))) {
                     entry.started = true;
                     return entry.leaf;
                 }
@@ -93,8 +145,97 @@ public class ExecutionPlan {
      * @param leaf Leaf for which to remove the entry from this execution plan. */
     public void removeFinishedRunnerLeaf(RunnerLeaf leaf) {
         synchronized (entries) {
-            entries.remove(findEntry(leaf));
+            ExecutionPlanEntry entry = findEntry(leaf);
+            if (entry != null) {
+                if (entry.started && !isCancelled(leaf)) {
+                    releasePermits(entry);
+                }
+                entries.remove(entry);
+            }
+        }
+    }
+
+    /** Marks the given RunnerLeaf as failed. Test cases depending on it are cancelled immediately, if the cancellation of
+     * dependents is enabled for the leaf or the dependent test case. This must be called before the leaf's run status is set to
+     * {@link RunStatus#FINISHED}, so no dependent test case can be returned by {@link #getNextExecutableLeaf()} in between.
+     * 
+     * @param leaf Leaf which has failed. */
+    public void markFailed(RunnerLeaf leaf) {
+        synchronized (entries) {
+            ExecutionPlanEntry entry = findEntry(leaf);
+            if (entry != null && !entry.failed) {
+                entry.failed = true;
+                cancelDependents(entry);
+            }
+        }
+    }
+
+    private void cancelDependents(ExecutionPlanEntry failedEntry) {
+        String failedName = (String) failedEntry.leaf.getAttribute(CommonRunnerLeafAttributes.CANCELLED_BY_FAILURE_OF);
+        if (failedName == null) {
+            failedName = failedEntry.leaf.getName();
+        }
+
+        // cancel transitively, as the cancelled test cases will finish without being removed first
+        LinkedList<ExecutionPlanEntry> failedEntries = new LinkedList<ExecutionPlanEntry>();
+        failedEntries.add(failedEntry);
+        while (!failedEntries.isEmpty()) {
+            ExecutionPlanEntry failed = failedEntries.poll();
+            boolean policyOnFailed = isCancelDependentsOnFailure(failed.leaf);
+            for (ExecutionPlanEntry entry : entries) {
+                if (!entry.started && !entry.failed && entry.dependsOn(failed.leaf)
+                        && (policyOnFailed || isCancelDependentsOnFailure(entry.leaf))) {
+                    entry.leaf.setAttribute(CommonRunnerLeafAttributes.CANCELLED_BY_FAILURE_OF, failedName);
+                    entry.failed = true;
+                    failedEntries.add(entry);
+                }
+            }
+        }
+    }
+
+    private static boolean isCancelled(RunnerLeaf leaf) {
+        return leaf.getAttribute(CommonRunnerLeafAttributes.CANCELLED_BY_FAILURE_OF) != null;
+    }
+
+    private static boolean isCancelDependentsOnFailure(RunnerLeaf leaf) {
+        // cancelled leafs always propagate their cancellation
+        if (isCancelled(leaf)) {
+            return true;
+        }
+        for (RunnerNode node = leaf; node != null; node = node.getParent()) {
+            if (Boolean.TRUE.equals(node.getAttribute(CommonRunnerLeafAttributes.CANCEL_DEPENDENTS_ON_FAILURE))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean acquirePermits(ExecutionPlanEntry entry) {
+        if (entry.resources == null) {
+            return true;
+        }
+        for (String resource : entry.resources) {
+            if (getUsedPermits(resource) >= resourceCapacities.get(resource).intValue()) {
+                return false;
+            }
         }
+        for (String resource : entry.resources) {
+            usedPermits.put(resource, Integer.valueOf(getUsedPermits(resource) + 1));
+        }
+        return true;
+    }
+
+    private void releasePermits(ExecutionPlanEntry entry) {
+        if (entry.resources != null) {
+            for (String resource : entry.resources) {
+                usedPermits.put(resource, Integer.valueOf(getUsedPermits(resource) - 1));
+            }
+        }
+    }
+
+    private int getUsedPermits(String resource) {
+        Integer used = usedPermits.get(resource);
+        return used == null ? 0 : used.intValue();
     }
 
     private void collectEntries(RunnerGroup group) {
@@ -115,6 +256,149 @@ public class ExecutionPlan {
         }
     }
 
+    private void calculateResources() {
+        for (ExecutionPlanEntry entry : entries) {
+            for (RunnerNode node = entry.leaf; node != null; node = node.getParent()) {
+                String[] resources = (String[]) node.getAttribute(CommonRunnerLeafAttributes.USED_RESOURCES);
+                if (resources != null) {
+                    Integer capacity = (Integer) node.getAttribute(CommonRunnerLeafAttributes.USED_RESOURCES_CAPACITY);
+                    for (String resource : resources) {
+                        entry.addResource(resource);
+                        registerResource(resource, capacity);
+                    }
+                }
+            }
+        }
+
+        // configured capacities take precedence; resources without any capacity can be used by one test case at a time
+        for (Map.Entry<String, Integer> resource : resourceCapacities.entrySet()) {
+            Integer configured = configuredCapacities.get(resource.getKey());
+            if (configured != null) {
+                resource.setValue(configured);
+            }
+            else if (resource.getValue() == null) {
+                resource.setValue(Integer.valueOf(1));
+            }
+        }
+    }
+
+    private void registerResource(String resource, Integer declaredCapacity) {
+        // use the smallest declared capacity if declarations differ
+        Integer current = resourceCapacities.get(resource);
+        if (current == null || (declaredCapacity != null && declaredCapacity.intValue() < current.intValue())) {
+            resourceCapacities.put(resource, declaredCapacity);
+        }
+    }
+
+    private void prioritizeByCriticalPath(TestDurationHistory history) {
+        // determine own durations; use average of known durations for unknown ones
+        long knownSum = 0;
+        int knownCount = 0;
+        for (ExecutionPlanEntry entry : entries) {
+            Long duration = history.getDuration(entry.leaf);
+            if (duration != null) {
+                entry.duration = duration.longValue();
+                knownSum += entry.duration;
+                knownCount++;
+            }
+            else {
+                entry.duration = -1;
+            }
+        }
+        if (knownCount == 0) {
+            // no history for any of these test cases; keep default ordering
+            return;
+        }
+        long average = knownSum / knownCount;
+        for (ExecutionPlanEntry entry : entries) {
+            if (entry.duration < 0) {
+                entry.duration = average;
+            }
+        }
+
+        // map each dependency node to the entries depending on it
+        Map<RunnerNode, List<ExecutionPlanEntry>> dependents = new HashMap<RunnerNode, List<ExecutionPlanEntry>>();
+        for (ExecutionPlanEntry entry : entries) {
+            if (entry.dependencies != null) {
+                for (RunnerNode node : entry.dependencies) {
+                    List<ExecutionPlanEntry> ls = dependents.get(node);
+                    if (ls == null) {
+                        ls = new ArrayList<ExecutionPlanEntry>();
+                        dependents.put(node, ls);
+                    }
+                    ls.add(entry);
+                }
+            }
+        }
+
+        for (ExecutionPlanEntry entry : entries) {
+            calculateCriticalPath(entry, dependents);
+        }
+
+        // stable sort, so entries with equal weight keep their tree order
+        Collections.sort(entries, new Comparator<ExecutionPlanEntry>() {
+            @Override
+            public int compare(ExecutionPlanEntry e1, ExecutionPlanEntry e2) {
+                return e1.criticalPath > e2.criticalPath ? -1 : (e1.criticalPath < e2.criticalPath ? 1 : 0);
+            }
+        });
+    }
+
+    /* Iterative depth-first calculation, as sequential chains can be much longer than the call stack allows. */
+    private void calculateCriticalPath(ExecutionPlanEntry start, Map<RunnerNode, List<ExecutionPlanEntry>> dependents) {
+        if (start.criticalPath >= 0) {
+            return;
+        }
+
+        LinkedList<ExecutionPlanEntry> stack = new LinkedList<ExecutionPlanEntry>();
+        stack.push(start);
+        start.visiting = true;
+
+        while (!stack.isEmpty()) {
+            ExecutionPlanEntry entry = stack.peek();
+            ExecutionPlanEntry pending = findUncalculatedDependent(entry, dependents);
+            if (pending != null) {
+                pending.visiting = true;
+                stack.push(pending);
+            }
+            else {
+                stack.pop();
+                entry.visiting = false;
+                entry.criticalPath = entry.duration + getMaxDependentCriticalPath(entry, dependents);
+            }
+        }
+    }
+
+    private ExecutionPlanEntry findUncalculatedDependent(ExecutionPlanEntry entry,
+            Map<RunnerNode, List<ExecutionPlanEntry>> dependents) {
+        // every ancestor (or the leaf itself) can be a dependency of other entries
+        for (RunnerNode node = entry.leaf; node != null; node = node.getParent()) {
+            List<ExecutionPlanEntry> ls = dependents.get(node);
+            if (ls != null) {
+                for (ExecutionPlanEntry dependent : ls) {
+                    // visiting entries are on the current path, so this would be a cyclic dependency, which is ignored
+                    if (dependent.criticalPath < 0 && !dependent.visiting) {
+                        return dependent;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private long getMaxDependentCriticalPath(ExecutionPlanEntry entry, Map<RunnerNode, List<ExecutionPlanEntry>> dependents) {
+        long max = 0;
+        for (RunnerNode node = entry.leaf; node != null; node = node.getParent()) {
+            List<ExecutionPlanEntry> ls = dependents.get(node);
+            if (ls != null) {
+                for (ExecutionPlanEntry dependent : ls) {
+                    max = Math.max(max, dependent.criticalPath);
+                }
+            }
+        }
+        return max;
+    }
+
     private void findSequentialGroups(RunnerNode node, Map<String, List<RunnerNode>> buildList) {
         String groupName = (String) node.getAttribute(CommonRunnerLeafAttributes.SEQUENTIAL_GROUP_NAME);
         if (groupName != null) {
@@ -218,6 +502,16 @@ public class ExecutionPlan {
 
         private boolean started;
 
+        private long duration;
+
+        private long criticalPath = -1;
+
+        private boolean visiting;
+
+        private Set<String> resources;
+
+        private boolean failed;
+
         ExecutionPlanEntry(RunnerLeaf leaf) {
             this.leaf = leaf;
         }
@@ -239,6 +533,26 @@ public class ExecutionPlan {
             }
         }
 
+        private void addResource(String resource) {
+            if (resources == null) {
+                resources = new LinkedHashSet<String>();
+            }
+            resources.add(resource);
+        }
+
+        private boolean dependsOn(RunnerLeaf leaf) {
+            if (dependencies == null) {
+                return false;
+            }
+            // depending on a group means depending on all of its leafs
+            for (RunnerNode node = leaf; node != null; node = node.getParent()) {
+                if (dependencies.contains(node)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
         private boolean areDependenciesFinished() {
             if (dependencies == null) {
                 return true;
@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.scheduler.impl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.aludratest.scheduler.node.RunnerLeaf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Detects threads and file descriptors which test cases leave behind. The live threads and, on Linux, the number of open file
+ * descriptors of the JVM are recorded before and after the local execution of each test case. Threads which were started during
+ * the execution of a test case and are still alive when it has finished are attributed to that test case, as well as any growth
+ * of the number of open file descriptors, which also covers sockets and the pipes of processes which have not been destroyed.
+ * Optionally, the leaked threads are interrupted. At the end of the run, the test cases with the most leaked resources are
+ * logged. <br>
+ * Each thread created by {@link #createFrameworkThreadFactory()} gets a thread group of its own. A new thread joins the group of
+ * the thread which creates it, so the threads left behind by a test case executed on such a thread are found in its group, even
+ * if other test cases run at the same time. The number of open file descriptors is only known for the whole process, so its
+ * growth is only attributed to test cases which did not run at the same time as any other test case. The same applies to the
+ * threads of test cases which are not executed on a framework thread, as their creator cannot be told apart. Otherwise a test
+ * case could be blamed, and its threads interrupted, for the resources of a test case running in parallel. <br>
+ * This class is thread-safe.
+ *
+ * @author agent */
+class ResourceLeakTracker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResourceLeakTracker.class);
+
+    private static final File FD_DIRECTORY = new File("/proc/self/fd");
+
+    private static final int REPORTED_LEAVES = 10;
+
+    private final boolean interruptLeakedThreads;
+
+    /** All threads which have already been attributed to a test case, or which belong to the framework. */
+    private final Set<Thread> knownThreads = Collections.newSetFromMap(new WeakHashMap<Thread, Boolean>());
+
+    /** The thread groups of the threads created by {@link #createFrameworkThreadFactory()}. */
+    private final Set<ThreadGroup> workerGroups = Collections.newSetFromMap(new WeakHashMap<ThreadGroup, Boolean>());
+
+    private final AtomicInteger workerCount = new AtomicInteger();
+
+    private final List<LeakRecord> leaks = new ArrayList<LeakRecord>();
+
+    /** The snapshots of the test cases which are currently executed. */
+    private final Set<Snapshot> runningLeaves = new HashSet<Snapshot>();
+
+    /** The number of test cases whose file descriptors have not been tracked, as they ran in parallel with other test cases. */
+    private int unattributedLeaves;
+
+    /** Creates a new tracker. All threads alive at this time are considered to belong to the framework.
+     * @param interruptLeakedThreads if <code>true</code>, threads leaked by a test case are interrupted after it has finished */
+    ResourceLeakTracker(boolean interruptLeakedThreads) {
+        this.interruptLeakedThreads = interruptLeakedThreads;
+        synchronized (knownThreads) {
+            knownThreads.addAll(getLiveThreads(null));
+        }
+    }
+
+    /** Creates a thread factory for the framework's own thread pools. Threads created by this factory are never considered as
+     * leaked, even if they are started during the execution of a test case. Each of them is placed in a thread group of its own,
+     * which receives the threads started by the test cases executed on it.
+     * @return the thread factory */
+    ThreadFactory createFrameworkThreadFactory() {
+        final ThreadGroup parent = Thread.currentThread().getThreadGroup();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                String name = "aludratest-worker-" + workerCount.incrementAndGet();
+                ThreadGroup group = new ThreadGroup(parent, name);
+                // destroy the group as soon as the worker and the threads left behind have terminated
+                group.setDaemon(true);
+                Thread thread = new Thread(group, task, name);
+                thread.setDaemon(false);
+                thread.setPriority(Thread.NORM_PRIORITY);
+                synchronized (knownThreads) {
+                    knownThreads.add(thread);
+                    workerGroups.add(group);
+                }
+                return thread;
+            }
+        };
+    }
+
+    /** Records the resources in use before a test case is executed.
+     * @param leaf the test case to be executed
+     * @return the recorded resources, to be passed to {@link #finishedLeaf(Snapshot)} */
+    Snapshot startingLeaf(RunnerLeaf leaf) {
+        ThreadGroup group = Thread.currentThread().getThreadGroup();
+        synchronized (knownThreads) {
+            if (!workerGroups.contains(group)) {
+                group = null;
+            }
+        }
+        Snapshot snapshot = new Snapshot(leaf, group, getLiveThreads(group), countFileDescriptors());
+        synchronized (runningLeaves) {
+            if (!runningLeaves.isEmpty()) {
+                snapshot.concurrent = true;
+                for (Snapshot running : runningLeaves) {
+                    running.concurrent = true;
+                }
+            }
+            runningLeaves.add(snapshot);
+        }
+        return snapshot;
+    }
+
+    /** Compares the resources in use after a test case has been executed with the resources recorded before, and attributes the
+     * growth to the test case. The growth of the file descriptors is ignored if other test cases have been executed at the same
+     * time, and so are new threads, unless the test case has been executed on a framework thread.
+     * @param before the resources recorded before the execution of the test case */
+    void finishedLeaf(Snapshot before) {
+        int fdGrowth;
+        synchronized (runningLeaves) {
+            runningLeaves.remove(before);
+            if (before.concurrent) {
+                unattributedLeaves++;
+                fdGrowth = 0;
+            }
+            else {
+                fdGrowth = Math.max(0, countFileDescriptors() - before.fileDescriptors);
+            }
+        }
+        if (before.group == null && before.concurrent) {
+            return;
+        }
+        List<Thread> leakedThreads = new ArrayList<Thread>();
+        synchronized (knownThreads) {
+            for (Thread thread : getLiveThreads(before.group)) {
+                if (!before.threads.contains(thread) && knownThreads.add(thread)) {
+                    leakedThreads.add(thread);
+                }
+            }
+        }
+        if (leakedThreads.isEmpty() && fdGrowth == 0) {
+            return;
+        }
+
+        List<String> threadNames = new ArrayList<String>(leakedThreads.size());
+        for (Thread thread : leakedThreads) {
+            threadNames.add(thread.getName());
+            if (interruptLeakedThreads) {
+                thread.interrupt();
+            }
+        }
+        LOGGER.debug("{} leaked {} threads {} and {} file descriptors",
+                new Object[] { before.leafName, threadNames.size(), threadNames, fdGrowth });
+        synchronized (leaks) {
+            leaks.add(new LeakRecord(before.leafName, threadNames, fdGrowth));
+        }
+    }
+
+    /** Logs the test cases which leaked the most resources. */
+    void logReport() {
+        List<LeakRecord> records;
+        synchronized (leaks) {
+            records = new ArrayList<LeakRecord>(leaks);
+        }
+        int unattributed;
+        synchronized (runningLeaves) {
+            unattributed = unattributedLeaves;
+        }
+        if (unattributed > 0) {
+            LOGGER.info("File descriptors of {} test cases have not been tracked, as they ran in parallel with other test cases",
+                    unattributed);
+        }
+        if (records.isEmpty()) {
+            return;
+        }
+        int totalThreads = 0;
+        for (LeakRecord record : records) {
+            totalThreads += record.threadNames.size();
+        }
+        int totalFds = getAttributedFileDescriptors(records);
+        Collections.sort(records, new Comparator<LeakRecord>() {
+            @Override
+            public int compare(LeakRecord r1, LeakRecord r2) {
+                return r2.weight() - r1.weight();
+            }
+        });
+        LOGGER.warn("{} test cases leaked {} threads and {} file descriptors in total. Top leakers:",
+                new Object[] { records.size(), totalThreads, totalFds });
+        for (LeakRecord record : records.subList(0, Math.min(REPORTED_LEAVES, records.size()))) {
+            LOGGER.warn("  {}: {} threads {}, {} file descriptors",
+                    new Object[] { record.leafName, record.threadNames.size(), record.threadNames, record.fdGrowth });
+        }
+    }
+
+    /** @return the number of file descriptors attributed to test cases so far */
+    int getAttributedFileDescriptors() {
+        synchronized (leaks) {
+            return getAttributedFileDescriptors(leaks);
+        }
+    }
+
+    // helper methods ----------------------------------------------------------
+
+    private static int getAttributedFileDescriptors(List<LeakRecord> records) {
+        int result = 0;
+        for (LeakRecord record : records) {
+            result += record.fdGrowth;
+        }
+        return result;
+    }
+
+    /** @return the live threads of the given thread group and its subgroups, or of the whole JVM if the group is
+     *         <code>null</code> */
+    private static Set<Thread> getLiveThreads(ThreadGroup group) {
+        ThreadGroup root = group;
+        if (root == null) {
+            root = Thread.currentThread().getThreadGroup();
+            while (root.getParent() != null) {
+                root = root.getParent();
+            }
+        }
+        Thread[] threads;
+        int count;
+        do {
+            threads = new Thread[root.activeCount() * 2 + 16];
+            count = root.enumerate(threads, true);
+        }
+        while (count == threads.length);
+        Set<Thread> result = new HashSet<Thread>(count * 2);
+        for (int i = 0; i < count; i++) {
+            result.add(threads[i]);
+        }
+        return result;
+    }
+
+    /** @return the number of open file descriptors of the JVM, or 0 if it cannot be determined on this platform */
+    private static int countFileDescriptors() {
+        String[] fds = FD_DIRECTORY.list();
+        return fds == null ? 0 : fds.length;
+    }
+
+    // helper classes ----------------------------------------------------------
+
+    /** The resources in use before the execution of a test case. */
+    static final class Snapshot {
+
+        private final String leafName;
+        /** The thread group of the framework thread executing the test case, or <code>null</code> if it is executed on another
+         * thread. */
+        private final ThreadGroup group;
+        private final Set<Thread> threads;
+        private final int fileDescriptors;
+
+        /** Set if another test case has been executed at the same time, guarded by {@link ResourceLeakTracker#runningLeaves}. */
+        private boolean concurrent;
+
+        private Snapshot(RunnerLeaf leaf, ThreadGroup group, Set<Thread> threads, int fileDescriptors) {
+            this.leafName = leaf.getName();
+            this.group = group;
+            this.threads = threads;
+            this.fileDescriptors = fileDescriptors;
+        }
+    }
+
+    private static final class LeakRecord {
+
+        private final String leafName;
+        private final List<String> threadNames;
+        private final int fdGrowth;
+
+        private LeakRecord(String leafName, List<String> threadNames, int fdGrowth) {
+            this.leafName = leafName;
+            this.threadNames = threadNames;
+            this.fdGrowth = fdGrowth;
+        }
+
+        private int weight() {
+            return threadNames.size() + fdGrowth;
+        }
+    }
+
+}
@@ -51,11 +51,13 @@ import org.aludratest.scheduler.sort.Alphabetic;
 import org.aludratest.scheduler.sort.RunnerTreeSortUtil;
 import org.aludratest.scheduler.util.CommonRunnerLeafAttributes;
 import org.aludratest.testcase.AludraTestCase;
+import org.aludratest.testcase.CancelDependentsOnFailure;
 import org.aludratest.testcase.Parallel;
 import org.aludratest.testcase.Sequential;
 import org.aludratest.testcase.SequentialGroup;
 import org.aludratest.testcase.Suite;
 import org.aludratest.testcase.Test;
+import org.aludratest.testcase.UsesResource;
 import org.aludratest.testcase.data.TestCaseData;
 import org.aludratest.testcase.data.TestDataProvider;
 import org.codehaus.plexus.component.annotations.Component;
@@ -82,6 +84,9 @@ public class RunnerTreeBuilderImpl implements RunnerTreeBuilder {
     /** Map Class -> Assertion Error for classes where an assertion failed */
     private Map<Class<?>, String> assertionErrorClasses;
 
+    /** The lifecycle methods of the test classes, shared by the invokers of the runner tree */
+    private final AludraTestMethodInvoker.LifecyclePlanCache lifecyclePlans = new AludraTestMethodInvoker.LifecyclePlanCache();
+
     @Requirement
     private TestDataProvider testDataProvider;
 
@@ -401,8 +406,10 @@ public class RunnerTreeBuilderImpl implements RunnerTreeBuilder {
             mode = ExecutionMode.INHERITED;
         }
         RunnerGroup group = tree.createGroup(testClass.getName(), mode, parentGroup);
+        group.setAttribute(CommonRunnerLeafAttributes.TEST_CLASS_NAME, testClass.getName());
 
         addSequentialGroupAttributes(group, testClass);
+        addSchedulingAttributes(group, testClass);
 
         return group;
     }
@@ -423,14 +430,16 @@ public class RunnerTreeBuilderImpl implements RunnerTreeBuilder {
             }
             String methodTestSuiteName = createMethodTestSuiteName(testClass, method);
             RunnerGroup methodGroup = tree.createGroup(methodTestSuiteName, mode, classGroup);
+            methodGroup.setAttribute(CommonRunnerLeafAttributes.TEST_METHOD_NAME, method.getName());
             addSequentialGroupAttributes(methodGroup, method);
+            addSchedulingAttributes(methodGroup, method);
 
             try {
                 // iterate through method invocations
                 List<TestCaseData> invocationParams = testDataProvider.getTestDataSets(method);
                 for (TestCaseData data : invocationParams) {
                     if (data.getException() == null) {
-                        createTestRunnerForMethodInvocation(method, data, methodGroup, tree);
+                        createTestRunnerForMethodInvocation(testClass, method, data, methodGroup, tree);
                     }
                     else {
                         createTestRunnerForErrorReporting(method, data.getException(), methodGroup, tree,
@@ -444,14 +453,17 @@ public class RunnerTreeBuilderImpl implements RunnerTreeBuilder {
         }
     }
 
-    /** Creates a test runner for a single method invocation */
-    private void createTestRunnerForMethodInvocation(Method method, TestCaseData data, RunnerGroup methodGroup, RunnerTree tree) {
+    /** Creates a test runner for a single method invocation. The test object is an instance of the parsed test class, which
+     * differs from the class declaring the method if the method is inherited. */
+    private void createTestRunnerForMethodInvocation(Class<?> testClass, Method method, TestCaseData data,
+            RunnerGroup methodGroup, RunnerTree tree) {
         // create log4testing TestCase
         String invocationTestCaseName = createInvocationTestCaseName(data.getId(), methodGroup.getName());
         // Create test object
         @SuppressWarnings("unchecked")
-        AludraTestCase testObject = BeanUtil.newInstance((Class<? extends AludraTestCase>) method.getDeclaringClass());
-        TestInvoker invoker = new AludraTestMethodInvoker(testObject, method, data, aludraConfig.isDeferredScriptEvaluation());
+        AludraTestCase testObject = BeanUtil.newInstance((Class<? extends AludraTestCase>) testClass);
+        boolean deferredEvaluation = aludraConfig.isDeferredScriptEvaluation() || data.isLazy();
+        TestInvoker invoker = new AludraTestMethodInvoker(testObject, method, data, deferredEvaluation, lifecyclePlans);
         createRunnerForTestInvoker(invoker, methodGroup, tree, invocationTestCaseName, data.isIgnored(), data.getIgnoredReason(),
                 false, data.getExternalTestId());
     }
@@ -494,6 +506,20 @@ public class RunnerTreeBuilderImpl implements RunnerTreeBuilder {
         }
     }
 
+    private void addSchedulingAttributes(RunnerGroup group, AnnotatedElement testClassOrMethod) {
+        if (testClassOrMethod.getAnnotation(CancelDependentsOnFailure.class) != null) {
+            group.setAttribute(CommonRunnerLeafAttributes.CANCEL_DEPENDENTS_ON_FAILURE, Boolean.TRUE);
+        }
+
+        UsesResource annot = testClassOrMethod.getAnnotation(UsesResource.class);
+        if (annot != null && annot.value().length > 0) {
+            group.setAttribute(CommonRunnerLeafAttributes.USED_RESOURCES, annot.value().clone());
+            if (annot.capacity() > 0) {
+                group.setAttribute(CommonRunnerLeafAttributes.USED_RESOURCES_CAPACITY, Integer.valueOf(annot.capacity()));
+            }
+        }
+    }
+
     /** Creates a test case name for a test method. */
     private static String createMethodTestSuiteName(Class<?> testClass, Method method) {
         return testClass.getName() + '.' + method.getName();
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.scheduler.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.aludratest.scheduler.node.RunnerLeaf;
+import org.databene.commons.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Stores the execution durations of test cases, so they can be used by the {@link ExecutionPlan} of the next run. The durations
+ * are keyed by the name of the runner leaf, which consists of the test class name, the test method name, and the ID of the data
+ * set. They are persisted as a simple properties file. <br>
+ * <br>
+ * This class is thread-safe.
+ *
+ * @author agent */
+public class TestDurationHistory {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TestDurationHistory.class);
+
+    private final File file;
+
+    private final Map<String, Long> durations = new HashMap<String, Long>();
+
+    /** Creates a new, empty duration history which will be persisted to the given file.
+     *
+     * @param file File to persist this history to. */
+    public TestDurationHistory(File file) {
+        this.file = file;
+    }
+
+    /** Creates a duration history for the given file and reads all durations stored in the file, if it exists. If the file cannot
+     * be read, a warning is logged, and an empty history is returned.
+     *
+     * @param file File to read the durations from, and to persist the durations to.
+     *
+     * @return The duration history, never <code>null</code>. */
+    public static TestDurationHistory load(File file) {
+        TestDurationHistory history = new TestDurationHistory(file);
+        if (!file.isFile()) {
+            return history;
+        }
+
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            Properties p = new Properties();
+            p.load(in);
+            for (String key : p.stringPropertyNames()) {
+                try {
+                    history.durations.put(key, Long.valueOf(p.getProperty(key).trim()));
+                }
+                catch (NumberFormatException e) {
+                    LOGGER.debug("Ignoring invalid duration entry for {}", key);
+                }
+            }
+        }
+        catch (IOException e) {
+            LOGGER.warn("Could not read test duration history from " + file.getAbsolutePath(), e);
+        }
+        finally {
+            IOUtil.close(in);
+        }
+
+        return history;
+    }
+
+    /** Returns the duration recorded for the given runner leaf.
+     *
+     * @param leaf Runner leaf to retrieve the duration for.
+     *
+     * @return The recorded duration of the leaf, in milliseconds, or <code>null</code> if no duration has been recorded for the
+     *         leaf. */
+    public synchronized Long getDuration(RunnerLeaf leaf) {
+        return durations.get(leaf.getName());
+    }
+
+    /** Records the duration of the given runner leaf, replacing any previously recorded duration.
+     *
+     * @param leaf Runner leaf which has been executed.
+     * @param millis Execution duration of the leaf, in milliseconds. */
+    public synchronized void recordDuration(RunnerLeaf leaf, long millis) {
+        durations.put(leaf.getName(), Long.valueOf(millis));
+    }
+
+    /** Returns <code>true</code> if this history does not contain any durations.
+     *
+     * @return <code>true</code> if this history does not contain any durations, <code>false</code> otherwise. */
+    public synchronized boolean isEmpty() {
+        return durations.isEmpty();
+    }
+
+    /** Writes all durations of this history to the file of this history. If the file cannot be written, a warning is logged. */
+    public void save() {
+        Properties p = new Properties();
+        synchronized (this) {
+            for (Map.Entry<String, Long> entry : durations.entrySet()) {
+                p.setProperty(entry.getKey(), entry.getValue().toString());
+            }
+        }
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            LOGGER.warn("Could not create directory for test duration history: {}", parent.getAbsolutePath());
+            return;
+        }
+
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            p.store(out, "AludraTest test case durations (milliseconds)");
+        }
+        catch (IOException e) {
+            LOGGER.warn("Could not write test duration history to " + file.getAbsolutePath(), e);
+        }
+        finally {
+            IOUtil.close(out);
+        }
+    }
+
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.scheduler.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Array;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.aludratest.dict.Data;
+import org.aludratest.dict.DataFieldValues;
+import org.aludratest.exception.TechnicalException;
+import org.aludratest.invoker.TestInvoker;
+import org.aludratest.scheduler.node.RunnerLeaf;
+import org.aludratest.util.EnvUtil;
+import org.databene.commons.IOUtil;
+
+/** Calculates fingerprints of test cases for the {@link TestResultCache}. The fingerprint of a test case covers the bytecode of
+ * the test class and its superclasses, the resolved test case data, and a digest of the active configuration (environment name,
+ * AludraTest system properties and the file-based <code>config</code> directories on the classpath). Classes only used by the test
+ * class, e.g. page objects, are <b>not</b> covered. <br>
+ * The configuration digest is calculated once, and the bytecode digest once per test class. An instance is used for one run
+ * only, so the test classes are not referenced beyond it.
+ *
+ * @author agent */
+final class TestFingerprint {
+
+    private static final String[] CONFIG_SYSPROP_PREFIXES = { "ALUDRATEST_CONFIG/", "aludraTest." };
+
+    /** Marks test classes whose bytecode is not available. */
+    private static final byte[] NO_BYTECODE = new byte[0];
+
+    private final byte[] configDigest;
+
+    private final ConcurrentMap<Class<?>, byte[]> classDigests = new ConcurrentHashMap<Class<?>, byte[]>();
+
+    /** Creates a fingerprint calculator for the active configuration.
+     *
+     * @param version AludraTest version, to include in the fingerprints. */
+    TestFingerprint(String version) {
+        this.configDigest = calculateConfigDigest(version);
+    }
+
+    /** Calculates the fingerprint of the given leaf.
+     *
+     * @param leaf Runner leaf to calculate the fingerprint for.
+     *
+     * @return The fingerprint of the leaf, as hex string, or <code>null</code> if no fingerprint can be calculated for the leaf,
+     *         e.g. because it does not invoke a test method. */
+    String calculate(RunnerLeaf leaf) {
+        TestInvoker invoker = leaf.getTestInvoker();
+        if (!(invoker instanceof AludraTestMethodInvoker)) {
+            return null;
+        }
+        byte[] classDigest = getClassDigest(invoker.getTestClass());
+        if (classDigest == NO_BYTECODE) {
+            return null;
+        }
+
+        MessageDigest md = createDigest();
+        update(md, leaf.getName());
+        md.update(classDigest);
+
+        StringBuilder sb = new StringBuilder();
+        appendValue(sb, ((AludraTestMethodInvoker) invoker).peekArgs(), new IdentityHashMap<Object, Object>());
+        update(md, sb.toString());
+        md.update(configDigest);
+
+        return toHex(md.digest());
+    }
+
+    // helper methods ----------------------------------------------------------
+
+    private byte[] getClassDigest(Class<?> testClass) {
+        byte[] digest = classDigests.get(testClass);
+        if (digest == null) {
+            digest = calculateClassDigest(testClass);
+            byte[] existing = classDigests.putIfAbsent(testClass, digest);
+            if (existing != null) {
+                digest = existing;
+            }
+        }
+        return digest;
+    }
+
+    /** Calculates the digest of the bytecode of the test class and its superclasses. */
+    private static byte[] calculateClassDigest(Class<?> testClass) {
+        MessageDigest md = createDigest();
+        for (Class<?> cls = testClass; cls != null && cls != Object.class; cls = cls.getSuperclass()) {
+            if (!updateWithBytecode(md, cls)) {
+                return NO_BYTECODE;
+            }
+        }
+        return md.digest();
+    }
+
+    private static byte[] calculateConfigDigest(String version) {
+        MessageDigest md = createDigest();
+        update(md, version);
+        update(md, EnvUtil.getEnvironmentName());
+
+        Map<String, String> sysProps = new TreeMap<String, String>();
+        for (String key : System.getProperties().stringPropertyNames()) {
+            for (String prefix : CONFIG_SYSPROP_PREFIXES) {
+                if (key.startsWith(prefix)) {
+                    sysProps.put(key, System.getProperty(key));
+                }
+            }
+        }
+        update(md, sysProps.toString());
+
+        try {
+            Enumeration<URL> configDirs = Thread.currentThread().getContextClassLoader().getResources("config");
+            while (configDirs.hasMoreElements()) {
+                URL url = configDirs.nextElement();
+                update(md, url.toString());
+                if ("file".equals(url.getProtocol())) {
+                    updateWithDirectory(md, new File(url.toURI()));
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new TechnicalException("Could not read configuration for test fingerprints", e);
+        }
+        catch (URISyntaxException e) {
+            throw new TechnicalException("Could not read configuration for test fingerprints", e);
+        }
+
+        return md.digest();
+    }
+
+    private static boolean updateWithBytecode(MessageDigest md, Class<?> cls) {
+        InputStream in = cls.getResourceAsStream("/" + cls.getName().replace('.', '/') + ".class");
+        if (in == null) {
+            return false;
+        }
+        try {
+            updateWithStream(md, in);
+            return true;
+        }
+        catch (IOException e) {
+            return false;
+        }
+        finally {
+            IOUtil.close(in);
+        }
+    }
+
+    private static void updateWithDirectory(MessageDigest md, File dir) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            update(md, file.getName());
+            if (file.isDirectory()) {
+                updateWithDirectory(md, file);
+            }
+            else {
+                InputStream in = new FileInputStream(file);
+                try {
+                    updateWithStream(md, in);
+                }
+                finally {
+                    IOUtil.close(in);
+                }
+            }
+        }
+    }
+
+    private static void updateWithStream(MessageDigest md, InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        int len;
+        while ((len = in.read(buffer)) > 0) {
+            md.update(buffer, 0, len);
+        }
+    }
+
+    private static void appendValue(StringBuilder sb, Object value, Map<Object, Object> visited) {
+        if (value == null) {
+            sb.append("null");
+        }
+        else if (value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Character
+                || value instanceof Enum<?>) {
+            sb.append(value.getClass().getSimpleName()).append(':').append(value);
+        }
+        else if (visited.containsKey(value)) {
+            sb.append("<cycle>");
+        }
+        else {
+            visited.put(value, value);
+            if (value.getClass().isArray()) {
+                sb.append('[');
+                for (int i = 0; i < Array.getLength(value); i++) {
+                    appendValue(sb, Array.get(value, i), visited);
+                    sb.append(',');
+                }
+                sb.append(']');
+            }
+            else if (value instanceof Collection<?>) {
+                appendValue(sb, ((Collection<?>) value).toArray(), visited);
+            }
+            else if (value instanceof Map<?, ?>) {
+                sb.append('{');
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    appendValue(sb, entry.getKey(), visited);
+                    sb.append('=');
+                    appendValue(sb, entry.getValue(), visited);
+                    sb.append(',');
+                }
+                sb.append('}');
+            }
+            else if (value instanceof Data) {
+                appendFields(sb, (Data) value, visited);
+            }
+            else {
+                sb.append(value.getClass().getName()).append(':').append(value);
+            }
+            visited.remove(value);
+        }
+    }
+
+    private static void appendFields(StringBuilder sb, Data value, Map<Object, Object> visited) {
+        sb.append(value.getClass().getName()).append('[');
+        for (Map.Entry<String, Object> field : DataFieldValues.of(value)) {
+            sb.append(field.getKey()).append('=');
+            appendValue(sb, field.getValue(), visited);
+            sb.append(',');
+        }
+        sb.append(']');
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new TechnicalException("SHA-1 not supported by Java runtime", e);
+        }
+    }
+
+    private static void update(MessageDigest md, String value) {
+        try {
+            md.update(String.valueOf(value).getBytes("UTF-8"));
+            md.update((byte) 0);
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new TechnicalException("UTF-8 not supported by Java runtime", e);
+        }
+    }
+
+    private static String toHex(byte[] data) {
+        StringBuilder sb = new StringBuilder(data.length * 2);
+        for (byte b : data) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.scheduler.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.aludratest.scheduler.AbstractRunnerListener;
+import org.aludratest.scheduler.node.RunnerLeaf;
+import org.aludratest.scheduler.util.CommonRunnerLeafAttributes;
+import org.aludratest.testcase.event.TestStepInfo;
+import org.databene.commons.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Stores the fingerprints of test cases which passed in previous runs, so unchanged test cases can be skipped in incremental
+ * mode. The fingerprint of a test case covers its test class bytecode, its resolved test case data and the active configuration
+ * (see {@link TestFingerprint}). The fingerprints are keyed by the name of the runner leaf and persisted as a simple properties
+ * file. <br>
+ * The cache must be registered as a <code>RunnerListener</code> during the run, so it can observe the outcome of all executed
+ * test cases. A test case which did not pass is removed from the cache. <br>
+ * <br>
+ * This class is thread-safe.
+ *
+ * @author agent */
+public class TestResultCache extends AbstractRunnerListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TestResultCache.class);
+
+    private final File file;
+
+    private final TestFingerprint fingerprint;
+
+    private final Map<String, String> passedFingerprints = new HashMap<String, String>();
+
+    private final Map<RunnerLeaf, String> currentFingerprints = new HashMap<RunnerLeaf, String>();
+
+    private final Set<RunnerLeaf> failedLeafs = new HashSet<RunnerLeaf>();
+
+    /** Creates a new, empty result cache which will be persisted to the given file.
+     *
+     * @param file File to persist this cache to.
+     * @param version AludraTest version, which becomes part of the fingerprints. */
+    public TestResultCache(File file, String version) {
+        this.file = file;
+        this.fingerprint = new TestFingerprint(version);
+    }
+
+    /** Creates a result cache for the given file and reads all fingerprints stored in the file, if it exists. If the file cannot be
+     * read, a warning is logged, and an empty cache is returned.
+     *
+     * @param file File to read the fingerprints from, and to persist the fingerprints to.
+     * @param version AludraTest version, which becomes part of the fingerprints.
+     *
+     * @return The result cache, never <code>null</code>. */
+    public static TestResultCache load(File file, String version) {
+        TestResultCache cache = new TestResultCache(file, version);
+        if (!file.isFile()) {
+            return cache;
+        }
+
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            Properties p = new Properties();
+            p.load(in);
+            for (String key : p.stringPropertyNames()) {
+                cache.passedFingerprints.put(key, p.getProperty(key).trim());
+            }
+        }
+        catch (IOException e) {
+            LOGGER.warn("Could not read test result cache from " + file.getAbsolutePath(), e);
+        }
+        finally {
+            IOUtil.close(in);
+        }
+
+        return cache;
+    }
+
+    /** Calculates the fingerprint of the given leaf and checks if the leaf passed with the same fingerprint in a previous run. The
+     * fingerprint is remembered, so it can be stored if the leaf passes in this run.
+     *
+     * @param leaf Runner leaf which is about to be executed.
+     *
+     * @return <code>true</code> if the leaf passed in a previous run with the same fingerprint and need not be executed again,
+     *         <code>false</code> otherwise. */
+    public boolean isUnchangedSincePassed(RunnerLeaf leaf) {
+        String leafFingerprint = fingerprint.calculate(leaf);
+        synchronized (this) {
+            if (leafFingerprint == null) {
+                passedFingerprints.remove(leaf.getName());
+                return false;
+            }
+            currentFingerprints.put(leaf, leafFingerprint);
+            return leafFingerprint.equals(passedFingerprints.get(leaf.getName()));
+        }
+    }
+
+    @Override
+    public synchronized void newTestStep(RunnerLeaf runnerLeaf, TestStepInfo testStepInfo) {
+        if (testStepInfo.getTestStatus() != null && testStepInfo.getTestStatus().isFailure()) {
+            failedLeafs.add(runnerLeaf);
+        }
+    }
+
+    @Override
+    public synchronized void finishedTestLeaf(RunnerLeaf runnerLeaf) {
+        String fingerprint = currentFingerprints.remove(runnerLeaf);
+        boolean failed = failedLeafs.remove(runnerLeaf);
+        if (Boolean.TRUE.equals(runnerLeaf.getAttribute(CommonRunnerLeafAttributes.CACHED_RESULT))) {
+            return;
+        }
+        if (fingerprint != null && !failed) {
+            passedFingerprints.put(runnerLeaf.getName(), fingerprint);
+        }
+        else {
+            passedFingerprints.remove(runnerLeaf.getName());
+        }
+    }
+
+    /** Writes all fingerprints of this cache to the file of this cache. If the file cannot be written, a warning is logged. */
+    public void save() {
+        Properties p = new Properties();
+        synchronized (this) {
+            for (Map.Entry<String, String> entry : passedFingerprints.entrySet()) {
+                p.setProperty(entry.getKey(), entry.getValue());
+            }
+        }
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            LOGGER.warn("Could not create directory for test result cache: {}", parent.getAbsolutePath());
+            return;
+        }
+
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            p.store(out, "AludraTest fingerprints of passed test cases");
+        }
+        catch (IOException e) {
+            LOGGER.warn("Could not write test result cache to " + file.getAbsolutePath(), e);
+        }
+        finally {
+            IOUtil.close(out);
+        }
+    }
+
+}
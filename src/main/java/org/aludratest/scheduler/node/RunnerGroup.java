@@ -78,6 +78,12 @@ public class RunnerGroup extends RunnerNode {
         children.add(childNode);
     }
 
+    /** Removes a child node from the {@link #children}.
+     * @param childNode the child node to remove */
+    public void removeChild(RunnerNode childNode) {
+        children.remove(childNode);
+    }
+
     /** Reorders the children of this group, so they are in the order of the passed list.
      * 
      * @param children List which must contain all children of this group, but in the desired new order. */
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.scheduler.remote;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.aludratest.AludraTest;
+import org.aludratest.config.AludraTestConfig;
+import org.aludratest.exception.TechnicalException;
+import org.aludratest.invoker.TestInvoker;
+import org.aludratest.scheduler.RunnerTree;
+import org.aludratest.scheduler.RunnerTreeBuilder;
+import org.aludratest.scheduler.node.RunnerGroup;
+import org.aludratest.scheduler.node.RunnerLeaf;
+import org.aludratest.scheduler.node.RunnerNode;
+import org.aludratest.service.AludraServiceManager;
+import org.aludratest.testcase.event.InternalTestListener;
+import org.aludratest.testcase.event.TestStepInfo;
+import org.aludratest.testcase.impl.AludraTestContextImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Worker JVM of a multi-JVM test execution. The worker connects to the coordinator, presents the token of the coordinator and
+ * announces its number of execution slots (the configured number of threads) in a handshake, and executes the runner leafs requested by the coordinator. All test step events are
+ * streamed back to the coordinator, which fires them on its own listeners. <br>
+ * The worker builds its own runner tree for each requested test class, and looks up the requested leaf by name. <br>
+ * Workers are forked automatically by the coordinator, but can also be started manually, e.g. on another host. The token has
+ * to be passed in the environment variable {@value #TOKEN_ENV_VARIABLE} then, and must match the worker token configured for the
+ * coordinator:
+ *
+ * <pre>
+ * java -cp ... org.aludratest.scheduler.remote.AludraTestWorker &lt;coordinatorHost&gt; &lt;coordinatorPort&gt;
+ * </pre>
+ *
+ * @author agent */
+public final class AludraTestWorker {
+
+    /** The name of the environment variable which holds the token to present to the coordinator. */
+    public static final String TOKEN_ENV_VARIABLE = "ALUDRATEST_WORKER_TOKEN";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AludraTestWorker.class);
+
+    private final AludraServiceManager serviceManager;
+
+    private final Map<String, RunnerLeaf> leafs = new HashMap<String, RunnerLeaf>();
+
+    private final Set<String> parsedClasses = new HashSet<String>();
+
+    private ObjectOutputStream out;
+
+    private AludraTestWorker(AludraServiceManager serviceManager) {
+        this.serviceManager = serviceManager;
+    }
+
+    private void run(String host, int port, String token) throws IOException, ClassNotFoundException, InterruptedException {
+        int slots = serviceManager.newImplementorInstance(AludraTestConfig.class).getNumberOfThreads();
+        Socket socket = new Socket(host, port);
+        ExecutorService executor = Executors.newFixedThreadPool(slots);
+        try {
+            DataOutputStream hello = new DataOutputStream(socket.getOutputStream());
+            hello.writeUTF(token);
+            hello.writeInt(slots);
+            hello.flush();
+            out = new ObjectOutputStream(socket.getOutputStream());
+            out.flush();
+            ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+
+            RemoteMessage message;
+            while ((message = (RemoteMessage) in.readObject()).getType() != RemoteMessage.Type.SHUTDOWN) {
+                if (message.getType() == RemoteMessage.Type.EXECUTE) {
+                    executor.submit(new LeafExecution(message.getTestClassName(), message.getLeafName()));
+                }
+            }
+        }
+        finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            socket.close();
+        }
+    }
+
+    private void send(RemoteMessage message) {
+        try {
+            synchronized (out) {
+                out.writeObject(message);
+                out.flush();
+                out.reset();
+            }
+        }
+        catch (IOException e) {
+            throw new TechnicalException("Could not send message to coordinator", e);
+        }
+    }
+
+    private synchronized RunnerLeaf findLeaf(String testClassName, String leafName) throws ClassNotFoundException {
+        if (parsedClasses.add(testClassName)) {
+            RunnerTreeBuilder builder = serviceManager.newImplementorInstance(RunnerTreeBuilder.class);
+            RunnerTree tree = builder.buildRunnerTree(Class.forName(testClassName));
+            collectLeafs(tree.getRoot());
+        }
+        RunnerLeaf leaf = leafs.remove(leafName);
+        if (leaf == null) {
+            throw new TechnicalException("Test case " + leafName + " could not be found in worker JVM");
+        }
+        return leaf;
+    }
+
+    private void collectLeafs(RunnerGroup group) {
+        for (RunnerNode node : group.getChildren()) {
+            if (node instanceof RunnerLeaf) {
+                leafs.put(node.getName(), (RunnerLeaf) node);
+            }
+            else {
+                collectLeafs((RunnerGroup) node);
+            }
+        }
+    }
+
+    private class LeafExecution implements Runnable {
+
+        private final String testClassName;
+
+        private final String leafName;
+
+        LeafExecution(String testClassName, String leafName) {
+            this.testClassName = testClassName;
+            this.leafName = leafName;
+        }
+
+        @Override
+        public void run() {
+            Throwable error = null;
+            String oldName = Thread.currentThread().getName();
+            Thread.currentThread().setName("RunnerLeaf " + leafName);
+            try {
+                TestInvoker testInvoker = findLeaf(testClassName, leafName).getTestInvoker();
+                InternalTestListener listener = new InternalTestListener() {
+                    @Override
+                    public void newTestStepGroup(String name) {
+                        send(RemoteMessage.newTestStepGroup(leafName, name));
+                    }
+
+                    @Override
+                    public void newTestStep(TestStepInfo testStep) {
+                        send(RemoteMessage.newTestStep(leafName, new RemoteTestStepInfo(testStep)));
+                    }
+                };
+                testInvoker.setContext(new AludraTestContextImpl(listener, serviceManager));
+                testInvoker.invoke();
+            }
+            catch (Throwable t) { // NOSONAR
+                error = t;
+            }
+            finally {
+                Thread.currentThread().setName(oldName);
+            }
+            send(RemoteMessage.leafFinished(leafName, RemoteTestException.toSerializable(error)));
+        }
+    }
+
+    // main method -------------------------------------------------------------
+
+    /** Main method for worker JVMs.
+     * @param args expects the host name and port of the coordinator as arguments */
+    public static void main(String[] args) {
+        String token = System.getenv(TOKEN_ENV_VARIABLE);
+        if (args.length != 2 || token == null) {
+            System.err.println("Usage: AludraTestWorker <coordinatorHost> <coordinatorPort>, with the coordinator's token in " // NOSONAR
+                    + "environment variable " + TOKEN_ENV_VARIABLE);
+            System.exit(1);
+        }
+
+        int exitCode = 0;
+        AludraTest aludra = AludraTest.startFramework();
+        try {
+            new AludraTestWorker(aludra.getServiceManager()).run(args[0], Integer.parseInt(args[1]), token);
+        }
+        catch (Exception e) {
+            LOGGER.error("Worker terminated abnormally", e);
+            exitCode = 1;
+        }
+        finally {
+            aludra.stopFramework();
+        }
+        System.exit(exitCode);
+    }
+
+}
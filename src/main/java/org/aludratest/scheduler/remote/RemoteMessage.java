@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.scheduler.remote;
+
+import java.io.Serializable;
+
+/** Message exchanged between the coordinator and a worker JVM. Messages are transferred using Java serialization, after the worker
+ * has presented its token in the handshake (see {@link AludraTestWorker}). A runner leaf is identified by the name of its test
+ * class and its leaf name, which both JVMs derive from the same test classes and test data.
+ *
+ * @author agent */
+final class RemoteMessage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    enum Type {
+        /** Sent by the coordinator to request execution of a runner leaf. */
+        EXECUTE,
+        /** Sent by a worker when a runner leaf opens a new test step group. */
+        NEW_TEST_STEP_GROUP,
+        /** Sent by a worker when a runner leaf has performed a test step. */
+        NEW_TEST_STEP,
+        /** Sent by a worker when the execution of a runner leaf is complete. */
+        LEAF_FINISHED,
+        /** Sent by the coordinator when no more runner leafs will be executed. */
+        SHUTDOWN
+    }
+
+    private final Type type;
+
+    private String testClassName;
+
+    private String leafName;
+
+    private String groupName;
+
+    private RemoteTestStepInfo testStep;
+
+    private Throwable error;
+
+    private RemoteMessage(Type type) {
+        this.type = type;
+    }
+
+    static RemoteMessage execute(String testClassName, String leafName) {
+        RemoteMessage msg = new RemoteMessage(Type.EXECUTE);
+        msg.testClassName = testClassName;
+        msg.leafName = leafName;
+        return msg;
+    }
+
+    static RemoteMessage newTestStepGroup(String leafName, String groupName) {
+        RemoteMessage msg = new RemoteMessage(Type.NEW_TEST_STEP_GROUP);
+        msg.leafName = leafName;
+        msg.groupName = groupName;
+        return msg;
+    }
+
+    static RemoteMessage newTestStep(String leafName, RemoteTestStepInfo testStep) {
+        RemoteMessage msg = new RemoteMessage(Type.NEW_TEST_STEP);
+        msg.leafName = leafName;
+        msg.testStep = testStep;
+        return msg;
+    }
+
+    static RemoteMessage leafFinished(String leafName, Throwable error) {
+        RemoteMessage msg = new RemoteMessage(Type.LEAF_FINISHED);
+        msg.leafName = leafName;
+        msg.error = error;
+        return msg;
+    }
+
+    static RemoteMessage shutdown() {
+        return new RemoteMessage(Type.SHUTDOWN);
+    }
+
+    Type getType() {
+        return type;
+    }
+
+    String getTestClassName() {
+        return testClassName;
+    }
+
+    String getLeafName() {
+        return leafName;
+    }
+
+    String getGroupName() {
+        return groupName;
+    }
+
+    RemoteTestStepInfo getTestStep() {
+        return testStep;
+    }
+
+    Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return type + (leafName == null ? "" : " " + leafName);
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.scheduler.remote;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+import org.aludratest.exception.AludraTestException;
+import org.aludratest.testcase.TestStatus;
+
+/** Replacement for an exception raised in a worker JVM which cannot be transferred to the coordinator using Java serialization,
+ * e.g. because it references objects which are not serializable. It keeps the original class name, message, stack trace and
+ * test status.
+ *
+ * @author agent */
+public class RemoteTestException extends AludraTestException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String originalClassName;
+
+    private final TestStatus testStatus;
+
+    private RemoteTestException(Throwable original, Throwable cause) {
+        super(original.getClass().getName() + ": " + original.getMessage(), cause);
+        this.originalClassName = original.getClass().getName();
+        this.testStatus = (original instanceof AludraTestException ? ((AludraTestException) original).getTestStatus()
+                : TestStatus.INCONCLUSIVE);
+        setStackTrace(original.getStackTrace());
+    }
+
+    /** Returns the given Throwable if it can be serialized, or a <code>RemoteTestException</code> replacing it and its causes
+     * otherwise.
+     *
+     * @param t Throwable to transfer to another JVM, may be <code>null</code>.
+     *
+     * @return A serializable Throwable with the information of the given one, or <code>null</code> if <code>null</code> was
+     *         passed. */
+    public static Throwable toSerializable(Throwable t) {
+        if (t == null || isSerializable(t)) {
+            return t;
+        }
+        Throwable cause = (t.getCause() == t ? null : toSerializable(t.getCause()));
+        return new RemoteTestException(t, cause);
+    }
+
+    private static boolean isSerializable(Object o) {
+        try {
+            ObjectOutputStream out = new ObjectOutputStream(new ByteArrayOutputStream());
+            out.writeObject(o);
+            out.close();
+            return true;
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** @return The fully qualified class name of the exception raised in the worker JVM. */
+    public String getOriginalClassName() {
+        return originalClassName;
+    }
+
+    @Override
+    public TestStatus getTestStatus() {
+        return testStatus;
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.scheduler.remote;
+
+import java.io.Serializable;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.aludratest.service.AludraService;
+import org.aludratest.service.ComponentId;
+import org.aludratest.testcase.TestStatus;
+import org.aludratest.testcase.event.TestStepInfo;
+import org.aludratest.testcase.event.attachment.Attachment;
+import org.aludratest.testcase.event.attachment.BinaryAttachment;
+import org.aludratest.testcase.event.impl.TestStepInfoBean;
+import org.joda.time.DateTime;
+
+/** Serializable snapshot of a {@link TestStepInfo} which has been created in a worker JVM. Test step arguments which are not of a
+ * simple type are transferred as their String representation.
+ *
+ * @author agent */
+final class RemoteTestStepInfo implements TestStepInfo, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private int id;
+
+    private DateTime startingTime;
+
+    private DateTime finishingTime;
+
+    private TestStatus testStatus;
+
+    private Class<? extends AludraService> serviceInterface;
+
+    private String serviceInstanceName;
+
+    private String command;
+
+    private String result;
+
+    private Throwable error;
+
+    private String errorMessage;
+
+    private List<AttachmentData> attachments = new ArrayList<AttachmentData>();
+
+    private Map<Class<? extends Annotation>, Object[]> arguments = new HashMap<Class<? extends Annotation>, Object[]>();
+
+    private transient List<Attachment> attachmentObjects;
+
+    RemoteTestStepInfo(TestStepInfo info) {
+        this.id = info.getId();
+        this.startingTime = info.getStartingTime();
+        this.finishingTime = info.getFinishingTime();
+        this.testStatus = info.getTestStatus();
+        if (info.getServiceId() != null) {
+            this.serviceInterface = info.getServiceId().getInterfaceClass();
+            this.serviceInstanceName = info.getServiceId().getInstanceName();
+        }
+        this.command = info.getCommand();
+        this.result = info.getResult();
+        this.error = RemoteTestException.toSerializable(info.getError());
+        this.errorMessage = info.getErrorMessage();
+
+        for (Attachment attachment : info.getAttachments()) {
+            attachments.add(new AttachmentData(attachment));
+        }
+
+        if (info instanceof TestStepInfoBean) {
+            for (Class<? extends Annotation> argumentType : ((TestStepInfoBean) info).getArgumentTypes()) {
+                arguments.put(argumentType, toTransferable(info.getArguments(argumentType)));
+            }
+        }
+        else {
+            arguments.put(null, toTransferable(info.getArguments(null)));
+        }
+    }
+
+    private static Object[] toTransferable(Object[] values) {
+        if (values == null) {
+            return null;
+        }
+        Object[] result = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = toTransferable(values[i]);
+        }
+        return result;
+    }
+
+    private static Object toTransferable(Object value) {
+        if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+                || value instanceof Character || value instanceof Enum<?>) {
+            return value;
+        }
+        if (value instanceof Object[]) {
+            return toTransferable((Object[]) value);
+        }
+        if (value.getClass().isArray()) {
+            // primitive arrays are serializable
+            return value;
+        }
+        return value.toString();
+    }
+
+    @Override
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public DateTime getStartingTime() {
+        return startingTime;
+    }
+
+    @Override
+    public DateTime getFinishingTime() {
+        return finishingTime;
+    }
+
+    @Override
+    public TestStatus getTestStatus() {
+        return testStatus;
+    }
+
+    @Override
+    public ComponentId<? extends AludraService> getServiceId() {
+        if (serviceInterface == null) {
+            return null;
+        }
+        return serviceInstanceName == null ? ComponentId.create(serviceInterface) : ComponentId.create(serviceInterface,
+                serviceInstanceName);
+    }
+
+    @Override
+    public String getCommand() {
+        return command;
+    }
+
+    @Override
+    public String getResult() {
+        return result;
+    }
+
+    @Override
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    @Override
+    public synchronized Iterable<Attachment> getAttachments() {
+        if (attachmentObjects == null) {
+            attachmentObjects = new ArrayList<Attachment>();
+            for (AttachmentData data : attachments) {
+                attachmentObjects.add(data.toAttachment());
+            }
+        }
+        return attachmentObjects;
+    }
+
+    @Override
+    public Object[] getArguments(Class<? extends Annotation> annotationType) {
+        Object[] result = arguments.get(annotationType);
+        return result == null ? new Object[0] : result;
+    }
+
+    private static final class AttachmentData implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private String label;
+
+        private String fileName;
+
+        private String fileExtension;
+
+        private byte[] fileData;
+
+        AttachmentData(Attachment attachment) {
+            this.label = attachment.getLabel();
+            this.fileName = attachment.getFileName();
+            this.fileExtension = attachment.getFileExtension();
+            this.fileData = attachment.getFileData();
+        }
+
+        Attachment toAttachment() {
+            BinaryAttachment attachment = new BinaryAttachment(label, fileData, fileExtension);
+            attachment.setFileName(fileName);
+            return attachment;
+        }
+    }
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.scheduler.remote;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.aludratest.exception.TechnicalException;
+import org.aludratest.scheduler.RunnerListenerRegistry;
+import org.aludratest.scheduler.node.RunnerGroup;
+import org.aludratest.scheduler.node.RunnerLeaf;
+import org.aludratest.scheduler.util.CommonRunnerLeafAttributes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Coordinator side of the connection to a single worker JVM. Execution requests are sent to the worker, and the events streamed
+ * back by the worker are fired on the coordinator's {@link RunnerListenerRegistry} for the coordinator's own runner leaf objects,
+ * so listeners cannot tell the difference to a local execution.
+ *
+ * @author agent */
+final class WorkerConnection implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkerConnection.class);
+
+    private final Socket socket;
+
+    private final ObjectInputStream in;
+
+    private final ObjectOutputStream out;
+
+    private final int slots;
+
+    private final RunnerListenerRegistry listenerRegistry;
+
+    private final Map<String, PendingLeaf> pendingLeafs = new HashMap<String, PendingLeaf>();
+
+    private int busySlots;
+
+    private volatile boolean alive = true;
+
+    WorkerConnection(Socket socket, ObjectInputStream in, ObjectOutputStream out, int slots,
+            RunnerListenerRegistry listenerRegistry) {
+        this.socket = socket;
+        this.in = in;
+        this.out = out;
+        this.slots = slots;
+        this.listenerRegistry = listenerRegistry;
+    }
+
+    int getSlots() {
+        return slots;
+    }
+
+    boolean isAlive() {
+        return alive;
+    }
+
+    /* Slot handling is synchronized by the WorkerPool. */
+    boolean hasFreeSlot() {
+        return alive && busySlots < slots;
+    }
+
+    void occupySlot() {
+        busySlots++;
+    }
+
+    void releaseSlot() {
+        busySlots--;
+    }
+
+    /** Executes the given leaf in the worker JVM and blocks until the worker reports the leaf as finished. All test step events
+     * of the leaf have been fired when this method returns.
+     *
+     * @param leaf Leaf to execute.
+     *
+     * @throws Throwable The exception raised by the test invoker in the worker JVM, if any. */
+    void execute(RunnerLeaf leaf) throws Throwable { // NOSONAR
+        PendingLeaf pending = new PendingLeaf(leaf);
+        synchronized (pendingLeafs) {
+            if (!alive) {
+                throw new TechnicalException("Connection to worker JVM " + this + " has been lost");
+            }
+            pendingLeafs.put(leaf.getName(), pending);
+        }
+        send(RemoteMessage.execute(getTestClassName(leaf), leaf.getName()));
+        Throwable error = pending.await();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    void shutdown() {
+        try {
+            send(RemoteMessage.shutdown());
+        }
+        catch (TechnicalException e) {
+            LOGGER.debug("Could not send shutdown to worker JVM {}", this);
+        }
+    }
+
+    /** Determines the test class which the worker has to build its runner tree from. This is the class of the leaf's class
+     * group, which differs from the class declaring the test method if the method is inherited. */
+    private static String getTestClassName(RunnerLeaf leaf) {
+        for (RunnerGroup group = leaf.getParent(); group != null; group = group.getParent()) {
+            Object testClassName = group.getAttribute(CommonRunnerLeafAttributes.TEST_CLASS_NAME);
+            if (testClassName != null) {
+                return (String) testClassName;
+            }
+        }
+        return leaf.getTestInvoker().getTestClass().getName();
+    }
+
+    private void send(RemoteMessage message) {
+        try {
+            synchronized (out) {
+                out.writeObject(message);
+                out.flush();
+                // avoid keeping references to all sent messages
+                out.reset();
+            }
+        }
+        catch (IOException e) {
+            connectionLost(e);
+            throw new TechnicalException("Could not send message to worker JVM " + this, e);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                RemoteMessage message = (RemoteMessage) in.readObject();
+                handleMessage(message);
+            }
+        }
+        catch (Exception e) {
+            connectionLost(e);
+        }
+        finally {
+            try {
+                socket.close();
+            }
+            catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private void handleMessage(RemoteMessage message) {
+        PendingLeaf pending;
+        synchronized (pendingLeafs) {
+            pending = pendingLeafs.get(message.getLeafName());
+            if (message.getType() == RemoteMessage.Type.LEAF_FINISHED) {
+                pendingLeafs.remove(message.getLeafName());
+            }
+        }
+        if (pending == null) {
+            LOGGER.warn("Received message for unknown runner leaf from worker JVM {}: {}", this, message);
+            return;
+        }
+
+        switch (message.getType()) {
+            case NEW_TEST_STEP_GROUP:
+                listenerRegistry.fireNewTestStepGroup(pending.leaf, message.getGroupName());
+                break;
+            case NEW_TEST_STEP:
+                listenerRegistry.fireNewTestStep(pending.leaf, message.getTestStep());
+                break;
+            case LEAF_FINISHED:
+                pending.finish(message.getError());
+                break;
+            default:
+                LOGGER.warn("Unexpected message from worker JVM {}: {}", this, message);
+        }
+    }
+
+    private void connectionLost(Exception cause) {
+        List<PendingLeaf> failed;
+        synchronized (pendingLeafs) {
+            if (!alive) {
+                return;
+            }
+            alive = false;
+            failed = new ArrayList<PendingLeaf>(pendingLeafs.values());
+            pendingLeafs.clear();
+        }
+        if (!failed.isEmpty()) {
+            LOGGER.error("Lost connection to worker JVM " + this, cause);
+        }
+        for (PendingLeaf pending : failed) {
+            pending.finish(new TechnicalException("Connection to worker JVM " + this + " lost during test execution", cause));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(socket.getRemoteSocketAddress());
+    }
+
+    private static final class PendingLeaf {
+
+        private final RunnerLeaf leaf;
+
+        private boolean finished;
+
+        private Throwable error;
+
+        PendingLeaf(RunnerLeaf leaf) {
+            this.leaf = leaf;
+        }
+
+        synchronized void finish(Throwable error) {
+            this.error = error;
+            this.finished = true;
+            notifyAll();
+        }
+
+        synchronized Throwable await() throws InterruptedException {
+            while (!finished) {
+                wait();
+            }
+            return error;
+        }
+    }
+
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.scheduler.remote;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.aludratest.config.AludraTestConfig;
+import org.aludratest.exception.TechnicalException;
+import org.aludratest.scheduler.RunnerListenerRegistry;
+import org.aludratest.scheduler.node.RunnerLeaf;
+import org.aludratest.scheduler.util.CommonRunnerLeafAttributes;
+import org.aludratest.util.EnvUtil;
+import org.databene.commons.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Coordinator side of a multi-JVM test execution. The pool forks the configured number of local worker JVMs, waits for them and
+ * for the configured number of external workers to connect, and distributes runner leafs to the execution slots of the connected
+ * workers. Execution order is still determined by the coordinator's <code>ExecutionPlan</code>, so sequential groups are
+ * respected across all workers. <br>
+ * If no external workers are configured, the coordinator port is only bound to the loopback interface. Every worker has to present
+ * a token in its handshake before anything sent by it is deserialized. Locally forked workers receive a random token generated for
+ * each run, external workers have to be started with the configured worker token.
+ *
+ * @author agent */
+public final class WorkerPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkerPool.class);
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 120000;
+
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 10000;
+
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 60000;
+
+    /** Prefixes of system properties which are passed to forked worker JVMs. */
+    private static final String[] FORWARDED_SYSPROP_PREFIXES = { "ALUDRATEST_CONFIG/", "aludraTest.", "log4j." };
+
+    private final ServerSocket serverSocket;
+
+    private final String token;
+
+    private final List<Process> processes = new ArrayList<Process>();
+
+    private final List<WorkerConnection> connections = new ArrayList<WorkerConnection>();
+
+    private WorkerPool(ServerSocket serverSocket, String token) {
+        this.serverSocket = serverSocket;
+        this.token = token;
+    }
+
+    /** Checks if the given configuration requests test execution in worker JVMs.
+     *
+     * @param config AludraTest configuration.
+     *
+     * @return <code>true</code> if any local or external worker JVMs are configured, <code>false</code> otherwise. */
+    public static boolean isEnabled(AludraTestConfig config) {
+        return config.getWorkerJvmCount() > 0 || config.getExternalWorkerCount() > 0;
+    }
+
+    /** Starts the configured local worker JVMs and waits until all local and external workers have connected.
+     *
+     * @param config AludraTest configuration, providing the worker settings.
+     * @param listenerRegistry Registry to fire the events received from the workers on.
+     *
+     * @return The started worker pool.
+     *
+     * @throws TechnicalException If the workers could not be started, or did not connect in time, or if external workers are
+     *             configured without a worker token. */
+    public static WorkerPool start(AludraTestConfig config, RunnerListenerRegistry listenerRegistry) {
+        boolean external = config.getExternalWorkerCount() > 0;
+        if (external && config.getWorkerToken() == null) {
+            throw new TechnicalException("A worker token must be configured for external worker JVMs");
+        }
+
+        ServerSocket serverSocket;
+        try {
+            if (external) {
+                serverSocket = new ServerSocket(config.getWorkerCoordinatorPort());
+            }
+            else {
+                serverSocket = new ServerSocket(config.getWorkerCoordinatorPort(), 50, InetAddress.getByName(null));
+            }
+        }
+        catch (IOException e) {
+            throw new TechnicalException("Could not open coordinator port " + config.getWorkerCoordinatorPort(), e);
+        }
+
+        WorkerPool pool = new WorkerPool(serverSocket, external ? config.getWorkerToken() : generateToken());
+        try {
+            for (int i = 0; i < config.getWorkerJvmCount(); i++) {
+                pool.forkWorker(i + 1, config.getWorkerJvmArgs());
+            }
+            int expected = config.getWorkerJvmCount() + config.getExternalWorkerCount();
+            LOGGER.info("Waiting for {} worker JVMs to connect on port {}", expected, serverSocket.getLocalPort());
+            long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS;
+            int connected = 0;
+            while (connected < expected) {
+                if (pool.acceptWorker(listenerRegistry, deadline)) {
+                    connected++;
+                }
+            }
+        }
+        catch (RuntimeException e) {
+            pool.shutdown();
+            throw e;
+        }
+        catch (IOException e) {
+            pool.shutdown();
+            throw new TechnicalException("Could not start worker JVMs", e);
+        }
+
+        LOGGER.info("{} worker JVMs with {} execution slots connected", pool.connections.size(), pool.getTotalSlots());
+        return pool;
+    }
+
+    /** Returns the total number of test cases which can be executed in parallel by all connected workers.
+     *
+     * @return The total number of execution slots of all connected workers. */
+    public synchronized int getTotalSlots() {
+        int slots = 0;
+        for (WorkerConnection connection : connections) {
+            slots += connection.getSlots();
+        }
+        return slots;
+    }
+
+    /** Checks if the given leaf can be executed by a worker. Leafs reporting errors of the runner tree builder, and leafs not based
+     * on a test class, are executed by the coordinator itself.
+     *
+     * @param leaf Leaf to check.
+     *
+     * @return <code>true</code> if the leaf can be executed by a worker, <code>false</code> otherwise. */
+    public boolean canExecute(RunnerLeaf leaf) {
+        return leaf.getTestInvoker() != null && leaf.getTestInvoker().getTestClass() != null
+                && !Boolean.TRUE.equals(leaf.getAttribute(CommonRunnerLeafAttributes.BUILDER_ERROR));
+    }
+
+    /** Executes the given leaf on the next worker with a free execution slot. Blocks until the leaf has been executed, which
+     * includes firing all of its test step events on the coordinator's listener registry.
+     *
+     * @param leaf Leaf to execute.
+     *
+     * @throws Throwable The exception raised by the test invoker in the worker JVM, if any. */
+    public void execute(RunnerLeaf leaf) throws Throwable { // NOSONAR
+        WorkerConnection connection = acquireSlot();
+        try {
+            connection.execute(leaf);
+        }
+        finally {
+            releaseSlot(connection);
+        }
+    }
+
+    /** Notifies all workers that no more test cases will be executed, and waits for locally forked worker JVMs to exit. */
+    public void shutdown() {
+        List<WorkerConnection> conns;
+        synchronized (this) {
+            conns = new ArrayList<WorkerConnection>(connections);
+        }
+        for (WorkerConnection connection : conns) {
+            connection.shutdown();
+        }
+        try {
+            serverSocket.close();
+        }
+        catch (IOException e) {
+            // ignore
+        }
+
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MILLIS;
+        for (Process process : processes) {
+            if (!waitForExit(process, deadline)) {
+                LOGGER.warn("Worker JVM did not exit in time, destroying it");
+                process.destroy();
+            }
+        }
+    }
+
+    private synchronized WorkerConnection acquireSlot() throws InterruptedException {
+        while (true) {
+            boolean anyAlive = false;
+            for (WorkerConnection connection : connections) {
+                if (connection.hasFreeSlot()) {
+                    connection.occupySlot();
+                    return connection;
+                }
+                anyAlive |= connection.isAlive();
+            }
+            if (!anyAlive) {
+                throw new TechnicalException("No worker JVM available for test execution");
+            }
+            wait(5000);
+        }
+    }
+
+    private synchronized void releaseSlot(WorkerConnection connection) {
+        connection.releaseSlot();
+        notifyAll();
+    }
+
+    private void forkWorker(int index, String jvmArgs) throws IOException {
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        if (jvmArgs != null) {
+            for (String arg : jvmArgs.trim().split("\\s+")) {
+                command.add(arg);
+            }
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-D" + EnvUtil.ENVIRONMENT_NAME_PROPERTY + "=" + EnvUtil.getEnvironmentName());
+        for (Map.Entry<Object, Object> entry : System.getProperties().entrySet()) {
+            String key = entry.getKey().toString();
+            if (isForwardedSystemProperty(key)) {
+                command.add("-D" + key + "=" + entry.getValue());
+            }
+        }
+        command.add(AludraTestWorker.class.getName());
+        command.add(InetAddress.getByName(null).getHostAddress());
+        command.add(String.valueOf(serverSocket.getLocalPort()));
+
+        ProcessBuilder builder = new ProcessBuilder(command);
+        // pass the token in the environment, as command lines are visible to other users
+        builder.environment().put(AludraTestWorker.TOKEN_ENV_VARIABLE, token);
+        builder.redirectErrorStream(true);
+        Process process = builder.start();
+        processes.add(process);
+
+        Thread pump = new Thread(new OutputPump(process.getInputStream(), "[worker-" + index + "] "), "worker-" + index
+                + "-output");
+        pump.setDaemon(true);
+        pump.start();
+    }
+
+    private static boolean isForwardedSystemProperty(String key) {
+        if (EnvUtil.ENVIRONMENT_NAME_PROPERTY.equals(key)) {
+            return false;
+        }
+        for (String prefix : FORWARDED_SYSPROP_PREFIXES) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Accepts the next connection, and registers it as worker if it presents the token in its handshake. The handshake is read
+     * using plain data streams, so nothing sent by a peer is deserialized before it has presented the token. Connections which
+     * fail the handshake are closed without affecting the pool. */
+    private boolean acceptWorker(RunnerListenerRegistry listenerRegistry, long deadline) throws IOException {
+        String timeoutMessage = "Worker JVMs did not connect within " + (CONNECT_TIMEOUT_MILLIS / 1000) + " seconds";
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            throw new TechnicalException(timeoutMessage);
+        }
+        Socket socket;
+        try {
+            serverSocket.setSoTimeout((int) remaining);
+            socket = serverSocket.accept();
+        }
+        catch (SocketTimeoutException e) {
+            throw new TechnicalException(timeoutMessage, e);
+        }
+
+        WorkerConnection connection;
+        try {
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+            DataInputStream hello = new DataInputStream(socket.getInputStream());
+            String workerToken = hello.readUTF();
+            int slots = hello.readInt();
+            if (!isValidToken(workerToken)) {
+                LOGGER.warn("Rejected connection from {}: Invalid worker token", socket.getRemoteSocketAddress());
+                closeQuietly(socket);
+                return false;
+            }
+
+            ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+            out.flush();
+            ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+            socket.setSoTimeout(0);
+            connection = new WorkerConnection(socket, in, out, Math.max(1, slots), listenerRegistry);
+        }
+        catch (IOException e) {
+            LOGGER.warn("Rejected connection from {}: Invalid handshake ({})", socket.getRemoteSocketAddress(), e.toString());
+            closeQuietly(socket);
+            return false;
+        }
+
+        synchronized (this) {
+            connections.add(connection);
+        }
+        Thread reader = new Thread(connection, "WorkerConnection " + connection);
+        reader.setDaemon(true);
+        reader.start();
+        LOGGER.info("Worker JVM {} connected with {} execution slots", connection, Integer.valueOf(connection.getSlots()));
+        return true;
+    }
+
+    private boolean isValidToken(String workerToken) throws UnsupportedEncodingException {
+        // constant time comparison, so the token cannot be guessed from response times
+        return MessageDigest.isEqual(token.getBytes("UTF-8"), workerToken.getBytes("UTF-8"));
+    }
+
+    private static String generateToken() {
+        byte[] data = new byte[16];
+        new SecureRandom().nextBytes(data);
+        StringBuilder sb = new StringBuilder(data.length * 2);
+        for (byte b : data) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        }
+        catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private static boolean waitForExit(Process process, long deadline) {
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                process.exitValue();
+                return true;
+            }
+            catch (IllegalThreadStateException e) {
+                try {
+                    Thread.sleep(100);
+                }
+                catch (InterruptedException e1) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Copies the console output of a forked worker JVM to the console of the coordinator. */
+    private static final class OutputPump implements Runnable {
+
+        private final InputStream in;
+
+        private final String prefix;
+
+        OutputPump(InputStream in, String prefix) {
+            this.in = in;
+            this.prefix = prefix;
+        }
+
+        @Override
+        public void run() {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    System.out.println(prefix + line); // NOSONAR
+                }
+            }
+            catch (IOException e) {
+                // process terminated
+            }
+            finally {
+                IOUtil.close(reader);
+            }
+        }
+    }
+
+}
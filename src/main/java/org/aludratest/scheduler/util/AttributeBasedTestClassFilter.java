@@ -17,8 +17,9 @@ package org.aludratest.scheduler.util;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 import org.aludratest.scheduler.TestClassFilter;
 import org.aludratest.testcase.AludraTestCase;
@@ -41,6 +42,12 @@ public final class AttributeBasedTestClassFilter implements TestClassFilter {
 
     private boolean invert;
 
+    /** The accepted values, for constant-time lookup. */
+    private Set<String> valueSet;
+
+    /** <code>true</code> if a test class without this attribute matches. */
+    private boolean matchesUnset;
+
     /** Constructs a new attribute based test class filter.
      *
      * @param attributeName Name of the TestAttribute to match on.
@@ -50,6 +57,8 @@ public final class AttributeBasedTestClassFilter implements TestClassFilter {
         this.attributeName = attributeName;
         this.values = Collections.unmodifiableList(new ArrayList<String>(values));
         this.invert = invert;
+        this.valueSet = new HashSet<String>(values);
+        this.matchesUnset = valueSet.contains("[]");
     }
 
     String getAttributeName() {
@@ -66,17 +75,20 @@ public final class AttributeBasedTestClassFilter implements TestClassFilter {
 
     @Override
     public boolean matches(Class<? extends AludraTestCase> testClass) {
-        Map<String, List<String>> attributes = TestAttributeUtil.getTestAttributes(testClass);
+        List<String> attrValues = TestAttributeUtil.getTestAttributes(testClass).get(attributeName);
 
         boolean matchValue = false;
 
-        if (attributes.isEmpty() || !attributes.containsKey(attributeName)) {
-            matchValue = values.contains("[]");
+        if (attrValues == null) {
+            matchValue = matchesUnset;
         }
         else {
             // one of the attributes set must be contained in values
-            for (String attrValue : attributes.get(attributeName)) {
-                matchValue |= values.contains(attrValue);
+            for (String attrValue : attrValues) {
+                if (valueSet.contains(attrValue)) {
+                    matchValue = true;
+                    break;
+                }
             }
         }
 
@@ -29,6 +29,29 @@ public interface CommonRunnerLeafAttributes {
      * to data errors. */
     public static final String BUILDER_ERROR = "BUILDER_ERROR";
 
+    /** The names of the limited resources used by all test cases below the node, as a String array. */
+    public static final String USED_RESOURCES = "USED_RESOURCES";
+
+    /** The default capacity of the resources named in the {@link #USED_RESOURCES} attribute of the same node, as an Integer. */
+    public static final String USED_RESOURCES_CAPACITY = "USED_RESOURCES_CAPACITY";
+
+    /** Boolean attribute enabling the cancellation of dependent test cases if a test case below the node fails. */
+    public static final String CANCEL_DEPENDENTS_ON_FAILURE = "CANCEL_DEPENDENTS_ON_FAILURE";
+
+    /** The name of the failed test case which caused the cancellation of this test case, if any. */
+    public static final String CANCELLED_BY_FAILURE_OF = "CANCELLED_BY_FAILURE_OF";
+
+    /** Boolean attribute indicating that the test case has not been executed, because it passed with the same fingerprint in a
+     * previous run (incremental mode). */
+    public static final String CACHED_RESULT = "CACHED_RESULT";
+
+    /** The fully qualified name of the test class which a class group has been built from. Leafs of inherited test methods
+     * belong to this class, not to the class declaring the method. */
+    public static final String TEST_CLASS_NAME = "TEST_CLASS_NAME";
+
+    /** The name of the Java test method which a method group has been built from. */
+    public static final String TEST_METHOD_NAME = "TEST_METHOD_NAME";
+
     /** The Id in an External Test Management system referring to this test case. */
     public static final String EXTERNAL_TEST_ID = "EXTERNAL_TEST_ID";
 }
@@ -20,6 +20,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.aludratest.testcase.AludraTestCase;
 import org.aludratest.testcase.TestAttribute;
@@ -30,35 +31,57 @@ import org.aludratest.testcase.TestAttributes;
  * @author falbrech */
 public final class TestAttributeUtil {
 
+    /** The test attributes per test class, evaluated once per class. The classes are weakly referenced, so the table does not
+     * keep test classes and their class loaders alive. */
+    private static final Map<Class<?>, Map<String, List<String>>> attributeTables = Collections
+            .synchronizedMap(new WeakHashMap<Class<?>, Map<String, List<String>>>());
+
     private TestAttributeUtil() {
     }
 
-    /** Determines all test attributes of the given test case class.
+    /** Determines all test attributes of the given test case class. The annotations of each class are evaluated only once, so
+     * filters and category grouping can query the attributes for each test case without repeated reflection.
      *
      * @param testClass Test case class.
      *
-     * @return All test attributes of the given test case class. */
+     * @return All test attributes of the given test case class, as an unmodifiable map with unmodifiable value lists. */
     public static Map<String, List<String>> getTestAttributes(Class<? extends AludraTestCase> testClass) {
+        Map<String, List<String>> result = attributeTables.get(testClass);
+        if (result == null) {
+            result = readTestAttributes(testClass);
+            attributeTables.put(testClass, result);
+        }
+        return result;
+    }
+
+    private static Map<String, List<String>> readTestAttributes(Class<? extends AludraTestCase> testClass) {
         TestAttribute attr = testClass.getAnnotation(TestAttribute.class);
         TestAttributes attrs = testClass.getAnnotation(TestAttributes.class);
 
         Map<String, List<String>> result = new HashMap<String, List<String>>();
 
         if (attr != null) {
-            result.put(attr.name(), Collections.singletonList(attr.value()));
+            addAttribute(result, attr);
         }
         if (attrs != null) {
             for (TestAttribute a : attrs.value()) {
-                List<String> ls = result.get(a.name());
-                if (ls == null) {
-                    ls = new ArrayList<String>();
-                    result.put(a.name(), ls);
-                }
-                ls.add(a.value());
+                addAttribute(result, a);
             }
         }
 
-        return result;
+        for (Map.Entry<String, List<String>> entry : result.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        return result.isEmpty() ? Collections.<String, List<String>> emptyMap() : Collections.unmodifiableMap(result);
+    }
+
+    private static void addAttribute(Map<String, List<String>> attributes, TestAttribute attr) {
+        List<String> ls = attributes.get(attr.name());
+        if (ls == null) {
+            ls = new ArrayList<String>();
+            attributes.put(attr.name(), ls);
+        }
+        ls.add(attr.value());
     }
 
 }
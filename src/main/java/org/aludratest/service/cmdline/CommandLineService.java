@@ -15,6 +15,8 @@
  */
 package org.aludratest.service.cmdline;
 
+import java.io.Closeable;
+
 import org.aludratest.config.ConfigProperties;
 import org.aludratest.config.ConfigProperty;
 import org.aludratest.service.AludraService;
@@ -44,4 +46,9 @@ public interface CommandLineService extends AludraService {
      */
     String getBaseDirectory();
 
+    /** Registers a resource which is closed together with the service, like a long-lived process started by a client of the
+     * service.
+     * @param resource the resource to close when the service is closed */
+    void registerCloseable(Closeable resource);
+
 }
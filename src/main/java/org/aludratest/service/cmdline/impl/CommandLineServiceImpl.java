@@ -15,6 +15,10 @@
  */
 package org.aludratest.service.cmdline.impl;
 
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.aludratest.config.ConfigProperties;
 import org.aludratest.config.Preferences;
 import org.aludratest.exception.AutomationException;
@@ -25,6 +29,7 @@ import org.aludratest.service.cmdline.CommandLineInteraction;
 import org.aludratest.service.cmdline.CommandLineService;
 import org.aludratest.service.cmdline.CommandLineVerification;
 import org.apache.commons.vfs2.FileSystemException;
+import org.databene.commons.IOUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,6 +46,8 @@ public class CommandLineServiceImpl extends AbstractConfigurableAludraService im
 
     private CommandLineServiceConfiguration configuration;
 
+    private final List<Closeable> closeables = new ArrayList<Closeable>();
+
     // properties --------------------------------------------------------------
 
     @Override
@@ -76,6 +83,12 @@ public class CommandLineServiceImpl extends AbstractConfigurableAludraService im
     /** Closes the service */
     @Override
     public void close() {
+        synchronized (closeables) {
+            for (Closeable closeable : closeables) {
+                IOUtil.close(closeable);
+            }
+            closeables.clear();
+        }
         this.configuration.close();
     }
 
@@ -101,4 +114,11 @@ public class CommandLineServiceImpl extends AbstractConfigurableAludraService im
         return configuration.getBaseDirectory();
     }
 
+    @Override
+    public void registerCloseable(Closeable resource) {
+        synchronized (closeables) {
+            closeables.add(resource);
+        }
+    }
+
 }
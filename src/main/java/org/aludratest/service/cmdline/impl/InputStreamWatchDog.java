@@ -22,18 +22,17 @@ import java.io.OutputStream;
 
 import org.aludratest.exception.PerformanceFailure;
 import org.aludratest.exception.TechnicalException;
-import org.aludratest.util.poll.PollService;
-import org.aludratest.util.poll.PolledTask;
 import org.databene.commons.IOUtil;
 import org.databene.commons.SystemInfo;
 import org.databene.commons.array.ByteArray;
 
-/** Watches and collects a process' output.
+/** Watches and collects a process' output. The stream is drained by a thread of the {@link ProcessThreadPool}; readers waiting
+ * for output are notified as soon as data arrives or the stream ends, instead of polling the buffer. <br>
+ * The class still extends {@link Thread} for compatibility, but it is never started as a thread of its own: {@link #start()}
+ * hands it to the pool.
  * @author Volker Bergmann */
 public class InputStreamWatchDog extends Thread {
 
-    private static final int DEFAULT_POLLING_INTERVAL = 300;
-
     private final static String LF = SystemInfo.getLineSeparator();
 
     private InputStream in;
@@ -42,16 +41,30 @@ public class InputStreamWatchDog extends Thread {
     private ByteArray buffer;
     private int pos;
     private boolean timedOut;
+    private boolean endOfStream;
 
     InputStreamWatchDog(InputStream in, ProcessWrapper process, String name) {
+        super("InputStreamWatchDog-" + name);
         this.in = in;
         this.process = process;
         this.name = name;
         this.buffer = new ByteArray(5000);
         this.pos = 0;
         this.timedOut = false;
-        setDaemon(true);
-        setPriority(MIN_PRIORITY);
+        this.endOfStream = false;
+    }
+
+    /** Starts draining the stream in a thread of the {@link ProcessThreadPool}. */
+    void startDrain() {
+        ProcessThreadPool.execute(this);
+    }
+
+    /** Starts draining the stream in a thread of the {@link ProcessThreadPool}.
+     * @deprecated The watchdog does not run in a thread of its own, and the watchdogs of a process are started by the process. */
+    @Deprecated
+    @Override
+    public void start() {
+        startDrain();
     }
 
     public String nextLine() throws IOException {
@@ -77,10 +90,21 @@ public class InputStreamWatchDog extends Thread {
         return true;
     }
 
+    /** Waits until output is available, the stream has ended or the response timeout has been exceeded.
+     * @return true if output is available, otherwise false */
     boolean availableWithinResponseTimeout() {
-        PollService poller = new PollService(process.getResponseTimeout(), DEFAULT_POLLING_INTERVAL);
-        WaitUntilTextAvailable task = new WaitUntilTextAvailable();
-        return poller.poll(task);
+        long deadline = System.currentTimeMillis() + process.getResponseTimeout();
+        synchronized (buffer) {
+            long remaining = process.getResponseTimeout();
+            while (!bufferedTextAvailable() && !endOfStream && remaining > 0) {
+                waitForBuffer(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+            if (!bufferedTextAvailable() && !endOfStream) {
+                timedOut = true;
+            }
+            return bufferedTextAvailable();
+        }
     }
 
     private boolean bufferedTextAvailable() {
@@ -91,30 +115,37 @@ public class InputStreamWatchDog extends Thread {
 
     @Override
     public void run() {
+        byte[] chunk = new byte[4096];
         try {
-            int c;
-            while ((c = in.read()) >= 0) {
+            int count;
+            while ((count = in.read(chunk)) >= 0) {
                 synchronized (buffer) {
-                    buffer.add((byte) c);
+                    buffer.addAll(chunk, 0, count);
+                    buffer.notifyAll();
                 }
             }
         }
         catch (IOException e) {
             throw new TechnicalException("Error reading " + name + " stream of process " + process, e);
         }
+        finally {
+            synchronized (buffer) {
+                endOfStream = true;
+                buffer.notifyAll();
+            }
+        }
     }
 
     public void redirectTo(OutputStream out) throws IOException {
-        if (!bufferedTextAvailable()) {
-            if (process.isRunning()) {
+        if (process.isRunning()) {
+            if (!bufferedTextAvailable()) {
                 // expect process output
                 waitUntilAvailable();
             }
-            else if (!availableWithinResponseTimeout()) {
-                // perform another check if process output was pending
-                // (necessary for Windows)
-                return;
-            }
+        }
+        else {
+            // the process has finished, so wait until its output has been drained completely
+            waitUntilEndOfStream();
         }
         InputStream bufferStream;
         synchronized (buffer) {
@@ -152,21 +183,26 @@ public class InputStreamWatchDog extends Thread {
         IOUtil.close(this.in); // this also cancels in.read() in the run method's loop
     }
 
-    class WaitUntilTextAvailable implements PolledTask<Boolean> {
-        @Override
-        public Boolean run() {
-            return (bufferedTextAvailable() ? true : null); // NOSONAR
-        }
+    // helper methods ----------------------------------------------------------
 
-        @Override
-        public Boolean timedOut() {
-            timedOut = true;
-            return false;
+    private void waitUntilEndOfStream() {
+        long deadline = System.currentTimeMillis() + process.getResponseTimeout();
+        synchronized (buffer) {
+            long remaining = process.getResponseTimeout();
+            while (!endOfStream && remaining > 0) {
+                waitForBuffer(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
         }
+    }
 
-        @Override
-        public String toString() {
-            return getClass().getSimpleName() + "[" + process + "]";
+    private void waitForBuffer(long timeout) {
+        try {
+            buffer.wait(timeout);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TechnicalException("Interrupted while waiting for " + name + " of process " + process, e);
         }
     }
 
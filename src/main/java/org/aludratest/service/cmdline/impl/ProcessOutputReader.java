@@ -40,7 +40,7 @@ final class ProcessOutputReader implements Closeable {
         this.name = name;
         this.pushedBackLine = null;
         this.watchdog = new InputStreamWatchDog(in, process, name);
-        this.watchdog.start(); // NOSONAR no J2EE compliance needed here
+        this.watchdog.startDrain();
     }
 
     // interface ---------------------------------------------------------------
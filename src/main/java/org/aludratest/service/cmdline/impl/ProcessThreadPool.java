@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.cmdline.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Shared daemon threads which monitor processes. <br>
+ * Process termination is detected by one shared reaper thread, which checks the exit values of all running processes in a
+ * short interval, since Java 6 offers neither an exit callback nor a way to wait for several processes at once. The reaper
+ * terminates when no process is running and is restarted on demand. <br>
+ * Process output streams are drained by pooled threads. As stream reads block, each drain occupies a thread while its process
+ * is alive, but the threads are reused for subsequent processes and idle threads are released after one minute. Up to
+ * {@value #MAX_DRAIN_THREADS} drain threads are pooled; further drains run in dedicated threads which end with the drain.
+ * @author agent */
+final class ProcessThreadPool {
+
+    /** The maximum number of pooled drain threads, which suffices for half as many processes. */
+    static final int MAX_DRAIN_THREADS = 256;
+
+    /** The interval in milliseconds in which the reaper checks if the running processes have terminated. */
+    private static final int REAPER_INTERVAL = 20;
+
+    private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "ProcessMonitor-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(0, MAX_DRAIN_THREADS, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<Runnable>(), THREAD_FACTORY, new RejectedExecutionHandler() {
+                @Override
+                public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+                    // all pooled threads are busy; the drain must not wait for another process to terminate
+                    THREAD_FACTORY.newThread(task).start();
+                }
+            });
+
+    /** The processes watched by the reaper. */
+    private static final List<ProcessWrapper> RUNNING_PROCESSES = new ArrayList<ProcessWrapper>();
+
+    /** The reaper thread, or <code>null</code> if no process is running. Guarded by {@link #RUNNING_PROCESSES}. */
+    private static Thread reaper;
+
+    private ProcessThreadPool() {
+    }
+
+    /** Executes a monitoring task in a pooled thread, or in a dedicated thread if all {@value #MAX_DRAIN_THREADS} pooled
+     * threads are busy.
+     * @param task the task to execute */
+    static void execute(Runnable task) {
+        EXECUTOR.execute(task);
+    }
+
+    /** Has the shared reaper call {@link ProcessWrapper#checkTermination()} until the process has terminated.
+     * @param process the process to watch */
+    static void watchTermination(ProcessWrapper process) {
+        synchronized (RUNNING_PROCESSES) {
+            RUNNING_PROCESSES.add(process);
+            if (reaper == null) {
+                reaper = new Thread(new Reaper(), "ProcessReaper");
+                reaper.setDaemon(true);
+                reaper.start();
+            }
+        }
+    }
+
+    // helper classes ----------------------------------------------------------
+
+    private static final class Reaper implements Runnable {
+
+        @Override
+        public void run() {
+            List<ProcessWrapper> processes = new ArrayList<ProcessWrapper>();
+            while (true) {
+                synchronized (RUNNING_PROCESSES) {
+                    if (RUNNING_PROCESSES.isEmpty()) {
+                        reaper = null;
+                        return;
+                    }
+                    processes.clear();
+                    processes.addAll(RUNNING_PROCESSES);
+                }
+                for (ProcessWrapper process : processes) {
+                    if (process.checkTermination()) {
+                        synchronized (RUNNING_PROCESSES) {
+                            RUNNING_PROCESSES.remove(process);
+                        }
+                    }
+                }
+                try {
+                    Thread.sleep(REAPER_INTERVAL);
+                }
+                catch (InterruptedException e) {
+                    // the reaper is shared by all processes, so it keeps running until they have terminated
+                }
+            }
+        }
+    }
+
+}
@@ -21,11 +21,12 @@ import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.aludratest.exception.AutomationException;
 import org.aludratest.exception.PerformanceFailure;
 import org.aludratest.exception.TechnicalException;
-import org.aludratest.util.poll.PollService;
 import org.aludratest.util.poll.PolledTask;
 import org.databene.commons.IOUtil;
 import org.databene.commons.SystemInfo;
@@ -37,8 +38,6 @@ public class ProcessWrapper {
 
     private static final String LINEFEED = SystemInfo.getLineSeparator();
 
-    private static final int DEFAULT_PROCESS_TERMINATION_POLLING_INTERVAL = 300;
-
     private final int processId;
     private final int processTimeout;
     private final int responseTimeout;
@@ -51,6 +50,10 @@ public class ProcessWrapper {
 
     private ProcessState state;
 
+    /** Released by the shared reaper of the {@link ProcessThreadPool} when the process has terminated. */
+    private final CountDownLatch termination;
+    private volatile int exitValue;
+
     // constructor -------------------------------------------------------------
 
     /** Creates a {@link ProcessWrapper} instance.
@@ -68,6 +71,7 @@ public class ProcessWrapper {
         this.stdOut = null;
         this.errOut = null;
         this.state = ProcessState.CREATED;
+        this.termination = new CountDownLatch(1);
     }
 
     // configuration -----------------------------------------------------------
@@ -122,10 +126,18 @@ public class ProcessWrapper {
             this.errOut = new ProcessOutputReader(process.getErrorStream(), this, "stderr");
             this.stdIn = process.getOutputStream();
             this.state = ProcessState.RUNNING;
+            ProcessThreadPool.watchTermination(this);
         }
         catch (IOException e) {
             throw new AutomationException("Error starting process: " + this, e);
         }
+        catch (RuntimeException e) {
+            // e.g. if a stream drain could not be started; the process must not survive unwatched
+            if (this.process != null) {
+                destroy();
+            }
+            throw e;
+        }
     }
 
     /** Tells if the process is running.
@@ -179,8 +191,19 @@ public class ProcessWrapper {
      * @throws PerformanceFailure if the timeout is exceeded before the process has finished
      * @return the process' exit value */
     public int waitUntilFinished() {
-        PollService poller = new PollService(processTimeout, DEFAULT_PROCESS_TERMINATION_POLLING_INTERVAL);
-        return poller.poll(new WaitUntilFinishedTask());
+        try {
+            if (!termination.await(processTimeout, TimeUnit.MILLISECONDS)) {
+                throw new PerformanceFailure("Process did not finish within the timeout of " + processTimeout + " ms: " + this);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TechnicalException("Interrupted while waiting for process: " + this, e);
+        }
+        if (this.state == ProcessState.RUNNING) {
+            this.state = ProcessState.FINISHED;
+        }
+        return exitValue;
     }
 
     /** @return the exit value of the process if it has finished, otherwise null */
@@ -205,6 +228,20 @@ public class ProcessWrapper {
         process.destroy();
     }
 
+    /** Called by the reaper of the {@link ProcessThreadPool} to check if the process has terminated. If it has, the threads
+     * waiting in {@link #waitUntilFinished()} are released.
+     * @return true if the process has terminated, otherwise false */
+    boolean checkTermination() {
+        try {
+            exitValue = process.exitValue();
+        }
+        catch (IllegalThreadStateException e) {
+            return false;
+        }
+        termination.countDown();
+        return true;
+    }
+
     // java.lang.Object overrides ----------------------------------------------
 
     @Override
@@ -244,8 +281,10 @@ public class ProcessWrapper {
         CREATED, RUNNING, FINISHED
     }
 
-
-    /** PolledTask implementation that queries a process' exit value until the process has finished or a timeout occurs. */
+    /** PolledTask implementation that queries a process' exit value until the process has finished or a timeout occurs.
+     * @deprecated {@link ProcessWrapper#waitUntilFinished()} is notified of the process termination and does not poll any more.
+     *             Call it instead of polling this task. */
+    @Deprecated
     public class WaitUntilFinishedTask implements PolledTask<Integer> {
 
         @Override
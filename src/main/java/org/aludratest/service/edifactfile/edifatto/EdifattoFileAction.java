@@ -15,9 +15,7 @@
  */
 package org.aludratest.service.edifactfile.edifatto;
 
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -40,6 +38,7 @@ import org.aludratest.service.file.FileFilter;
 import org.aludratest.service.file.FileService;
 import org.aludratest.testcase.event.attachment.Attachment;
 import org.aludratest.testcase.event.attachment.StringAttachment;
+import org.databene.commons.IOUtil;
 import org.databene.commons.SystemInfo;
 import org.databene.edifatto.EdiFormatSymbols;
 import org.databene.edifatto.compare.HTMLDiffFormatter;
@@ -110,20 +109,29 @@ public class EdifattoFileAction implements EdifactFileInteraction, EdifactFileVe
 
     // EdifactInteraction interface implementation -----------------------------
 
-    /** Writes an EDIFACT or X12 interchange to an {@link OutputStream}. */
+    /** Writes an EDIFACT or X12 interchange to a file. The interchange is streamed to the file, encoded with the charset declared
+     * in its UNB segment. */
     @Override
     public void writeInterchange(String elementType, String elementName, Interchange interchange, String filePath, boolean overwrite) {
         memorizeInterchanges(null, null, null);
-        String content = toString(interchange, false);
-        fileService.perform().writeBinaryFile(filePath, content.getBytes(), overwrite); // TODO which encoding to use?
+        InputStream content = contentHandler.getInputStreamForInterchange(interchange, false);
+        try {
+            fileService.perform().writeBinaryFile(filePath, content, overwrite);
+        } finally {
+            IOUtil.close(content);
+        }
     }
 
     @Override
     public Interchange readInterchange(String elementType, String elementName, String filePath) {
-        byte[] bytes = fileService.perform().readBinaryFile(filePath);
-        Interchange interchange = contentHandler.readInterchange(new ByteArrayInputStream(bytes));
-        memorizeInterchanges(null, interchange, null);
-        return interchange;
+        InputStream in = fileService.perform().getInputStreamForFile(filePath);
+        try {
+            Interchange interchange = contentHandler.readInterchange(in);
+            memorizeInterchanges(null, interchange, null);
+            return interchange;
+        } finally {
+            IOUtil.close(in);
+        }
     }
 
     @Override
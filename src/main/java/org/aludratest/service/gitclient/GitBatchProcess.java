@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gitclient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.aludratest.exception.AutomationException;
+import org.aludratest.exception.TechnicalException;
+import org.aludratest.service.gitclient.data.GitObjectData;
+import org.databene.commons.IOUtil;
+
+/** Long-lived <code>git cat-file --batch</code> or <code>git cat-file --batch-check</code> process which answers any number of
+ * object queries. Each query is written to the process' stdin and its response is parsed from stdout as soon as it arrives, so a
+ * query does not cost a process creation. <br>
+ * The responses are parsed byte-exact, which the line-based output handling of the <code>CommandLineService</code> does not
+ * support, so the process is controlled directly. <br>
+ * The output of the process is read by a separate thread, so a query waits at most for the response timeout for more output.
+ * If the process does not respond in time or its response cannot be parsed, it is destroyed and the query fails, since the
+ * following responses could not be assigned to their queries any more. <br>
+ * <br>
+ * This class is thread-safe.
+ *
+ * @author agent */
+final class GitBatchProcess implements Closeable {
+
+    private static final String MISSING_SUFFIX = " missing";
+
+    /** The charset used for revision expressions and response headers, which matches git's default encoding for paths. */
+    private static final String PROTOCOL_CHARSET = "UTF-8";
+
+    private final boolean contents;
+
+    private final int responseTimeout;
+
+    private final Process process;
+
+    private final OutputStream stdIn;
+
+    private final ResponseBuffer stdOut = new ResponseBuffer();
+
+    private final ByteArrayOutputStream errOut = new ByteArrayOutputStream();
+
+    private volatile boolean destroyed;
+
+    /** Starts the process.
+     * @param workingDirectory the working directory of the git repository
+     * @param contents <code>true</code> for <code>--batch</code>, which provides object contents, <code>false</code> for
+     *            <code>--batch-check</code>, which provides only object names, types and sizes
+     * @param responseTimeout the maximum time in milliseconds to wait for more output of the process while answering a query */
+    GitBatchProcess(File workingDirectory, boolean contents, int responseTimeout) {
+        this(workingDirectory, contents, responseTimeout, GitClient.GIT_COMMAND, "cat-file", contents ? "--batch"
+                : "--batch-check");
+    }
+
+    /** Starts the process with the given command, which must behave like <code>git cat-file</code>. */
+    GitBatchProcess(File workingDirectory, boolean contents, int responseTimeout, String... command) {
+        this.contents = contents;
+        this.responseTimeout = responseTimeout;
+        ProcessBuilder builder = new ProcessBuilder(command); // NOSONAR
+        builder.directory(workingDirectory);
+        try {
+            this.process = builder.start();
+        }
+        catch (IOException e) {
+            throw new TechnicalException("Error starting git cat-file in " + workingDirectory, e);
+        }
+        this.stdIn = process.getOutputStream();
+        startDrain(process.getInputStream(), "git cat-file stdout", stdOut);
+        startDrain(process.getErrorStream(), "git cat-file stderr", errOut);
+    }
+
+    /** Queries an object and stores its name, type and size in the provided data object. A <code>--batch</code> process
+     * additionally stores the content as read from git, without decoding it.
+     * @param data the data object which provides the revision expression, e.g. <code>HEAD:file.txt</code>, and receives the
+     *            result
+     * @return <code>true</code> if the object exists, otherwise <code>false</code> */
+    synchronized boolean query(GitObjectData data) {
+        String revision = data.getRevision();
+        if (revision.indexOf('\n') >= 0 || revision.indexOf('\r') >= 0) {
+            throw new AutomationException("Illegal git revision: " + revision);
+        }
+        try {
+            stdIn.write((revision + "\n").getBytes(PROTOCOL_CHARSET));
+            stdIn.flush();
+            return readResponse(data);
+        }
+        catch (IOException e) {
+            destroy();
+            throw new TechnicalException("Error querying git object '" + revision + "'" + errorInfo(), e);
+        }
+        catch (RuntimeException e) {
+            // the response has not been consumed completely, so the process is out of sync
+            destroy();
+            throw e;
+        }
+    }
+
+    /** Terminates the process. */
+    @Override
+    public void close() {
+        IOUtil.close(stdIn);
+        try {
+            process.waitFor();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            destroy();
+        }
+    }
+
+    /** Tells if the process has terminated or has been destroyed, e.g. after a response timeout or a protocol error. A terminated
+     * process cannot answer further queries and has to be replaced.
+     * @return <code>true</code> if the process has terminated, otherwise <code>false</code> */
+    boolean isTerminated() {
+        if (destroyed) {
+            return true;
+        }
+        try {
+            process.exitValue();
+            return true;
+        }
+        catch (IllegalThreadStateException e) {
+            return false;
+        }
+    }
+
+    // helper methods ----------------------------------------------------------
+
+    private boolean readResponse(GitObjectData data) throws IOException {
+        String header = readHeaderLine();
+        if (header.endsWith(MISSING_SUFFIX) || header.endsWith(" ambiguous")) {
+            return false;
+        }
+        String[] tokens = header.split(" ");
+        if (tokens.length != 3 || !isSize(tokens[2])) {
+            throw new TechnicalException("Unexpected git cat-file output: " + header + errorInfo());
+        }
+        data.setObjectName(tokens[0]);
+        data.setType(tokens[1]);
+        data.setSize(tokens[2]);
+        if (contents) {
+            data.setContentBytes(readBytes(Integer.parseInt(tokens[2])));
+            // each object content is followed by a line feed
+            if (read() != '\n') {
+                throw new TechnicalException("Unexpected git cat-file output after content of " + tokens[0] + errorInfo());
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSize(String token) {
+        if (token.length() == 0 || token.length() > 9) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void destroy() {
+        destroyed = true;
+        process.destroy();
+    }
+
+    private String readHeaderLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c;
+        while ((c = read()) != '\n') {
+            if (c < 0) {
+                throw new TechnicalException("git cat-file terminated unexpectedly" + errorInfo());
+            }
+            line.write(c);
+        }
+        return line.toString(PROTOCOL_CHARSET);
+    }
+
+    private byte[] readBytes(int count) throws IOException {
+        byte[] result = new byte[count];
+        int offset = 0;
+        while (offset < count) {
+            int read = read(result, offset, count - offset);
+            if (read < 0) {
+                throw new TechnicalException("git cat-file terminated unexpectedly" + errorInfo());
+            }
+            offset += read;
+        }
+        return result;
+    }
+
+    private int read() throws IOException {
+        byte[] buffer = new byte[1];
+        return read(buffer, 0, 1) < 0 ? -1 : buffer[0] & 0xFF;
+    }
+
+    private int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = stdOut.read(buffer, offset, length, responseTimeout);
+        if (read == 0) {
+            destroy();
+            throw new TechnicalException("git cat-file did not respond within " + responseTimeout + " ms" + errorInfo());
+        }
+        return read;
+    }
+
+    private String errorInfo() {
+        synchronized (errOut) {
+            return errOut.size() > 0 ? ": " + errOut.toString().trim() : "";
+        }
+    }
+
+    private static void startDrain(final InputStream in, String threadName, final OutputStream out) {
+        Thread drain = new Thread(threadName) {
+            @Override
+            public void run() {
+                byte[] buffer = new byte[8192];
+                try {
+                    int read;
+                    while ((read = in.read(buffer)) >= 0) {
+                        synchronized (out) {
+                            out.write(buffer, 0, read);
+                        }
+                    }
+                }
+                catch (IOException e) {
+                    // the stream has been closed together with the process
+                }
+                finally {
+                    IOUtil.close(in);
+                    IOUtil.close(out);
+                }
+            }
+        };
+        drain.setDaemon(true);
+        drain.start();
+    }
+
+    // helper classes ----------------------------------------------------------
+
+    /** Buffers the output of the process until it is read by a query, so queries can wait for output with a timeout. */
+    private static final class ResponseBuffer extends OutputStream {
+
+        private byte[] data = new byte[8192];
+
+        private int start;
+
+        private int end;
+
+        private boolean closed;
+
+        @Override
+        public synchronized void write(int b) {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            if (data.length - end < len) {
+                // compact the buffer, and grow it if the unread data does not fit
+                byte[] target = (end - start + len > data.length ? new byte[Math.max(data.length * 2, end - start + len)] : data);
+                System.arraycopy(data, start, target, 0, end - start);
+                data = target;
+                end -= start;
+                start = 0;
+            }
+            System.arraycopy(b, off, data, end, len);
+            end += len;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+
+        /** Reads buffered output, waiting at most for the given timeout until output is available.
+         * @return the number of bytes read, -1 if the process' output has ended, or 0 if the timeout expired */
+        synchronized int read(byte[] b, int off, int len, int timeout) throws IOException {
+            long deadline = System.currentTimeMillis() + timeout;
+            while (start == end && !closed) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return 0;
+                }
+                try {
+                    wait(remaining);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for git cat-file");
+                }
+            }
+            if (start == end) {
+                return -1;
+            }
+            int count = Math.min(len, end - start);
+            System.arraycopy(data, start, b, off, count);
+            start += count;
+            return count;
+        }
+    }
+
+}
@@ -15,6 +15,9 @@
  */
 package org.aludratest.service.gitclient;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.io.StringReader;
 
 import org.aludratest.dict.ActionWordLibrary;
@@ -31,6 +34,7 @@ import org.aludratest.service.gitclient.data.CloneRepositoryData;
 import org.aludratest.service.gitclient.data.CommitData;
 import org.aludratest.service.gitclient.data.ConfigData;
 import org.aludratest.service.gitclient.data.FetchData;
+import org.aludratest.service.gitclient.data.GitObjectData;
 import org.aludratest.service.gitclient.data.InvocationData;
 import org.aludratest.service.gitclient.data.LogData;
 import org.aludratest.service.gitclient.data.LogItemData;
@@ -54,14 +58,16 @@ import org.databene.commons.SystemInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Provides access to a git command line client using the {@link CommandLineService}.
+/** Provides access to a git command line client using the {@link CommandLineService}. Each operation forks its own
+ * <code>git</code> process, except the object queries {@link #readObjectInfo(GitObjectData)} and
+ * {@link #readObject(GitObjectData)}, which are answered by long-lived <code>git cat-file</code> processes.
  * @author Volker Bergmann */
 public class GitClient implements ActionWordLibrary<GitClient> {
 
     private static final int DEFAULT_PROCESS_TIMEOUT = 10000;
     private static final int DEFAULT_RESPONSE_TIMEOUT = 3000;
 
-    private static final String GIT_COMMAND = "git";
+    static final String GIT_COMMAND = "git";
 
     private static final String GIT_PROCESS_TYPE = "git";
 
@@ -100,6 +106,13 @@ public class GitClient implements ActionWordLibrary<GitClient> {
     private int processTimeout;
     private int responseTimeout;
 
+    /** Long-lived <code>git cat-file --batch-check</code> process, started on first use. */
+    private GitBatchProcess objectInfoProcess;
+    /** Long-lived <code>git cat-file --batch</code> process, started on first use. */
+    private GitBatchProcess objectContentProcess;
+    /** Tells if this client has been registered to be closed with the service. */
+    private boolean registeredWithService;
+
     /** Constructor with timeout defaults.
      * @param service the underlying {@link CommandLineService} instance */
     public GitClient(CommandLineService service) {
@@ -127,6 +140,9 @@ public class GitClient implements ActionWordLibrary<GitClient> {
      * @param relativeWorkingDirectory the workingDirectory to set.
      * @return a reference to this */
     public GitClient setRelativeWorkingDirectory(StringData relativeWorkingDirectory) {
+        if (!relativeWorkingDirectory.getValue().equals(this.relativeWorkingDirectory)) {
+            closeBatchProcesses();
+        }
         this.relativeWorkingDirectory = relativeWorkingDirectory.getValue();
         return this;
     }
@@ -499,6 +515,48 @@ public class GitClient implements ActionWordLibrary<GitClient> {
         return this;
     }
 
+    /** Provides the name, type and size of an object. All object queries of a working directory are answered by one long-lived
+     * <code>git cat-file --batch-check</code> process, so repeated queries do not create new processes. The process is
+     * terminated by {@link #closeBatchProcesses()} or when the service is closed, and it is replaced if it has failed.
+     * @param data a {@link GitObjectData} object which specifies the revision to query and receives the result
+     * @return a reference to <code>this</code> */
+    public synchronized GitClient readObjectInfo(GitObjectData data) {
+        if (objectInfoProcess == null || objectInfoProcess.isTerminated()) {
+            objectInfoProcess = startBatchProcess(false);
+        }
+        queryObject(objectInfoProcess, data);
+        return this;
+    }
+
+    /** Provides the name, type, size and content of an object. All object reads of a working directory are answered by one
+     * long-lived <code>git cat-file --batch</code> process, so repeated reads do not create new processes. The process is
+     * terminated by {@link #closeBatchProcesses()} or when the service is closed, and it is replaced if it has failed. The
+     * content is provided as read from git and decoded with the charset of the data object.
+     * @param data a {@link GitObjectData} object which specifies the revision to read and receives the result
+     * @return a reference to <code>this</code> */
+    public synchronized GitClient readObject(GitObjectData data) {
+        if (objectContentProcess == null || objectContentProcess.isTerminated()) {
+            objectContentProcess = startBatchProcess(true);
+        }
+        queryObject(objectContentProcess, data);
+        return this;
+    }
+
+    /** Terminates the long-lived processes used for object queries. They are restarted on demand, and they are terminated
+     * automatically when the underlying service is closed.
+     * @return a reference to <code>this</code> */
+    public synchronized GitClient closeBatchProcesses() {
+        if (objectInfoProcess != null) {
+            objectInfoProcess.close();
+            objectInfoProcess = null;
+        }
+        if (objectContentProcess != null) {
+            objectContentProcess.close();
+            objectContentProcess = null;
+        }
+        return this;
+    }
+
     /** Provides individually parameterized git invocations.
      * @param data the invocation data
      * @return a reference to <code>this</code> */
@@ -544,6 +602,36 @@ public class GitClient implements ActionWordLibrary<GitClient> {
         return process;
     }
 
+    private GitBatchProcess startBatchProcess(boolean contents) {
+        if (!registeredWithService) {
+            service.registerCloseable(new Closeable() {
+                @Override
+                public void close() {
+                    closeBatchProcesses();
+                }
+            });
+            registeredWithService = true;
+        }
+        return new GitBatchProcess(workingDirectory(), contents, responseTimeout);
+    }
+
+    private void queryObject(GitBatchProcess process, GitObjectData data) {
+        Assert.notNull(data.getRevision(), "revision");
+        LOGGER.debug("Querying git object: {}", data.getRevision());
+        if (!process.query(data)) {
+            throw new AutomationException("Git object not found: " + data.getRevision());
+        }
+    }
+
+    private File workingDirectory() {
+        try {
+            return new File(service.getBaseDirectory(), relativeWorkingDirectory).getCanonicalFile(); // NOSONAR
+        }
+        catch (IOException e) {
+            throw new TechnicalException("Error resolving working directory " + relativeWorkingDirectory, e);
+        }
+    }
+
     private String quoteArg(String arg) {
         return '"' + arg + '"';
     }
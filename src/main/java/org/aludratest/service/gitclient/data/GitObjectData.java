@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gitclient.data;
+
+import java.io.UnsupportedEncodingException;
+
+import org.aludratest.exception.AutomationException;
+import org.aludratest.service.gitclient.GitClient;
+
+/** Wraps data for the invocation of the {@link GitClient}'s object query methods. The revision is the query input, e.g.
+ * <code>HEAD</code> or <code>master:path/to/file.txt</code>; the other attributes receive the query result. The object content
+ * is stored as read from git, and {@link #getContent()} decodes it with the charset of this object, which is UTF-8 by default.
+ * @see GitClient#readObjectInfo(GitObjectData)
+ * @see GitClient#readObject(GitObjectData)
+ * @author agent */
+public class GitObjectData extends AbstractGitData {
+
+    /** The default charset for decoding object contents, which matches git's default encoding for commit messages. */
+    public static final String DEFAULT_CHARSET = "UTF-8";
+
+    private String revision;
+    private String objectName;
+    private String type;
+    private String size;
+    private String charset;
+    private byte[] contentBytes;
+
+    // constructors ------------------------------------------------------------
+
+    /** Public default constructor. */
+    public GitObjectData() {
+        this(null);
+    }
+
+    /** Constructor which sets the revision to query.
+     * @param revision the revision to query */
+    public GitObjectData(String revision) {
+        setRevision(revision);
+        setCharset(DEFAULT_CHARSET);
+    }
+
+    // properties --------------------------------------------------------------
+
+    /** @return the revision to query */
+    public final String getRevision() {
+        return revision;
+    }
+
+    /** Sets the revision to query.
+     * @param revision the revision to query */
+    public final void setRevision(String revision) {
+        this.revision = revision;
+    }
+
+    /** @return the SHA-1 name of the object */
+    public final String getObjectName() {
+        return objectName;
+    }
+
+    /** Sets the SHA-1 name of the object.
+     * @param objectName the object name to set */
+    public final void setObjectName(String objectName) {
+        this.objectName = objectName;
+    }
+
+    /** @return the type of the object, e.g. <code>blob</code> or <code>commit</code> */
+    public final String getType() {
+        return type;
+    }
+
+    /** Sets the type of the object.
+     * @param type the type to set */
+    public final void setType(String type) {
+        this.type = type;
+    }
+
+    /** @return the size of the object in bytes */
+    public final String getSize() {
+        return size;
+    }
+
+    /** Sets the size of the object.
+     * @param size the size to set */
+    public final void setSize(String size) {
+        this.size = size;
+    }
+
+    /** @return the charset used by {@link #getContent()} to decode the object content */
+    public final String getCharset() {
+        return charset;
+    }
+
+    /** Sets the charset used by {@link #getContent()} to decode the object content.
+     * @param charset the name of the charset to set */
+    public final void setCharset(String charset) {
+        this.charset = charset;
+    }
+
+    /** @return the content of the object as read from git, or <code>null</code> if it has not been read */
+    public final byte[] getContentBytes() {
+        return contentBytes;
+    }
+
+    /** Sets the content of the object as read from git.
+     * @param contentBytes the content to set */
+    public final void setContentBytes(byte[] contentBytes) {
+        this.contentBytes = contentBytes;
+    }
+
+    /** @return the content of the object decoded with the charset of this object, or <code>null</code> if it has not been read */
+    public final String getContent() {
+        if (contentBytes == null) {
+            return null;
+        }
+        try {
+            return new String(contentBytes, charset);
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new AutomationException("Unsupported charset: " + charset);
+        }
+    }
+
+}
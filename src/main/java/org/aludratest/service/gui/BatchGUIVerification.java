@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui;
+
+import java.util.List;
+
+import org.aludratest.exception.FunctionalFailure;
+import org.aludratest.exception.MultipleFunctionalFailures;
+import org.aludratest.service.TechnicalArgument;
+import org.aludratest.service.gui.component.GUIVerificationBatch;
+
+/** Optional extension of the {@link GUIVerification} interface for GUI services which can verify several element checks
+ * together. A {@link GUIVerificationBatch} uses it if the verification of the GUI service implements it, and otherwise invokes
+ * the single assertions of the {@link GUIVerification} interface one after the other.
+ * @author agent */
+public interface BatchGUIVerification extends GUIVerification {
+
+    /** Verifies several element checks together, in one polling loop with a shared deadline, instead of waiting for each check
+     * separately. If any check does not pass within the timeout, a {@link MultipleFunctionalFailures} is raised with one
+     * {@link FunctionalFailure} per check that did not pass, and the framework logs one failed test step for each of them; the
+     * checks are not polled again for reporting. Implementations can delegate to
+     * {@link GUIElementCheckPoller#assertChecks(List, GUIElementCheckPoller.Evaluator)}.
+     * @param checks the checks to verify */
+    void assertChecks(@TechnicalArgument List<GUIElementCheck> checks);
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui;
+
+import org.aludratest.exception.TechnicalException;
+import org.aludratest.service.locator.element.GUIElementLocator;
+import org.databene.commons.Validator;
+
+/** Describes a single verification of a GUI element, to be evaluated together with other checks by
+ * {@link BatchGUIVerification#assertChecks(java.util.List)}. Each kind of check corresponds to an assertion of the
+ * {@link GUIVerification} interface.
+ * @author agent */
+public final class GUIElementCheck {
+
+    /** The kinds of checks. */
+    public enum Kind {
+        /** The element is present. */
+        PRESENT,
+        /** The element is not present. */
+        NOT_PRESENT,
+        /** The element is visible. */
+        VISIBLE,
+        /** The element is not visible. */
+        NOT_VISIBLE,
+        /** The element is enabled. */
+        ENABLED,
+        /** The element is not enabled. */
+        NOT_ENABLED,
+        /** The element is editable. */
+        EDITABLE,
+        /** The element is not editable. */
+        NOT_EDITABLE,
+        /** The element is checked. */
+        CHECKED,
+        /** The element is not checked. */
+        NOT_CHECKED,
+        /** The text of the element matches the validator. */
+        TEXT_MATCHES,
+        /** The value of the element matches the validator. */
+        VALUE_MATCHES
+    }
+
+    private final Kind kind;
+    private final String elementType;
+    private final String elementName;
+    private final GUIElementLocator locator;
+    private final Validator<String> validator;
+
+    /** Creates a check which does not require a validator.
+     * @param kind the kind of the check
+     * @param elementType the type of the element
+     * @param elementName the name of the element
+     * @param locator the locator of the element */
+    public GUIElementCheck(Kind kind, String elementType, String elementName, GUIElementLocator locator) {
+        this(kind, elementType, elementName, locator, null);
+    }
+
+    /** Creates a check.
+     * @param kind the kind of the check
+     * @param elementType the type of the element
+     * @param elementName the name of the element
+     * @param locator the locator of the element
+     * @param validator the validator for {@link Kind#TEXT_MATCHES} and {@link Kind#VALUE_MATCHES} checks */
+    public GUIElementCheck(Kind kind, String elementType, String elementName, GUIElementLocator locator,
+            Validator<String> validator) {
+        if ((kind == Kind.TEXT_MATCHES || kind == Kind.VALUE_MATCHES) && validator == null) {
+            throw new TechnicalException("A validator is required for " + kind + " checks");
+        }
+        this.kind = kind;
+        this.elementType = elementType;
+        this.elementName = elementName;
+        this.locator = locator;
+        this.validator = validator;
+    }
+
+    /** @return the kind of the check */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /** @return the type of the element */
+    public String getElementType() {
+        return elementType;
+    }
+
+    /** @return the name of the element */
+    public String getElementName() {
+        return elementName;
+    }
+
+    /** @return the locator of the element */
+    public GUIElementLocator getLocator() {
+        return locator;
+    }
+
+    /** @return the validator of {@link Kind#TEXT_MATCHES} and {@link Kind#VALUE_MATCHES} checks, otherwise <code>null</code> */
+    public Validator<String> getValidator() {
+        return validator;
+    }
+
+    /** Creates a String representation of the check. */
+    @Override
+    public String toString() {
+        return kind + " " + elementType + " '" + elementName + "' (" + locator + ")" + (validator != null ? ": " + validator : "");
+    }
+
+}
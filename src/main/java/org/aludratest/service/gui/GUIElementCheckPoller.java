@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+import org.aludratest.exception.FunctionalFailure;
+import org.aludratest.exception.MultipleFunctionalFailures;
+import org.aludratest.util.poll.PollService;
+import org.aludratest.util.poll.PolledTask;
+
+/** Helper for GUI service implementations of {@link BatchGUIVerification#assertChecks(List)}. Evaluates a list of element checks in
+ * one polling loop with a shared deadline: Each poll first lets the {@link Evaluator} prepare all pending checks together, e.g.
+ * resolve all of their locators in one round trip to the GUI driver, then evaluates each pending check once without waiting.
+ * Checks which pass are not evaluated again, and polling ends as soon as all checks have passed or the timeout is exceeded.
+ * @author agent */
+public class GUIElementCheckPoller {
+
+    private final PollService pollService;
+
+    /** Creates a poller.
+     * @param timeout the maximum number of milliseconds to spend with polling
+     * @param interval the number of milliseconds to wait between polls */
+    public GUIElementCheckPoller(int timeout, int interval) {
+        this.pollService = new PollService(timeout, interval);
+    }
+
+    /** Evaluates the checks until all of them have passed or the timeout is exceeded.
+     * @param checks the checks to evaluate
+     * @param evaluator the evaluator of the GUI implementation
+     * @return the checks which did not pass within the timeout, in their original order; an empty list if all checks passed */
+    public List<GUIElementCheck> getFailedChecks(List<GUIElementCheck> checks, Evaluator evaluator) {
+        if (checks.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return pollService.poll(new EvaluateChecksTask(checks, evaluator));
+    }
+
+    /** Evaluates the checks until all of them have passed or the timeout is exceeded, and reports the checks which did not pass.
+     * The failed checks are reported as found by the polling loop, without evaluating them again. Each of them is reported by a
+     * {@link FunctionalFailure} of its own, which names the element, its locator and the expectation, so the framework logs one
+     * failed test step per check.
+     * @param checks the checks to evaluate
+     * @param evaluator the evaluator of the GUI implementation
+     * @throws MultipleFunctionalFailures if any check did not pass within the timeout */
+    public void assertChecks(List<GUIElementCheck> checks, Evaluator evaluator) {
+        List<GUIElementCheck> failedChecks = getFailedChecks(checks, evaluator);
+        if (!failedChecks.isEmpty()) {
+            List<FunctionalFailure> failures = new ArrayList<FunctionalFailure>(failedChecks.size());
+            for (GUIElementCheck check : failedChecks) {
+                failures.add(new FunctionalFailure(describeFailure(check)));
+            }
+            throw new MultipleFunctionalFailures(failedChecks.size() + " of " + checks.size() + " GUI element checks failed",
+                    failures);
+        }
+    }
+
+    /** Evaluates element checks for a {@link GUIElementCheckPoller}. Implemented by GUI services.
+     * @author agent */
+    public interface Evaluator {
+
+        /** Called once per poll before the pending checks are evaluated. Allows to resolve the elements of all pending checks
+         * together.
+         * @param pendingChecks the checks which have not passed yet */
+        void prepare(List<GUIElementCheck> pendingChecks);
+
+        /** Evaluates a check once, without waiting.
+         * @param check the check to evaluate
+         * @return <code>true</code> if the check passed, otherwise <code>false</code> */
+        boolean evaluate(GUIElementCheck check);
+
+    }
+
+    // helper methods ----------------------------------------------------------
+
+    private static String describeFailure(GUIElementCheck check) {
+        StringBuilder message = new StringBuilder();
+        message.append(check.getElementType()).append(" '").append(check.getElementName()).append("' (")
+                .append(check.getLocator()).append("): expected ")
+                .append(check.getKind().name().toLowerCase(Locale.ENGLISH).replace('_', ' '));
+        if (check.getValidator() != null) {
+            message.append(' ').append(check.getValidator());
+        }
+        return message.toString();
+    }
+
+    // helper classes ----------------------------------------------------------
+
+    private static class EvaluateChecksTask implements PolledTask<List<GUIElementCheck>> {
+
+        private final List<GUIElementCheck> pending;
+
+        private final Evaluator evaluator;
+
+        /** The checks which had not passed after the most recent poll. Read by {@link #timedOut()}, which may be called while a
+         * poll is still running. */
+        private volatile List<GUIElementCheck> failed;
+
+        EvaluateChecksTask(List<GUIElementCheck> checks, Evaluator evaluator) {
+            this.pending = new ArrayList<GUIElementCheck>(checks);
+            this.evaluator = evaluator;
+            this.failed = new ArrayList<GUIElementCheck>(checks);
+        }
+
+        @Override
+        public List<GUIElementCheck> run() {
+            evaluator.prepare(Collections.unmodifiableList(pending));
+            Iterator<GUIElementCheck> iterator = pending.iterator();
+            while (iterator.hasNext()) {
+                if (evaluator.evaluate(iterator.next())) {
+                    iterator.remove();
+                }
+            }
+            failed = new ArrayList<GUIElementCheck>(pending);
+            return pending.isEmpty() ? Collections.<GUIElementCheck> emptyList() : null;
+        }
+
+        @Override
+        public List<GUIElementCheck> timedOut() {
+            return failed;
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + pending;
+        }
+    }
+
+}
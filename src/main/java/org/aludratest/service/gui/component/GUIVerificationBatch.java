@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.aludratest.exception.TechnicalException;
+import org.aludratest.service.gui.AludraGUI;
+import org.aludratest.service.gui.BatchGUIVerification;
+import org.aludratest.service.gui.GUIElementCheck;
+import org.aludratest.service.gui.GUIElementCheck.Kind;
+import org.aludratest.service.gui.GUIVerification;
+import org.aludratest.service.gui.component.impl.AbstractGUIComponent;
+import org.aludratest.service.locator.element.GUIElementLocator;
+import org.aludratest.util.data.helper.DataMarkerCheck;
+import org.aludratest.util.validator.EqualsValidator;
+import org.databene.commons.Validator;
+
+/** Collects assertions on several GUI elements and verifies them together. If the verification of the GUI service implements
+ * {@link BatchGUIVerification}, all assertions are evaluated by one call of {@link BatchGUIVerification#assertChecks(List)}
+ * instead of one polled round trip per assertion. It polls them with a shared deadline and reports each assertion which did not
+ * pass as a failed test step of its own, without polling them again. Otherwise the assertions are verified one after the other
+ * by the single assertions of the {@link GUIVerification} interface. <br>
+ * Usage example:
+ *
+ * <pre>
+ * new GUIVerificationBatch(aludraGUI).assertVisible(uiMap.getCloseButton()).assertTextEquals(uiMap.getNameLabel(), name)
+ *         .verify();
+ * </pre>
+ *
+ * @author agent */
+public class GUIVerificationBatch {
+
+    private final AludraGUI aludraGUI;
+
+    private final List<GUIElementCheck> checks = new ArrayList<GUIElementCheck>();
+
+    /** Creates an empty batch.
+     * @param aludraGUI the GUI service which provides the elements to verify */
+    public GUIVerificationBatch(AludraGUI aludraGUI) {
+        this.aludraGUI = aludraGUI;
+    }
+
+    /** Adds an assertion that the element is present.
+     * @param element the element to verify
+     * @return this batch */
+    public GUIVerificationBatch assertPresent(Element<?> element) {
+        return add(Kind.PRESENT, element, null);
+    }
+
+    /** Adds an assertion that the element is not present.
+     * @param element the element to verify
+     * @return this batch */
+    public GUIVerificationBatch assertNotPresent(Element<?> element) {
+        return add(Kind.NOT_PRESENT, element, null);
+    }
+
+    /** Adds an assertion that the element is visible.
+     * @param element the element to verify
+     * @return this batch */
+    public GUIVerificationBatch assertVisible(Element<?> element) {
+        return add(Kind.VISIBLE, element, null);
+    }
+
+    /** Adds an assertion that the element is not visible.
+     * @param element the element to verify
+     * @return this batch */
+    public GUIVerificationBatch assertNotVisible(Element<?> element) {
+        return add(Kind.NOT_VISIBLE, element, null);
+    }
+
+    /** Adds an assertion that the element is enabled.
+     * @param element the element to verify
+     * @return this batch */
+    public GUIVerificationBatch assertEnabled(Element<?> element) {
+        return add(Kind.ENABLED, element, null);
+    }
+
+    /** Adds an assertion that the element is not enabled.
+     * @param element the element to verify
+     * @return this batch */
+    public GUIVerificationBatch assertNotEnabled(Element<?> element) {
+        return add(Kind.NOT_ENABLED, element, null);
+    }
+
+    /** Adds an assertion that the element is editable.
+     * @param element the element to verify
+     * @return this batch */
+    public GUIVerificationBatch assertEditable(Element<?> element) {
+        return add(Kind.EDITABLE, element, null);
+    }
+
+    /** Adds an assertion that the element is not editable.
+     * @param element the element to verify
+     * @return this batch */
+    public GUIVerificationBatch assertNotEditable(Element<?> element) {
+        return add(Kind.NOT_EDITABLE, element, null);
+    }
+
+    /** Adds an assertion that the element, e.g. a checkbox or radio button, is checked.
+     * @param element the element to verify
+     * @return this batch */
+    public GUIVerificationBatch assertChecked(Element<?> element) {
+        return add(Kind.CHECKED, element, null);
+    }
+
+    /** Adds an assertion that the element, e.g. a checkbox or radio button, is not checked.
+     * @param element the element to verify
+     * @return this batch */
+    public GUIVerificationBatch assertNotChecked(Element<?> element) {
+        return add(Kind.NOT_CHECKED, element, null);
+    }
+
+    /** Adds an assertion that the text of the element, e.g. a label, equals the expected text. If the expected text is marked as
+     * null, no assertion is added.
+     * @param element the element to verify
+     * @param expectedText the expected text
+     * @return this batch */
+    public GUIVerificationBatch assertTextEquals(Element<?> element, String expectedText) {
+        if (DataMarkerCheck.isNull(expectedText)) {
+            return this;
+        }
+        return assertTextMatches(element, new EqualsValidator(DataMarkerCheck.convertIfEmpty(expectedText)));
+    }
+
+    /** Adds an assertion that the text of the element, e.g. a label, matches a validator.
+     * @param element the element to verify
+     * @param validator the validator to apply to the text
+     * @return this batch */
+    public GUIVerificationBatch assertTextMatches(Element<?> element, Validator<String> validator) {
+        return add(Kind.TEXT_MATCHES, element, validator);
+    }
+
+    /** Adds an assertion that the value of the element, e.g. an input field, equals the expected value. If the expected value is
+     * marked as null, no assertion is added.
+     * @param element the element to verify
+     * @param expectedValue the expected value
+     * @return this batch */
+    public GUIVerificationBatch assertValueEquals(Element<?> element, String expectedValue) {
+        if (DataMarkerCheck.isNull(expectedValue)) {
+            return this;
+        }
+        return assertValueMatches(element, new EqualsValidator(DataMarkerCheck.convertIfEmpty(expectedValue)));
+    }
+
+    /** Adds an assertion that the value of the element, e.g. an input field, matches a validator.
+     * @param element the element to verify
+     * @param validator the validator to apply to the value
+     * @return this batch */
+    public GUIVerificationBatch assertValueMatches(Element<?> element, Validator<String> validator) {
+        return add(Kind.VALUE_MATCHES, element, validator);
+    }
+
+    /** Verifies all assertions of this batch and clears the batch. */
+    public void verify() {
+        if (checks.isEmpty()) {
+            return;
+        }
+        List<GUIElementCheck> pending = new ArrayList<GUIElementCheck>(checks);
+        checks.clear();
+        GUIVerification verification = aludraGUI.verify();
+        if (verification instanceof BatchGUIVerification) {
+            ((BatchGUIVerification) verification).assertChecks(pending);
+        }
+        else {
+            for (GUIElementCheck check : pending) {
+                verifySingly(check, verification);
+            }
+        }
+    }
+
+    // private helpers ---------------------------------------------------------
+
+    private static void verifySingly(GUIElementCheck check, GUIVerification verification) {
+        String type = check.getElementType();
+        String name = check.getElementName();
+        GUIElementLocator locator = check.getLocator();
+        switch (check.getKind()) {
+            case PRESENT:
+                verification.assertElementPresent(type, name, locator);
+                break;
+            case NOT_PRESENT:
+                verification.assertElementNotPresent(type, name, locator);
+                break;
+            case VISIBLE:
+                verification.assertVisible(type, name, locator);
+                break;
+            case NOT_VISIBLE:
+                verification.assertNotVisible(type, name, locator);
+                break;
+            case ENABLED:
+                verification.assertEnabled(type, name, locator);
+                break;
+            case NOT_ENABLED:
+                verification.assertNotEnabled(type, name, locator);
+                break;
+            case EDITABLE:
+                verification.assertEditable(type, name, locator);
+                break;
+            case NOT_EDITABLE:
+                verification.assertNotEditable(type, name, locator);
+                break;
+            case CHECKED:
+                verification.assertChecked(type, name, locator);
+                break;
+            case NOT_CHECKED:
+                verification.assertChecked(type, name, false, locator);
+                break;
+            case TEXT_MATCHES:
+                verification.assertTextMatches(type, name, locator, check.getValidator());
+                break;
+            case VALUE_MATCHES:
+                verification.assertValueMatches(type, name, locator, check.getValidator());
+                break;
+            default:
+                throw new TechnicalException("Unsupported check: " + check.getKind());
+        }
+    }
+
+    private GUIVerificationBatch add(Kind kind, Element<?> element, Validator<String> validator) {
+        String elementType;
+        String elementName;
+        if (element instanceof AbstractGUIComponent) {
+            elementType = ((AbstractGUIComponent) element).getElementType();
+            elementName = ((AbstractGUIComponent) element).getElementName();
+        }
+        else {
+            elementType = element.getClass().getSimpleName();
+            elementName = String.valueOf(element.getLocator());
+        }
+        checks.add(new GUIElementCheck(kind, elementType, elementName, element.getLocator(), validator));
+        return this;
+    }
+
+}
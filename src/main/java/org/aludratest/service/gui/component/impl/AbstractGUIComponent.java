@@ -51,6 +51,16 @@ public abstract class AbstractGUIComponent implements GUIComponent {
         this.elementName = (elementName != null ? elementName : defaultElementName());
     }
 
+    /** @return the element type, as used for logging */
+    public String getElementType() {
+        return elementType;
+    }
+
+    /** @return the element name, as used for logging */
+    public String getElementName() {
+        return elementName;
+    }
+
     // utility methods for child classes ---------------------------------------
 
     protected GUIInteraction perform() {
@@ -15,9 +15,18 @@
  */
 package org.aludratest.service.gui.component.impl;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.aludratest.exception.TechnicalException;
 import org.aludratest.service.AludraContext;
@@ -47,8 +56,16 @@ import org.codehaus.plexus.component.repository.ComponentDescriptor;
 import org.codehaus.plexus.component.repository.ComponentRequirement;
 import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
 
-/** Default implementation of the {@link GUIComponentFactory} interface. Uses Plexus to instantiate the components. GUI service
- * implementors can subclass this class to provide own component implementor classes or additional component configuration.
+/** Default implementation of the {@link GUIComponentFactory} interface. GUI service implementors can subclass this class to
+ * provide own component implementor classes or additional component configuration. <br>
+ * For each implementor class, an instantiation plan is built once and shared by all factories: the constructor and the
+ * <code>{@literal @}Requirement</code> fields to inject from the Plexus container. Components are instantiated from this plan
+ * without locking the container. Components are looked up in the container instead if a component descriptor is registered for
+ * their role and the {@link #getRoleHint() role hint} of this factory, e.g. in a <code>components.xml</code>, or if the
+ * implementor class implements Plexus lifecycle interfaces, as the container has to run their lifecycle phases. <br>
+ * If no element name is passed, it is derived from the name of the calling UIMap method, e.g. <code>closeButton</code> for
+ * <code>getCloseButton()</code>. The derived name is cached per UIMap class, component class and locator, so the call stack is
+ * only walked on the first call of each UIMap method.
  * 
  * @author falbrech */
 @Component(role = GUIComponentFactory.class, hint = "default", instantiationStrategy = "per-lookup")
@@ -68,11 +85,25 @@ public class DefaultGUIComponentFactory implements GUIComponentFactory {
         componentImplClasses.put(Window.class, WindowImpl.class);
     }
 
+    private static final String PLEXUS_LIFECYCLE_PACKAGE = "org.codehaus.plexus.personality.";
+
+    /** Instantiation plans by implementor class. */
+    private static final ConcurrentMap<Class<?>, ComponentPlan> componentPlans = new ConcurrentHashMap<Class<?>, ComponentPlan>();
+
+    /** Derived element names by UIMap class, keyed by component class and locator. */
+    private static final Map<Class<?>, ConcurrentMap<List<Object>, String>> defaultElementNames = Collections
+            .synchronizedMap(new WeakHashMap<Class<?>, ConcurrentMap<List<Object>, String>>());
+
+    private static final CallerContext callerContext = new CallerContext();
+
     @Requirement
     private PlexusContainer plexusContainer;
 
     private AludraGUI aludraGUI;
 
+    /** Tells by component class if the container has a component descriptor for it and the role hint of this factory. */
+    private final ConcurrentMap<Class<?>, Boolean> registeredComponents = new ConcurrentHashMap<Class<?>, Boolean>();
+
     /** Configures this component factory. It requires an AludraContext and a component ID to query the context for to get the
      * AludraGUI service to use. This is required to get the dynamic proxy for the service, not the service itself.
      * 
@@ -217,7 +248,7 @@ public class DefaultGUIComponentFactory implements GUIComponentFactory {
     }
 
     protected final <T extends GUIComponent> T createComponent(Class<T> componentClass, Locator locator) {
-        return createComponent(componentClass, locator, determineDefaultElementName());
+        return createComponent(componentClass, locator, determineDefaultElementName(componentClass, locator));
     }
 
     protected final <T extends GUIComponent> T createComponent(Class<T> componentClass, Locator locator, String elementName) {
@@ -228,13 +259,12 @@ public class DefaultGUIComponentFactory implements GUIComponentFactory {
 
         try {
             T component;
-            synchronized (plexusContainer) {
-                // check if Plexus container already "knows" this component class
-                if (plexusContainer.getComponentDescriptor(componentClass.getName(), getRoleHint()) == null) {
-                    registerComponentDescriptor(componentClass, implClass);
-                }
-
-                component = plexusContainer.lookup(componentClass, getRoleHint());
+            ComponentPlan plan = getComponentPlan(componentClass, implClass);
+            if (plan.containerManaged || isRegisteredInContainer(componentClass)) {
+                component = lookupComponent(componentClass, implClass);
+            }
+            else {
+                component = componentClass.cast(plan.newInstance(plexusContainer));
             }
             configureComponent(component, locator, componentClass, elementName);
             return component;
@@ -248,13 +278,46 @@ public class DefaultGUIComponentFactory implements GUIComponentFactory {
         }
     }
 
-    private <T> void registerComponentDescriptor(Class<T> componentClass, Class<? extends T> implClass)
-            throws CycleDetectedInComponentGraphException, ComponentLookupException {
-        if (!componentClass.isAssignableFrom(implClass)) {
-            throw new ComponentLookupException("Class " + implClass.getName() + " does not implement interface "
-                    + componentClass.getName(), componentClass.getName(), getRoleHint());
+    // private helpers ---------------------------------------------------------
+
+    private static ComponentPlan getComponentPlan(Class<?> componentClass, Class<?> implClass) throws ComponentLookupException {
+        ComponentPlan plan = componentPlans.get(implClass);
+        if (plan == null) {
+            if (!componentClass.isAssignableFrom(implClass)) {
+                throw new ComponentLookupException("Class " + implClass.getName() + " does not implement interface "
+                        + componentClass.getName(), componentClass.getName(), null);
+            }
+            plan = new ComponentPlan(implClass);
+            ComponentPlan existing = componentPlans.putIfAbsent(implClass, plan);
+            if (existing != null) {
+                plan = existing;
+            }
+        }
+        return plan;
+    }
+
+    private boolean isRegisteredInContainer(Class<?> componentClass) {
+        Boolean registered = registeredComponents.get(componentClass);
+        if (registered == null) {
+            registered = Boolean.valueOf(plexusContainer.getComponentDescriptor(componentClass.getName(), getRoleHint()) != null);
+            registeredComponents.putIfAbsent(componentClass, registered);
         }
+        return registered.booleanValue();
+    }
+
+    private <T> T lookupComponent(Class<T> componentClass, Class<? extends T> implClass)
+            throws ComponentLookupException, CycleDetectedInComponentGraphException {
+        synchronized (plexusContainer) {
+            // check if Plexus container already "knows" this component class
+            if (plexusContainer.getComponentDescriptor(componentClass.getName(), getRoleHint()) == null) {
+                registerComponentDescriptor(componentClass, implClass);
+            }
+        }
+        return plexusContainer.lookup(componentClass, getRoleHint());
+    }
 
+    private <T> void registerComponentDescriptor(Class<T> componentClass, Class<? extends T> implClass)
+            throws CycleDetectedInComponentGraphException {
         ComponentDescriptor<T> desc = new ComponentDescriptor<T>();
         desc.setRole(componentClass.getName());
         desc.setRoleClass(componentClass);
@@ -272,7 +335,7 @@ public class DefaultGUIComponentFactory implements GUIComponentFactory {
         // lookup Requirements in class and parent classes
         Class<?> clazz = implClass;
         while (clazz != null && clazz != Object.class) {
-            for (Field f : implClass.getDeclaredFields()) {
+            for (Field f : clazz.getDeclaredFields()) {
                 Requirement req = f.getAnnotation(Requirement.class);
                 if (req != null) {
                     desc.addRequirement(createComponentRequirement(f, req));
@@ -302,7 +365,35 @@ public class DefaultGUIComponentFactory implements GUIComponentFactory {
         return cr;
     }
 
-    private static String determineDefaultElementName() {
+    /** Provides the element name of the outermost UIMap method on the call stack. The outermost UIMap class is determined from
+     * the class context, which is much cheaper than a stack trace. A UIMap getter creates its component with the same locator on
+     * each call, so the class, component class and locator identify the getter, and its name is derived only once. */
+    private static String determineDefaultElementName(Class<?> componentClass, Locator locator) {
+        Class<?> uiMapClass = callerContext.getOutermostUIMapClass();
+        if (uiMapClass == null) {
+            return null;
+        }
+        ConcurrentMap<List<Object>, String> names;
+        synchronized (defaultElementNames) {
+            names = defaultElementNames.get(uiMapClass);
+            if (names == null) {
+                names = new ConcurrentHashMap<List<Object>, String>();
+                defaultElementNames.put(uiMapClass, names);
+            }
+        }
+        List<Object> key = Arrays.<Object> asList(componentClass, locator);
+        String name = names.get(key);
+        if (name == null) {
+            name = deriveDefaultElementName();
+            if (name != null) {
+                names.putIfAbsent(key, name);
+            }
+        }
+        return name;
+    }
+
+    /** Derives the element name from the outermost UIMap method on the call stack. */
+    private static String deriveDefaultElementName() {
         StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
         String lastMethodName = null;
 
@@ -325,4 +416,139 @@ public class DefaultGUIComponentFactory implements GUIComponentFactory {
         return lastMethodName;
     }
 
+    private static boolean implementsPlexusLifecycle(Class<?> type) {
+        for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass()) {
+            for (Class<?> iface : clazz.getInterfaces()) {
+                if (iface.getName().startsWith(PLEXUS_LIFECYCLE_PACKAGE) || implementsPlexusLifecycle(iface)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // helper classes ----------------------------------------------------------
+
+    /** Provides the classes on the call stack. This does not install a security manager. */
+    private static final class CallerContext extends SecurityManager {
+
+        /** @return the outermost class on the call stack whose name contains <code>UIMap</code>, or <code>null</code> */
+        Class<?> getOutermostUIMapClass() {
+            Class<?> result = null;
+            for (Class<?> clazz : getClassContext()) {
+                if (clazz.getName().contains("UIMap")) {
+                    result = clazz;
+                }
+            }
+            return result;
+        }
+    }
+
+    /** Instantiation plan for a component implementor class. */
+    private static final class ComponentPlan {
+
+        /** <code>true</code> if the class has to be instantiated by the container, because it implements Plexus lifecycle
+         * interfaces. */
+        private final boolean containerManaged;
+
+        private final Constructor<?> constructor;
+
+        private final List<RequirementInjection> requirements = new ArrayList<RequirementInjection>();
+
+        ComponentPlan(Class<?> implClass) throws ComponentLookupException {
+            this.containerManaged = implementsPlexusLifecycle(implClass);
+            if (containerManaged) {
+                this.constructor = null;
+                return;
+            }
+            try {
+                this.constructor = implClass.getDeclaredConstructor();
+                this.constructor.setAccessible(true);
+            }
+            catch (NoSuchMethodException e) {
+                throw new ComponentLookupException("Class " + implClass.getName() + " has no default constructor",
+                        implClass.getName(), null, e);
+            }
+            for (Class<?> clazz = implClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+                for (Field field : clazz.getDeclaredFields()) {
+                    Requirement requirement = field.getAnnotation(Requirement.class);
+                    if (requirement != null) {
+                        requirements.add(new RequirementInjection(field, requirement));
+                    }
+                }
+            }
+        }
+
+        Object newInstance(PlexusContainer container) throws ComponentLookupException {
+            Object component;
+            try {
+                component = constructor.newInstance();
+            }
+            catch (InvocationTargetException e) {
+                throw new TechnicalException("Could not instantiate " + constructor.getDeclaringClass().getName(), e.getCause());
+            }
+            catch (Exception e) { // NOSONAR InstantiationException and IllegalAccessException
+                throw new TechnicalException("Could not instantiate " + constructor.getDeclaringClass().getName(), e);
+            }
+            for (RequirementInjection requirement : requirements) {
+                requirement.inject(component, container);
+            }
+            return component;
+        }
+    }
+
+    /** Injects a component from the Plexus container into a <code>{@literal @}Requirement</code> field. */
+    private static final class RequirementInjection {
+
+        private final Field field;
+        private final String role;
+        private final String hint;
+        private final List<String> hints;
+        private final boolean optional;
+
+        RequirementInjection(Field field, Requirement requirement) {
+            this.field = field;
+            this.field.setAccessible(true);
+            if (requirement.role() != null && requirement.role() != Object.class) {
+                this.role = requirement.role().getName();
+            }
+            else {
+                this.role = field.getType().getName();
+            }
+            this.hint = requirement.hint();
+            this.hints = Arrays.asList(requirement.hints());
+            this.optional = requirement.optional();
+        }
+
+        void inject(Object component, PlexusContainer container) throws ComponentLookupException {
+            Object value;
+            try {
+                if (List.class.isAssignableFrom(field.getType())) {
+                    value = hints.isEmpty() ? container.lookupList(role) : container.lookupList(role, hints);
+                }
+                else if (Map.class.isAssignableFrom(field.getType())) {
+                    value = hints.isEmpty() ? container.lookupMap(role) : container.lookupMap(role, hints);
+                }
+                else if (field.getType() == PlexusContainer.class) {
+                    value = container;
+                }
+                else {
+                    value = container.lookup(role, hint);
+                }
+            }
+            catch (ComponentLookupException e) {
+                if (optional) {
+                    return;
+                }
+                throw e;
+            }
+            try {
+                field.set(component, value);
+            }
+            catch (IllegalAccessException e) {
+                throw new TechnicalException("Could not inject requirement " + field, e);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.testcase;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Annotation for Classes or methods enabling early cancellation of dependent test cases. If a test case of the annotated element
+ * fails, all test cases which have to wait for it (because of <code>@Sequential</code> or <code>@SequentialGroup</code>) are not
+ * executed, but immediately reported as ignored. The same applies if a test case of the annotated element has to wait for a test
+ * case which fails. Cancellation propagates, i.e. test cases waiting for a cancelled test case are cancelled as well.
+ * 
+ * @author agent */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.TYPE, ElementType.METHOD })
+public @interface CancelDependentsOnFailure {
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.testcase;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Annotation for Classes or methods declaring that their test cases use one or more named, limited resources, e.g. a shared SFTP
+ * server or a licence-limited backend. Test cases using a resource are only started if the resource has a free permit, i.e. less
+ * test cases than the resource's capacity are currently using it. Each running test case occupies one permit of each resource it
+ * uses. <br>
+ * The capacity of a resource is taken from the <code>resource.capacities</code> configuration property. If the resource is not
+ * configured there, the capacity specified in this annotation is used. If there is no capacity at all, a capacity of 1 is
+ * assumed.
+ *
+ * @author agent */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.TYPE, ElementType.METHOD })
+public @interface UsesResource {
+
+    /** The names of the resources used by the test cases of the annotated class or method.
+     *
+     * @return The names of the resources used by the test cases of the annotated class or method. */
+    public String[] value();
+
+    /** The default capacity of the named resources, used if a resource's capacity is not configured. A value lower than 1 means
+     * that no default capacity is specified by this annotation.
+     *
+     * @return The default capacity of the named resources. */
+    public int capacity() default 0;
+
+}
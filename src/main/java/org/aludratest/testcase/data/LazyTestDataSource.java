@@ -0,0 +1,28 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.testcase.data;
+
+/** A {@link TestDataSource} which is always evaluated lazily, independent of the <code>deferred.script.evaluation</code>
+ * setting. A TestCaseData object with a lazy source is only a lightweight descriptor of a data set (ID, description, ignored
+ * flag) while the runner tree is built. The framework requests the data right before the test method is invoked, and releases
+ * it as soon as the invocation has finished. <br>
+ * Test data providers use this for methods with many data sets, so that only the data sets currently being executed are held
+ * in memory. As the data is requested in the executing thread, implementations must be thread-safe.
+ *
+ * @author agent */
+public interface LazyTestDataSource extends TestDataSource {
+
+}
@@ -97,7 +97,8 @@ public final class TestCaseData {
      * @param ignored If <code>true</code>, marks this data set as ignored, i.e. this test case shall not be invoked (this
      *            behaviour can be disabled by Framework settings).
      * @param ignoredReason A text describing why this data set has been marked as ignored.
-     * @param externalTestId External Test Management test case id */
+     * @param externalTestId External Test Management test case id
+     * @see LazyTestDataSource */
     public TestCaseData(String id, String description, TestDataSource dataSource, boolean ignored, String ignoredReason,
             String externalTestId) {
         this(id, description, null, ignored);
@@ -144,6 +145,14 @@ public final class TestCaseData {
         return data;
     }
 
+    /** Returns <code>true</code> if the data of this dataset is provided by a {@link LazyTestDataSource}, i.e. is only requested
+     * right before the test method is invoked.
+     *
+     * @return <code>true</code> if the data of this dataset is evaluated lazily, <code>false</code> otherwise. */
+    public boolean isLazy() {
+        return dataSource instanceof LazyTestDataSource;
+    }
+
     /** Returns <code>true</code> if this dataset should not be tested, but skipped.
      *
      * @return <code>true</code> if this dataset should not be tested, but skipped, <code>false</code> otherwise. */
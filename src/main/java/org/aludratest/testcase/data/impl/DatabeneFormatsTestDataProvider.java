@@ -17,23 +17,33 @@ package org.aludratest.testcase.data.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.annotation.Annotation;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 import org.aludratest.config.AludraTestConfig;
 import org.aludratest.data.DataConfiguration;
 import org.aludratest.dict.Data;
 import org.aludratest.exception.AutomationException;
 import org.aludratest.testcase.Offset;
+import org.aludratest.testcase.data.LazyTestDataSource;
 import org.aludratest.testcase.data.Source;
 import org.aludratest.testcase.data.TestCaseData;
 import org.aludratest.testcase.data.TestDataProvider;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.codehaus.plexus.component.annotations.Requirement;
+import org.databene.commons.IOUtil;
 import org.databene.commons.StringUtil;
 import org.databene.commons.SystemInfo;
 import org.databene.commons.converter.util.ConstantClassProvider;
@@ -43,7 +53,8 @@ import org.databene.formats.util.OffsetDataIterator;
 import org.databene.formats.xls.XLSJavaBeanIterator;
 
 /**
- * TestDataProvider implementation based on Databene Formats.
+ * TestDataProvider implementation based on Databene Formats. The data sets are provided by {@link LazyTestDataSource}s, so
+ * the parameter values of a data set are only looked up when its test case is executed.
  * @author Volker Bergmann
  */
 public class DatabeneFormatsTestDataProvider implements TestDataProvider {
@@ -85,26 +96,11 @@ public class DatabeneFormatsTestDataProvider implements TestDataProvider {
 
     private List<TestCaseData> createTestDataForParameterizedMethod(Method method) {
         try {
-            // iterate parameters and retrieve their data values
-            Class<?>[] parameterTypes = method.getParameterTypes();
-            int paramCount = parameterTypes.length;
-            Annotation[][] paramsAnnos = method.getParameterAnnotations();
-            List<List<Data>> paramValueLists = new ArrayList<List<Data>>();
-            Class<?> testClass = method.getDeclaringClass();
+            // verify the format of the sheets by parsing the first data set only, and count the data sets of all parameters
+            // without creating their values
+            parseValuesForParams(method, 0);
             int minDataSetCount = -1;
-            Offset offsetAnno = method.getAnnotation(Offset.class);
-            for (int i = 0; i < paramCount; i++) {
-                String paramName = method.getName() + " param #" + i;
-                Source sourceAnno = getRequiredSourceAnnotation(paramsAnnos[i], paramName);
-                List<Data> paramValues;
-                try {
-                    paramValues = parseValuesForParam(sourceAnno, offsetAnno, parameterTypes[i], testClass);
-                }
-                catch (ArrayIndexOutOfBoundsException ae) {
-                    throw new AutomationException("Error when parsing values for parameter " + paramName, ae);
-                }
-                paramValueLists.add(paramValues);
-                int dataSetCount = paramValues.size();
+            for (int dataSetCount : countDataSetsForParams(method)) {
                 if (minDataSetCount < 0) {
                     minDataSetCount = dataSetCount;
                 } else {
@@ -117,26 +113,23 @@ public class DatabeneFormatsTestDataProvider implements TestDataProvider {
                 throw new AutomationException("No data sets defined for method " + method);
             }
 
-            // map the data values to a list of TestCaseData
+            // create a list of TestCaseData which provide their data on demand
+            ParameterValues parameterValues = new ParameterValues(method);
             List<TestCaseData> dataSets = new ArrayList<TestCaseData>(minDataSetCount);
+            Set<String> usedIds = new HashSet<String>();
             TestConfigInfoHelper helper = new TestConfigInfoHelper(aludraConfig);
             List<TestDataLoadInfo> testInfos = helper.testInfos(method, minDataSetCount);
             for (int iSet = 0; iSet < testInfos.size(); iSet++) {
-                Data[] args = new Data[paramCount];
-                for (int iParam = 0; iParam < paramCount; iParam++) {
-                    if (iSet < paramValueLists.get(iParam).size()) {
-                        args[iParam] = paramValueLists.get(iParam).get(iSet);
-                    }
-                }
-
                 TestDataLoadInfo ti = testInfos.get(iSet);
                 Object info = ti.getInfo();
                 if (info instanceof Throwable) {
-                    dataSets.add(new TestCaseData(getNextAutoId(dataSets, true), (Throwable) info));
+                    dataSets.add(new TestCaseData(getNextAutoId(dataSets.size(), usedIds, true), (Throwable) info));
                 }
                 else {
-                    dataSets.add(new TestCaseData(info == null ? getNextAutoId(dataSets, false) : info.toString(), null, args, ti
-                            .isIgnored(), ti.getIgnoredReason()));
+                    String id = (info == null ? getNextAutoId(dataSets.size(), usedIds, false) : info.toString());
+                    usedIds.add(id);
+                    dataSets.add(new TestCaseData(id, null, new RowDataSource(parameterValues, iSet), ti.isIgnored(),
+                            ti.getIgnoredReason(), null));
                 }
             }
             return dataSets;
@@ -149,24 +142,48 @@ public class DatabeneFormatsTestDataProvider implements TestDataProvider {
         }
     }
 
-    private String getNextAutoId(List<TestCaseData> dataSets, boolean error) {
-        String prefix = error ? "error-" : "";
-        int nextAutoId = dataSets.size();
-        boolean found;
-        do {
-            found = false;
-            for (TestCaseData tcd : dataSets) {
-                if (tcd.getId().equals(prefix + nextAutoId)) {
-                    found = true;
-                    break;
-                }
+    private int[] countDataSetsForParams(Method method) throws InvalidFormatException, IOException {
+        Annotation[][] paramsAnnos = method.getParameterAnnotations();
+        Offset offsetAnno = method.getAnnotation(Offset.class);
+        int[] counts = new int[paramsAnnos.length];
+        for (int i = 0; i < paramsAnnos.length; i++) {
+            Source sourceAnno = getRequiredSourceAnnotation(paramsAnnos[i], method.getName() + " param #" + i);
+            counts[i] = countDataSetsForParam(sourceAnno, offsetAnno, method.getDeclaringClass());
+        }
+        return counts;
+    }
+
+    /** Parses the values of all parameters, or of one data set only.
+     * @param rowIndex the index of the data set to parse, or -1 to parse all data sets */
+    private List<List<Data>> parseValuesForParams(Method method, int rowIndex) throws InvalidFormatException, IOException {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        Annotation[][] paramsAnnos = method.getParameterAnnotations();
+        List<List<Data>> paramValueLists = new ArrayList<List<Data>>();
+        Class<?> testClass = method.getDeclaringClass();
+        Offset offsetAnno = method.getAnnotation(Offset.class);
+        for (int i = 0; i < parameterTypes.length; i++) {
+            String paramName = method.getName() + " param #" + i;
+            Source sourceAnno = getRequiredSourceAnnotation(paramsAnnos[i], paramName);
+            try {
+                paramValueLists.add(parseValuesForParam(sourceAnno, offsetAnno, parameterTypes[i], testClass, rowIndex));
             }
-            if (found) {
-                nextAutoId++;
+            catch (ArrayIndexOutOfBoundsException ae) {
+                throw new AutomationException("Error when parsing values for parameter " + paramName, ae);
             }
         }
-        while (found);
-        return prefix + nextAutoId;
+        return paramValueLists;
+    }
+
+    /** Determines the next unused automatic ID, starting with the number of data sets created so far. */
+    private String getNextAutoId(int dataSetCount, Set<String> usedIds, boolean error) {
+        String prefix = error ? "error-" : "";
+        int nextAutoId = dataSetCount;
+        while (usedIds.contains(prefix + nextAutoId)) {
+            nextAutoId++;
+        }
+        String id = prefix + nextAutoId;
+        usedIds.add(id);
+        return id;
     }
 
     private Source getRequiredSourceAnnotation(Annotation[] annotations, String parameterName) {
@@ -178,26 +195,51 @@ public class DatabeneFormatsTestDataProvider implements TestDataProvider {
         throw new AutomationException("Parameter does not have a @Source annotation: " + parameterName);
     }
 
-    private List<Data> parseValuesForParam(Source sourceAnno, Offset offsetAnno,
-            Class<?> paramClass, Class<?> testClass)
-                    throws InvalidFormatException, IOException {
-        // check URL
-        String uri = sourceAnno.uri();
-        if (!uri.toLowerCase(Locale.US).endsWith("xls") && !uri.toLowerCase(Locale.US).endsWith("xlsx")) {
-            throw new UnsupportedOperationException("Not a supported file format: " + uri);
+    /** Counts the data rows of the sheet of a parameter using POI, without creating the parameter values. */
+    private int countDataSetsForParam(Source sourceAnno, Offset offsetAnno, Class<?> testClass)
+            throws InvalidFormatException, IOException {
+        String uri = getSheetPath(sourceAnno, testClass);
+        String segment = sourceAnno.segment();
+        InputStream in = IOUtil.getInputStreamForURI(uri);
+        try {
+            Sheet sheet = WorkbookFactory.create(in).getSheet(segment);
+            if (sheet == null) {
+                throw new AutomationException("Sheet '" + segment + "' not found in file " + uri);
+            }
+            // the first row contains the headers
+            int rowCount = -1;
+            for (Iterator<Row> iterator = sheet.rowIterator(); iterator.hasNext(); iterator.next()) {
+                rowCount++;
+            }
+            int offset = (offsetAnno != null ? offsetAnno.value() : 0);
+            int dataSetCount = Math.max(0, rowCount - offset);
+            if (dataSetCount == 0) {
+                throw new AutomationException("Empty sheet '" + segment + "' in file " + uri);
+            }
+            return dataSetCount;
         }
+        finally {
+            IOUtil.close(in);
+        }
+    }
 
-        // check segment
+    /** Parses the values of a parameter.
+     * @param rowIndex the index of the data set to parse, or -1 to parse all data sets
+     * @return the values of the data sets, or a list containing the value of the requested data set, which is
+     *         <code>null</code> if the sheet does not have this data set */
+    private List<Data> parseValuesForParam(Source sourceAnno, Offset offsetAnno,
+            Class<?> paramClass, Class<?> testClass, int rowIndex)
+                    throws InvalidFormatException, IOException {
+        String uri = getSheetPath(sourceAnno, testClass);
         String segment = sourceAnno.segment();
-        if (StringUtil.isEmpty(segment)) {
-            throw new UnsupportedOperationException("No segment specified: " + segment);
-        }
 
         // check offset
         int offset = (offsetAnno != null ? offsetAnno.value() : 0);
+        if (rowIndex >= 0) {
+            offset += rowIndex;
+        }
 
         // create iterator
-        uri = getPathFor(uri, testClass);
         DataIterator<Object> iterator = new XLSJavaBeanIterator(uri, segment, true, null, null,
                 new ConstantClassProvider<Object>(paramClass));
         if (offset > 0) {
@@ -208,22 +250,119 @@ public class DatabeneFormatsTestDataProvider implements TestDataProvider {
         DataContainer<Object> wrapper = new DataContainer<Object>();
         List<Data> values = new ArrayList<Data>();
         while (iterator.next(wrapper) != null) {
-            Object o = wrapper.getData();
-            if (o != null && !(o instanceof Data)) {
-                throw new AutomationException("Invalid parameter type for test method: " + o.getClass().getName());
+            values.add(toData(wrapper.getData()));
+            if (rowIndex >= 0) {
+                return values;
             }
-            values.add((Data) wrapper.getData());
         }
-        if (values.size() == 0) {
+        if (rowIndex >= 0) {
+            values.add(null);
+        }
+        else if (values.size() == 0) {
             throw new AutomationException("Empty sheet '" + segment + "' in file " + uri);
         }
         return values;
     }
 
+    private static Data toData(Object o) {
+        if (o != null && !(o instanceof Data)) {
+            throw new AutomationException("Invalid parameter type for test method: " + o.getClass().getName());
+        }
+        return (Data) o;
+    }
+
+    /** Checks the source of a parameter and returns the path of its Excel document. */
+    private String getSheetPath(Source sourceAnno, Class<?> testClass) {
+        // check URL
+        String uri = sourceAnno.uri();
+        if (!uri.toLowerCase(Locale.US).endsWith("xls") && !uri.toLowerCase(Locale.US).endsWith("xlsx")) {
+            throw new UnsupportedOperationException("Not a supported file format: " + uri);
+        }
+
+        // check segment
+        String segment = sourceAnno.segment();
+        if (StringUtil.isEmpty(segment)) {
+            throw new UnsupportedOperationException("No segment specified: " + segment);
+        }
+        return getPathFor(uri, testClass);
+    }
+
     private String getPathFor(String uri, Class<?> testClass) {
         char sep = File.separatorChar;
         return basePath + sep + aludraConfig.getXlsRootPath() + sep + testClass.getName().replace('.', sep)
                 + sep + uri;
     }
 
+    // helper classes ----------------------------------------------------------
+
+    /** The parameter values of a test method, shared by the data sources of all its data sets. Nothing is parsed until the
+     * first data set is requested; then the values of all data sets are parsed at once and cached. The cache is only softly
+     * referenced, so the data sets of a method do not keep all rows in memory while the runner tree exists, and each data set
+     * only holds its own values while its test case is executed. If the cache has been collected because memory is short, each
+     * data set parses its own row only. */
+    private final class ParameterValues {
+
+        private final Method method;
+
+        /** The cached values, or <code>null</code> if no data set has been requested yet. */
+        private SoftReference<List<List<Data>>> values;
+
+        ParameterValues(Method method) {
+            this.method = method;
+        }
+
+        Data[] getRow(int index) throws InvalidFormatException, IOException {
+            List<List<Data>> paramValueLists = getCachedValues();
+            int row = index;
+            if (paramValueLists == null) {
+                // the cache has been collected; do not parse all rows again
+                paramValueLists = parseValuesForParams(method, index);
+                row = 0;
+            }
+            Data[] args = new Data[paramValueLists.size()];
+            for (int iParam = 0; iParam < args.length; iParam++) {
+                if (row < paramValueLists.get(iParam).size()) {
+                    args[iParam] = paramValueLists.get(iParam).get(row);
+                }
+            }
+            return args;
+        }
+
+        /** @return the values of all data sets, or <code>null</code> if they have been parsed before and collected since */
+        private synchronized List<List<Data>> getCachedValues() throws InvalidFormatException, IOException {
+            if (values == null) {
+                List<List<Data>> result = parseValuesForParams(method, -1);
+                values = new SoftReference<List<List<Data>>>(result);
+                return result;
+            }
+            return values.get();
+        }
+    }
+
+    /** Provides the parameters of one data set, which are only looked up right before the test method is invoked. */
+    private static final class RowDataSource implements LazyTestDataSource {
+
+        private final ParameterValues parameterValues;
+
+        private final int index;
+
+        RowDataSource(ParameterValues parameterValues, int index) {
+            this.parameterValues = parameterValues;
+            this.index = index;
+        }
+
+        @Override
+        public Data[] getData() {
+            try {
+                return parameterValues.getRow(index);
+            }
+            catch (IOException e) {
+                throw new AutomationException("Error reloading test parameters: " + e, e);
+            }
+            catch (InvalidFormatException e) {
+                throw new AutomationException("Error reloading test parameters: " + e, e);
+            }
+        }
+    }
+
 }
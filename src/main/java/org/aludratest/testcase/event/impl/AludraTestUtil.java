@@ -16,9 +16,12 @@
 package org.aludratest.testcase.event.impl;
 
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.aludratest.config.AludraTestConfig;
 import org.aludratest.exception.AludraTestException;
@@ -76,7 +79,8 @@ public class AludraTestUtil {
     }
 
     /** Wraps the given object with a dynamic proxy that implements a parent interface of the object and transparently add control
-     * flow logic using the {@link ControlFlowHandler}.
+     * flow logic using the {@link ControlFlowHandler}. The proxy also implements the interfaces of the object which extend the
+     * parent interface, so callers can check for optional extensions of the interface, e.g. with <code>instanceof</code>.
      * @param <T> the type of the interface to return
      * @param <U> the type of the object to be wrapped
      * @param object the object to be wrapped
@@ -102,7 +106,8 @@ public class AludraTestUtil {
             InvocationHandler invocationHandler = new ControlFlowHandler(object, serviceId, systemConnector,
                     (AludraTestContext) context, stopOnException, true,
                     config.isDebugAttachmentsOnFrameworkException());
-            return AludraTestUtil.<T> wrapWithInvocationHandler(interfaceType, invocationHandler);
+            return AludraTestUtil.<T> wrapWithInvocationHandler(interfaceType, invocationHandler,
+                    getExtensionInterfaces(object, interfaceType));
         }
         return object;
     }
@@ -113,11 +118,32 @@ public class AludraTestUtil {
      * @param invocationHandler the {@link InvocationHandler} to apply to calls of the created object
      * @return an object that implements the specified interface and processes calls with the specified {@link InvocationHandler}
      * @see InvocationHandler */
-    @SuppressWarnings("unchecked")
     public static <T> T wrapWithInvocationHandler(Class<T> interfaceType, InvocationHandler invocationHandler) {
+        return wrapWithInvocationHandler(interfaceType, invocationHandler, new Class<?>[0]);
+    }
+
+    /** Calls the Java dynamic proxy API to dynamically implement the given interfaceType and additional interfaces using the
+     * given invocationHandler. Additional interfaces which are not visible from the context class loader are not implemented.
+     * @param <T> the type of interface to be implemented
+     * @param interfaceType the type of interface to create
+     * @param invocationHandler the {@link InvocationHandler} to apply to calls of the created object
+     * @param additionalInterfaces further interfaces to implement, usually extensions of the interfaceType
+     * @return an object that implements the specified interfaces and processes calls with the specified
+     *         {@link InvocationHandler}
+     * @see InvocationHandler */
+    @SuppressWarnings("unchecked")
+    public static <T> T wrapWithInvocationHandler(Class<T> interfaceType, InvocationHandler invocationHandler,
+            Class<?>... additionalInterfaces) {
         try {
             ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
-            return (T) Proxy.newProxyInstance(classLoader, new Class[] { interfaceType }, invocationHandler);
+            Set<Class<?>> interfaces = new LinkedHashSet<Class<?>>();
+            interfaces.add(interfaceType);
+            for (Class<?> additionalInterface : additionalInterfaces) {
+                if (isVisible(additionalInterface, classLoader)) {
+                    interfaces.add(additionalInterface);
+                }
+            }
+            return (T) Proxy.newProxyInstance(classLoader, interfaces.toArray(new Class[interfaces.size()]), invocationHandler);
         } catch (Exception e) {
             throw new TechnicalException("Could not create dynamic proxy", e);
         }
@@ -135,6 +161,20 @@ public class AludraTestUtil {
         return stackTrace[index];
     }
 
+    /** Provides the interfaces implemented by an object which extend the given interface.
+     * @param object the object to examine
+     * @param interfaceType the interface to find extensions of
+     * @return the public interfaces of the object which extend the interfaceType, without the interfaceType itself */
+    static Class<?>[] getExtensionInterfaces(Object object, Class<?> interfaceType) {
+        Set<Class<?>> result = new LinkedHashSet<Class<?>>();
+        if (object != null) {
+            for (Class<?> clazz = object.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+                addExtensionInterfaces(clazz.getInterfaces(), interfaceType, result);
+            }
+        }
+        return result.toArray(new Class<?>[result.size()]);
+    }
+
     /** Provides the test status for a given exception.
      * @param t the exception to map to a status
      * @return the test status for a given exception */
@@ -146,4 +186,24 @@ public class AludraTestUtil {
         }
     }
 
+    // private helper methods --------------------------------------------------
+
+    private static void addExtensionInterfaces(Class<?>[] interfaces, Class<?> interfaceType, Set<Class<?>> result) {
+        for (Class<?> iface : interfaces) {
+            if (iface != interfaceType && interfaceType.isAssignableFrom(iface) && Modifier.isPublic(iface.getModifiers())) {
+                result.add(iface);
+                addExtensionInterfaces(iface.getInterfaces(), interfaceType, result);
+            }
+        }
+    }
+
+    private static boolean isVisible(Class<?> type, ClassLoader classLoader) {
+        try {
+            return Class.forName(type.getName(), false, classLoader) == type;
+        }
+        catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
 }
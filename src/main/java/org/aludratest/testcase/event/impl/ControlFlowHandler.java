@@ -24,6 +24,8 @@ import java.lang.reflect.Method;
 import java.util.List;
 
 import org.aludratest.exception.AludraTestException;
+import org.aludratest.exception.FunctionalFailure;
+import org.aludratest.exception.MultipleFunctionalFailures;
 import org.aludratest.exception.TechnicalException;
 import org.aludratest.service.Action;
 import org.aludratest.service.AludraService;
@@ -250,18 +252,42 @@ public class ControlFlowHandler implements InvocationHandler {
             }
         }
         else {
-            testContext.fireTestStep(currentTestStep);
+            fireFailedTestStep(currentTestStep);
         }
 
     }
 
+    /** Fires a failed test step. If the step failed with {@link MultipleFunctionalFailures}, one step is fired per failure
+     * instead, so each failure is reported on its own. Attachments of the step are added to the first of them. */
+    private void fireFailedTestStep(TestStepInfoBean testStep) {
+        if (!(testStep.getError() instanceof MultipleFunctionalFailures)) {
+            testContext.fireTestStep(testStep);
+            return;
+        }
+        boolean first = true;
+        for (FunctionalFailure failure : ((MultipleFunctionalFailures) testStep.getError()).getFailures()) {
+            TestStepInfoBean failureStep = new TestStepInfoBean();
+            failureStep.copyBaseInfoFrom(testStep);
+            failureStep.setError(failure);
+            failureStep.setErrorMessage(failure.getMessage());
+            failureStep.setTestStatus(failure.getTestStatus());
+            if (first) {
+                for (Attachment attachment : testStep.getAttachments()) {
+                    failureStep.addAttachment(attachment);
+                }
+                first = false;
+            }
+            testContext.fireTestStep(failureStep);
+        }
+    }
+
     private void checkAndLogErrors(TestStepInfoBean testStep) {
         ErrorReport error = checkForError(systemConnector);
         if (error == null) {
             LOGGER.debug("No errors found by system connector {}", systemConnector);
             // assert no recursion error occurred
             if (stepUnderErrorChecking != null) {
-                testContext.fireTestStep(testStep);
+                fireFailedTestStep(testStep);
             }
         }
         else {
@@ -269,7 +295,7 @@ public class ControlFlowHandler implements InvocationHandler {
 
             // ignore from now on
             FlowController.getInstance().stopTestCaseExecution(testContext);
-            testContext.fireTestStep(testStep);
+            fireFailedTestStep(testStep);
 
             TestStepInfoBean sysConnError = new TestStepInfoBean();
             sysConnError.copyBaseInfoFrom(testStep);
@@ -56,6 +56,24 @@ public class LogUtil {
         listenerRegistry.fireNewTestStep(leaf, info);
     }
 
+    public static void logCachedResultAsNewGroup(RunnerListenerRegistry listenerRegistry, RunnerLeaf leaf) {
+        listenerRegistry.fireNewTestStepGroup(leaf, "Cached result");
+        TestStepInfoBean info = new TestStepInfoBean();
+        info.setCommand("Cached result");
+        info.setResult("Passed in a previous run with unchanged test class, test data and configuration");
+        info.setTestStatus(TestStatus.PASSED);
+        listenerRegistry.fireNewTestStep(leaf, info);
+    }
+
+    public static void logCancelledAsNewGroup(RunnerListenerRegistry listenerRegistry, RunnerLeaf leaf, String failedPredecessor) {
+        listenerRegistry.fireNewTestStepGroup(leaf, "Cancelled");
+        TestStepInfoBean info = new TestStepInfoBean();
+        info.setCommand("Cancelled");
+        info.setErrorMessage("Not executed because preceding test case failed: " + failedPredecessor);
+        info.setTestStatus(TestStatus.IGNORED);
+        listenerRegistry.fireNewTestStep(leaf, info);
+    }
+
     public static void logErrorAsNewGroup(AludraTestContext testContext, String errorMessage, Throwable t) {
         testContext.newTestStepGroup("Error");
         TestStepInfoBean info = new TestStepInfoBean();
@@ -23,6 +23,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.aludratest.exception.AutomationException;
@@ -198,6 +199,17 @@ public final class TestStepInfoBean implements TestStepInfo {
         return result == null ? new Object[0] : result;
     }
 
+    /** Returns the marker annotation types for which arguments have been set on this test step. A <code>null</code> element
+     * stands for the arguments without marker annotation.
+     * 
+     * @return The marker annotation types for which arguments have been set, as an unmodifiable set. */
+    public Set<Class<? extends Annotation>> getArgumentTypes() {
+        if (arguments == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(arguments.keySet());
+    }
+
     public void setArguments(Class<? extends Annotation> annotationType, Object[] arguments) {
         if (this.arguments == null) {
             this.arguments = new HashMap<Class<? extends Annotation>, Object[]>();
@@ -17,6 +17,8 @@ package org.aludratest.app.excelwizard;
 
 import java.io.File;
 
+import org.aludratest.data.configtests.ConfigTestWithIgnoredMethod;
+import org.aludratest.data.configtests.ConfigTestWithMissingTab;
 import org.aludratest.data.configtests.ConfigTestWithProperConfig;
 import org.databene.commons.FileUtil;
 import org.junit.Assert;
@@ -40,6 +42,23 @@ public class CLIExcelCreatorTest {
         try {
             CLIExcelCreator.main(new String[] { ConfigTestWithProperConfig.class.getName() });
             Assert.assertEquals(1, f.getAbsoluteFile().listFiles().length);
+
+            // an unchanged test class is skipped, unless one of its documents is missing
+            File folder = new File(f, ConfigTestWithProperConfig.class.getName().replace('.', '/'));
+            File excelFile = new File(folder, "proper_config.xls");
+            Assert.assertTrue(new File(folder, WorkbookSignature.SIGNATURE_FILE_NAME).isFile());
+            Assert.assertTrue(excelFile.setLastModified(0));
+            CLIExcelCreator.main(new String[] { ConfigTestWithProperConfig.class.getName() });
+            Assert.assertEquals(0, excelFile.lastModified());
+            Assert.assertTrue(excelFile.delete());
+            CLIExcelCreator.main(new String[] { ConfigTestWithProperConfig.class.getName() });
+            Assert.assertTrue(excelFile.isFile());
+
+            // several test classes are processed in parallel
+            CLIExcelCreator.main(new String[] { ConfigTestWithProperConfig.class.getName(),
+                    ConfigTestWithIgnoredMethod.class.getName(), ConfigTestWithMissingTab.class.getName() });
+            Assert.assertTrue(new File(f, ConfigTestWithIgnoredMethod.class.getName().replace('.', '/')).isDirectory());
+            Assert.assertTrue(new File(f, ConfigTestWithMissingTab.class.getName().replace('.', '/')).isDirectory());
         }
         finally {
             if (oldProp == null) {
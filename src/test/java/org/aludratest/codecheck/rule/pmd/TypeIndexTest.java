@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.codecheck.rule.pmd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import net.sourceforge.pmd.RuleContext;
+
+import org.aludratest.codecheck.rule.pmd.TypeIndex.DataAttribute;
+import org.aludratest.dict.Data;
+import org.aludratest.service.gui.web.page.PageUtility;
+import org.junit.Test;
+import org.test.testclasses.data.CompliantNoData;
+import org.test.testclasses.data.NoToStringData;
+import org.test.testclasses.data.NonCompliantData;
+import org.test.testclasses.page.InvalidPageUtility;
+import org.test.testclasses.page.ValidPageUtility;
+
+/** Tests the {@link TypeIndex}.
+ * @author agent */
+@SuppressWarnings("javadoc")
+public class TypeIndexTest {
+
+    @Test
+    public void testIsAssignable() {
+        TypeIndex index = new TypeIndex();
+        assertTrue(index.isAssignable(NonCompliantData.class, Data.class));
+        assertTrue(index.isAssignable(Data.class, Data.class));
+        assertTrue(index.isAssignable(ValidPageUtility.class, PageUtility.class));
+        assertFalse(index.isAssignable(CompliantNoData.class, Data.class));
+        assertFalse(index.isAssignable(Data.class, NonCompliantData.class));
+    }
+
+    @Test
+    public void testIsUtilClass() {
+        TypeIndex index = new TypeIndex();
+        assertTrue(index.isUtilClass(ValidPageUtility.class));
+        assertFalse(index.isUtilClass(InvalidPageUtility.class));
+        // cached result
+        assertTrue(index.isUtilClass(ValidPageUtility.class));
+    }
+
+    @Test
+    public void testGetDataAttributes() {
+        List<DataAttribute> attributes = new TypeIndex().getDataAttributes(NonCompliantData.class);
+        assertEquals(1, attributes.size());
+        assertSame(NoToStringData.class, attributes.get(0).getType());
+        assertEquals("data3", attributes.get(0).getDescription());
+    }
+
+    @Test
+    public void testForContext() {
+        RuleContext ctx = new RuleContext();
+        TypeIndex index = TypeIndex.forContext(ctx);
+        assertSame(index, TypeIndex.forContext(ctx));
+        // PMD creates a copy of the rule context for each analysis thread
+        assertSame(index, TypeIndex.forContext(new RuleContext(ctx)));
+    }
+
+}
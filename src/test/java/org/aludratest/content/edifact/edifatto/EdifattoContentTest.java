@@ -15,12 +15,31 @@
  */
 package org.aludratest.content.edifact.edifatto;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
+
+import javax.xml.xpath.XPathConstants;
 
+import org.aludratest.content.edifact.AggregateEdiDiff;
+import org.aludratest.content.edifact.EdiComparisonSettings;
+import org.aludratest.content.edifact.EdiDiffDetail;
+import org.aludratest.content.edifact.EdiDiffDetailType;
 import org.databene.commons.IOUtil;
+import org.databene.edifatto.model.Composite;
 import org.databene.edifatto.model.Interchange;
+import org.databene.edifatto.model.Message;
 import org.junit.Test;
+import org.w3c.dom.Element;
 
 /**
  * Tests the {@link EdifattoContent}
@@ -39,4 +58,191 @@ public class EdifattoContentTest {
         handler.compare(interchange1, interchange2, handler.createDefaultComparisonSettings());
     }
 
+    @Test
+    public void testQueryCachedUntilModified() throws IOException {
+        EdifattoContent handler = new EdifattoContent();
+        Interchange interchange = handler.readInterchange(IOUtil.getInputStreamForURI("ediTest/IFTDGN_1.edi"));
+        assertFalse(interchange.isModified());
+        String expression = "//segment[@tag='UNH']/elem[3]/comp[3]";
+        assertEquals("03A", handler.query(interchange, expression, XPathConstants.STRING));
+        Element node = (Element) handler.query(interchange, "//segment[@tag='UNH']", XPathConstants.NODE);
+        assertSame(node, handler.query(interchange, "//segment[@tag='UNH']", XPathConstants.NODE));
+
+        // changed data values flag the interchange as modified
+        Composite composite = (Composite) interchange.getUniqueMessage().getHeaderSegment().getChild(1);
+        composite.getChild(2).setData("04B");
+        assertTrue(interchange.isModified());
+        assertEquals("04B", handler.query(interchange, expression, XPathConstants.STRING));
+        // the rebuilt view has consumed the flag and is cached again
+        assertFalse(interchange.isModified());
+        node = (Element) handler.query(interchange, "//segment[@tag='UNH']", XPathConstants.NODE);
+        assertSame(node, handler.query(interchange, "//segment[@tag='UNH']", XPathConstants.NODE));
+
+        // structural changes are detected even if the flag has been cleared in between
+        String countExpression = "count(//segment)";
+        Double segmentCount = (Double) handler.query(interchange, countExpression, XPathConstants.NUMBER);
+        Message message = interchange.getUniqueMessage();
+        message.removeChild(message.getChild(message.getChildCount() - 2));
+        interchange.clearModifiedFlag();
+        assertTrue((Double) handler.query(interchange, countExpression, XPathConstants.NUMBER) < segmentCount);
+
+        // changes without the flag require an explicit invalidation
+        composite.getChild(2).setData("05C");
+        interchange.clearModifiedFlag();
+        handler.invalidateQueryCache(interchange);
+        assertEquals("05C", handler.query(interchange, expression, XPathConstants.STRING));
+    }
+
+    @Test
+    public void testQuerySegments() throws IOException {
+        EdifattoContent handler = new EdifattoContent();
+        Interchange interchange = handler.readInterchange(IOUtil.getInputStreamForURI("ediTest/IFTDGN_1.edi"));
+        List<Element> segments = handler.querySegments(interchange, "LOC", null);
+        assertEquals(handler.query(interchange, "count(//segment[@tag='LOC'])", XPathConstants.NUMBER), Double.valueOf(segments
+                .size()));
+        List<Element> loadingPorts = handler.querySegments(interchange, "LOC", "9");
+        assertEquals(3, loadingPorts.size());
+        assertEquals("LOC", loadingPorts.get(0).getAttribute("tag"));
+        assertTrue(handler.querySegments(interchange, "XYZ", null).isEmpty());
+    }
+
+    @Test
+    public void testStreamingCompare() throws IOException {
+        EdifattoContent handler = new EdifattoContent();
+        AggregateEdiDiff diff = handler.compare(IOUtil.getInputStreamForURI("ediTest/IFTDGN_1.edi"),
+                IOUtil.getInputStreamForURI("ediTest/IFTDGN_2.edi"), handler.createDefaultComparisonSettings());
+        List<EdiDiffDetail> details = diff.getEdiDetails();
+        assertEquals(2, details.size());
+        assertEquals(EdiDiffDetailType.DIFFERENT, details.get(0).getEdiDiffType());
+        assertEquals("USS ENTERPRISE", details.get(0).getExpected());
+        assertEquals("SEA PLUSPLUS", details.get(0).getActual());
+        assertEquals("T-IFTDGN/L-TDT_10/S-TDT_10/C-C222_10_08/E-8212_10_08.04", details.get(0).getLocatorOfExpected());
+        assertEquals("T-IFTDGN/L-CNI_25[10]/L-GID_42/L-DGS_49/L-SGP_55/S-SGP_55/C-C237_55_01/E-8260_55_01.01", details.get(1)
+                .getLocatorOfActual());
+
+        // same locators as in the XML based comparison
+        Interchange interchange1 = handler.readInterchange(IOUtil.getInputStreamForURI("ediTest/IFTDGN_1.edi"));
+        Interchange interchange2 = handler.readInterchange(IOUtil.getInputStreamForURI("ediTest/IFTDGN_2.edi"));
+        List<EdiDiffDetail> domDetails = handler.compare(interchange1, interchange2, handler.createDefaultComparisonSettings())
+                .getEdiDetails();
+        assertEquals(domDetails.size(), details.size());
+        for (int i = 0; i < details.size(); i++) {
+            assertEquals(domDetails.get(i).getLocatorOfExpected(), details.get(i).getLocatorOfExpected());
+        }
+    }
+
+    @Test
+    public void testStreamingCompareWithExclusions() throws IOException {
+        EdifattoContent handler = new EdifattoContent();
+        EdiComparisonSettings settings = handler.createDefaultComparisonSettings();
+        settings.tolerateAnyDiffAt("//S-TDT_10");
+        settings.tolerateGenericDiff(EdiDiffDetailType.DIFFERENT, "//L-SGP_55/S-SGP_55/*/E-8260_55_01.01");
+        AggregateEdiDiff diff = handler.compare(IOUtil.getInputStreamForURI("ediTest/IFTDGN_1.edi"),
+                IOUtil.getInputStreamForURI("ediTest/IFTDGN_2.edi"), settings);
+        assertTrue(diff.getEdiDetails().isEmpty());
+    }
+
+    @Test
+    public void testStreamingCompareMultipleMessages() throws IOException {
+        String header = "UNB+UNOA:1+ABCDEF+XYZ+130821:1259+XXX'";
+        String message1 = "UNH+M1+IFTDGN:D:03A:UN:PROT20'BGM+89N++9'UNT+3+M1'";
+        String message2 = "UNH+M2+IFTDGN:D:03A:UN:PROT20'BGM+89N++10'UNT+3+M2'";
+        String message2b = "UNH+M2+IFTDGN:D:03A:UN:PROT20'BGM+89N++11'UNT+3+M2'";
+        String trailer = "UNZ+2+XXX'";
+
+        EdifattoContent handler = new EdifattoContent();
+        EdiComparisonSettings settings = handler.createDefaultComparisonSettings();
+        settings.addKeyExpression("T-IFTDGN", "S-UNH_1/E-0062_1_01");
+        AggregateEdiDiff diff = handler.compare(stream(header + message1 + message2 + trailer),
+                stream(header + message2b + message1 + trailer), settings);
+        List<EdiDiffDetail> details = diff.getEdiDetails();
+        assertEquals(1, details.size());
+        assertEquals("10", details.get(0).getExpected());
+        assertEquals("11", details.get(0).getActual());
+        assertEquals("T-IFTDGN[2]/S-BGM_2/E-1225_2_03", details.get(0).getLocatorOfExpected());
+
+        // without key, messages are compared in order
+        diff = handler.compare(stream(header + message1 + trailer), stream(header + message1 + message2 + trailer),
+                handler.createDefaultComparisonSettings());
+        details = diff.getEdiDetails();
+        assertEquals(1, details.size());
+        assertEquals(EdiDiffDetailType.UNEXPECTED, details.get(0).getEdiDiffType());
+        assertEquals("T-IFTDGN[2]", details.get(0).getLocatorOfActual());
+    }
+
+    @Test
+    public void testStreamingCompareWithCharsetFromSyntaxIdentifier() throws IOException {
+        String template = "UNB+UNOW:3+ABCDEF+XYZ+130821:1259+XXX'UNH+M1+IFTDGN:D:03A:UN:PROT20'BGM+89N+%s+9'"
+                + "UNT+3+M1'UNZ+1+XXX'";
+        String expected = "\u0391\u0398\u0397\u039d\u0391";
+        String actual = "\u041c\u041e\u0421\u041a\u0412\u0410";
+
+        EdifattoContent handler = new EdifattoContent();
+        AggregateEdiDiff diff = handler.compare(
+                new ByteArrayInputStream(String.format(template, expected).getBytes("UTF-8")),
+                new ByteArrayInputStream(String.format(template, actual).getBytes("UTF-8")),
+                handler.createDefaultComparisonSettings());
+        List<EdiDiffDetail> details = diff.getEdiDetails();
+        assertEquals(1, details.size());
+        assertEquals(EdiDiffDetailType.DIFFERENT, details.get(0).getEdiDiffType());
+        assertEquals(expected, details.get(0).getExpected());
+        assertEquals(actual, details.get(0).getActual());
+    }
+
+    @Test
+    public void testCharsetFromSyntaxIdentifier() throws IOException {
+        String template = "UNB+%s:3+ABCDEF+XYZ+130821:1259+XXX'UNH+M1+IFTDGN:D:03A:UN:PROT20'BGM+89N+M\u00dcLLER+9'"
+                + "UNT+3+M1'UNZ+1+XXX'";
+        EdifattoContent handler = new EdifattoContent();
+        String[][] cases = { { "UNOC", "ISO-8859-1" }, { "UNOW", "UTF-8" } };
+        for (String[] c : cases) {
+            String text = String.format(template, c[0]);
+            Interchange interchange = handler.readInterchange(new ByteArrayInputStream(text.getBytes(c[1])));
+            assertEquals("M\u00dcLLER", handler.query(interchange, "//segment[@tag='BGM']/elem[3]/comp[1]", XPathConstants.STRING));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            handler.writeInterchange(interchange, out, false);
+            assertArrayEquals(text.getBytes(c[1]), out.toByteArray());
+        }
+    }
+
+    @Test
+    public void testStreamCompareLeavesStreamsOpen() throws IOException {
+        EdifattoContent handler = new EdifattoContent();
+        EdiComparisonSettings fallbackSettings = handler.createDefaultComparisonSettings();
+        // a tolerated path with a predicate cannot be streamed
+        fallbackSettings.tolerateAnyDiffAt("//S-TDT_10[position() = 1]");
+        EdiComparisonSettings[] settingsList = { handler.createDefaultComparisonSettings(), fallbackSettings };
+        for (EdiComparisonSettings settings : settingsList) {
+            CloseTrackingInputStream expected = new CloseTrackingInputStream(
+                    IOUtil.getBinaryContentOfUri("ediTest/IFTDGN_1.edi"));
+            CloseTrackingInputStream actual = new CloseTrackingInputStream(IOUtil.getBinaryContentOfUri("ediTest/IFTDGN_2.edi"));
+            AggregateEdiDiff diff = handler.compare(expected, actual, settings);
+            assertFalse(diff.getEdiDetails().isEmpty());
+            assertNull(diff.getExpected());
+            assertNull(diff.getActual());
+            assertFalse(expected.closed);
+            assertFalse(actual.closed);
+        }
+    }
+
+    private static InputStream stream(String text) throws IOException {
+        return new ByteArrayInputStream(text.getBytes("ISO-8859-1"));
+    }
+
+    private static class CloseTrackingInputStream extends ByteArrayInputStream {
+
+        private boolean closed;
+
+        CloseTrackingInputStream(byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+
 }
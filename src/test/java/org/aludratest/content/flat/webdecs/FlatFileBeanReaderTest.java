@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.content.flat.webdecs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+
+import org.aludratest.content.flat.PrefixRowType;
+import org.aludratest.content.flat.data.FlatFileBeanData;
+import org.aludratest.service.flatfile.FFFlatPerson;
+import org.databene.commons.TimeUtil;
+import org.junit.Test;
+
+/**
+ * Tests the {@link FlatFileBeanReader} together with the {@link FlatFileBeanWriter}.
+ * @author agent
+ */
+@SuppressWarnings("javadoc")
+public class FlatFileBeanReaderTest {
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        FFFlatPerson alice = new FFFlatPerson("Alice", 23, TimeUtil.date(1991, Calendar.JANUARY, 6), "Miez");
+        FFFlatPerson bob = new FFFlatPerson("Bob", 34, TimeUtil.date(1980, Calendar.FEBRUARY, 3), "Hasso");
+        String content = write(alice, bob);
+        assertEquals("PAlice               02319910106Miez    ", content.split("\\r?\\n")[0]);
+
+        FlatFileBeanReader reader = createReader(content);
+        try {
+            assertEquals(alice, reader.readRow());
+            assertEquals(bob, reader.readRow());
+            assertNull(reader.readRow());
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testReadAllRowsInParallel() throws Exception {
+        FFFlatPerson[] persons = new FFFlatPerson[5000];
+        for (int i = 0; i < persons.length; i++) {
+            persons[i] = new FFFlatPerson("Person" + i, i % 100, TimeUtil.date(1980, Calendar.JANUARY, 1 + i % 28), "Pet" + i % 10);
+        }
+        FlatFileBeanReader reader = createReader(write(persons));
+        try {
+            List<FlatFileBeanData> rows = reader.readAllRows(4);
+            assertEquals(persons.length, rows.size());
+            for (int i = 0; i < persons.length; i++) {
+                assertEquals(persons[i], rows.get(i));
+            }
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testIndex() throws Exception {
+        FFFlatPerson alice = new FFFlatPerson("Alice", 23, TimeUtil.date(1991, Calendar.JANUARY, 6), "Miez");
+        FFFlatPerson bob = new FFFlatPerson("Bob", 34, TimeUtil.date(1980, Calendar.FEBRUARY, 3), "Hasso");
+        FFFlatPerson bob2 = new FFFlatPerson("Bob", 45, TimeUtil.date(1969, Calendar.MARCH, 1), "Bello");
+        FlatFileBeanReader reader = createReader(write(alice, bob, bob2));
+        try {
+            reader.indexRows("name", "age");
+            assertEquals(bob, reader.findRow("Bob", 34));
+            assertEquals(bob2, reader.findRow("Bob", 45));
+            assertEquals(alice, reader.findRow("Alice", 23));
+            assertNull(reader.findRow("Alice", 24));
+            assertEquals(bob2, reader.getRow(2));
+            assertEquals(alice, reader.getRow(0));
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testIndexWithShortRows() throws Exception {
+        FFFlatPerson alice = new FFFlatPerson("Alice", 23, TimeUtil.date(1991, Calendar.JANUARY, 6), "Miez");
+        FFFlatPerson bob = new FFFlatPerson("Bob", 34, TimeUtil.date(1980, Calendar.FEBRUARY, 3), "Hasso");
+        // rows which end within a key column must not abort indexing
+        String content = write(alice) + "PCharly\n" + "PBob\n" + write(bob);
+        FlatFileBeanReader reader = createReader(content);
+        try {
+            reader.indexRows("name", "petName");
+            assertEquals(alice, reader.findRow("Alice", "Miez"));
+            assertEquals(bob, reader.findRow("Bob", "Hasso"));
+            assertNull(reader.findRow("Charly", "Miez"));
+            assertEquals(bob, reader.getRow(3));
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    // private helpers ---------------------------------------------------------
+
+    private static String write(FFFlatPerson... persons) throws Exception {
+        StringWriter out = new StringWriter();
+        FlatFileBeanWriter writer = new FlatFileBeanWriter(out, Locale.US, null);
+        for (FFFlatPerson person : persons) {
+            writer.writeRow(person);
+        }
+        writer.close();
+        return out.toString();
+    }
+
+    private static FlatFileBeanReader createReader(String content) {
+        FlatFileBeanReader reader = new FlatFileBeanReader(new StringReader(content), Locale.US);
+        reader.addRowType(new PrefixRowType(FFFlatPerson.class, "P"));
+        return reader;
+    }
+
+}
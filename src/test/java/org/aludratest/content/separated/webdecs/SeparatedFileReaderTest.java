@@ -48,4 +48,22 @@ public class SeparatedFileReaderTest {
         }
     }
 
+    @Test
+    public void testIndex() throws Exception {
+        Reader in = null;
+        try {
+            in = IOUtil.getReaderForURI("org/aludratest/content/separated/persons.csv");
+            SeparatedFileReader<SepPersonData> reader = new SeparatedFileReader<SepPersonData>(in, SepPersonData.class, ',');
+            reader.readRaw();
+            reader.indexRows("name");
+            assertEquals(new SepPersonData("Bob", "34"), reader.findRow("Bob"));
+            assertEquals(new SepPersonData("Alice", "23"), reader.findRow("Alice"));
+            assertNull(reader.findRow("Carl"));
+            assertEquals(new SepPersonData("Bob", "34"), reader.getRow(1));
+            assertEquals(new SepPersonData("Alice", "23"), reader.getRow(0));
+        } finally {
+            IOUtil.close(in);
+        }
+    }
+
 }
@@ -22,14 +22,21 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.xml.xpath.XPathConstants;
+
 import org.aludratest.content.xml.impl.XmlContentImpl;
 import org.aludratest.content.xml.util.DatabeneXmlUtil;
 import org.databene.commons.Encodings;
+import org.databene.commons.IOUtil;
 import org.databene.commons.SystemInfo;
 import org.databene.commons.xml.XMLUtil;
 import org.databene.commons.xml.XPathUtil;
@@ -129,6 +136,17 @@ public class XmlContentImplTest {
         assertEquals("newVal", att(doc));
     }
 
+    @Test
+    public void testQueryXPaths() throws Exception {
+        Document doc = parseSimpleXml();
+        Map<String, Object> result = content.queryXPaths(doc,
+                Arrays.asList("/root/@att", "/root/node", "/root/missing"), XPathConstants.STRING);
+        assertEquals(Arrays.asList("/root/@att", "/root/node", "/root/missing"), new ArrayList<String>(result.keySet()));
+        assertEquals("val", result.get("/root/@att"));
+        assertEquals("text", result.get("/root/node"));
+        assertEquals("", result.get("/root/missing"));
+    }
+
     // document creation -------------------------------------------------------
 
     @Test
@@ -140,6 +158,29 @@ public class XmlContentImplTest {
         verifySimpleDocument(doc);
     }
 
+    @Test
+    public void testCreateDocument_modifiedTemplate() throws Exception {
+        File file = File.createTempFile("xml_template", ".ftl");
+        try {
+            Map<String, Object> variables = new HashMap<String, Object>();
+            variables.put("textvar", "text");
+            IOUtil.writeTextFile(file.getAbsolutePath(), "<root>${textvar}</root>", Encodings.UTF_8);
+            assertEquals("text", content.createDocument(file.getAbsolutePath(), Encodings.UTF_8, variables)
+                    .getDocumentElement().getTextContent());
+            assertEquals("text", content.createDocument(file.getAbsolutePath(), Encodings.UTF_8, variables)
+                    .getDocumentElement().getTextContent());
+
+            // cached template must not be used after modification
+            IOUtil.writeTextFile(file.getAbsolutePath(), "<root>modified ${textvar}</root>", Encodings.UTF_8);
+            assertTrue(file.setLastModified(file.lastModified() + 10000));
+            assertEquals("modified text", content.createDocument(file.getAbsolutePath(), Encodings.UTF_8, variables)
+                    .getDocumentElement().getTextContent());
+        }
+        finally {
+            assertTrue(file.delete());
+        }
+    }
+
     // document comparison -----------------------------------------------------
 
     @Test
@@ -327,8 +368,135 @@ public class XmlContentImplTest {
         assertTrue("Unexpected diff", diff.isEmpty());
     }
 
+    // test streaming comparison ----------------------------------------------
+
+    @Test
+    public void testStreamDiff_identical() throws Exception {
+        AggregateXmlDiff diff = content.compare(getSimpleXmlInputStream(), getSimpleXmlInputStream(),
+                content.createDefaultComparisonSettings());
+        assertTrue("Unexpected diff: " + diff, diff.isEmpty());
+    }
+
+    @Test
+    public void testStreamDiff_otherAttributeVal() throws Exception {
+        AggregateXmlDiff diff = content.compare(getSimpleXmlInputStream(), stream(SIMPLE_XML.replace("val", "val2")),
+                content.createDefaultComparisonSettings());
+        assertEquals(1, diff.getXmlDetails().size());
+        assertEquals(DatabeneXmlUtil.different("val", "val2", "attribute value", "/root/@att", "/root/@att"),
+                diff.getXmlDetails().get(0));
+
+        XmlComparisonSettings settings = content.createDefaultComparisonSettings();
+        settings.tolerateDifferentAt("/root/@att");
+        diff = content.compare(getSimpleXmlInputStream(), stream(SIMPLE_XML.replace("val", "val2")), settings);
+        assertTrue("Unexpected diff: " + diff, diff.isEmpty());
+    }
+
+    @Test
+    public void testStreamDiff_otherElementText() throws Exception {
+        AggregateXmlDiff diff = content.compare(getSimpleXmlInputStream(), stream(SIMPLE_XML.replace(">text<", ">otherText<")),
+                content.createDefaultComparisonSettings());
+        assertEquals(1, diff.getXmlDetails().size());
+        assertEquals(DatabeneXmlUtil.different("text", "otherText", "element text", "/root/node/text()", "/root/node/text()"),
+                diff.getXmlDetails().get(0));
+    }
+
+    @Test
+    public void testStreamDiff_missingAndAdditionalElement() throws Exception {
+        String actualXml = SIMPLE_XML.replace("<node>text</node>", "<node2/>");
+        AggregateXmlDiff diff = content.compare(getSimpleXmlInputStream(), stream(actualXml),
+                content.createDefaultComparisonSettings());
+        assertEquals(2, diff.getXmlDetails().size());
+        assertEquals(DatabeneXmlUtil.missing("<node>", "list element", "/root/node"), diff.getXmlDetails().get(0));
+        assertEquals(DatabeneXmlUtil.unexpected("<node2>", "list element", "/root/node2"), diff.getXmlDetails().get(1));
+
+        XmlComparisonSettings settings = content.createDefaultComparisonSettings();
+        settings.tolerateMissingAt("/root/node");
+        settings.tolerateUnexpectedAt("/root/node2");
+        diff = content.compare(getSimpleXmlInputStream(), stream(actualXml), settings);
+        assertTrue("Unexpected diff: " + diff, diff.isEmpty());
+    }
+
+    @Test
+    public void testStreamDiff_movedElement() throws Exception {
+        XmlComparisonSettings settings = content.createDefaultComparisonSettings();
+        settings.addKeyExpression("/list/item", "@no");
+        AggregateXmlDiff diff = content.compare(resource("list_1_alice_2_bob.xml"), resource("list_2_bob_1_alice.xml"), settings);
+        assertEquals(1, diff.getXmlDetails().size());
+        assertEquals(DatabeneXmlUtil.moved("<item no=\"1\">", "list element", "/list/item[1]", "/list/item[2]"), diff
+                .getXmlDetails().get(0));
+
+        settings = content.createDefaultComparisonSettings();
+        settings.tolerateMovedAt("/list/item");
+        diff = content.compare(resource("list_1_alice_2_bob.xml"), resource("list_2_bob_1_alice.xml"), settings);
+        assertTrue("Unexpected diff: " + diff, diff.isEmpty());
+    }
+
+    @Test
+    public void testStreamDiff_missingListElementLikeDom() throws Exception {
+        String expectedXml = createRecordList(1, 2000);
+        String actualXml = createRecordList(2, 2000);
+        XmlComparisonSettings settings = content.createDefaultComparisonSettings();
+        AggregateXmlDiff domDiff = content.compare(XMLUtil.parseString(expectedXml), XMLUtil.parseString(actualXml), settings);
+        AggregateXmlDiff streamDiff = content.compare(stream(expectedXml), stream(actualXml), settings);
+        assertEquals(1, domDiff.getXmlDetails().size());
+        assertEquals(domDiff.getXmlDetails().size(), streamDiff.getXmlDetails().size());
+        assertEquals(DatabeneXmlUtil.missing("<rec id=\"1\">", "list element", "/list/rec[1]"), streamDiff.getXmlDetails()
+                .get(0));
+    }
+
+    @Test
+    public void testStreamDiff_changedListElementLikeDom() throws Exception {
+        String expectedXml = createRecordList(1, 2000);
+        String actualXml = expectedXml.replace("<rec id=\"1000\">1000</rec>", "<rec id=\"1000\">changed</rec>");
+        XmlComparisonSettings settings = content.createDefaultComparisonSettings();
+        AggregateXmlDiff domDiff = content.compare(XMLUtil.parseString(expectedXml), XMLUtil.parseString(actualXml), settings);
+        AggregateXmlDiff streamDiff = content.compare(stream(expectedXml), stream(actualXml), settings);
+        assertEquals(1, domDiff.getXmlDetails().size());
+        assertEquals(domDiff.getXmlDetails().size(), streamDiff.getXmlDetails().size());
+        assertEquals(DatabeneXmlUtil.different("1000", "changed", "element text", "/list/rec[1000]/text()",
+                "/list/rec[1000]/text()"), streamDiff.getXmlDetails().get(0));
+    }
+
+    @Test
+    public void testStreamDiff_allListElementsChanged() throws Exception {
+        String expectedXml = createRecordList(1, 5000);
+        String actualXml = expectedXml.replace("</rec>", "x</rec>");
+        XmlComparisonSettings settings = content.createDefaultComparisonSettings();
+        AggregateXmlDiff domDiff = content.compare(XMLUtil.parseString(expectedXml), XMLUtil.parseString(actualXml), settings);
+        AggregateXmlDiff streamDiff = content.compare(stream(expectedXml), stream(actualXml), settings);
+        assertEquals(5000, domDiff.getXmlDetails().size());
+        assertEquals(domDiff.getXmlDetails().size(), streamDiff.getXmlDetails().size());
+        assertEquals(DatabeneXmlUtil.different("4711", "4711x", "element text", "/list/rec[4711]/text()",
+                "/list/rec[4711]/text()"), streamDiff.getXmlDetails().get(4710));
+    }
+
+    @Test
+    public void testStreamDiff_complexXPathFallsBackToDom() throws Exception {
+        XmlComparisonSettings settings = content.createDefaultComparisonSettings();
+        settings.tolerateDifferentAt("/root[@att]/node/text()");
+        AggregateXmlDiff diff = content.compare(getSimpleXmlInputStream(), stream(SIMPLE_XML.replace(">text<", ">otherText<")),
+                settings);
+        assertTrue("Unexpected diff: " + diff, diff.isEmpty());
+    }
+
     // private helpers ---------------------------------------------------------
 
+    private static String createRecordList(int first, int last) {
+        StringBuilder sb = new StringBuilder("<list>");
+        for (int i = first; i <= last; i++) {
+            sb.append("<rec id=\"").append(i).append("\">").append(i).append("</rec>");
+        }
+        return sb.append("</list>").toString();
+    }
+
+    private ByteArrayInputStream stream(String xml) throws UnsupportedEncodingException {
+        return new ByteArrayInputStream(xml.getBytes(Encodings.UTF_8));
+    }
+
+    private InputStream resource(String name) throws Exception {
+        return IOUtil.getInputStreamForURI(RESOURCE_PATH + name);
+    }
+
     private Document parseSimpleXml() {
         return XMLUtil.parseString(SIMPLE_XML);
     }
@@ -72,6 +72,9 @@ public class DatabeneFormatsTestDataProviderTest {
         List<TestCaseData> testDataSets = createProvider().getTestDataSets(singleArgMethod);
         assertTrue("No test data sets created for single-arg method", testDataSets.size() >= 1);
         assertEquals(2, testDataSets.size());
+        // the data sets only look up their parameters when they are requested
+        assertTrue(testDataSets.get(0).isLazy());
+        assertTrue(testDataSets.get(1).isLazy());
         assertPerson("Alice", 23, "London", "Dover", testDataSets.get(0).getData());
         assertPerson("Bob", 34, "New York", "Hauppauge", testDataSets.get(1).getData());
     }
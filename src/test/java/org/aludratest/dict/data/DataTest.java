@@ -100,6 +100,48 @@ public class DataTest extends TestCase {
         assertEquals("Data6 [dataAttr=Data5 [data6Attr=Data6 [dataAttr=<endless recursion>]]]", d6.toString());
     }
     
+    @Test
+    public void testDescriptionStringNestedSameClass() {
+        Data7 c = new Data7("c", null);
+        Data7 b = new Data7("b", c);
+        Data7 a = new Data7("a", b);
+
+        // no cycle, so objects of the same class are described completely
+        assertEquals("Data7 [name=\"a\", next=Data7 [name=\"b\", next=Data7 [name=\"c\", next=null]]]", a.toString());
+    }
+
+    @Test
+    public void testDescriptionStringTruncated() {
+        StringBuilder longValue = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            longValue.append('x');
+        }
+        Data1 data = new Data1();
+        data.setSimpleAttr1(longValue.toString());
+        data.setSimpleAttr2("Test2");
+
+        String description = data.toString();
+        assertTrue(description.length() < 10100);
+        assertTrue(description.startsWith("Data1 [simpleAttr1=\"xxx"));
+        assertTrue(description.endsWith("x...\"]"));
+    }
+
+    @Test
+    public void testDescriptionStringLongCollection() {
+        Data4 data = new Data4();
+        List<Data1> ls = new ArrayList<Data1>();
+        for (int i = 0; i < 10000; i++) {
+            Data1 data1 = new Data1();
+            data1.setSimpleAttr1("Test" + i);
+            ls.add(data1);
+        }
+        data.setData1List(ls);
+        data.setSimpleAttr("Test99");
+
+        String description = data.toString();
+        assertTrue(description.length() < 10100);
+        assertTrue(description.endsWith(", ...]]"));
+    }
 
     private static class Data1 extends Data {
         
@@ -200,4 +242,21 @@ public class DataTest extends TestCase {
         }
     }
 
+    private static class Data7 extends Data {
+
+        private String name;
+
+        private Data7 next;
+
+        public Data7(String name, Data7 next) {
+            this.name = name;
+            this.next = next;
+        }
+
+        @Override
+        public String toString() {
+            return buildDescriptionString(new StringBuilder()).toString();
+        }
+    }
+
 }
@@ -17,12 +17,18 @@ package org.aludratest.junit;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import org.aludratest.suite.ParallelTestClass;
 import org.aludratest.suite.PlainTestClass;
+import org.aludratest.suite.SequentialTestClass;
 import org.junit.Test;
+import org.junit.runner.Description;
 import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
 import org.junit.runner.Result;
+import org.junit.runner.manipulation.Filter;
 import org.junit.runner.notification.Failure;
 
 /**
@@ -52,4 +58,75 @@ public class AludraTestJUnitSuiteTest {
         assertEquals("This is a failure!", failure.getMessage());
     }
 
+    /** Tests that filtering a parallel test class only executes the selected test leaf. */
+    @Test
+    public void testFilterParallelClass() {
+        System.setProperty(AludraTestJUnitSuite.SUITE_SYSPROP, ParallelTestClass.class.getName());
+        MethodFilter filter = new MethodFilter("sequentialTest");
+        Result result = new JUnitCore().run(Request.aClass(TriggerSuite.class).filterWith(filter));
+        assertEquals(1, result.getRunCount());
+        assertEquals(0, result.getFailureCount());
+    }
+
+    /** Tests that filtering a sequential test class additionally executes the test leaves preceding the selected one. */
+    @Test
+    public void testFilterSequentialClass() {
+        System.setProperty(AludraTestJUnitSuite.SUITE_SYSPROP, SequentialTestClass.class.getName());
+        MethodFilter filter = new MethodFilter("sequentialTest");
+        Result result = new JUnitCore().run(Request.aClass(TriggerSuite.class).filterWith(filter));
+        assertEquals(3, filter.leafNames.size());
+        assertEquals(filter.selectedIndex + 1, result.getRunCount());
+        assertEquals(0, result.getFailureCount());
+    }
+
+    /** Tests that a filter for the description of a test method executes all leaves of the method. */
+    @Test
+    public void testFilterByMethodDescription() {
+        System.setProperty(AludraTestJUnitSuite.SUITE_SYSPROP, ParallelTestClass.class.getName());
+        Filter filter = Filter.matchMethodDescription(Description.createTestDescription(ParallelTestClass.class,
+                "sequentialTest"));
+        Result result = new JUnitCore().run(Request.aClass(TriggerSuite.class).filterWith(filter));
+        assertEquals(1, result.getRunCount());
+        assertEquals(0, result.getFailureCount());
+    }
+
+    /** Tests that a method request for the triggering JUnit class executes the leaves of the AludraTest method of this name. */
+    @Test
+    public void testRequestMethod() {
+        System.setProperty(AludraTestJUnitSuite.SUITE_SYSPROP, ParallelTestClass.class.getName());
+        Result result = new JUnitCore().run(Request.method(TriggerSuite.class, "parallelTest"));
+        assertEquals(1, result.getRunCount());
+        assertEquals(0, result.getFailureCount());
+    }
+
+    /** Filter which accepts the leaves of one test method and records the names of all leaves in tree order. */
+    private static class MethodFilter extends Filter {
+
+        private final String methodName;
+        private final List<String> leafNames = new ArrayList<String>();
+        private int selectedIndex = -1;
+
+        MethodFilter(String methodName) {
+            this.methodName = methodName;
+        }
+
+        @Override
+        public boolean shouldRun(Description description) {
+            if (description.isSuite()) {
+                return true;
+            }
+            leafNames.add(description.getMethodName());
+            if (description.getMethodName().contains("." + methodName + "-")) {
+                selectedIndex = leafNames.size() - 1;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public String describe() {
+            return "method " + methodName;
+        }
+    }
+
 }
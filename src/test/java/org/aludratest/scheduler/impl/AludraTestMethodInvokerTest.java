@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.scheduler.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.aludratest.dict.Data;
+import org.aludratest.exception.AutomationException;
+import org.aludratest.testcase.After;
+import org.aludratest.testcase.AludraTestCase;
+import org.aludratest.testcase.Before;
+import org.aludratest.testcase.data.LazyTestDataSource;
+import org.aludratest.testcase.data.TestCaseData;
+import org.aludratest.testcase.data.TestDataSource;
+import org.aludratest.util.data.StringData;
+import org.junit.Test;
+
+/** Tests the {@link AludraTestMethodInvoker}.
+ * @author agent */
+@SuppressWarnings("javadoc")
+public class AludraTestMethodInvokerTest {
+
+    @Test
+    public void testLazyData() throws Exception {
+        CountingSource source = new CountingSource();
+        TestCaseData data = new TestCaseData("0", null, source, false, null, null);
+        assertTrue(data.isLazy());
+
+        InvokedTestClass testObject = new InvokedTestClass();
+        AludraTestMethodInvoker invoker = new AludraTestMethodInvoker(testObject, InvokedTestClass.class.getMethod("test",
+                StringData.class), data, true);
+        assertEquals(0, source.calls.get());
+
+        invoker.invoke();
+        assertEquals(1, source.calls.get());
+        assertEquals("value1", testObject.value);
+
+        // the arguments have been released and are requested again
+        invoker.invoke();
+        assertEquals(2, source.calls.get());
+        assertEquals("value2", testObject.value);
+    }
+
+    @Test
+    public void testEagerData() throws Exception {
+        StringData arg = new StringData("eager");
+        TestCaseData data = new TestCaseData("0", null, new Data[] { arg });
+        assertFalse(data.isLazy());
+
+        InvokedTestClass testObject = new InvokedTestClass();
+        AludraTestMethodInvoker invoker = new AludraTestMethodInvoker(testObject, InvokedTestClass.class.getMethod("test",
+                StringData.class), data, false);
+        invoker.invoke();
+        invoker.invoke();
+        assertSame(arg, invoker.getArgs()[0]);
+        assertEquals("eager", testObject.value);
+    }
+
+    @Test
+    public void testLifecycleOrder() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            LifecycleTestClass testObject = new LifecycleTestClass();
+            new AludraTestMethodInvoker(testObject, LifecycleTestClass.class.getMethod("test"), new TestCaseData("0", null, null),
+                    false).invoke();
+            assertEquals(Arrays.asList("parentBefore", "childBefore", "test", "childAfter", "parentAfter"), testObject.calls);
+        }
+    }
+
+    @Test
+    public void testInvalidLifecycleMethod() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            InvalidLifecycleTestClass testObject = new InvalidLifecycleTestClass();
+            try {
+                new AludraTestMethodInvoker(testObject, InvalidLifecycleTestClass.class.getMethod("test"), new TestCaseData("0",
+                        null, null), false).invoke();
+                fail("AutomationException expected");
+            }
+            catch (AutomationException e) {
+                assertTrue(e.getMessage().startsWith("Before/After methods must not have parameters"));
+            }
+            // as for a failing @Before method, neither the test method nor the @After methods are invoked
+            assertEquals(Arrays.asList("parentBefore"), testObject.calls);
+        }
+    }
+
+    @Test
+    public void testNonLazySource() {
+        TestDataSource source = new TestDataSource() {
+            @Override
+            public Data[] getData() {
+                return null;
+            }
+        };
+        assertFalse(new TestCaseData("0", null, source, false, null, null).isLazy());
+    }
+
+    public static class InvokedTestClass extends AludraTestCase {
+
+        private String value;
+
+        public void test(StringData data) {
+            this.value = data.getValue();
+        }
+
+        @Override
+        public void closeServices() {
+            // no context and no services
+        }
+    }
+
+    public static class LifecycleParentClass extends AludraTestCase {
+
+        protected final List<String> calls = new ArrayList<String>();
+
+        @Before
+        public void parentBefore() {
+            calls.add("parentBefore");
+        }
+
+        @After
+        public void parentAfter() {
+            calls.add("parentAfter");
+        }
+
+        @Override
+        public void closeServices() {
+            // no context and no services
+        }
+    }
+
+    public static class LifecycleTestClass extends LifecycleParentClass {
+
+        @Before
+        public void childBefore() {
+            calls.add("childBefore");
+        }
+
+        public void test() {
+            calls.add("test");
+        }
+
+        @After
+        public void childAfter() {
+            calls.add("childAfter");
+        }
+    }
+
+    public static class InvalidLifecycleTestClass extends LifecycleParentClass {
+
+        @Before
+        public void childBefore(String invalid) {
+            calls.add("childBefore");
+        }
+
+        public void test() {
+            calls.add("test");
+        }
+    }
+
+    private static class CountingSource implements LazyTestDataSource {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public Data[] getData() {
+            return new Data[] { new StringData("value" + calls.incrementAndGet()) };
+        }
+    }
+
+}
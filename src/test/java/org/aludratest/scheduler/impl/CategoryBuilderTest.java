@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.scheduler.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.aludratest.scheduler.RunnerTree;
+import org.aludratest.scheduler.node.ExecutionMode;
+import org.aludratest.scheduler.node.RunnerGroup;
+import org.aludratest.scheduler.test.annot.AnnotatedTestClass1;
+import org.aludratest.scheduler.test.annot.AnnotatedTestClass2;
+import org.aludratest.scheduler.test.annot.AnnotatedTestClass3;
+import org.aludratest.scheduler.util.TestAttributeUtilTest.UnattributedTestClass;
+import org.junit.Test;
+
+/** Tests the {@link CategoryBuilder}.
+ * @author agent */
+@SuppressWarnings("javadoc")
+public class CategoryBuilderTest {
+
+    @Test
+    public void testCategoryGroupsAreReused() {
+        RunnerTree tree = new RunnerTree();
+        tree.createRoot("root", true);
+        CategoryBuilder builder = new CategoryBuilder(Arrays.asList("state", "author"));
+
+        RunnerGroup group1 = builder.getParentRunnerGroup(tree, AnnotatedTestClass1.class);
+        RunnerGroup group2 = builder.getParentRunnerGroup(tree, AnnotatedTestClass2.class);
+        assertEquals("InWork.falbrech", group1.getName());
+        assertEquals("InWork.jdoe", group2.getName());
+        assertSame(group1.getParent(), group2.getParent());
+        assertSame(group1, builder.getParentRunnerGroup(tree, AnnotatedTestClass1.class));
+
+        // one "InWork" group with one child per author
+        assertEquals(1, tree.getRoot().getChildren().size());
+        assertEquals(2, group1.getParent().getChildren().size());
+    }
+
+    @Test
+    public void testExistingGroupsAreReused() {
+        RunnerTree tree = new RunnerTree();
+        tree.createRoot("root", true);
+        RunnerGroup inWork = tree.createGroup("InWork", ExecutionMode.SEQUENTIAL, tree.getRoot());
+        RunnerGroup secondAuthor = tree.createGroup("InWork.secondauthor", ExecutionMode.SEQUENTIAL, inWork);
+        CategoryBuilder builder = new CategoryBuilder(Arrays.asList("state", "author"));
+
+        assertSame(secondAuthor, builder.getParentRunnerGroup(tree, AnnotatedTestClass3.class));
+        RunnerGroup group1 = builder.getParentRunnerGroup(tree, AnnotatedTestClass1.class);
+        assertSame(inWork, group1.getParent());
+        assertNotSame(secondAuthor, group1);
+        assertEquals(1, tree.getRoot().getChildren().size());
+        assertEquals(2, inWork.getChildren().size());
+    }
+
+    @Test
+    public void testUnknownCategory() {
+        RunnerTree tree = new RunnerTree();
+        tree.createRoot("root", true);
+        CategoryBuilder builder = new CategoryBuilder(Arrays.asList("state"));
+
+        RunnerGroup group = builder.getParentRunnerGroup(tree, UnattributedTestClass.class);
+        assertEquals("state unknown", group.getName());
+        assertSame(group, builder.getParentRunnerGroup(tree, UnattributedTestClass.class));
+    }
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.scheduler.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.aludratest.scheduler.RunStatus;
+import org.aludratest.scheduler.RunnerTree;
+import org.aludratest.scheduler.node.ExecutionMode;
+import org.aludratest.scheduler.node.RunnerGroup;
+import org.aludratest.scheduler.node.RunnerLeaf;
+import org.aludratest.scheduler.util.CommonRunnerLeafAttributes;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests the {@link ExecutionPlan}.
+ * @author agent */
+@SuppressWarnings("javadoc")
+public class ExecutionPlanTest {
+
+    private RunnerTree tree;
+
+    private RunnerLeaf shortLeaf;
+
+    private RunnerLeaf longLeaf;
+
+    private RunnerLeaf chainLeaf1;
+
+    private RunnerLeaf chainLeaf2;
+
+    @Before
+    public void createTree() {
+        tree = new RunnerTree();
+        RunnerGroup root = tree.createRoot("root", true);
+        shortLeaf = tree.addLeaf(1, null, "Test.short-1", root);
+        longLeaf = tree.addLeaf(2, null, "Test.long-1", root);
+        RunnerGroup chain = tree.createGroup("chain", ExecutionMode.SEQUENTIAL, root);
+        chainLeaf1 = tree.addLeaf(3, null, "Chain.first-1", chain);
+        chainLeaf2 = tree.addLeaf(4, null, "Chain.second-1", chain);
+    }
+
+    @Test
+    public void testTreeOrderWithoutHistory() {
+        ExecutionPlan plan = new ExecutionPlan();
+        plan.buildExecutionPlan(tree, null);
+
+        assertSame(shortLeaf, plan.getNextExecutableLeaf());
+        assertSame(longLeaf, plan.getNextExecutableLeaf());
+        assertSame(chainLeaf1, plan.getNextExecutableLeaf());
+        assertNull(plan.getNextExecutableLeaf());
+    }
+
+    @Test
+    public void testLongestLeafFirst() {
+        TestDurationHistory history = new TestDurationHistory(new File("unused"));
+        history.recordDuration(shortLeaf, 100);
+        history.recordDuration(longLeaf, 5000);
+        history.recordDuration(chainLeaf1, 200);
+        history.recordDuration(chainLeaf2, 200);
+
+        ExecutionPlan plan = new ExecutionPlan();
+        plan.buildExecutionPlan(tree, history);
+
+        assertSame(longLeaf, plan.getNextExecutableLeaf());
+        assertSame(chainLeaf1, plan.getNextExecutableLeaf());
+        assertSame(shortLeaf, plan.getNextExecutableLeaf());
+        assertNull(plan.getNextExecutableLeaf());
+    }
+
+    @Test
+    public void testCriticalPathFirst() {
+        TestDurationHistory history = new TestDurationHistory(new File("unused"));
+        history.recordDuration(shortLeaf, 100);
+        history.recordDuration(longLeaf, 3000);
+        history.recordDuration(chainLeaf1, 1000);
+        history.recordDuration(chainLeaf2, 2500);
+
+        ExecutionPlan plan = new ExecutionPlan();
+        plan.buildExecutionPlan(tree, history);
+
+        // chain leaf 1 is shorter than the long leaf, but the chain as a whole is longer
+        assertSame(chainLeaf1, plan.getNextExecutableLeaf());
+        assertSame(longLeaf, plan.getNextExecutableLeaf());
+        assertSame(shortLeaf, plan.getNextExecutableLeaf());
+        assertNull(plan.getNextExecutableLeaf());
+
+        chainLeaf1.setRunStatus(RunStatus.FINISHED);
+        plan.removeFinishedRunnerLeaf(chainLeaf1);
+        assertSame(chainLeaf2, plan.getNextExecutableLeaf());
+    }
+
+    @Test
+    public void testUnknownDurationUsesAverage() {
+        TestDurationHistory history = new TestDurationHistory(new File("unused"));
+        history.recordDuration(shortLeaf, 100);
+        history.recordDuration(longLeaf, 900);
+
+        ExecutionPlan plan = new ExecutionPlan();
+        plan.buildExecutionPlan(tree, history);
+
+        // chain leafs are assumed to take 500 ms each, so the chain takes longest
+        assertSame(chainLeaf1, plan.getNextExecutableLeaf());
+        assertSame(longLeaf, plan.getNextExecutableLeaf());
+        assertSame(shortLeaf, plan.getNextExecutableLeaf());
+    }
+
+    @Test
+    public void testResourcePermits() {
+        shortLeaf.setAttribute(CommonRunnerLeafAttributes.USED_RESOURCES, new String[] { "db" });
+        longLeaf.setAttribute(CommonRunnerLeafAttributes.USED_RESOURCES, new String[] { "db" });
+        chainLeaf1.getParent().setAttribute(CommonRunnerLeafAttributes.USED_RESOURCES, new String[] { "db" });
+
+        ExecutionPlan plan = new ExecutionPlan();
+        plan.buildExecutionPlan(tree, null);
+
+        // default capacity of 1 only allows one leaf at a time
+        assertSame(shortLeaf, plan.getNextExecutableLeaf());
+        assertNull(plan.getNextExecutableLeaf());
+
+        shortLeaf.setRunStatus(RunStatus.FINISHED);
+        plan.removeFinishedRunnerLeaf(shortLeaf);
+        assertSame(longLeaf, plan.getNextExecutableLeaf());
+        assertNull(plan.getNextExecutableLeaf());
+    }
+
+    @Test
+    public void testResourceCapacities() {
+        shortLeaf.setAttribute(CommonRunnerLeafAttributes.USED_RESOURCES, new String[] { "db" });
+        shortLeaf.setAttribute(CommonRunnerLeafAttributes.USED_RESOURCES_CAPACITY, Integer.valueOf(5));
+        longLeaf.setAttribute(CommonRunnerLeafAttributes.USED_RESOURCES, new String[] { "db" });
+        chainLeaf1.setAttribute(CommonRunnerLeafAttributes.USED_RESOURCES, new String[] { "db" });
+
+        // declared capacity is used if no capacity is configured
+        ExecutionPlan plan = new ExecutionPlan();
+        plan.buildExecutionPlan(tree, null);
+        assertSame(shortLeaf, plan.getNextExecutableLeaf());
+        assertSame(longLeaf, plan.getNextExecutableLeaf());
+        assertSame(chainLeaf1, plan.getNextExecutableLeaf());
+
+        // configured capacity takes precedence
+        plan = new ExecutionPlan(Collections.singletonMap("db", Integer.valueOf(2)));
+        plan.buildExecutionPlan(tree, null);
+        assertSame(shortLeaf, plan.getNextExecutableLeaf());
+        assertSame(longLeaf, plan.getNextExecutableLeaf());
+        assertNull(plan.getNextExecutableLeaf());
+    }
+
+    @Test
+    public void testCancelDependentsOnFailure() {
+        RunnerLeaf chainLeaf3 = tree.addLeaf(5, null, "Chain.third-1", chainLeaf1.getParent());
+        chainLeaf1.getParent().setAttribute(CommonRunnerLeafAttributes.CANCEL_DEPENDENTS_ON_FAILURE, Boolean.TRUE);
+
+        ExecutionPlan plan = new ExecutionPlan();
+        plan.buildExecutionPlan(tree, null);
+        assertSame(shortLeaf, plan.getNextExecutableLeaf());
+        assertSame(longLeaf, plan.getNextExecutableLeaf());
+        assertSame(chainLeaf1, plan.getNextExecutableLeaf());
+
+        plan.markFailed(chainLeaf1);
+        chainLeaf1.setRunStatus(RunStatus.FINISHED);
+        plan.removeFinishedRunnerLeaf(chainLeaf1);
+
+        // cancellation propagates through the whole chain
+        assertSame(chainLeaf2, plan.getNextExecutableLeaf());
+        assertEquals("Chain.first-1", chainLeaf2.getAttribute(CommonRunnerLeafAttributes.CANCELLED_BY_FAILURE_OF));
+        chainLeaf2.setRunStatus(RunStatus.FINISHED);
+        plan.removeFinishedRunnerLeaf(chainLeaf2);
+        assertSame(chainLeaf3, plan.getNextExecutableLeaf());
+        assertEquals("Chain.first-1", chainLeaf3.getAttribute(CommonRunnerLeafAttributes.CANCELLED_BY_FAILURE_OF));
+    }
+
+    @Test
+    public void testDependentsCancelledBeforeFailedLeafRemoved() {
+        RunnerLeaf chainLeaf3 = tree.addLeaf(5, null, "Chain.third-1", chainLeaf1.getParent());
+        chainLeaf1.getParent().setAttribute(CommonRunnerLeafAttributes.CANCEL_DEPENDENTS_ON_FAILURE, Boolean.TRUE);
+
+        ExecutionPlan plan = new ExecutionPlan();
+        plan.buildExecutionPlan(tree, null);
+        plan.getNextExecutableLeaf();
+        plan.getNextExecutableLeaf();
+        assertSame(chainLeaf1, plan.getNextExecutableLeaf());
+
+        // the runner fires the finished events between setting the run status and removing the leaf from the plan
+        plan.markFailed(chainLeaf1);
+        chainLeaf1.setRunStatus(RunStatus.FINISHED);
+        assertSame(chainLeaf2, plan.getNextExecutableLeaf());
+        assertEquals("Chain.first-1", chainLeaf2.getAttribute(CommonRunnerLeafAttributes.CANCELLED_BY_FAILURE_OF));
+
+        chainLeaf2.setRunStatus(RunStatus.FINISHED);
+        assertSame(chainLeaf3, plan.getNextExecutableLeaf());
+        assertEquals("Chain.first-1", chainLeaf3.getAttribute(CommonRunnerLeafAttributes.CANCELLED_BY_FAILURE_OF));
+    }
+
+    @Test
+    public void testNoCancellationWithoutPolicy() {
+        ExecutionPlan plan = new ExecutionPlan();
+        plan.buildExecutionPlan(tree, null);
+        plan.getNextExecutableLeaf();
+        plan.getNextExecutableLeaf();
+        assertSame(chainLeaf1, plan.getNextExecutableLeaf());
+
+        plan.markFailed(chainLeaf1);
+        chainLeaf1.setRunStatus(RunStatus.FINISHED);
+        plan.removeFinishedRunnerLeaf(chainLeaf1);
+        assertSame(chainLeaf2, plan.getNextExecutableLeaf());
+        assertNull(chainLeaf2.getAttribute(CommonRunnerLeafAttributes.CANCELLED_BY_FAILURE_OF));
+    }
+
+    @Test
+    public void testHistorySaveAndLoad() throws Exception {
+        File file = File.createTempFile("aludratest-durations", ".properties");
+        try {
+            TestDurationHistory history = new TestDurationHistory(file);
+            history.recordDuration(longLeaf, 4711);
+            history.save();
+
+            TestDurationHistory loaded = TestDurationHistory.load(file);
+            assertEquals(Long.valueOf(4711), loaded.getDuration(longLeaf));
+            assertNull(loaded.getDuration(shortLeaf));
+        }
+        finally {
+            assertTrue(file.delete());
+        }
+    }
+
+}
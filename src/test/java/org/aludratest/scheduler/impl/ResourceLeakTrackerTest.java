@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.scheduler.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.aludratest.scheduler.node.ExecutionMode;
+import org.aludratest.scheduler.node.RunnerGroup;
+import org.aludratest.scheduler.node.RunnerLeaf;
+import org.junit.Test;
+
+/** Tests the {@link ResourceLeakTracker}.
+ * @author agent */
+@SuppressWarnings("javadoc")
+public class ResourceLeakTrackerTest {
+
+    @Test
+    public void testLeakedThreadIsInterrupted() throws Exception {
+        ResourceLeakTracker tracker = new ResourceLeakTracker(true);
+        ResourceLeakTracker.Snapshot snapshot = tracker.startingLeaf(createLeaf());
+        SleepingThread leaked = new SleepingThread();
+        leaked.start();
+        tracker.finishedLeaf(snapshot);
+        assertTrue(leaked.interrupted.await(5, TimeUnit.SECONDS));
+        tracker.logReport();
+    }
+
+    @Test
+    public void testFrameworkThreadIsNotInterrupted() throws Exception {
+        ResourceLeakTracker tracker = new ResourceLeakTracker(true);
+        ResourceLeakTracker.Snapshot snapshot = tracker.startingLeaf(createLeaf());
+        SleepingThread framework = new SleepingThread();
+        Thread thread = tracker.createFrameworkThreadFactory().newThread(framework);
+        thread.start();
+        tracker.finishedLeaf(snapshot);
+        assertFalse(framework.interrupted.await(200, TimeUnit.MILLISECONDS));
+        thread.interrupt();
+    }
+
+    @Test
+    public void testThreadOfParallelLeafIsNotInterrupted() throws Exception {
+        ResourceLeakTracker tracker = new ResourceLeakTracker(true);
+        ResourceLeakTracker.Snapshot snapshot1 = tracker.startingLeaf(createLeaf());
+        ResourceLeakTracker.Snapshot snapshot2 = tracker.startingLeaf(createLeaf());
+        // the thread may belong to either test case, so it must not be interrupted when one of them finishes
+        SleepingThread running = new SleepingThread();
+        running.start();
+        tracker.finishedLeaf(snapshot2);
+        tracker.finishedLeaf(snapshot1);
+        assertFalse(running.interrupted.await(200, TimeUnit.MILLISECONDS));
+        running.interrupt();
+    }
+
+    @Test
+    public void testThreadsOfParallelLeavesOnFrameworkThreads() throws Exception {
+        final ResourceLeakTracker tracker = new ResourceLeakTracker(true);
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch leaked = new CountDownLatch(2);
+        final SleepingThread[] threads = new SleepingThread[2];
+        ExecutorService pool = Executors.newFixedThreadPool(2, tracker.createFrameworkThreadFactory());
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int i = 0; i < threads.length; i++) {
+                final int index = i;
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        ResourceLeakTracker.Snapshot snapshot = tracker.startingLeaf(createLeaf());
+                        started.countDown();
+                        started.await(5, TimeUnit.SECONDS);
+                        threads[index] = new SleepingThread();
+                        threads[index].start();
+                        leaked.countDown();
+                        leaked.await(5, TimeUnit.SECONDS);
+                        tracker.finishedLeaf(snapshot);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+            // each thread has been created by the test case running on the same worker, so both are attributed
+            assertTrue(threads[0].interrupted.await(5, TimeUnit.SECONDS));
+            assertTrue(threads[1].interrupted.await(5, TimeUnit.SECONDS));
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFileDescriptorsOfSingleLeaf() throws Exception {
+        assumeTrue(new File("/proc/self/fd").isDirectory());
+        ResourceLeakTracker tracker = new ResourceLeakTracker(false);
+        ResourceLeakTracker.Snapshot snapshot = tracker.startingLeaf(createLeaf());
+        FileInputStream leaked = new FileInputStream("pom.xml");
+        try {
+            tracker.finishedLeaf(snapshot);
+            assertTrue(tracker.getAttributedFileDescriptors() >= 1);
+        }
+        finally {
+            leaked.close();
+        }
+    }
+
+    @Test
+    public void testFileDescriptorsOfParallelLeavesAreNotAttributed() throws Exception {
+        assumeTrue(new File("/proc/self/fd").isDirectory());
+        ResourceLeakTracker tracker = new ResourceLeakTracker(false);
+        ResourceLeakTracker.Snapshot snapshot1 = tracker.startingLeaf(createLeaf());
+        ResourceLeakTracker.Snapshot snapshot2 = tracker.startingLeaf(createLeaf());
+        FileInputStream leaked = new FileInputStream("pom.xml");
+        try {
+            tracker.finishedLeaf(snapshot2);
+            tracker.finishedLeaf(snapshot1);
+            assertEquals(0, tracker.getAttributedFileDescriptors());
+            tracker.logReport();
+        }
+        finally {
+            leaked.close();
+        }
+    }
+
+    private static RunnerLeaf createLeaf() {
+        return new RunnerLeaf(1, "leaking", new RunnerGroup("group", ExecutionMode.INHERITED, null), null);
+    }
+
+    private static class SleepingThread extends Thread {
+
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+
+        SleepingThread() {
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                Thread.sleep(10000);
+            }
+            catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        }
+    }
+
+}
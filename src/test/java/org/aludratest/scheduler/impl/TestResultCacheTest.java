@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.scheduler.impl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.aludratest.dict.Data;
+import org.aludratest.scheduler.RunnerTree;
+import org.aludratest.scheduler.node.RunnerGroup;
+import org.aludratest.scheduler.node.RunnerLeaf;
+import org.aludratest.testcase.AludraTestCase;
+import org.aludratest.testcase.TestStatus;
+import org.aludratest.testcase.data.LazyTestDataSource;
+import org.aludratest.testcase.data.TestCaseData;
+import org.aludratest.testcase.data.TestDataSource;
+import org.aludratest.testcase.event.impl.TestStepInfoBean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests the {@link TestResultCache}.
+ * @author agent */
+@SuppressWarnings("javadoc")
+public class TestResultCacheTest {
+
+    private File file;
+
+    @Before
+    public void createFile() throws Exception {
+        file = File.createTempFile("aludratest-results", ".properties");
+        assertTrue(file.delete());
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void testPassedLeafIsCached() throws Exception {
+        TestResultCache cache = TestResultCache.load(file, "1.0");
+        RunnerLeaf leaf = createLeaf("abc");
+        assertFalse(cache.isUnchangedSincePassed(leaf));
+        cache.finishedTestLeaf(leaf);
+        cache.save();
+
+        cache = TestResultCache.load(file, "1.0");
+        assertTrue(cache.isUnchangedSincePassed(createLeaf("abc")));
+    }
+
+    @Test
+    public void testChangedDataIsNotCached() throws Exception {
+        TestResultCache cache = TestResultCache.load(file, "1.0");
+        RunnerLeaf leaf = createLeaf("abc");
+        cache.isUnchangedSincePassed(leaf);
+        cache.finishedTestLeaf(leaf);
+        cache.save();
+
+        cache = TestResultCache.load(file, "1.0");
+        assertFalse(cache.isUnchangedSincePassed(createLeaf("xyz")));
+
+        // other AludraTest version means other configuration
+        cache = TestResultCache.load(file, "1.1");
+        assertFalse(cache.isUnchangedSincePassed(createLeaf("abc")));
+    }
+
+    @Test
+    public void testFailedLeafIsRemoved() throws Exception {
+        TestResultCache cache = TestResultCache.load(file, "1.0");
+        RunnerLeaf leaf = createLeaf("abc");
+        cache.isUnchangedSincePassed(leaf);
+        cache.finishedTestLeaf(leaf);
+
+        leaf = createLeaf("abc");
+        assertTrue(cache.isUnchangedSincePassed(leaf));
+        TestStepInfoBean step = new TestStepInfoBean();
+        step.setTestStatus(TestStatus.FAILED);
+        cache.newTestStep(leaf, step);
+        cache.finishedTestLeaf(leaf);
+
+        assertFalse(cache.isUnchangedSincePassed(createLeaf("abc")));
+    }
+
+    @Test
+    public void testLazyDataIsNotRetained() throws Exception {
+        TestResultCache cache = TestResultCache.load(file, "1.0");
+        RunnerLeaf leaf = createLazyLeaf("abc");
+        cache.isUnchangedSincePassed(leaf);
+        cache.finishedTestLeaf(leaf);
+
+        // the fingerprint of a skipped leaf does not keep its lazy data referenced by the invoker
+        leaf = createLazyLeaf("abc");
+        assertTrue(cache.isUnchangedSincePassed(leaf));
+        assertTrue(leaf.getTestInvoker().toString().contains("<deferred evaluation>"));
+        assertFalse(cache.isUnchangedSincePassed(createLazyLeaf("xyz")));
+    }
+
+    private static RunnerLeaf createLazyLeaf(final String value) throws Exception {
+        TestDataSource source = new LazyTestDataSource() {
+            @Override
+            public Data[] getData() {
+                return new Data[] { new StringData(value) };
+            }
+        };
+        return createLeaf(new TestCaseData("1", null, source, false, null, null), true);
+    }
+
+    private static RunnerLeaf createLeaf(String value) throws Exception {
+        return createLeaf(new TestCaseData("1", null, new Data[] { new StringData(value) }), false);
+    }
+
+    private static RunnerLeaf createLeaf(TestCaseData data, boolean deferredEvaluation) throws Exception {
+        RunnerTree tree = new RunnerTree();
+        RunnerGroup root = tree.createRoot("root", false);
+        AludraTestMethodInvoker invoker = new AludraTestMethodInvoker(new CachedTestClass(), CachedTestClass.class.getMethod(
+                "test", StringData.class), data, deferredEvaluation);
+        return tree.addLeaf(1, invoker, CachedTestClass.class.getName() + ".test-1", root);
+    }
+
+    public static class CachedTestClass extends AludraTestCase {
+
+        @org.aludratest.testcase.Test
+        public void test(StringData data) {
+            // nothing to do
+        }
+
+    }
+
+    public static class StringData extends Data {
+
+        private String value;
+
+        public StringData(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+    }
+
+}
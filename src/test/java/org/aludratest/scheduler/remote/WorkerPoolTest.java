@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.scheduler.remote;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.aludratest.AludraTest;
+import org.aludratest.LocalTestCase;
+import org.aludratest.scheduler.AbstractRunnerListener;
+import org.aludratest.scheduler.AludraTestRunner;
+import org.aludratest.scheduler.RunnerListenerRegistry;
+import org.aludratest.scheduler.RunnerTree;
+import org.aludratest.scheduler.RunnerTreeBuilder;
+import org.aludratest.scheduler.node.RunnerLeaf;
+import org.aludratest.scheduler.test.InheritingClass;
+import org.aludratest.scheduler.test.ParallelClass;
+import org.aludratest.testcase.TestStatus;
+import org.aludratest.testcase.event.TestStepInfo;
+import org.junit.Test;
+
+/** Tests the execution of test cases in forked worker JVMs. As this forks JVMs, it is only executed as local test.
+ * @author agent */
+@SuppressWarnings("javadoc")
+public class WorkerPoolTest extends LocalTestCase {
+
+    private static final String WORKER_COUNT_PROP = "ALUDRATEST_CONFIG/aludratest/worker.jvm.count";
+
+    private static final String PORT_PROP = "ALUDRATEST_CONFIG/aludratest/worker.coordinator.port";
+
+    @Test
+    public void testExecutionInWorkerJvms() {
+        System.setProperty(WORKER_COUNT_PROP, "2");
+        AludraTest aludraTest = AludraTest.startFramework();
+        RecordingListener listener = new RecordingListener();
+        try {
+            aludraTest.getServiceManager().newImplementorInstance(RunnerListenerRegistry.class).addRunnerListener(listener);
+            RunnerTree tree = aludraTest.getServiceManager().newImplementorInstance(RunnerTreeBuilder.class)
+                    .buildRunnerTree(ParallelClass.class);
+            aludraTest.getServiceManager().newImplementorInstance(AludraTestRunner.class).runAludraTests(tree);
+        }
+        finally {
+            aludraTest.stopFramework();
+            System.getProperties().remove(WORKER_COUNT_PROP);
+        }
+
+        assertEquals(4, listener.startedLeafs.size());
+        assertEquals(new HashSet<String>(listener.startedLeafs), new HashSet<String>(listener.finishedLeafs));
+        assertTrue(listener.failedSteps.isEmpty());
+    }
+
+    @Test
+    public void testInheritedTestMethodInWorkerJvms() {
+        System.setProperty(WORKER_COUNT_PROP, "1");
+        AludraTest aludraTest = AludraTest.startFramework();
+        RecordingListener listener = new RecordingListener();
+        try {
+            aludraTest.getServiceManager().newImplementorInstance(RunnerListenerRegistry.class).addRunnerListener(listener);
+            RunnerTree tree = aludraTest.getServiceManager().newImplementorInstance(RunnerTreeBuilder.class)
+                    .buildRunnerTree(InheritingClass.class);
+            aludraTest.getServiceManager().newImplementorInstance(AludraTestRunner.class).runAludraTests(tree);
+        }
+        finally {
+            aludraTest.stopFramework();
+            System.getProperties().remove(WORKER_COUNT_PROP);
+        }
+
+        assertEquals(2, listener.finishedLeafs.size());
+        assertTrue(listener.failedSteps.isEmpty());
+    }
+
+    @Test
+    public void testConnectionWithInvalidTokenRejected() throws Exception {
+        int port = findFreePort();
+        System.setProperty(WORKER_COUNT_PROP, "1");
+        System.setProperty(PORT_PROP, String.valueOf(port));
+        AludraTest aludraTest = AludraTest.startFramework();
+        RecordingListener listener = new RecordingListener();
+        Intruder intruder = new Intruder(port);
+        Thread intruderThread = new Thread(intruder);
+        try {
+            aludraTest.getServiceManager().newImplementorInstance(RunnerListenerRegistry.class).addRunnerListener(listener);
+            RunnerTree tree = aludraTest.getServiceManager().newImplementorInstance(RunnerTreeBuilder.class)
+                    .buildRunnerTree(ParallelClass.class);
+            intruderThread.start();
+            aludraTest.getServiceManager().newImplementorInstance(AludraTestRunner.class).runAludraTests(tree);
+        }
+        finally {
+            aludraTest.stopFramework();
+            System.getProperties().remove(WORKER_COUNT_PROP);
+            System.getProperties().remove(PORT_PROP);
+        }
+        intruderThread.join(10000);
+
+        assertTrue(intruder.connected);
+        assertTrue(intruder.closedByCoordinator);
+        assertEquals(4, listener.finishedLeafs.size());
+        assertTrue(listener.failedSteps.isEmpty());
+    }
+
+    private static int findFreePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        }
+        finally {
+            socket.close();
+        }
+    }
+
+    /** Connects to the coordinator before the forked worker does, and presents a wrong token. */
+    private static class Intruder implements Runnable {
+
+        private final int port;
+
+        private volatile boolean connected;
+
+        private volatile boolean closedByCoordinator;
+
+        Intruder(int port) {
+            this.port = port;
+        }
+
+        @Override
+        public void run() {
+            long deadline = System.currentTimeMillis() + 30000;
+            while (!connected && System.currentTimeMillis() < deadline) {
+                try {
+                    Socket socket = new Socket("127.0.0.1", port);
+                    connected = true;
+                    try {
+                        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                        out.writeUTF("wrongToken");
+                        out.writeInt(1);
+                        out.flush();
+                        closedByCoordinator = (socket.getInputStream().read() == -1);
+                    }
+                    finally {
+                        socket.close();
+                    }
+                }
+                catch (IOException e) {
+                    // coordinator not listening yet
+                    try {
+                        Thread.sleep(10);
+                    }
+                    catch (InterruptedException e1) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private static class RecordingListener extends AbstractRunnerListener {
+
+        private List<String> startedLeafs = new ArrayList<String>();
+
+        private List<String> finishedLeafs = new ArrayList<String>();
+
+        private List<TestStepInfo> failedSteps = new ArrayList<TestStepInfo>();
+
+        @Override
+        public synchronized void startingTestLeaf(RunnerLeaf runnerLeaf) {
+            startedLeafs.add(runnerLeaf.getName());
+        }
+
+        @Override
+        public synchronized void finishedTestLeaf(RunnerLeaf runnerLeaf) {
+            finishedLeafs.add(runnerLeaf.getName());
+        }
+
+        @Override
+        public synchronized void newTestStep(RunnerLeaf runnerLeaf, TestStepInfo testStepInfo) {
+            if (testStepInfo.getTestStatus() != TestStatus.PASSED) {
+                failedSteps.add(testStepInfo);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.scheduler.test;
+
+import org.aludratest.scheduler.Log;
+import org.aludratest.testcase.AludraTestCase;
+import org.aludratest.testcase.Test;
+
+/**
+ * Abstract AludraTest test class which provides a test method to its subclasses.
+ * @author agent
+ */
+@SuppressWarnings("javadoc")
+public abstract class AbstractInheritedClass extends AludraTestCase {
+
+    @Test
+    public void inheritedTest() {
+        Log.log("inheritedTest");
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.scheduler.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.aludratest.scheduler.util.TestAttributeUtilTest.DuplicateAttributeTestClass;
+import org.aludratest.scheduler.util.TestAttributeUtilTest.UnattributedTestClass;
+import org.junit.Test;
+
+/** Tests the {@link AttributeBasedTestClassFilter}.
+ * @author agent */
+@SuppressWarnings("javadoc")
+public class AttributeBasedTestClassFilterTest {
+
+    @Test
+    public void testAnyValueOfDuplicateNameMatches() {
+        AttributeBasedTestClassFilter filter = new AttributeBasedTestClassFilter("author", Arrays.asList("mmiller"), false);
+        assertTrue(filter.matches(DuplicateAttributeTestClass.class));
+        assertFalse(filter.matches(UnattributedTestClass.class));
+
+        filter = new AttributeBasedTestClassFilter("author", Arrays.asList("nobody"), false);
+        assertFalse(filter.matches(DuplicateAttributeTestClass.class));
+    }
+
+    @Test
+    public void testUnsetValue() {
+        AttributeBasedTestClassFilter filter = new AttributeBasedTestClassFilter("author", Arrays.asList("[]"), false);
+        assertTrue(filter.matches(UnattributedTestClass.class));
+        assertFalse(filter.matches(DuplicateAttributeTestClass.class));
+
+        filter = new AttributeBasedTestClassFilter("author", Arrays.asList("jdoe", "[]"), false);
+        assertTrue(filter.matches(UnattributedTestClass.class));
+        assertTrue(filter.matches(DuplicateAttributeTestClass.class));
+    }
+
+    @Test
+    public void testInvertedUnsetValue() {
+        AttributeBasedTestClassFilter filter = new AttributeBasedTestClassFilter("author", Arrays.asList("[]"), true);
+        assertFalse(filter.matches(UnattributedTestClass.class));
+        assertTrue(filter.matches(DuplicateAttributeTestClass.class));
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.scheduler.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.aludratest.testcase.AludraTestCase;
+import org.aludratest.testcase.TestAttribute;
+import org.aludratest.testcase.TestAttributes;
+import org.junit.Test;
+
+/** Tests the {@link TestAttributeUtil}.
+ * @author agent */
+@SuppressWarnings("javadoc")
+public class TestAttributeUtilTest {
+
+    @Test
+    public void testDuplicateNameAcrossAnnotations() {
+        Map<String, List<String>> attributes = TestAttributeUtil.getTestAttributes(DuplicateAttributeTestClass.class);
+        assertEquals(2, attributes.size());
+        assertEquals(Arrays.asList("jdoe", "falbrech", "mmiller"), attributes.get("author"));
+        assertEquals(Arrays.asList("InWork"), attributes.get("state"));
+    }
+
+    @Test
+    public void testAttributesAreCachedAndUnmodifiable() {
+        Map<String, List<String>> attributes = TestAttributeUtil.getTestAttributes(DuplicateAttributeTestClass.class);
+        assertSame(attributes, TestAttributeUtil.getTestAttributes(DuplicateAttributeTestClass.class));
+        try {
+            attributes.get("author").add("other");
+            fail("UnsupportedOperationException expected");
+        }
+        catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNoAttributes() {
+        assertTrue(TestAttributeUtil.getTestAttributes(UnattributedTestClass.class).isEmpty());
+    }
+
+    // helper classes ----------------------------------------------------------
+
+    @TestAttribute(name = "author", value = "jdoe")
+    @TestAttributes({ @TestAttribute(name = "author", value = "falbrech"), @TestAttribute(name = "state", value = "InWork"),
+            @TestAttribute(name = "author", value = "mmiller") })
+    public static class DuplicateAttributeTestClass extends AludraTestCase {
+    }
+
+    public static class UnattributedTestClass extends AludraTestCase {
+    }
+
+}
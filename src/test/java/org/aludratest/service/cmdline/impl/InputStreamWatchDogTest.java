@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.cmdline.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+
+import org.aludratest.exception.PerformanceFailure;
+import org.databene.commons.SystemInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests the {@link InputStreamWatchDog}.
+ * @author agent */
+@SuppressWarnings("javadoc")
+public class InputStreamWatchDogTest {
+
+    private static final String LF = SystemInfo.getLineSeparator();
+
+    /** A process which runs until it is destroyed, so the watch dog expects more output. */
+    private ProcessWrapper runningProcess;
+
+    @Before
+    public void setUp() {
+        runningProcess = new ProcessWrapper(1, 500, 500, "src/test/script/sleep" + (SystemInfo.isWindows() ? ".bat" : ".sh"));
+        runningProcess.start();
+    }
+
+    @After
+    public void tearDown() {
+        runningProcess.destroy();
+    }
+
+    @Test
+    public void testNextLine() throws Exception {
+        PipedOutputStream out = new PipedOutputStream();
+        InputStreamWatchDog watchDog = new InputStreamWatchDog(new PipedInputStream(out), runningProcess, "stdout");
+        watchDog.startDrain();
+        out.write(("first" + LF + "second" + LF).getBytes());
+        out.flush();
+        assertEquals("first", watchDog.nextLine());
+        assertEquals("second", watchDog.nextLine());
+        watchDog.close();
+    }
+
+    @Test
+    public void testResponseTimeout() throws Exception {
+        PipedOutputStream out = new PipedOutputStream();
+        InputStreamWatchDog watchDog = new InputStreamWatchDog(new PipedInputStream(out), runningProcess, "stdout");
+        watchDog.startDrain();
+        long start = System.currentTimeMillis();
+        try {
+            watchDog.nextLine();
+            fail("PerformanceFailure expected");
+        }
+        catch (PerformanceFailure e) {
+            // expected
+        }
+        long duration = System.currentTimeMillis() - start;
+        assertTrue("Timeout fired after " + duration + " ms", duration >= 450 && duration < 10000);
+        // the watch dog does not provide output after a timeout
+        out.write(("late" + LF).getBytes());
+        out.flush();
+        assertFalse(watchDog.availableWithinResponseTimeout());
+        watchDog.close();
+    }
+
+    @Test
+    public void testEndOfStream() throws Exception {
+        InputStreamWatchDog watchDog = new InputStreamWatchDog(new ByteArrayInputStream(("only" + LF).getBytes()),
+                runningProcess, "stdout");
+        watchDog.startDrain();
+        assertEquals("only", watchDog.nextLine());
+        // the stream has ended, so no timeout is awaited
+        long start = System.currentTimeMillis();
+        assertFalse(watchDog.availableWithinResponseTimeout());
+        assertTrue(System.currentTimeMillis() - start < 450);
+        watchDog.close();
+    }
+
+    @Test
+    public void testRedirectToAfterExit() throws Exception {
+        ProcessWrapper process = new ProcessWrapper(2, 5000, 2000, "src/test/script/listpersons"
+                + (SystemInfo.isWindows() ? ".bat" : ".sh"));
+        process.start();
+        process.waitUntilFinished();
+        byte[] output = ("Alice" + LF + "Bob" + LF).getBytes();
+        // the stream is drained after the process has exited
+        InputStreamWatchDog watchDog = new InputStreamWatchDog(new ByteArrayInputStream(output), process, "stdout");
+        watchDog.startDrain();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        watchDog.redirectTo(out);
+        assertEquals("Alice" + LF + "Bob" + LF, out.toString());
+        process.destroy();
+    }
+
+}
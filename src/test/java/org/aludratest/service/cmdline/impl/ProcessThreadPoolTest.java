@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.cmdline.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/** Tests the {@link ProcessThreadPool}.
+ * @author agent */
+@SuppressWarnings("javadoc")
+public class ProcessThreadPoolTest {
+
+    @Test
+    public void testBlockingTasksRunConcurrently() throws Exception {
+        // each task blocks until all tasks have started, like the monitors of several processes
+        final int taskCount = 5;
+        final CountDownLatch started = new CountDownLatch(taskCount);
+        final CountDownLatch finished = new CountDownLatch(taskCount);
+        final Set<String> threadNames = Collections.synchronizedSet(new HashSet<String>());
+        for (int i = 0; i < taskCount; i++) {
+            ProcessThreadPool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Thread thread = Thread.currentThread();
+                    if (thread.isDaemon()) {
+                        threadNames.add(thread.getName());
+                    }
+                    started.countDown();
+                    try {
+                        if (started.await(10, TimeUnit.SECONDS)) {
+                            finished.countDown();
+                        }
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertEquals(taskCount, threadNames.size());
+        for (String threadName : threadNames) {
+            assertTrue(threadName, threadName.startsWith("ProcessMonitor-"));
+        }
+    }
+
+}
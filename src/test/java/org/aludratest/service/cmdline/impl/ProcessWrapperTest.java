@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.cmdline.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+
+import org.aludratest.exception.PerformanceFailure;
+import org.databene.commons.SystemInfo;
+import org.junit.Test;
+
+/** Tests the {@link ProcessWrapper}.
+ * @author agent */
+@SuppressWarnings("javadoc")
+public class ProcessWrapperTest {
+
+    private static final String LF = SystemInfo.getLineSeparator();
+
+    @Test
+    public void testWaitUntilFinished() {
+        ProcessWrapper process = new ProcessWrapper(1, 5000, 2000, testBatchPath("listpersons"));
+        process.start();
+        try {
+            assertEquals(0, process.waitUntilFinished());
+            assertTrue(process.hasFinished());
+            assertFalse(process.isRunning());
+            assertEquals(Integer.valueOf(0), process.getExitValue());
+        }
+        finally {
+            process.destroy();
+        }
+    }
+
+    @Test
+    public void testWaitUntilFinishedTimeout() {
+        ProcessWrapper process = new ProcessWrapper(2, 500, 500, testBatchPath("sleep"));
+        process.start();
+        long start = System.currentTimeMillis();
+        try {
+            process.waitUntilFinished();
+            fail("PerformanceFailure expected");
+        }
+        catch (PerformanceFailure e) {
+            // expected
+        }
+        finally {
+            process.destroy();
+        }
+        long duration = System.currentTimeMillis() - start;
+        assertTrue("Timeout fired after " + duration + " ms", duration >= 450 && duration < 10000);
+    }
+
+    @Test
+    public void testNeverEndingProcess() {
+        ProcessWrapper process = new ProcessWrapper(3, 500, 500, testBatchPath("sleep"));
+        process.start();
+        try {
+            assertTrue(process.isRunning());
+            assertNull(process.getExitValue());
+            // the process provides no output, so waiting for it must time out
+            assertFalse(process.getStdOut().availableWithinTimeout());
+        }
+        finally {
+            process.destroy();
+        }
+    }
+
+    @Test
+    public void testRedirectToAfterExit() throws Exception {
+        ProcessWrapper process = new ProcessWrapper(4, 5000, 2000, testBatchPath("listpersons"));
+        process.start();
+        try {
+            process.waitUntilFinished();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            process.getStdOut().redirectTo(out);
+            assertEquals("Alice" + LF + "Bob" + LF + "Charly" + LF, out.toString());
+        }
+        finally {
+            process.destroy();
+        }
+    }
+
+    @Test
+    public void testProcessesShareOneReaper() {
+        ProcessWrapper[] processes = new ProcessWrapper[5];
+        for (int i = 0; i < processes.length; i++) {
+            processes[i] = new ProcessWrapper(5 + i, 5000, 2000, testBatchPath("sleep"));
+            processes[i].start();
+        }
+        try {
+            assertEquals(1, countThreads("ProcessReaper"));
+        }
+        finally {
+            for (ProcessWrapper process : processes) {
+                process.destroy();
+            }
+        }
+        for (ProcessWrapper process : processes) {
+            process.waitUntilFinished();
+            assertTrue(process.hasFinished());
+        }
+    }
+
+    // private helpers ---------------------------------------------------------
+
+    private static int countThreads(String name) {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (name.equals(thread.getName())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static String testBatchPath(String scriptName) {
+        return "src/test/script/" + scriptName + (SystemInfo.isWindows() ? ".bat" : ".sh");
+    }
+
+}
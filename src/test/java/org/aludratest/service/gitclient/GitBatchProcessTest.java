@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gitclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import org.aludratest.exception.TechnicalException;
+import org.aludratest.service.gitclient.data.GitObjectData;
+import org.databene.commons.SystemInfo;
+import org.junit.Test;
+
+/** Tests the {@link GitBatchProcess}.
+ * @author agent */
+@SuppressWarnings("javadoc")
+public class GitBatchProcessTest {
+
+    @Test
+    public void testResponseTimeout() throws Exception {
+        String script = "src/test/script/sleep" + (SystemInfo.isWindows() ? ".bat" : ".sh");
+        GitBatchProcess process = new GitBatchProcess(new File("."), false, 500, new File(script).getAbsolutePath());
+        assertFalse(process.isTerminated());
+        GitObjectData data = new GitObjectData("HEAD");
+        long start = System.currentTimeMillis();
+        try {
+            process.query(data);
+            fail("TechnicalException expected");
+        }
+        catch (TechnicalException e) {
+            assertEquals("git cat-file did not respond within 500 ms", e.getMessage());
+        }
+        assertTrue(System.currentTimeMillis() - start < 10000);
+        // the process is destroyed after the timeout
+        process.close();
+        assertTrue(process.isTerminated());
+    }
+
+    @Test
+    public void testProtocolError() throws Exception {
+        String script = "src/test/script/garbage" + (SystemInfo.isWindows() ? ".bat" : ".sh");
+        GitBatchProcess process = new GitBatchProcess(new File("."), false, 5000, new File(script).getAbsolutePath());
+        try {
+            process.query(new GitObjectData("HEAD"));
+            fail("TechnicalException expected");
+        }
+        catch (TechnicalException e) {
+            assertEquals("Unexpected git cat-file output: unexpected output", e.getMessage());
+        }
+        // the process is out of sync, so it is destroyed and has to be replaced
+        assertTrue(process.isTerminated());
+        process.close();
+    }
+
+}
@@ -19,6 +19,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
@@ -27,6 +28,7 @@ import java.io.StringWriter;
 import java.util.List;
 import java.util.UUID;
 
+import org.aludratest.exception.AutomationException;
 import org.aludratest.service.AbstractAludraServiceTest;
 import org.aludratest.service.cmdline.CommandLineService;
 import org.aludratest.service.gitclient.data.AddData;
@@ -38,6 +40,7 @@ import org.aludratest.service.gitclient.data.CloneRepositoryData;
 import org.aludratest.service.gitclient.data.CommitData;
 import org.aludratest.service.gitclient.data.ConfigData;
 import org.aludratest.service.gitclient.data.FetchData;
+import org.aludratest.service.gitclient.data.GitObjectData;
 import org.aludratest.service.gitclient.data.InvocationData;
 import org.aludratest.service.gitclient.data.LogData;
 import org.aludratest.service.gitclient.data.LogItemData;
@@ -474,6 +477,51 @@ public class GitClientIntegrationTest extends AbstractAludraServiceTest {
         assertTrue("Version info does not start with 'git version '", stdOut.startsWith("git version "));
     }
 
+    @Test
+    public void testReadObject() throws Exception {
+        runInNewRepo(new GitTest() {
+            @Override
+            public void run(GitClient gitClient) throws Exception {
+                try {
+                    createOrOverwriteFile("file1.txt", "content1", true, gitClient);
+                    createOrOverwriteFile("file2.txt", "second content", true, gitClient);
+                    IOUtil.writeTextFile(file("latin1.txt", gitClient).getAbsolutePath(), "Gr\u00FC\u00DFe", "ISO-8859-1");
+                    gitClient.add(new AddData("latin1.txt"));
+                    gitClient.commit(new CommitData("commit1"));
+                    GitObjectData latin1 = new GitObjectData("HEAD:latin1.txt");
+                    latin1.setCharset("ISO-8859-1");
+                    gitClient.readObject(latin1);
+                    assertEquals(5, latin1.getContentBytes().length);
+                    assertEquals("Gr\u00FC\u00DFe", latin1.getContent());
+                    GitObjectData commit = new GitObjectData("HEAD");
+                    gitClient.readObjectInfo(commit);
+                    assertEquals("commit", commit.getType());
+                    assertEquals(40, commit.getObjectName().length());
+                    for (int i = 0; i < 3; i++) {
+                        GitObjectData file1 = new GitObjectData("HEAD:file1.txt");
+                        gitClient.readObject(file1);
+                        assertEquals("blob", file1.getType());
+                        assertEquals("8", file1.getSize());
+                        assertEquals("content1", file1.getContent());
+                        GitObjectData file2 = new GitObjectData("HEAD:file2.txt");
+                        gitClient.readObject(file2);
+                        assertEquals("second content", file2.getContent());
+                    }
+                    try {
+                        gitClient.readObjectInfo(new GitObjectData("HEAD:missing.txt"));
+                        fail("AutomationException expected");
+                    }
+                    catch (AutomationException e) {
+                        // expected
+                    }
+                }
+                finally {
+                    gitClient.closeBatchProcesses();
+                }
+            }
+        });
+    }
+
     // private methods ---------------------------------------------------------
 
     private GitClient createGitClient() {
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.aludratest.exception.FunctionalFailure;
+import org.aludratest.exception.MultipleFunctionalFailures;
+import org.aludratest.service.gui.GUIElementCheck.Kind;
+import org.aludratest.service.locator.element.IdLocator;
+import org.junit.Test;
+
+/** Tests the {@link GUIElementCheckPoller}.
+ * @author agent */
+@SuppressWarnings("javadoc")
+public class GUIElementCheckPollerTest {
+
+    private static final GUIElementCheck BUTTON = new GUIElementCheck(Kind.VISIBLE, "Button", "okButton", new IdLocator("ok"));
+
+    private static final GUIElementCheck LABEL = new GUIElementCheck(Kind.PRESENT, "Label", "nameLabel", new IdLocator("name"));
+
+    private static final GUIElementCheck FIELD = new GUIElementCheck(Kind.ENABLED, "InputField", "nameField",
+            new IdLocator("field"));
+
+    @Test
+    public void testAllChecksPass() {
+        StubEvaluator evaluator = new StubEvaluator();
+        evaluator.passAfter(BUTTON, 1);
+        evaluator.passAfter(LABEL, 3);
+        List<GUIElementCheck> failed = new GUIElementCheckPoller(5000, 10).getFailedChecks(Arrays.asList(BUTTON, LABEL),
+                evaluator);
+        assertTrue(failed.isEmpty());
+        // a passed check is neither prepared nor evaluated again
+        List<List<GUIElementCheck>> expectedPreparations = new ArrayList<List<GUIElementCheck>>();
+        expectedPreparations.add(Arrays.asList(BUTTON, LABEL));
+        expectedPreparations.add(Arrays.asList(LABEL));
+        expectedPreparations.add(Arrays.asList(LABEL));
+        assertEquals(expectedPreparations, evaluator.preparedChecks);
+        assertEquals(Integer.valueOf(1), evaluator.evaluations.get(BUTTON));
+        assertEquals(Integer.valueOf(3), evaluator.evaluations.get(LABEL));
+    }
+
+    @Test
+    public void testNoChecks() {
+        StubEvaluator evaluator = new StubEvaluator();
+        assertTrue(new GUIElementCheckPoller(5000, 10).getFailedChecks(Collections.<GUIElementCheck> emptyList(), evaluator)
+                .isEmpty());
+        assertTrue(evaluator.preparedChecks.isEmpty());
+    }
+
+    @Test
+    public void testSharedDeadline() {
+        StubEvaluator evaluator = new StubEvaluator();
+        evaluator.passAfter(LABEL, 2);
+        long startMillis = System.currentTimeMillis();
+        List<GUIElementCheck> failed = new GUIElementCheckPoller(500, 20).getFailedChecks(Arrays.asList(FIELD, LABEL, BUTTON),
+                evaluator);
+        long duration = System.currentTimeMillis() - startMillis;
+        assertEquals(Arrays.asList(FIELD, BUTTON), failed);
+        // all failing checks share one timeout, instead of one timeout each
+        assertTrue("Polling took " + duration + " ms", duration < 1000);
+    }
+
+    @Test
+    public void testAssertChecks() {
+        StubEvaluator evaluator = new StubEvaluator();
+        evaluator.passAfter(BUTTON, 1);
+        GUIElementCheckPoller poller = new GUIElementCheckPoller(200, 20);
+        try {
+            poller.assertChecks(Arrays.asList(BUTTON, LABEL, FIELD), evaluator);
+            fail("MultipleFunctionalFailures expected");
+        }
+        catch (MultipleFunctionalFailures e) {
+            assertEquals("2 of 3 GUI element checks failed", e.getMessage());
+            // one failure per failed check, naming the element, its locator and the expectation
+            List<FunctionalFailure> failures = e.getFailures();
+            assertEquals(2, failures.size());
+            assertEquals("Label 'nameLabel' (name): expected present", failures.get(0).getMessage());
+            assertEquals("InputField 'nameField' (field): expected enabled", failures.get(1).getMessage());
+        }
+
+        evaluator = new StubEvaluator();
+        evaluator.passAfter(LABEL, 2);
+        poller.assertChecks(Arrays.asList(LABEL), evaluator);
+    }
+
+    private static class StubEvaluator implements GUIElementCheckPoller.Evaluator {
+
+        private final Map<GUIElementCheck, Integer> requiredEvaluations = new HashMap<GUIElementCheck, Integer>();
+
+        private final Map<GUIElementCheck, Integer> evaluations = new HashMap<GUIElementCheck, Integer>();
+
+        private final List<List<GUIElementCheck>> preparedChecks = new ArrayList<List<GUIElementCheck>>();
+
+        private final Set<GUIElementCheck> passed = new HashSet<GUIElementCheck>();
+
+        void passAfter(GUIElementCheck check, int evaluationCount) {
+            requiredEvaluations.put(check, Integer.valueOf(evaluationCount));
+        }
+
+        @Override
+        public synchronized void prepare(List<GUIElementCheck> pendingChecks) {
+            preparedChecks.add(new ArrayList<GUIElementCheck>(pendingChecks));
+        }
+
+        @Override
+        public synchronized boolean evaluate(GUIElementCheck check) {
+            assertFalse(passed.contains(check));
+            Integer count = evaluations.get(check);
+            count = Integer.valueOf(count == null ? 1 : count.intValue() + 1);
+            evaluations.put(check, count);
+            Integer required = requiredEvaluations.get(check);
+            if (required != null && count.intValue() >= required.intValue()) {
+                passed.add(check);
+                return true;
+            }
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.component;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.aludratest.service.gui.AludraGUI;
+import org.aludratest.service.gui.BatchGUIVerification;
+import org.aludratest.service.gui.GUIElementCheck;
+import org.aludratest.service.gui.GUIElementCheck.Kind;
+import org.aludratest.service.gui.GUIVerification;
+import org.aludratest.service.gui.component.impl.LabelImpl;
+import org.aludratest.service.locator.element.GUIElementLocator;
+import org.aludratest.service.locator.element.IdLocator;
+import org.databene.commons.Validator;
+import org.junit.Test;
+
+/** Tests the {@link GUIVerificationBatch} against a stub GUI service.
+ * @author agent */
+@SuppressWarnings("javadoc")
+public class GUIVerificationBatchTest {
+
+    private final List<List<GUIElementCheck>> verifiedBatches = new ArrayList<List<GUIElementCheck>>();
+
+    private final List<String> otherInvocations = new ArrayList<String>();
+
+    private final AludraGUI aludraGUI = createStubGUI(BatchGUIVerification.class);
+
+    @Test
+    public void testVerifyInOneCall() {
+        Label label = createLabel("nameLabel", new IdLocator("name"));
+        Label closeLabel = createLabel("closeLabel", new IdLocator("close"));
+        Validator<String> validator = new Validator<String>() {
+            @Override
+            public boolean valid(String text) {
+                return "Alice".equals(text);
+            }
+        };
+
+        GUIVerificationBatch batch = new GUIVerificationBatch(aludraGUI);
+        batch.assertVisible(label).assertTextMatches(label, validator).assertNotPresent(closeLabel).verify();
+
+        assertEquals(1, verifiedBatches.size());
+        assertTrue(otherInvocations.toString(), otherInvocations.isEmpty());
+        List<GUIElementCheck> checks = verifiedBatches.get(0);
+        assertEquals(3, checks.size());
+        assertCheck(checks.get(0), Kind.VISIBLE, "nameLabel", "name");
+        assertNull(checks.get(0).getValidator());
+        assertCheck(checks.get(1), Kind.TEXT_MATCHES, "nameLabel", "name");
+        assertSame(validator, checks.get(1).getValidator());
+        assertCheck(checks.get(2), Kind.NOT_PRESENT, "closeLabel", "close");
+
+        // the batch is cleared by verify()
+        batch.verify();
+        assertEquals(1, verifiedBatches.size());
+        batch.assertChecked(closeLabel).verify();
+        assertEquals(2, verifiedBatches.size());
+        assertEquals(1, verifiedBatches.get(1).size());
+        assertCheck(verifiedBatches.get(1).get(0), Kind.CHECKED, "closeLabel", "close");
+    }
+
+    @Test
+    public void testElementWithoutComponentBase() {
+        final GUIElementLocator locator = new IdLocator("custom");
+        Element<?> element = (Element<?>) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Button.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return "getLocator".equals(method.getName()) ? locator : null;
+                    }
+                });
+        new GUIVerificationBatch(aludraGUI).assertEnabled(element).verify();
+        GUIElementCheck check = verifiedBatches.get(0).get(0);
+        assertEquals(Kind.ENABLED, check.getKind());
+        assertEquals(String.valueOf(locator), check.getElementName());
+        assertSame(locator, check.getLocator());
+    }
+
+    @Test
+    public void testVerifySinglyWithoutBatchSupport() {
+        final AludraGUI plainGUI = createStubGUI(GUIVerification.class);
+        Label label = new LabelImpl() {
+            {
+                configure(plainGUI, new IdLocator("name"), "Label", "nameLabel");
+            }
+        };
+        new GUIVerificationBatch(plainGUI).assertVisible(label).assertNotChecked(label).assertNotPresent(label).verify();
+        assertTrue(verifiedBatches.isEmpty());
+        assertEquals(Arrays.asList("assertVisible", "assertChecked", "assertElementNotPresent"), otherInvocations);
+    }
+
+    // private helpers ---------------------------------------------------------
+
+    private static void assertCheck(GUIElementCheck check, Kind kind, String elementName, String locator) {
+        assertEquals(kind, check.getKind());
+        assertEquals("Label", check.getElementType());
+        assertEquals(elementName, check.getElementName());
+        assertEquals(locator, check.getLocator().toString());
+    }
+
+    private Label createLabel(final String name, final GUIElementLocator labelLocator) {
+        // the parameter names must not hide the fields of the component
+        return new LabelImpl() {
+            {
+                configure(aludraGUI, labelLocator, "Label", name);
+            }
+        };
+    }
+
+    private AludraGUI createStubGUI(Class<? extends GUIVerification> verificationType) {
+        final GUIVerification verification = (GUIVerification) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { verificationType }, new InvocationHandler() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("assertChecks".equals(method.getName())) {
+                            verifiedBatches.add((List<GUIElementCheck>) args[0]);
+                        }
+                        else {
+                            otherInvocations.add(method.getName());
+                        }
+                        return null;
+                    }
+                });
+        return (AludraGUI) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { AludraGUI.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("verify".equals(method.getName())) {
+                            return verification;
+                        }
+                        otherInvocations.add(method.getName());
+                        return null;
+                    }
+                });
+    }
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2010-2014 Hamburg Sud and the contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.aludratest.service.gui.component.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.aludratest.service.AludraContext;
+import org.aludratest.service.AludraService;
+import org.aludratest.service.ComponentId;
+import org.aludratest.service.gui.AludraGUI;
+import org.aludratest.service.gui.component.GUIComponent;
+import org.aludratest.service.gui.component.GUIComponentFactory;
+import org.aludratest.service.gui.component.Label;
+import org.aludratest.service.locator.element.GUIElementLocator;
+import org.aludratest.service.locator.element.IdLocator;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.PlexusContainer;
+import org.codehaus.plexus.component.annotations.Requirement;
+import org.codehaus.plexus.component.repository.ComponentDescriptor;
+import org.codehaus.plexus.component.repository.ComponentRequirement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class DefaultGUIComponentFactoryTest {
+
+    private static final GUIElementLocator LOCATOR = new IdLocator("button");
+
+    private DefaultPlexusContainer container;
+
+    @Before
+    public void setUp() throws Exception {
+        container = new DefaultPlexusContainer();
+    }
+
+    @After
+    public void tearDown() {
+        container.dispose();
+    }
+
+    @Test
+    public void testPlanBasedInstantiation() throws Exception {
+        DefaultGUIComponentFactory factory = lookupFactory("default");
+
+        Label label1 = factory.createLabel(LOCATOR, "label1");
+        Label label2 = factory.createLabel(LOCATOR, "label2");
+
+        assertSame(LabelImpl.class, label1.getClass());
+        assertNotSame(label1, label2);
+        assertEquals("label1", ((LabelImpl) label1).getElementName());
+        assertEquals("label2", ((LabelImpl) label2).getElementName());
+        assertEquals("Label", ((LabelImpl) label1).getElementType());
+        // plain components are not registered in the container
+        assertNull(container.getComponentDescriptor(Label.class.getName(), "default"));
+    }
+
+    @Test
+    public void testRequirementInjection() throws Exception {
+        registerTestFactory();
+        DefaultGUIComponentFactory factory = lookupFactory(TestComponentFactory.HINT);
+
+        Label label = factory.createLabel(LOCATOR, "label");
+
+        assertSame(InjectedLabel.class, label.getClass());
+        InjectedLabel injected = (InjectedLabel) label;
+        assertSame(container, injected.container);
+        assertTrue(injected.factory instanceof DefaultGUIComponentFactory);
+        assertNull(injected.missing);
+        assertEquals("label", injected.getElementName());
+        assertFalse(container.hasComponent(Label.class, TestComponentFactory.HINT));
+    }
+
+    @Test
+    public void testRegisteredComponentIsLookedUpInContainer() throws Exception {
+        registerTestFactory();
+        ComponentDescriptor<Label> desc = new ComponentDescriptor<Label>();
+        desc.setRole(Label.class.getName());
+        desc.setRoleClass(Label.class);
+        desc.setRoleHint(TestComponentFactory.HINT);
+        desc.setImplementationClass(RegisteredLabel.class);
+        desc.setInstantiationStrategy("per-lookup");
+        desc.setRealm(container.getContainerRealm());
+        container.addComponentDescriptor(desc);
+        DefaultGUIComponentFactory factory = lookupFactory(TestComponentFactory.HINT);
+
+        Label label = factory.createLabel(LOCATOR, "label");
+
+        assertSame(RegisteredLabel.class, label.getClass());
+        assertEquals("label", ((RegisteredLabel) label).getElementName());
+    }
+
+    @Test
+    public void testDefaultElementNamePerUIMapMethod() throws Exception {
+        SampleUIMap uiMap = new SampleUIMap(lookupFactory("default"));
+
+        // both methods share the same locator, but must get their own names
+        assertEquals("okButton", ((LabelImpl) uiMap.getOkButton()).getElementName());
+        assertEquals("cancelButton", ((LabelImpl) uiMap.getCancelButton()).getElementName());
+        assertEquals("okButton", ((LabelImpl) uiMap.getOkButton()).getElementName());
+    }
+
+    // helper methods ----------------------------------------------------------
+
+    private DefaultGUIComponentFactory lookupFactory(String hint) throws Exception {
+        DefaultGUIComponentFactory factory = (DefaultGUIComponentFactory) container.lookup(GUIComponentFactory.class, hint);
+        factory.configureForGUIService(new StubContext(), ComponentId.create(AludraGUI.class));
+        return factory;
+    }
+
+    private void registerTestFactory() throws Exception {
+        ComponentDescriptor<GUIComponentFactory> desc = new ComponentDescriptor<GUIComponentFactory>();
+        desc.setRole(GUIComponentFactory.class.getName());
+        desc.setRoleClass(GUIComponentFactory.class);
+        desc.setRoleHint(TestComponentFactory.HINT);
+        desc.setImplementationClass(TestComponentFactory.class);
+        desc.setInstantiationStrategy("per-lookup");
+        desc.setRealm(container.getContainerRealm());
+        ComponentRequirement requirement = new ComponentRequirement();
+        requirement.setFieldName("plexusContainer");
+        requirement.setRole(PlexusContainer.class.getName());
+        desc.addRequirement(requirement);
+        container.addComponentDescriptor(desc);
+    }
+
+    // helper classes ----------------------------------------------------------
+
+    public static class TestComponentFactory extends DefaultGUIComponentFactory {
+
+        static final String HINT = "test";
+
+        @Override
+        protected <T extends GUIComponent> Class<? extends T> getImplementorClass(Class<T> componentClass) {
+            if (componentClass == Label.class) {
+                return InjectedLabel.class.asSubclass(componentClass);
+            }
+            return super.getImplementorClass(componentClass);
+        }
+
+        @Override
+        protected String getRoleHint() {
+            return HINT;
+        }
+    }
+
+    public static class InjectedLabel extends LabelImpl {
+
+        @Requirement
+        private PlexusContainer container;
+
+        @Requirement(hint = "default")
+        private GUIComponentFactory factory;
+
+        @Requirement(optional = true)
+        private Runnable missing;
+
+    }
+
+    public static class RegisteredLabel extends LabelImpl {
+    }
+
+    private static class SampleUIMap {
+
+        private final GUIComponentFactory factory;
+
+        SampleUIMap(GUIComponentFactory factory) {
+            this.factory = factory;
+        }
+
+        Label getOkButton() {
+            return factory.createLabel(LOCATOR);
+        }
+
+        Label getCancelButton() {
+            return factory.createLabel(LOCATOR);
+        }
+    }
+
+    private static class StubContext implements AludraContext {
+
+        private final AludraGUI gui = (AludraGUI) Proxy.newProxyInstance(AludraGUI.class.getClassLoader(),
+                new Class<?>[] { AludraGUI.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return null;
+                    }
+                });
+
+        @Override
+        public <T> T newComponentInstance(Class<T> componentInterface) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T extends AludraService> T getNonLoggingService(ComponentId<T> serviceId) {
+            return getService(serviceId);
+        }
+
+        @Override
+        public <T extends AludraService> T getService(ComponentId<T> serviceId) {
+            assertNotNull(serviceId);
+            return serviceId.getInterfaceClass().cast(gui);
+        }
+    }
+
+}
@@ -19,11 +19,14 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import org.aludratest.config.AludraTestConfig;
 import org.aludratest.config.impl.AludraTestingTestConfigImpl;
+import org.aludratest.exception.FunctionalFailure;
+import org.aludratest.exception.MultipleFunctionalFailures;
 import org.aludratest.service.AbstractAludraService;
 import org.aludratest.service.AbstractAludraServiceTest;
 import org.aludratest.service.AludraService;
@@ -34,6 +37,7 @@ import org.aludratest.service.SystemConnector;
 import org.aludratest.service.Verification;
 import org.aludratest.service.util.AbstractSystemConnector;
 import org.aludratest.testcase.TestStatus;
+import org.aludratest.testcase.event.TestStepInfo;
 import org.aludratest.testcase.event.attachment.Attachment;
 import org.aludratest.testcase.event.impl.AludraTestUtil;
 import org.junit.Test;
@@ -95,6 +99,25 @@ public class ControlFlowHandlerTest extends AbstractAludraServiceTest {
         assertEquals(TestStatus.IGNORED, getLastTestStep().getTestStatus());
     }
 
+    @Test
+    public void testMultipleFailuresLoggedAsSeparateSteps() throws Exception {
+        // GIVEN an object with ControlFlow proxy
+        MyTestInterface proxy = setup(true);
+
+        // WHEN calling a proxy method which reports two failures at once
+        proxy.failTwice();
+
+        // THEN one failed test step is logged per failure
+        List<TestStepInfo> steps = getTestSteps();
+        assertEquals(2, steps.size());
+        assertEquals("first", steps.get(0).getErrorMessage());
+        assertEquals(TestStatus.FAILED, steps.get(0).getTestStatus());
+        assertEquals("failTwice", steps.get(0).getCommand());
+        assertEquals("second", steps.get(1).getErrorMessage());
+        assertEquals(TestStatus.FAILED, steps.get(1).getTestStatus());
+        assertTrue(FlowController.getInstance().isStopped(context));
+    }
+
     // helper methods ----------------------------------------------------------
 
     private MyTestInterface setup(boolean stopOnException) {
@@ -114,6 +137,8 @@ public class ControlFlowHandlerTest extends AbstractAludraServiceTest {
         public Object copy(Object object);
 
         public void error() throws Exception;
+
+        public void failTwice();
     }
 
     public static class MyTestInterfaceImpl extends AbstractAludraService implements MyTestInterface, Interaction, Verification,
@@ -128,6 +153,12 @@ public class ControlFlowHandlerTest extends AbstractAludraServiceTest {
             throw new RuntimeException();
         }
 
+        @Override
+        public void failTwice() {
+            throw new MultipleFunctionalFailures("2 failures", Arrays.asList(new FunctionalFailure("first"),
+                    new FunctionalFailure("second")));
+        }
+
         @Override
         public String getDescription() {
             return "My test interface";
@@ -0,0 +1,4 @@
+@ECHO OFF
+SET /P revision=
+ECHO unexpected output
+ping -n 61 127.0.0.1 > NUL
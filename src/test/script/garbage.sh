@@ -0,0 +1,3 @@
+read revision
+echo "unexpected output"
+exec sleep 60
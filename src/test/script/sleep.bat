@@ -0,0 +1,2 @@
+@ECHO OFF
+ping -n 61 127.0.0.1 > NUL
@@ -0,0 +1 @@
+exec sleep 60
\ No newline at end of file